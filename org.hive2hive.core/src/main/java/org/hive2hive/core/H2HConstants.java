@@ -60,10 +60,50 @@ public interface H2HConstants {
 	public static final String FILE_CHUNK = "FILE_CHUNK";
 	public static final String META_FILE = "META_FILE";
 
+	// maximum age of the cached user profile which read-only processes accept without contacting the network
+	public static final long USER_PROFILE_MAX_STALENESS_MS = 5000;
+	// whether the user profile is stored in one document per top-level folder (see UserProfileShards)
+	public static final boolean USER_PROFILE_SHARDED = false;
+
 	public static final int PUT_RETRIES = 3; // number of allowed tries to retry a put
 	public static final int REMOVE_RETRIES = 3; // number of allowed tries to retry a remove
 	public static final int GET_RETRIES = 3; // number of allowed tries to retry a get
 
+	// backoff of the retries of puts, gets and removes (doubles with each retry, randomized by a jitter)
+	public static final long RETRY_BASE_DELAY_MS = 100;
+	public static final long RETRY_MAX_DELAY_MS = 3000;
+	// maximum time a put, get or remove (inclusive all retries) may take
+	public static final long RETRY_DEADLINE_MS = 60000;
+
+	// size bound (in bytes) of the local cache for immutable content (chunks)
+	public static final long CONTENT_CACHE_SIZE = 64 * 1024 * 1024; // 64 MB
+	// whether the cached content is stored off-heap (direct memory)
+	public static final boolean CONTENT_CACHE_OFF_HEAP = false;
+	// maximum number of versioned contents (e.g. meta files) whose newest version is cached locally
+	public static final int VERSION_CACHE_ENTRIES = 1000;
+
+	// whether the DHT content stored on this node is persisted on disk (see StorageDisk) or kept in memory
+	public static final boolean STORAGE_ON_DISK = false;
+	// the directory holding the persisted DHT content (in a sub-directory per node)
+	public static final File STORAGE_DIRECTORY = new File(System.getProperty("user.home"), "Hive2Hive-Storage");
+	// size (in bytes) at which a segment of the storage log gets sealed
+	public static final long STORAGE_SEGMENT_SIZE = 64 * 1024 * 1024; // 64 MB
+	// sealed segments with a lower ratio of live data get compacted
+	public static final double STORAGE_COMPACTION_THRESHOLD = 0.5;
+	public static final long STORAGE_COMPACTION_INTERVAL_MS = 60 * 1000; // 1 min
+	// whether large entries stored in memory are kept outside of the heap (see StorageOffHeap)
+	public static final boolean STORAGE_OFF_HEAP = false;
+	// maximum number of bytes kept outside of the heap (requires -XX:MaxDirectMemorySize of at least this)
+	public static final long STORAGE_OFF_HEAP_BUDGET = 1024 * 1024 * 1024; // 1 GB
+	// entries with at least this size are kept outside of the heap
+	public static final int STORAGE_OFF_HEAP_MIN_SIZE = 64 * 1024; // 64 KB
+	// resolution of the expiry of stored entries
+	public static final long STORAGE_EXPIRY_TICK_MS = 1000;
+	// maximum number of payload bytes a node stores for others
+	public static final long STORAGE_QUOTA_BYTES = Long.MAX_VALUE;
+	// maximum number of entries a node stores for others
+	public static final int STORAGE_QUOTA_ENTRIES = Integer.MAX_VALUE;
+
 	// maximum delay to wait until peers have time to answer until they get removed from the locations
 	public static final int CONTACT_PEERS_AWAIT_MS = 10000;
 
@@ -75,6 +115,9 @@ public interface H2HConstants {
 	// default key used in the TomP2P framework
 	public static final Number160 TOMP2P_DEFAULT_KEY = Number160.ZERO;
 
+	// domain key of the upper range bound which marks a get as conditional (see DataManager#getIfModified)
+	public static final Number160 CONDITIONAL_GET_DOMAIN_KEY = Number160.createHash("CONDITIONAL-GET");
+
 	// number of threads that netty / tomp2p are allowed to have. Too few threads can lead to slow response
 	// times, too many threads can exceed the available memory
 	public static final int NUM_OF_NETWORK_THREADS = 32;
@@ -117,4 +160,14 @@ public interface H2HConstants {
 	 */
 	// the number of concurrent downloads
 	public static final int CONCURRENT_DOWNLOADS = 25;
+
+	// the number of chunks of the same file which are downloaded concurrently while other files wait for a slot
+	public static final int CONCURRENT_DOWNLOADS_PER_FILE = 5;
+
+	// the name of the journal of the downloaded chunks (lying in the temporary folder of a download)
+	public static final String DOWNLOAD_JOURNAL_NAME = "download.journal";
+
+	// the directory holding the temporary folders of the downloads, only accessible by the current user
+	public static final File DOWNLOAD_DIRECTORY = new File(FileUtils.getUserDirectory(), ".hive2hive"
+			+ File.separator + "downloads");
 }
@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.IIndexFilter;
 import org.hive2hive.core.model.FolderIndex;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.UserProfile;
@@ -152,10 +153,11 @@ public class FileSynchronizer {
 		List<Index> addedRemotely = new ArrayList<Index>();
 
 		// visit all files in the tree and compare to disk
-		List<Index> indexList = Index.getIndexList(profileRootNode);
-		indexList.remove(profileRootNode);
+		for (Index index : Index.preorder(profileRootNode)) {
+			if (index == profileRootNode) {
+				continue;
+			}
 
-		for (Index index : indexList) {
 			if (now.containsKey(index.getFullPath().toString())) {
 				// was here before and is still here --> nothing to add
 				logger.trace("File '{}' was already here.", index.getFullPath());
@@ -221,13 +223,8 @@ public class FileSynchronizer {
 		List<FileIndex> updatedRemotely = new ArrayList<FileIndex>();
 
 		// visit all files in the tree and compare to disk
-		List<Index> indexList = Index.getIndexList(profileRootNode);
-		for (Index index : indexList) {
-			if (index.isFolder()) {
-				// folder cannot be modified
-				continue;
-			}
-
+		// folders cannot be modified
+		for (Index index : Index.preorder(profileRootNode, IIndexFilter.FILES)) {
 			FileIndex fileIndex = (FileIndex) index;
 			if (before.containsKey(fileIndex.getFullPath().toString())
 					&& now.containsKey(fileIndex.getFullPath().toString())) {
@@ -46,6 +46,13 @@ public class FileIndex extends Index {
 		this.md5LatestVersion = md5LatestVersion;
 	}
 
+	@Override
+	public FileIndex copyTo(FolderIndex parent) {
+		FileIndex copy = new FileIndex(parent, fileKeys, name, md5LatestVersion);
+		copy.metaFileHash = metaFileHash;
+		return copy;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder("FileIndex [");
@@ -0,0 +1,53 @@
+package org.hive2hive.core.model;
+
+import java.security.KeyPair;
+import java.util.Arrays;
+
+/**
+ * The immutable snapshot of a {@link FileIndex}.
+ * 
+ * @author Seppi
+ */
+public class FileSnapshot extends IndexSnapshot {
+
+	private final byte[] md5LatestVersion;
+	private final byte[] metaFileHash;
+
+	public FileSnapshot(KeyPair fileKeys, String name, byte[] md5LatestVersion, byte[] metaFileHash) {
+		super(fileKeys, name);
+		this.md5LatestVersion = md5LatestVersion == null ? null : md5LatestVersion.clone();
+		this.metaFileHash = metaFileHash == null ? null : metaFileHash.clone();
+	}
+
+	static FileSnapshot of(FileIndex index, FileSnapshot previous) {
+		if (previous != null && previous.matches(index)) {
+			return previous;
+		}
+		return new FileSnapshot(index.getFileKeys(), index.getName(), index.getMD5(), index.getMetaFileHash());
+	}
+
+	@Override
+	boolean matches(Index index) {
+		FileIndex file = (FileIndex) index;
+		return super.matches(index) && Arrays.equals(md5LatestVersion, file.getMD5())
+				&& Arrays.equals(metaFileHash, file.getMetaFileHash());
+	}
+
+	public byte[] getMD5() {
+		return md5LatestVersion == null ? null : md5LatestVersion.clone();
+	}
+
+	public byte[] getMetaFileHash() {
+		return metaFileHash == null ? null : metaFileHash.clone();
+	}
+
+	@Override
+	public boolean isFolder() {
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "FileSnapshot [name=" + getName() + "]";
+	}
+}
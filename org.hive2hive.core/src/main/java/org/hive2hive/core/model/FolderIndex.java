@@ -1,13 +1,16 @@
 package org.hive2hive.core.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
-import org.hive2hive.core.file.FileUtil;
-
 /**
  * An index stored in the user profile that represents a folder in the directory. It has some additional
  * capabilities than files like sharing.
@@ -19,8 +22,19 @@ public class FolderIndex extends Index {
 
 	private static final long serialVersionUID = 3798065400562165454L;
 
-	private final Set<Index> children = new HashSet<Index>();
-	private final Set<UserPermission> userPermissions = new HashSet<UserPermission>();
+	// an IndexArraySet, other sets (of older profiles) are converted when reading
+	private Set<Index> children = new IndexArraySet();
+	// null as long as there are no permissions, most folders do not have any
+	private Set<UserPermission> userPermissions = null;
+	// all nodes of the tree by their file key, only used at the root and built lazily (see #findByKey)
+	private transient Map<PublicKey, Index> nodesByKey;
+	// the modification stamp of the tree, only used at the root (see Index#modified)
+	private transient volatile long treeStamp;
+	// the values inherited from the parents, memoized until the next modification of the tree
+	private transient volatile Inherited inherited;
+	// whether this folder or a sub-folder is shared, valid while the stamp equals the stamp of the tree
+	private transient volatile boolean sharedSubtree;
+	private transient volatile long sharedSubtreeStamp;
 
 	private KeyPair protectionKeys = null;
 	private boolean isShared = false;
@@ -48,7 +62,8 @@ public class FolderIndex extends Index {
 	}
 
 	/**
-	 * Returns all direct children of this node
+	 * Returns all direct children of this node. Use {@link #addChild(Index)} and {@link #removeChild(Index)}
+	 * to modify them.
 	 * 
 	 * @return all childrens of this node
 	 */
@@ -63,8 +78,10 @@ public class FolderIndex extends Index {
 	 */
 	public void addChild(Index child) {
 		// only add once
-		if (getChildByName(child.getName()) == null)
-			children.add(child);
+		// a new child has nothing memoized and is not shared yet, a moved subtree is handled by setParent
+		if (getChildSet().insert(child)) {
+			updateKeyIndex(child, true);
+		}
 	}
 
 	/**
@@ -73,9 +90,14 @@ public class FolderIndex extends Index {
 	 * @param child
 	 */
 	public void removeChild(Index child) {
-		if (!children.remove(child)) {
-			// remove by name
-			children.remove(getChildByName(child.getName()));
+		// remove by name
+		Index removed = getChildSet().delete(child);
+		if (removed == null) {
+			return;
+		}
+		updateKeyIndex(removed, false);
+		if (removed.isFolder() && ((FolderIndex) removed).hasSharedSubtree()) {
+			modified();
 		}
 	}
 
@@ -85,17 +107,114 @@ public class FolderIndex extends Index {
 	 * @param name
 	 * @return
 	 */
-	// TODO get child by full path??
 	public Index getChildByName(String name) {
-		if (name != null) {
-			String withoutSeparator = name.replaceAll(FileUtil.getFileSep(), "");
-			for (Index child : children) {
-				if (child.getName().equalsIgnoreCase(withoutSeparator)) {
-					return child;
-				}
+		return getChildSet().get(name);
+	}
+
+	/**
+	 * Takes a child out of the order of the names before it is renamed (see {@link #childRenamed(Index)}).
+	 * 
+	 * @return <code>false</code> if the child is not a child of this folder
+	 */
+	boolean childRenaming(Index child) {
+		return getChildSet().detach(child);
+	}
+
+	/**
+	 * Keeps the children ordered by their names when a child is renamed.
+	 */
+	void childRenamed(Index child) {
+		getChildSet().attach(child);
+	}
+
+	/**
+	 * Finds a node of the tree by its file key. Must be called at the root.
+	 * 
+	 * @return the node or <code>null</code> if there is no such node in the tree
+	 */
+	Index findByKey(PublicKey fileKey) {
+		if (nodesByKey == null) {
+			buildKeyIndex();
+		}
+
+		Index found = nodesByKey.get(fileKey);
+		if (found != null && !isInTree(found, fileKey)) {
+			// the tree has been modified without addChild or removeChild
+			buildKeyIndex();
+			found = nodesByKey.get(fileKey);
+		}
+		return found;
+	}
+
+	private void buildKeyIndex() {
+		Map<PublicKey, Index> byKey = new HashMap<PublicKey, Index>();
+		for (Index index : preorder(this)) {
+			// in preorder, the first node with a key wins
+			if (index.getFileKeys() != null && !byKey.containsKey(index.getFilePublicKey())) {
+				byKey.put(index.getFilePublicKey(), index);
 			}
 		}
-		return null;
+		nodesByKey = byKey;
+	}
+
+	private boolean isInTree(Index index, PublicKey fileKey) {
+		if (index.getFileKeys() == null || !index.getFilePublicKey().equals(fileKey)) {
+			return false;
+		}
+
+		Index current = index;
+		while (current.getParent() != null) {
+			current = current.getParent();
+		}
+		return current == this;
+	}
+
+	/**
+	 * Adds or removes a subtree to / from the key index of the root, if the root has one.
+	 */
+	private void updateKeyIndex(Index subtree, boolean add) {
+		FolderIndex root = this;
+		while (root.parent != null) {
+			root = root.parent;
+		}
+		if (root.nodesByKey == null) {
+			// built on the first lookup
+			return;
+		}
+
+		updateKeyIndex(root.nodesByKey, subtree, add);
+	}
+
+	private static void updateKeyIndex(Map<PublicKey, Index> nodesByKey, Index index, boolean add) {
+		if (index.getFileKeys() != null) {
+			PublicKey key = index.getFilePublicKey();
+			if (add && !nodesByKey.containsKey(key)) {
+				nodesByKey.put(key, index);
+			} else if (!add && nodesByKey.get(key) == index) {
+				nodesByKey.remove(key);
+			}
+		}
+
+		// a folder which is still being constructed (see Index constructor) has no children yet
+		if (index.isFolder() && ((FolderIndex) index).children != null) {
+			for (Index child : ((FolderIndex) index).children) {
+				updateKeyIndex(nodesByKey, child, add);
+			}
+		}
+	}
+
+	private IndexArraySet getChildSet() {
+		return (IndexArraySet) children;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (!(children instanceof IndexArraySet)) {
+			children = new IndexArraySet(children, in);
+		}
+		if (userPermissions != null && userPermissions.isEmpty()) {
+			userPermissions = null;
+		}
 	}
 
 	/**
@@ -113,6 +232,7 @@ public class FolderIndex extends Index {
 
 		this.isShared = true;
 		this.protectionKeys = protectionKeys;
+		modified();
 	}
 
 	/**
@@ -122,7 +242,8 @@ public class FolderIndex extends Index {
 		this.isShared = false;
 		this.protectionKeys = null;
 
-		userPermissions.clear();
+		userPermissions = null;
+		modified();
 	}
 
 	/**
@@ -132,7 +253,11 @@ public class FolderIndex extends Index {
 	 * @param userPermission
 	 */
 	public void addUserPermissions(UserPermission userPermission) {
+		if (userPermissions == null) {
+			userPermissions = new HashSet<UserPermission>(2);
+		}
 		userPermissions.add(userPermission);
+		modified();
 	}
 
 	/**
@@ -141,6 +266,10 @@ public class FolderIndex extends Index {
 	 * @param userId
 	 */
 	public void removeUserPermissions(String userId) {
+		if (userPermissions == null) {
+			return;
+		}
+
 		Iterator<UserPermission> iter = userPermissions.iterator();
 		while (iter.hasNext()) {
 			UserPermission userPermission = iter.next();
@@ -148,6 +277,10 @@ public class FolderIndex extends Index {
 				iter.remove();
 			}
 		}
+		if (userPermissions.isEmpty()) {
+			userPermissions = null;
+		}
+		modified();
 	}
 
 	/**
@@ -157,37 +290,29 @@ public class FolderIndex extends Index {
 	 * @return the user permissions of this index.
 	 */
 	public Set<UserPermission> getUserPermissions() {
+		if (userPermissions == null) {
+			return Collections.emptySet();
+		}
 		return userPermissions;
 	}
 
 	/**
 	 * Returns a list of the permissions of this node together with the inherited permissions from the parent
-	 * nodes.
+	 * nodes. The returned set is a copy, the caller may modify it.
 	 * 
 	 * @return
 	 */
 	public Set<UserPermission> getCalculatedUserPermissions() {
-		// if there is a parent and no user permissions, ask parent
-		if (parent != null && userPermissions.isEmpty())
-			return parent.getCalculatedUserPermissions();
-
-		// if there is no parent or user permission list is not empty
-		return userPermissions;
+		return new HashSet<UserPermission>(getInherited().userPermissions);
 	}
 
+	/**
+	 * Returns the users having access to this folder, combined with the users of the parent nodes. The
+	 * returned set is a copy, the caller may modify it.
+	 */
 	@Override
 	public Set<String> getCalculatedUserList() {
-		// gather the own user list
-		Set<String> users = new HashSet<String>();
-		for (UserPermission permission : userPermissions) {
-			users.add(permission.getUserId());
-		}
-
-		// combine with parent user list (recursion)
-		if (parent != null)
-			users.addAll(parent.getCalculatedUserList());
-
-		return users;
+		return new HashSet<String>(getInherited().users);
 	}
 
 	@Override
@@ -208,7 +333,7 @@ public class FolderIndex extends Index {
 	 * @return
 	 */
 	public boolean canWrite(String userId) {
-		for (UserPermission permission : getCalculatedUserPermissions()) {
+		for (UserPermission permission : getInherited().userPermissions) {
 			if (permission.getUserId().equals(userId)) {
 				return permission.getPermission() == PermissionType.WRITE;
 			}
@@ -226,38 +351,73 @@ public class FolderIndex extends Index {
 	 */
 	public void setProtectionKeys(KeyPair protectionKeys) {
 		this.protectionKeys = protectionKeys;
+		modified();
 	}
 
 	@Override
 	public KeyPair getProtectionKeys() {
-		if (isShared) {
-			// the shared flag is on, return the protection keys (can be null)
-			return protectionKeys;
-		}
+		return getInherited().protectionKeys;
+	}
+
+	@Override
+	public boolean isShared() {
+		return getInherited().shared;
+	}
 
-		if (protectionKeys == null) {
-			// inherit parent's protection keys
-			return parent.getProtectionKeys();
+	/**
+	 * @return whether this folder or any sub-folder has the shared flag
+	 */
+	boolean hasSharedSubtree() {
+		return hasSharedSubtree(getModificationStamp());
+	}
+
+	private boolean hasSharedSubtree(long stamp) {
+		if (sharedSubtreeStamp != stamp) {
+			boolean shared = isShared;
+			for (Index child : children) {
+				if (shared) {
+					break;
+				} else if (child.isFolder()) {
+					shared = ((FolderIndex) child).hasSharedSubtree(stamp);
+				}
+			}
+			sharedSubtree = shared;
+			sharedSubtreeStamp = stamp;
 		}
+		return sharedSubtree;
+	}
 
-		// is root
-		return protectionKeys;
+	/**
+	 * Returns the memoized values depending on the parents. They are computed from the (memoized) values of
+	 * the parent, thus visiting all nodes of a tree takes linear time.
+	 */
+	private Inherited getInherited() {
+		return getInherited(getModificationStamp());
 	}
 
-	@Override
-	public boolean isShared() {
-		if (isShared) {
-			// this folder is shared
-			return true;
+	private Inherited getInherited(long stamp) {
+		Inherited current = inherited;
+		if (current == null || current.stamp != stamp) {
+			current = new Inherited(stamp, this, parent == null ? null : parent.getInherited(stamp));
+			inherited = current;
 		}
+		return current;
+	}
 
-		if (isRoot()) {
-			// root is never shared
-			return false;
+	/**
+	 * @return the modification stamp of the tree if this is its root, a new one if there is none yet
+	 */
+	long getTreeStamp() {
+		long stamp = treeStamp;
+		if (stamp == 0) {
+			stamp = nextStamp();
+			treeStamp = stamp;
 		}
+		return stamp;
+	}
 
-		// ask the parent whether this subfolder is shared
-		return parent.isShared();
+	void setTreeStamp(long stamp) {
+		treeStamp = stamp;
 	}
 
 	/**
@@ -275,6 +435,20 @@ public class FolderIndex extends Index {
 		return true;
 	}
 
+	@Override
+	public FolderIndex copyTo(FolderIndex parent) {
+		FolderIndex copy = new FolderIndex(parent, fileKeys, name);
+		copy.protectionKeys = protectionKeys;
+		copy.isShared = isShared;
+		if (userPermissions != null) {
+			copy.userPermissions = new HashSet<UserPermission>(userPermissions);
+		}
+		for (Index child : children) {
+			child.copyTo(copy);
+		}
+		return copy;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder("FolderIndex [");
@@ -313,4 +487,46 @@ public class FolderIndex extends Index {
 
 		return false;
 	}
+
+	/**
+	 * The sharing state, the protection keys and the permissions of a folder, which depend on its parents.
+	 */
+	private static class Inherited {
+
+		private final long stamp;
+		private final boolean shared;
+		private final KeyPair protectionKeys;
+		private final Set<UserPermission> userPermissions;
+		private final Set<String> users;
+
+		public Inherited(long stamp, FolderIndex folder, Inherited parent) {
+			this.stamp = stamp;
+
+			// the root is never shared
+			shared = folder.isShared || (parent != null && parent.shared);
+
+			if (folder.isShared || folder.protectionKeys != null || parent == null) {
+				// shared (keys can be null) or root
+				protectionKeys = folder.protectionKeys;
+			} else {
+				protectionKeys = parent.protectionKeys;
+			}
+
+			if (parent != null && folder.userPermissions == null) {
+				// nothing to add, share the sets of the parent
+				userPermissions = parent.userPermissions;
+				users = parent.users;
+			} else {
+				userPermissions = folder.getUserPermissions();
+				Set<String> userIds = new HashSet<String>();
+				for (UserPermission permission : userPermissions) {
+					userIds.add(permission.getUserId());
+				}
+				if (parent != null) {
+					userIds.addAll(parent.users);
+				}
+				users = Collections.unmodifiableSet(userIds);
+			}
+		}
+	}
 }
@@ -0,0 +1,158 @@
+package org.hive2hive.core.model;
+
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The immutable snapshot of a {@link FolderIndex}. Modifications return a new folder which shares all
+ * untouched children with this one, thus changing a node deep in the tree only copies the folders on its
+ * path.
+ * 
+ * @author Seppi
+ */
+public class FolderSnapshot extends IndexSnapshot {
+
+	// children by name, case insensitive like FolderIndex#getChildByName
+	private final Map<String, IndexSnapshot> children;
+	private final Set<UserPermission> userPermissions;
+	private final KeyPair protectionKeys;
+	private final boolean sharedFlag;
+
+	private FolderSnapshot(KeyPair fileKeys, String name, Map<String, IndexSnapshot> children,
+			Set<UserPermission> userPermissions, KeyPair protectionKeys, boolean sharedFlag) {
+		super(fileKeys, name);
+		this.children = Collections.unmodifiableMap(children);
+		this.userPermissions = userPermissions;
+		this.protectionKeys = protectionKeys;
+		this.sharedFlag = sharedFlag;
+	}
+
+	static FolderSnapshot of(FolderIndex index, FolderSnapshot previous) {
+		Map<String, IndexSnapshot> children = newChildMap();
+		boolean changed = previous == null || !previous.matches(index)
+				|| previous.children.size() != index.getChildren().size();
+		for (Index child : index.getChildren()) {
+			IndexSnapshot previousChild = previous == null ? null : previous.getChild(child.getName());
+			IndexSnapshot snapshot = IndexSnapshot.of(child, previousChild);
+			changed |= snapshot != previousChild;
+			children.put(child.getName(), snapshot);
+		}
+		if (!changed) {
+			return previous;
+		}
+
+		Set<UserPermission> permissions = new HashSet<UserPermission>();
+		for (UserPermission permission : index.getUserPermissions()) {
+			// user permissions are mutable, copy them
+			permissions.add(new UserPermission(permission.getUserId(), permission.getPermission()));
+		}
+		// the protection keys are only stored at the root and at shared folders
+		KeyPair protectionKeys = index.isRoot() || index.getSharedFlag() ? index.getProtectionKeys() : null;
+		return new FolderSnapshot(index.getFileKeys(), index.getName(), children,
+				Collections.unmodifiableSet(permissions), protectionKeys, index.getSharedFlag());
+	}
+
+	@Override
+	boolean matches(Index index) {
+		FolderIndex folder = (FolderIndex) index;
+		KeyPair ownKeys = folder.isRoot() || folder.getSharedFlag() ? folder.getProtectionKeys() : null;
+		return super.matches(index) && sharedFlag == folder.getSharedFlag()
+				&& equalsKeys(protectionKeys, ownKeys) && userPermissions.equals(folder.getUserPermissions());
+	}
+
+	private static Map<String, IndexSnapshot> newChildMap() {
+		return new TreeMap<String, IndexSnapshot>(String.CASE_INSENSITIVE_ORDER);
+	}
+
+	public IndexSnapshot getChild(String name) {
+		return name == null ? null : children.get(name);
+	}
+
+	/**
+	 * @return the direct children, ordered by name
+	 */
+	public Collection<IndexSnapshot> getChildren() {
+		return children.values();
+	}
+
+	/**
+	 * @return the permissions assigned to this folder, without the inherited ones
+	 */
+	public Set<UserPermission> getUserPermissions() {
+		return userPermissions;
+	}
+
+	/**
+	 * @return the own protection keys (only set at the root and at shared folders)
+	 */
+	public KeyPair getOwnProtectionKeys() {
+		return protectionKeys;
+	}
+
+	public boolean getSharedFlag() {
+		return sharedFlag;
+	}
+
+	@Override
+	public boolean isFolder() {
+		return true;
+	}
+
+	/**
+	 * Adds or replaces a direct child.
+	 * 
+	 * @return the new folder, this folder remains unchanged
+	 */
+	public FolderSnapshot withChild(IndexSnapshot child) {
+		Map<String, IndexSnapshot> copy = newChildMap();
+		copy.putAll(children);
+		copy.put(child.getName(), child);
+		return new FolderSnapshot(getFileKeys(), getName(), copy, userPermissions, protectionKeys, sharedFlag);
+	}
+
+	/**
+	 * Removes a direct child.
+	 * 
+	 * @return the new folder or this folder if there is no such child
+	 */
+	public FolderSnapshot withoutChild(String name) {
+		if (getChild(name) == null) {
+			return this;
+		}
+		Map<String, IndexSnapshot> copy = newChildMap();
+		copy.putAll(children);
+		copy.remove(name);
+		return new FolderSnapshot(getFileKeys(), getName(), copy, userPermissions, protectionKeys, sharedFlag);
+	}
+
+	/**
+	 * Replaces the node at the given path (relative to this folder), copying only the folders on the path.
+	 * 
+	 * @param path the path of the node, its parent folders must exist
+	 * @param node the new node (its name has to match the last path element) or <code>null</code> to remove
+	 *            the node
+	 * @return the new folder or <code>null</code> if a parent folder does not exist
+	 */
+	public FolderSnapshot update(Path path, IndexSnapshot node) {
+		if (path.getNameCount() == 1) {
+			return node == null ? withoutChild(path.toString()) : withChild(node);
+		}
+		IndexSnapshot next = getChild(path.getName(0).toString());
+		if (next == null || !next.isFolder()) {
+			return null;
+		}
+		FolderSnapshot updated = ((FolderSnapshot) next).update(path.subpath(1, path.getNameCount()), node);
+		return updated == null ? null : withChild(updated);
+	}
+
+	@Override
+	public String toString() {
+		return "FolderSnapshot [name=" + getName() + " children=" + children.size() + "]";
+	}
+}
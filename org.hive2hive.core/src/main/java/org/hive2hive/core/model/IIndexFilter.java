@@ -0,0 +1,35 @@
+package org.hive2hive.core.model;
+
+/**
+ * Selects nodes of an {@link Index} tree during a traversal.
+ * 
+ * @author Seppi
+ */
+public interface IIndexFilter {
+
+	/**
+	 * Accepts all files
+	 */
+	IIndexFilter FILES = new IIndexFilter() {
+		@Override
+		public boolean accept(Index index) {
+			return index.isFile();
+		}
+	};
+
+	/**
+	 * Accepts all folders
+	 */
+	IIndexFilter FOLDERS = new IIndexFilter() {
+		@Override
+		public boolean accept(Index index) {
+			return index.isFolder();
+		}
+	};
+
+	/**
+	 * @param index the node to test
+	 * @return <code>true</code> if the node is selected
+	 */
+	boolean accept(Index index);
+}
@@ -0,0 +1,21 @@
+package org.hive2hive.core.model;
+
+import java.nio.file.FileVisitResult;
+
+/**
+ * Visits the nodes of an {@link Index} tree, see {@link Index#walk(Index, IIndexVisitor)}.
+ * 
+ * @author Seppi
+ */
+public interface IIndexVisitor {
+
+	/**
+	 * Invoked for every visited node, in preorder.
+	 * 
+	 * @param index the visited node
+	 * @return {@link FileVisitResult#CONTINUE} to go on, {@link FileVisitResult#SKIP_SUBTREE} to skip the
+	 *         children of the node, {@link FileVisitResult#SKIP_SIBLINGS} to skip the children and the
+	 *         remaining siblings of the node or {@link FileVisitResult#TERMINATE} to stop the walk
+	 */
+	FileVisitResult visit(Index index);
+}
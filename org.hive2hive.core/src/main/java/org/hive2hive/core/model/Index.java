@@ -1,25 +1,36 @@
 package org.hive2hive.core.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class Index implements Comparable<Index>, Serializable {
 
 	private static final long serialVersionUID = -2643129713985680901L;
+	// hands out the modification stamps of the trees (see #modified), unique over all trees such that a moved
+	// subtree never matches the stamp of its new tree. Starts at 1 such that 0 means 'not memoized'.
+	private static final AtomicLong stamps = new AtomicLong(1);
 	protected final KeyPair fileKeys;
+	// interned, many files share their names (e.g. in different folders)
 	protected String name;
 	protected FolderIndex parent;
+	// the full path, valid as long as the parent's path and the name do not change
+	private transient volatile CachedPath cachedPath;
 
 	public Index(KeyPair fileKeys, String name, FolderIndex parent) {
 		this.fileKeys = fileKeys;
-		this.name = name;
+		this.name = intern(name);
 		this.parent = parent;
 		if (parent != null) {
 			parent.addChild(this);
@@ -59,7 +70,12 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	 * @param name
 	 */
 	public void setName(String name) {
-		this.name = name;
+		// the position among the siblings depends on the name
+		boolean detached = parent != null && parent.childRenaming(this);
+		this.name = intern(name);
+		if (detached) {
+			parent.childRenamed(this);
+		}
 	}
 
 	/**
@@ -69,6 +85,7 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	 */
 	public void setParent(FolderIndex parent) {
 		this.parent = parent;
+		modified();
 	}
 
 	/**
@@ -121,30 +138,68 @@ public abstract class Index implements Comparable<Index>, Serializable {
 			return false;
 		} else {
 			// is of type 'folder', check all subfolders
-			List<Index> children = getIndexList(this);
-			for (Index child : children) {
-				if (child.isFolder()) {
-					FolderIndex subfolder = (FolderIndex) child;
-					return subfolder.getSharedFlag();
-				}
-			}
+			return ((FolderIndex) this).hasSharedSubtree();
 		}
+	}
 
-		// no case above matches
-		return false;
+	private static String intern(String name) {
+		return name == null ? null : name.intern();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		name = intern(name);
+	}
+
+	/**
+	 * Invalidates the values memoized in this tree, must be called whenever the sharing or the permissions
+	 * change, a subtree is moved or a shared folder is added or removed. Other trees keep their values.
+	 */
+	void modified() {
+		FolderIndex root = getTreeRoot();
+		if (root != null) {
+			root.setTreeStamp(nextStamp());
+		}
+	}
+
+	/**
+	 * @return the current modification stamp of this tree, see {@link #modified()}
+	 */
+	long getModificationStamp() {
+		FolderIndex root = getTreeRoot();
+		return root == null ? 0 : root.getTreeStamp();
+	}
+
+	static long nextStamp() {
+		return stamps.incrementAndGet();
 	}
 
 	/**
-	 * Returns the full path (starting at the root) of this node
+	 * @return the top-most folder of the tree or <code>null</code> if this is a file without a parent
+	 */
+	private FolderIndex getTreeRoot() {
+		Index current = this;
+		while (current.parent != null) {
+			current = current.parent;
+		}
+		return current.isFolder() ? (FolderIndex) current : null;
+	}
+
+	/**
+	 * Returns the full path (starting at the root) of this node. The path is cached and only recomputed
+	 * when this node or one of its parents has been renamed or moved.
 	 * 
 	 * @return
 	 */
 	public Path getFullPath() {
-		if (parent == null) {
-			return Paths.get("");
-		} else {
-			return Paths.get(parent.getFullPath().toString(), getName());
+		Path parentPath = parent == null ? null : parent.getFullPath();
+		CachedPath cached = cachedPath;
+		if (cached == null || cached.parentPath != parentPath || cached.name != name) {
+			Path path = parentPath == null ? Paths.get("") : parentPath.resolve(name);
+			cached = new CachedPath(parentPath, name, path);
+			cachedPath = cached;
 		}
+		return cached.path;
 	}
 
 	/**
@@ -184,6 +239,15 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	 */
 	public abstract boolean canWrite();
 
+	/**
+	 * Copies this node and its sub-tree into another folder. This node is not modified, thus a tree which is
+	 * still read elsewhere can be copied.
+	 * 
+	 * @param parent the folder of the copy
+	 * @return the copy
+	 */
+	public abstract Index copyTo(FolderIndex parent);
+
 	/**
 	 * Convenience method to ask whether the index is a file
 	 * 
@@ -231,10 +295,9 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	 * @return The digest in sorted order.
 	 */
 	public static List<Path> getFilePathList(Index node) {
-		List<Index> fileNodes = getIndexList(node);
 		List<Path> digest = new ArrayList<Path>();
 
-		for (Index fileNode : fileNodes) {
+		for (Index fileNode : preorder(node)) {
 			digest.add(fileNode.getFullPath());
 		}
 		// sort by full path
@@ -250,19 +313,117 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	 */
 	public static List<Index> getIndexList(Index node) {
 		List<Index> digest = new ArrayList<Index>();
+		for (Index index : preorder(node)) {
+			digest.add(index);
+		}
+		return digest;
+	}
+
+	/**
+	 * Lazily walks through the file tree in preorder (depth-first), the tree is not copied. The tree must
+	 * not be modified while iterating.
+	 * 
+	 * @param node The root node from which the traversal is started (is included).
+	 * @return The nodes in preorder
+	 */
+	public static Iterable<Index> preorder(Index node) {
+		return preorder(node, null);
+	}
+
+	/**
+	 * Lazily walks through the file tree in preorder and returns the nodes accepted by the filter. The
+	 * children of rejected folders are visited nevertheless.
+	 * 
+	 * @param node The root node from which the traversal is started (is included).
+	 * @param filter The filter to select the nodes, <code>null</code> to select all nodes
+	 * @return The selected nodes in preorder
+	 */
+	public static Iterable<Index> preorder(final Index node, final IIndexFilter filter) {
+		return new Iterable<Index>() {
+			@Override
+			public Iterator<Index> iterator() {
+				return new IndexIterator(node, true, filter);
+			}
+		};
+	}
+
+	/**
+	 * Lazily walks through the file tree level by level (breadth-first). The tree must not be modified while
+	 * iterating.
+	 * 
+	 * @param node The root node from which the traversal is started (is included).
+	 * @return The nodes, a node before all nodes of deeper levels
+	 */
+	public static Iterable<Index> breadthFirst(Index node) {
+		return breadthFirst(node, null);
+	}
+
+	/**
+	 * Lazily walks through the file tree level by level and returns the nodes accepted by the filter.
+	 * 
+	 * @param node The root node from which the traversal is started (is included).
+	 * @param filter The filter to select the nodes, <code>null</code> to select all nodes
+	 * @return The selected nodes, a node before all nodes of deeper levels
+	 */
+	public static Iterable<Index> breadthFirst(final Index node, final IIndexFilter filter) {
+		return new Iterable<Index>() {
+			@Override
+			public Iterator<Index> iterator() {
+				return new IndexIterator(node, false, filter);
+			}
+		};
+	}
 
-		// add self
-		digest.add(node);
+	/**
+	 * Visits the file tree in preorder. The visitor controls whether to descend into a folder and can stop
+	 * the walk early.
+	 * 
+	 * @param node The root node from which the walk is started (is visited as well).
+	 * @param visitor The visitor to invoke for every node
+	 * @return {@link FileVisitResult#TERMINATE} if the visitor stopped the walk, else
+	 *         {@link FileVisitResult#CONTINUE}
+	 */
+	public static FileVisitResult walk(Index node, IIndexVisitor visitor) {
+		if (walkNode(node, visitor) == FileVisitResult.TERMINATE) {
+			return FileVisitResult.TERMINATE;
+		}
+		return FileVisitResult.CONTINUE;
+	}
+
+	private static FileVisitResult walkNode(Index node, IIndexVisitor visitor) {
+		FileVisitResult result = visitor.visit(node);
+		if (result == FileVisitResult.TERMINATE) {
+			return result;
+		}
 
-		// add children
-		if (node.isFolder()) {
-			FolderIndex folder = (FolderIndex) node;
-			for (Index child : folder.getChildren()) {
-				digest.addAll(getIndexList(child));
+		if (result == FileVisitResult.CONTINUE && node.isFolder()) {
+			for (Index child : ((FolderIndex) node).getChildren()) {
+				FileVisitResult childResult = walkNode(child, visitor);
+				if (childResult == FileVisitResult.TERMINATE) {
+					return childResult;
+				} else if (childResult == FileVisitResult.SKIP_SIBLINGS) {
+					break;
+				}
 			}
 		}
 
-		return digest;
+		// skipping the siblings is handled by the caller
+		return result == FileVisitResult.SKIP_SIBLINGS ? result : FileVisitResult.CONTINUE;
 	}
 
+	/**
+	 * A full path together with the values it has been computed from.
+	 */
+	private static class CachedPath {
+
+		private final Path parentPath;
+		private final String name;
+		private final Path path;
+
+		public CachedPath(Path parentPath, String name, Path path) {
+			this.parentPath = parentPath;
+			this.name = name;
+			this.path = path;
+		}
+	}
 }
\ No newline at end of file
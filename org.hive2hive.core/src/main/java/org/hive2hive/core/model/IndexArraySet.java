@@ -0,0 +1,419 @@
+package org.hive2hive.core.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectInputValidation;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The children of a {@link FolderIndex}, ordered by their names (ignoring the case). The children are kept in
+ * sorted blocks of at most {@link #BLOCK_SIZE} elements, thus a child needs a few bytes only. A name is found
+ * by a binary search over the blocks and within the block, inserting or removing a child moves the elements
+ * of one block only. The set can only be modified through the folder (see {@link FolderIndex#addChild(Index)}).
+ * Reading does not modify the set, thus a set which is not modified anymore can be read concurrently.
+ * 
+ * @author Seppi
+ */
+class IndexArraySet extends AbstractSet<Index> implements Serializable, ObjectInputValidation {
+
+	private static final long serialVersionUID = 4178693432640285723L;
+
+	// the maximum number of children in a block, a full block is split into halves
+	static final int BLOCK_SIZE = 512;
+
+	private static final Index[][] NO_BLOCKS = new Index[0][];
+	private static final int[] NO_COUNTS = new int[0];
+
+	private static final Comparator<Index> NAME_ORDER = new Comparator<Index>() {
+		@Override
+		public int compare(Index o1, Index o2) {
+			return compareNames(o1.getName(), o2.getName());
+		}
+	};
+
+	private transient Index[][] blocks;
+	// the number of children in each block
+	private transient int[] counts;
+	private transient int numBlocks;
+	private transient int size;
+	private transient int modCount;
+
+	public IndexArraySet() {
+		this.blocks = NO_BLOCKS;
+		this.counts = NO_COUNTS;
+	}
+
+	/**
+	 * Converts another set of children (e.g. of a profile serialized with hash sets) while they are
+	 * deserialized. The names of the children are complete
+	 * when the whole tree has been read, thus they are sorted afterwards.
+	 */
+	IndexArraySet(Collection<Index> children, ObjectInputStream in) throws IOException {
+		sortWhenRead(children.toArray(new Index[children.size()]), in);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Index)) {
+			return false;
+		}
+		Index child = (Index) o;
+		int block = findBlock(child.getName());
+		return block >= 0 && findIdentical(block, child.getName(), child) >= 0;
+	}
+
+	@Override
+	public Iterator<Index> iterator() {
+		return new Iterator<Index>() {
+
+			private final int expectedModCount = modCount;
+			private int block = 0;
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return block < numBlocks;
+			}
+
+			@Override
+			public Index next() {
+				if (modCount != expectedModCount) {
+					throw new ConcurrentModificationException();
+				} else if (block >= numBlocks) {
+					throw new NoSuchElementException();
+				}
+
+				Index child = blocks[block][next++];
+				if (next >= counts[block]) {
+					block++;
+					next = 0;
+				}
+				return child;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Use FolderIndex#removeChild instead.");
+			}
+		};
+	}
+
+	/**
+	 * @return the child with the given name (ignoring the case) or <code>null</code>
+	 */
+	public Index get(String name) {
+		if (name == null) {
+			return null;
+		} else if (name.indexOf(File.separatorChar) >= 0) {
+			// separators are not part of a name
+			name = name.replace(String.valueOf(File.separatorChar), "");
+		}
+
+		int block = findBlock(name);
+		if (block < 0) {
+			return null;
+		}
+		int position = find(block, name);
+		return position < 0 ? null : blocks[block][position];
+	}
+
+	/**
+	 * Inserts a child at the position of its name.
+	 * 
+	 * @return <code>false</code> if a child with the same name already exists
+	 */
+	boolean insert(Index child) {
+		int block = findBlock(child.getName());
+		if (block >= 0 && find(block, child.getName()) >= 0) {
+			return false;
+		}
+
+		insert(block, child);
+		return true;
+	}
+
+	/**
+	 * Removes the given child. If it is not in the set, another child with the same name is removed.
+	 * 
+	 * @return the removed child or <code>null</code>
+	 */
+	Index delete(Index child) {
+		int block = findBlock(child.getName());
+		if (block < 0) {
+			return null;
+		}
+
+		int position = findIdentical(block, child.getName(), child);
+		if (position < 0) {
+			position = find(block, child.getName());
+			if (position < 0) {
+				return null;
+			}
+		}
+		Index removed = blocks[block][position];
+		removeAt(block, position);
+		return removed;
+	}
+
+	/**
+	 * Takes a child out of the order before it is renamed.
+	 * 
+	 * @return <code>false</code> if the child is not in the set
+	 */
+	boolean detach(Index child) {
+		int block = findBlock(child.getName());
+		if (block < 0) {
+			return false;
+		}
+
+		int position = findIdentical(block, child.getName(), child);
+		if (position < 0) {
+			return false;
+		}
+		removeAt(block, position);
+		return true;
+	}
+
+	/**
+	 * Puts a detached child back at the position of its (new) name. The child is kept even if a sibling has
+	 * the same name.
+	 */
+	void attach(Index child) {
+		insert(findBlock(child.getName()), child);
+	}
+
+	/**
+	 * Finds the child itself (or else an equal one) among the children having the same name. Since a renamed
+	 * child may have the name of a sibling, there can be more than one.
+	 */
+	private int findIdentical(int block, String name, Index child) {
+		int found = find(block, name);
+		if (found < 0) {
+			return -1;
+		}
+
+		// siblings with the same name are next to each other, but always in the same block
+		int from = found;
+		while (from > 0 && compareNames(blocks[block][from - 1].getName(), name) == 0) {
+			from--;
+		}
+		int equal = -1;
+		for (int i = from; i < counts[block] && compareNames(blocks[block][i].getName(), name) == 0; i++) {
+			if (blocks[block][i] == child) {
+				return i;
+			} else if (equal < 0 && blocks[block][i].equals(child)) {
+				equal = i;
+			}
+		}
+		return equal;
+	}
+
+	/**
+	 * @return the block where the name is or would be inserted, <code>-1</code> if the set has no block
+	 */
+	private int findBlock(String name) {
+		if (numBlocks == 0) {
+			return -1;
+		}
+
+		// the first block whose last child is not smaller than the name
+		int low = 0;
+		int high = numBlocks - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compareNames(blocks[middle][counts[middle] - 1].getName(), name) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return the position of the name in the block or <code>-(insertion point) - 1</code>, like
+	 *         {@link Arrays#binarySearch(Object[], Object)}
+	 */
+	private int find(int block, String name) {
+		Index[] elements = blocks[block];
+		int low = 0;
+		int high = counts[block] - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compared = compareNames(elements[middle].getName(), name);
+			if (compared < 0) {
+				low = middle + 1;
+			} else if (compared > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private void insert(int block, Index child) {
+		if (block < 0) {
+			blocks = new Index[][] { new Index[4] };
+			counts = new int[1];
+			numBlocks = 1;
+			block = 0;
+		}
+
+		if (counts[block] == BLOCK_SIZE) {
+			split(block);
+			if (compareNames(blocks[block][counts[block] - 1].getName(), child.getName()) < 0) {
+				block++;
+			}
+		}
+
+		int position = find(block, child.getName());
+		if (position < 0) {
+			position = -position - 1;
+		}
+
+		Index[] elements = blocks[block];
+		int count = counts[block];
+		if (count == elements.length) {
+			elements = Arrays.copyOf(elements, Math.min(BLOCK_SIZE, Math.max(4, count + (count >> 1))));
+			blocks[block] = elements;
+		}
+		System.arraycopy(elements, position, elements, position + 1, count - position);
+		elements[position] = child;
+		counts[block]++;
+		size++;
+		modCount++;
+	}
+
+	/**
+	 * Moves the upper half of a full block into a new block after it. Siblings with the same name stay in the
+	 * same block.
+	 */
+	private void split(int block) {
+		Index[] elements = blocks[block];
+		int half = BLOCK_SIZE / 2;
+		while (half < BLOCK_SIZE - 1 && compareNames(elements[half - 1].getName(), elements[half].getName()) == 0) {
+			half++;
+		}
+
+		if (numBlocks == blocks.length) {
+			blocks = Arrays.copyOf(blocks, numBlocks + (numBlocks >> 1) + 1);
+			counts = Arrays.copyOf(counts, blocks.length);
+		}
+		System.arraycopy(blocks, block + 1, blocks, block + 2, numBlocks - block - 1);
+		System.arraycopy(counts, block + 1, counts, block + 2, numBlocks - block - 1);
+		numBlocks++;
+
+		Index[] upper = new Index[BLOCK_SIZE / 2 + 1];
+		System.arraycopy(elements, half, upper, 0, BLOCK_SIZE - half);
+		blocks[block + 1] = upper;
+		counts[block + 1] = BLOCK_SIZE - half;
+		Arrays.fill(elements, half, BLOCK_SIZE, null);
+		counts[block] = half;
+	}
+
+	private void removeAt(int block, int position) {
+		Index[] elements = blocks[block];
+		int count = counts[block];
+		System.arraycopy(elements, position + 1, elements, position, count - position - 1);
+		elements[count - 1] = null;
+		counts[block]--;
+		size--;
+		modCount++;
+
+		if (counts[block] == 0) {
+			// remove the empty block
+			System.arraycopy(blocks, block + 1, blocks, block, numBlocks - block - 1);
+			System.arraycopy(counts, block + 1, counts, block, numBlocks - block - 1);
+			numBlocks--;
+			blocks[numBlocks] = null;
+		}
+	}
+
+	/**
+	 * Sorts the children and fills them into full blocks. Siblings with the same name are kept in the same
+	 * block.
+	 */
+	private void build(Index[] children) {
+		Arrays.sort(children, NAME_ORDER);
+		size = children.length;
+		numBlocks = 0;
+		blocks = size == 0 ? NO_BLOCKS : new Index[(size + BLOCK_SIZE - 1) / BLOCK_SIZE + 1][];
+		counts = size == 0 ? NO_COUNTS : new int[blocks.length];
+		int start = 0;
+		while (start < size) {
+			int end = Math.min(size, start + BLOCK_SIZE);
+			while (end < size && end > start + 1
+					&& compareNames(children[end - 1].getName(), children[end].getName()) == 0) {
+				end--;
+			}
+			if (numBlocks == blocks.length) {
+				blocks = Arrays.copyOf(blocks, numBlocks + (numBlocks >> 1) + 1);
+				counts = Arrays.copyOf(counts, blocks.length);
+			}
+			blocks[numBlocks] = Arrays.copyOfRange(children, start, end);
+			counts[numBlocks] = end - start;
+			numBlocks++;
+			start = end;
+		}
+		modCount++;
+	}
+
+	/**
+	 * Keeps the children in one unsorted block until the whole tree is deserialized. The names of the
+	 * children being read further up the tree are not set before.
+	 */
+	private void sortWhenRead(Index[] children, ObjectInputStream in) throws IOException {
+		blocks = new Index[][] { children };
+		counts = new int[] { children.length };
+		numBlocks = children.length == 0 ? 0 : 1;
+		size = children.length;
+		in.registerValidation(this, 0);
+	}
+
+	private static int compareNames(String name1, String name2) {
+		return String.CASE_INSENSITIVE_ORDER.compare(name1 == null ? "" : name1, name2 == null ? "" : name2);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (Index child : this) {
+			out.writeObject(child);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int length = in.readInt();
+		Index[] children = new Index[length];
+		for (int i = 0; i < length; i++) {
+			children[i] = (Index) in.readObject();
+		}
+		sortWhenRead(children, in);
+	}
+
+	@Override
+	public void validateObject() throws InvalidObjectException {
+		Index[] children = new Index[size];
+		if (size > 0) {
+			System.arraycopy(blocks[0], 0, children, 0, size);
+		}
+		build(children);
+	}
+}
@@ -0,0 +1,76 @@
+package org.hive2hive.core.model;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily traverses an {@link Index} tree, either depth-first (preorder) or breadth-first. Instead of copying
+ * the tree, only the iterators over the children of the open folders are kept. The tree must not be modified
+ * while iterating.
+ * 
+ * @author Seppi
+ */
+class IndexIterator implements Iterator<Index> {
+
+	// depth-first: a stack of the open folders, breadth-first: a queue of the folders to expand
+	private final Deque<Iterator<Index>> open;
+	private final boolean depthFirst;
+	private final IIndexFilter filter;
+	private Index next;
+
+	public IndexIterator(Index start, boolean depthFirst, IIndexFilter filter) {
+		this.depthFirst = depthFirst;
+		this.filter = filter;
+		this.open = new ArrayDeque<Iterator<Index>>();
+		open.add(Collections.singleton(start).iterator());
+		advance();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	@Override
+	public Index next() {
+		if (next == null) {
+			throw new NoSuchElementException();
+		}
+		Index current = next;
+		advance();
+		return current;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("The tree cannot be modified through the iterator.");
+	}
+
+	private void advance() {
+		next = null;
+		while (next == null && !open.isEmpty()) {
+			Iterator<Index> siblings = open.peekFirst();
+			if (!siblings.hasNext()) {
+				open.pollFirst();
+				continue;
+			}
+
+			Index candidate = siblings.next();
+			if (candidate.isFolder()) {
+				Iterator<Index> children = ((FolderIndex) candidate).getChildren().iterator();
+				if (depthFirst) {
+					open.addFirst(children);
+				} else {
+					open.addLast(children);
+				}
+			}
+
+			if (filter == null || filter.accept(candidate)) {
+				next = candidate;
+			}
+		}
+	}
+}
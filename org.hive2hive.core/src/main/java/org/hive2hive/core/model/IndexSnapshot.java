@@ -0,0 +1,95 @@
+package org.hive2hive.core.model;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+/**
+ * An immutable node of a {@link UserProfileSnapshot}. Unlike {@link Index}, a snapshot node has no parent
+ * reference, such that unchanged subtrees can be shared between snapshots of different profile versions.
+ * Values which are inherited from the parent folders (path, permissions, protection keys) are resolved
+ * through the {@link UserProfileSnapshot}.
+ * 
+ * @author Seppi
+ */
+public abstract class IndexSnapshot {
+
+	private final KeyPair fileKeys;
+	private final String name;
+	// encoded once, every new profile version is compared against it
+	private final byte[] encodedFileKey;
+
+	IndexSnapshot(KeyPair fileKeys, String name) {
+		this.fileKeys = fileKeys;
+		this.name = name;
+		this.encodedFileKey = fileKeys.getPublic().getEncoded();
+	}
+
+	public KeyPair getFileKeys() {
+		return fileKeys;
+	}
+
+	public PublicKey getFilePublicKey() {
+		return fileKeys.getPublic();
+	}
+
+	/**
+	 * @return the name of the file or folder (<code>null</code> for the root)
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public abstract boolean isFolder();
+
+	public boolean isFile() {
+		return !isFolder();
+	}
+
+	/**
+	 * Creates the snapshot of an index. Subtrees of the previous snapshot which did not change are reused.
+	 * 
+	 * @param index the current state of the index
+	 * @param previous the snapshot of an earlier version of the same index (can be <code>null</code>)
+	 * @return the snapshot
+	 */
+	public static IndexSnapshot of(Index index, IndexSnapshot previous) {
+		if (index.isFolder()) {
+			return FolderSnapshot.of((FolderIndex) index,
+					previous instanceof FolderSnapshot ? (FolderSnapshot) previous : null);
+		} else {
+			return FileSnapshot.of((FileIndex) index, previous instanceof FileSnapshot ? (FileSnapshot) previous
+					: null);
+		}
+	}
+
+	/**
+	 * @return whether the node and the index have the same own values (children are not compared)
+	 */
+	boolean matches(Index index) {
+		if (!equalsNullable(name, index.getName())) {
+			return false;
+		}
+		PublicKey other = index.getFilePublicKey();
+		return other == fileKeys.getPublic() || Arrays.equals(encodedFileKey, other.getEncoded());
+	}
+
+	/**
+	 * Compares two key pairs by their encoded public keys. Key pairs do not implement equals, and a
+	 * deserialized profile holds new instances of the same keys.
+	 */
+	static boolean equalsKeys(KeyPair a, KeyPair b) {
+		if (a == b) {
+			return true;
+		} else if (a == null || b == null) {
+			return false;
+		} else if (a.getPublic() == b.getPublic()) {
+			return true;
+		}
+		return Arrays.equals(a.getPublic().getEncoded(), b.getPublic().getEncoded());
+	}
+
+	static boolean equalsNullable(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -34,4 +34,18 @@ public abstract class MetaFile extends NetworkContent {
 	public int getTimeToLive() {
 		return TimeToLiveStore.getInstance().getMetaFile();
 	}
+
+	/**
+	 * Copies the meta file without serializing it. The copy can be modified without changing this meta file,
+	 * the versions and chunks themselves are shared.
+	 * 
+	 * @return the copy, having the same version and based-on keys
+	 */
+	public abstract MetaFile copy();
+
+	protected <T extends MetaFile> T copyKeysTo(T copy) {
+		copy.setVersionKey(getVersionKey());
+		copy.setBasedOnKey(getBasedOnKey());
+		return copy;
+	}
 }
@@ -1,6 +1,7 @@
 package org.hive2hive.core.model;
 
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -22,4 +23,9 @@ public class MetaFileLarge extends MetaFile {
 		return metaChunks;
 	}
 
+	@Override
+	public MetaFileLarge copy() {
+		return copyKeysTo(new MetaFileLarge(id, metaChunks == null ? null : new ArrayList<MetaChunk>(metaChunks)));
+	}
+
 }
@@ -3,29 +3,102 @@ package org.hive2hive.core.model;
 import java.math.BigInteger;
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
 /**
- * Holds meta data of a small file in the DHT
+ * Holds meta data of a small file in the DHT. The versions are kept ordered by their index, thus the oldest
+ * version is the first and the newest version the last one.
  * 
  * @author Nico, Seppi
  */
 public class MetaFileSmall extends MetaFile {
 
 	private static final long serialVersionUID = -3385321499412137545L;
+
+	private static final Comparator<IFileVersion> INDEX_ORDER = new Comparator<IFileVersion>() {
+		@Override
+		public int compare(IFileVersion o1, IFileVersion o2) {
+			return Integer.compare(o1.getIndex(), o2.getIndex());
+		}
+	};
+
+	// ordered by the version index
 	private final List<FileVersion> versions;
 	private final KeyPair chunkKey;
+	// the sum of all version sizes, computed lazily after deserialization
+	private transient BigInteger totalSize;
 
 	public MetaFileSmall(PublicKey id, List<FileVersion> versions, KeyPair chunkKey) {
 		super(id, true);
-		this.versions = versions;
+		this.versions = new ArrayList<FileVersion>();
+		if (versions != null) {
+			this.versions.addAll(versions);
+			Collections.sort(this.versions, INDEX_ORDER);
+		}
 		this.chunkKey = chunkKey;
 	}
 
+	/**
+	 * Returns the versions ordered by their index. Use {@link #addVersion(FileVersion)} and
+	 * {@link #removeVersion(FileVersion)} to modify them.
+	 * 
+	 * @return an unmodifiable list of the versions, the oldest first
+	 */
 	public List<FileVersion> getVersions() {
-		return versions;
+		return Collections.unmodifiableList(versions);
+	}
+
+	/**
+	 * Adds a version at the position of its index.
+	 * 
+	 * @param version the version to add
+	 */
+	public void addVersion(FileVersion version) {
+		int position = Collections.binarySearch(versions, version, INDEX_ORDER);
+		if (position < 0) {
+			position = -position - 1;
+		}
+		versions.add(position, version);
+		totalSize = getTotalSize().add(version.getSize());
+	}
+
+	/**
+	 * Removes a version.
+	 * 
+	 * @param version the version to remove
+	 * @return <code>true</code> if the version has been removed
+	 */
+	public boolean removeVersion(FileVersion version) {
+		if (versions.remove(version)) {
+			totalSize = getTotalSize().subtract(version.getSize());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the version with the lowest index.
+	 * 
+	 * @return the removed version or <code>null</code> if there are no versions
+	 */
+	public FileVersion removeOldestVersion() {
+		if (versions.isEmpty()) {
+			return null;
+		}
+
+		FileVersion oldest = versions.remove(0);
+		totalSize = getTotalSize().subtract(oldest.getSize());
+		return oldest;
+	}
+
+	@Override
+	public MetaFileSmall copy() {
+		MetaFileSmall copy = copyKeysTo(new MetaFileSmall(id, versions, chunkKey));
+		copy.totalSize = totalSize;
+		return copy;
 	}
 
 	public KeyPair getChunkKey() {
@@ -33,40 +106,36 @@ public class MetaFileSmall extends MetaFile {
 	}
 
 	public BigInteger getTotalSize() {
-		if (versions == null) {
-			return BigInteger.ZERO;
-		} else {
+		if (totalSize == null) {
 			BigInteger sum = BigInteger.ZERO;
 			for (FileVersion version : versions) {
 				sum = sum.add(version.getSize());
 			}
-			return sum;
+			totalSize = sum;
 		}
+		return totalSize;
 	}
 
 	public FileVersion getNewestVersion() {
-		if (versions == null || versions.isEmpty()) {
+		if (versions.isEmpty()) {
 			return null;
 		}
-
-		Collections.sort(versions, new Comparator<FileVersion>() {
-			@Override
-			public int compare(FileVersion o1, FileVersion o2) {
-				return new Integer(o1.getIndex()).compareTo(o2.getIndex());
-			}
-		});
-
 		return versions.get(versions.size() - 1);
 	}
 
 	public FileVersion getVersionByIndex(int index) {
-		if (versions == null || versions.isEmpty()) {
-			return null;
-		}
-
-		for (FileVersion version : versions) {
-			if (version.getIndex() == index)
-				return version;
+		int low = 0;
+		int high = versions.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleIndex = versions.get(middle).getIndex();
+			if (middleIndex < index) {
+				low = middle + 1;
+			} else if (middleIndex > index) {
+				high = middle - 1;
+			} else {
+				return versions.get(middle);
+			}
 		}
 
 		return null;
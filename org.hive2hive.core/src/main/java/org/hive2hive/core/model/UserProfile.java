@@ -7,7 +7,6 @@ import java.security.PublicKey;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.TimeToLiveStore;
-import org.hive2hive.core.file.FileUtil;
 import org.hive2hive.core.security.EncryptionUtil;
 
 /**
@@ -57,27 +56,15 @@ public class UserProfile extends NetworkContent {
 		return TimeToLiveStore.getInstance().getUserProfile();
 	}
 
+	/**
+	 * Finds a file or folder by its file key. The lookup uses a hash index of the tree which is built on the
+	 * first call and kept up to date when children are added or removed.
+	 * 
+	 * @param fileId the public file key
+	 * @return the index or <code>null</code> if the profile does not contain it
+	 */
 	public Index getFileById(PublicKey fileId) {
-		return findById(root, fileId);
-	}
-
-	private Index findById(Index current, PublicKey fileId) {
-		if (current.getFilePublicKey().equals(fileId)) {
-			return current;
-		}
-
-		Index found = null;
-		if (current instanceof FolderIndex) {
-			FolderIndex folder = (FolderIndex) current;
-			for (Index child : folder.getChildren()) {
-				found = findById(child, fileId);
-				if (found != null) {
-					return found;
-				}
-			}
-		}
-
-		return found;
+		return root.findByKey(fileId);
 	}
 
 	public Index getFileByPath(File file, Path root) {
@@ -91,19 +78,20 @@ public class UserProfile extends NetworkContent {
 	}
 
 	public Index getFileByPath(Path relativePath) {
-		String[] split = relativePath.toString().split(FileUtil.getFileSep());
-		FolderIndex current = root;
-		for (int i = 0; i < split.length; i++) {
-			if (split[i].isEmpty()) {
+		Index current = root;
+		for (int i = 0; i < relativePath.getNameCount(); i++) {
+			String name = relativePath.getName(i).toString();
+			if (name.isEmpty()) {
+				// the empty path is the root
 				continue;
+			} else if (!current.isFolder()) {
+				// a file has no children
+				return null;
 			}
-			Index child = current.getChildByName(split[i]);
-			if (child == null) {
+
+			current = ((FolderIndex) current).getChildByName(name);
+			if (current == null) {
 				return null;
-			} else if (child instanceof FolderIndex) {
-				current = (FolderIndex) child;
-			} else if (child.getFullPath().equals(relativePath)) {
-				return child;
 			}
 		}
 
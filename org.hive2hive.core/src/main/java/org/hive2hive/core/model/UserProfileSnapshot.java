@@ -0,0 +1,168 @@
+package org.hive2hive.core.model;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, consistent view of a {@link UserProfile}. Any number of readers can hold a snapshot without
+ * copying it, while the profile itself is modified. Snapshots of consecutive profile versions share all
+ * unchanged subtrees. Note that {@link #of(UserProfile, UserProfileSnapshot)} still compares every node of
+ * the profile with the previous snapshot, only {@link #update(Path, IndexSnapshot)} is limited to the
+ * folders on the path.
+ * 
+ * @author Seppi
+ */
+public class UserProfileSnapshot {
+
+	private final String userId;
+	private final KeyPair encryptionKeys;
+	private final FolderSnapshot root;
+	// the path of every node by its file key, built with the first lookup
+	private volatile Map<PublicKey, Path> pathsById;
+
+	public UserProfileSnapshot(String userId, KeyPair encryptionKeys, FolderSnapshot root) {
+		this.userId = userId;
+		this.encryptionKeys = encryptionKeys;
+		this.root = root;
+	}
+
+	/**
+	 * Creates the snapshot of a profile, reusing the unchanged parts of the previous snapshot. The profile
+	 * does not track its modifications, thus every node is compared with the previous snapshot (linear in
+	 * the size of the profile), but only the changed nodes and their parent folders are copied.
+	 * 
+	 * @param profile the user profile, must not be modified meanwhile
+	 * @param previous the snapshot of an earlier version (can be <code>null</code>)
+	 */
+	public static UserProfileSnapshot of(UserProfile profile, UserProfileSnapshot previous) {
+		FolderSnapshot previousRoot = previous == null ? null : previous.getRoot();
+		FolderSnapshot root = FolderSnapshot.of(profile.getRoot(), previousRoot);
+		if (root == previousRoot && previous.getUserId().equals(profile.getUserId())) {
+			return previous;
+		}
+		return new UserProfileSnapshot(profile.getUserId(), profile.getEncryptionKeys(), root);
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public KeyPair getEncryptionKeys() {
+		return encryptionKeys;
+	}
+
+	public FolderSnapshot getRoot() {
+		return root;
+	}
+
+	/**
+	 * Replaces the node at the given path in a new snapshot. Only the folders on the path are copied.
+	 * 
+	 * @param path the path relative to the root
+	 * @param node the new node or <code>null</code> to remove it
+	 * @return the new snapshot or <code>null</code> if a parent folder does not exist
+	 */
+	public UserProfileSnapshot update(Path path, IndexSnapshot node) {
+		FolderSnapshot newRoot = root.update(path, node);
+		return newRoot == null ? null : new UserProfileSnapshot(userId, encryptionKeys, newRoot);
+	}
+
+	/**
+	 * @param path the path relative to the root
+	 * @return the node or <code>null</code> if it does not exist
+	 */
+	public IndexSnapshot getByPath(Path path) {
+		IndexSnapshot current = root;
+		for (int i = 0; i < path.getNameCount() && !path.toString().isEmpty(); i++) {
+			if (!current.isFolder()) {
+				return null;
+			}
+			current = ((FolderSnapshot) current).getChild(path.getName(i).toString());
+			if (current == null) {
+				return null;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Searches the node with the given file key. The first lookup indexes the whole snapshot, the following
+	 * ones are constant time.
+	 * 
+	 * @return the path of the node relative to the root or <code>null</code> if it does not exist
+	 */
+	public Path getPathById(PublicKey fileId) {
+		Map<PublicKey, Path> paths = pathsById;
+		if (paths == null) {
+			// the snapshot is immutable, building the index twice concurrently does not harm
+			paths = new HashMap<PublicKey, Path>();
+			indexPaths(root, Paths.get(""), paths);
+			pathsById = paths;
+		}
+		return paths.get(fileId);
+	}
+
+	private static void indexPaths(IndexSnapshot current, Path path, Map<PublicKey, Path> paths) {
+		if (!paths.containsKey(current.getFilePublicKey())) {
+			paths.put(current.getFilePublicKey(), path);
+		}
+		if (current.isFolder()) {
+			for (IndexSnapshot child : ((FolderSnapshot) current).getChildren()) {
+				indexPaths(child, path.resolve(child.getName()), paths);
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link FolderIndex#getCalculatedUserPermissions()}, a file has the permissions of its parent.
+	 * 
+	 * @param path the path relative to the root
+	 * @return the permissions or an empty set if the path does not exist
+	 */
+	public Set<UserPermission> getCalculatedUserPermissions(Path path) {
+		// the permissions of the deepest folder which has own permissions
+		Set<UserPermission> permissions = root.getUserPermissions();
+		FolderSnapshot current = root;
+		for (int i = 0; i < path.getNameCount() && !path.toString().isEmpty(); i++) {
+			IndexSnapshot child = current.getChild(path.getName(i).toString());
+			if (child == null) {
+				return Collections.emptySet();
+			} else if (child.isFile()) {
+				break;
+			}
+			current = (FolderSnapshot) child;
+			if (!current.getUserPermissions().isEmpty()) {
+				permissions = current.getUserPermissions();
+			}
+		}
+		return permissions;
+	}
+
+	/**
+	 * Same as {@link Index#getProtectionKeys()}.
+	 * 
+	 * @param path the path relative to the root
+	 * @return the protection keys (can be <code>null</code> in a read-only shared folder)
+	 */
+	public KeyPair getProtectionKeys(Path path) {
+		KeyPair protectionKeys = root.getOwnProtectionKeys();
+		FolderSnapshot current = root;
+		for (int i = 0; i < path.getNameCount() && !path.toString().isEmpty(); i++) {
+			IndexSnapshot child = current.getChild(path.getName(i).toString());
+			if (child == null || child.isFile()) {
+				break;
+			}
+			current = (FolderSnapshot) child;
+			if (current.getSharedFlag()) {
+				protectionKeys = current.getOwnProtectionKeys();
+			}
+		}
+		return protectionKeys;
+	}
+}
@@ -3,6 +3,7 @@ package org.hive2hive.core.network;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import io.netty.util.concurrent.Future;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 
@@ -13,9 +14,13 @@ import net.tomp2p.futures.FutureDiscover;
 import net.tomp2p.p2p.Peer;
 import net.tomp2p.p2p.PeerMaker;
 import net.tomp2p.peers.Number160;
+import net.tomp2p.storage.Storage;
+import net.tomp2p.storage.StorageMemory;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.network.messages.MessageReplyHandler;
+import org.hive2hive.core.network.storage.StorageDisk;
+import org.hive2hive.core.network.storage.StorageOffHeap;
 import org.hive2hive.core.security.H2HSignatureFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +36,7 @@ public class Connection {
 	private boolean isConnected;
 	private Peer peer;
 	private DefaultEventExecutorGroup eventExecutorGroup;
+	private StorageDisk storageDisk;
 
 	public Connection(String nodeID, NetworkManager networkManager) {
 		this.nodeID = nodeID;
@@ -125,6 +131,11 @@ public class Connection {
 			logger.warn("Peer disconnection failed. Peer is not connected.");
 		}
 
+		if (storageDisk != null) {
+			storageDisk.close();
+			storageDisk = null;
+		}
+
 		if (eventExecutorGroup != null) {
 			Future<?> shutdownGracefully = eventExecutorGroup.shutdownGracefully();
 			shutdownGracefully.awaitUninterruptibly(H2HConstants.DISCONNECT_TIMEOUT_MS);
@@ -175,10 +186,31 @@ public class Connection {
 		}
 
 		// override the put method for validation tasks
-		peer.getPeerBean().storage(new H2HStorageMemory());
+		peer.getPeerBean().storage(new H2HStorageMemory(createStorageBackend()));
 		// attach a reply handler for messages
 		peer.setObjectDataReply(new MessageReplyHandler(networkManager));
 
 		return true;
 	}
+
+	/**
+	 * Creates the backend holding the DHT content of this node. If configured (see
+	 * {@link H2HConstants#STORAGE_ON_DISK}), the content is persisted on disk, otherwise it's kept in memory,
+	 * optionally outside of the heap (see {@link H2HConstants#STORAGE_OFF_HEAP}).
+	 */
+	private Storage createStorageBackend() {
+		if (H2HConstants.STORAGE_ON_DISK) {
+			File directory = new File(H2HConstants.STORAGE_DIRECTORY, nodeID);
+			try {
+				storageDisk = new StorageDisk(directory);
+				return storageDisk;
+			} catch (IOException e) {
+				logger.error("Cannot open the storage on disk, storing in memory. Directory = '{}'.", directory, e);
+			}
+		}
+		if (H2HConstants.STORAGE_OFF_HEAP) {
+			return new StorageOffHeap();
+		}
+		return new StorageMemory();
+	}
 }
@@ -0,0 +1,163 @@
+package org.hive2hive.core.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.tomp2p.peers.Number640;
+
+/**
+ * A hierarchical timing wheel holding the expiration times of stored entries. Each level has
+ * {@link #SLOTS} slots, a slot of level <code>i</code> spans <code>SLOTS^i</code> ticks. Scheduling and
+ * cancelling an entry takes constant time, advancing the wheel only touches the due slots. Entries of a
+ * higher level are cascaded to the lower levels when their slot is reached. With a tick of one second, four
+ * levels cover about half a year; entries expiring later are parked in the top level and cascaded until
+ * they are due.<br>
+ * Used by {@link H2HStorageMemory} to expire entries without scanning the storage.
+ *
+ * @author Seppi
+ */
+class ExpiryWheel {
+
+	private static final int SLOT_BITS = 6;
+	static final int SLOTS = 1 << SLOT_BITS;
+	static final int LEVELS = 4;
+
+	private final long tickMs;
+	private final long startMs;
+	// [level][slot]
+	private final List<List<Set<Number640>>> wheels;
+	// the expiration tick of every scheduled key
+	private final Map<Number640, Long> expirations;
+	// the last processed tick
+	private long currentTick;
+
+	/**
+	 * @param tickMs the resolution of the wheel in milliseconds
+	 * @param startMs the time of tick zero
+	 */
+	public ExpiryWheel(long tickMs, long startMs) {
+		this.tickMs = tickMs;
+		this.startMs = startMs;
+		this.expirations = new HashMap<Number640, Long>();
+		this.wheels = new ArrayList<List<Set<Number640>>>(LEVELS);
+		for (int level = 0; level < LEVELS; level++) {
+			List<Set<Number640>> slots = new ArrayList<Set<Number640>>(SLOTS);
+			for (int slot = 0; slot < SLOTS; slot++) {
+				slots.add(new HashSet<Number640>());
+			}
+			wheels.add(slots);
+		}
+	}
+
+	public synchronized int size() {
+		return expirations.size();
+	}
+
+	public synchronized boolean contains(Number640 key) {
+		return expirations.containsKey(key);
+	}
+
+	/**
+	 * Schedules the expiration of a key. A previous expiration of the same key is replaced.
+	 *
+	 * @param key the key of the entry
+	 * @param expirationMs the absolute expiration time in milliseconds
+	 */
+	public synchronized void schedule(Number640 key, long expirationMs) {
+		cancel(key);
+		// round up, an entry never expires too early
+		long tick = Math.max(currentTick + 1, (expirationMs - startMs + tickMs - 1) / tickMs);
+		expirations.put(key, tick);
+		insert(key, tick);
+	}
+
+	/**
+	 * Removes the expiration of a key (e.g. because it got removed or stored without time to live).
+	 */
+	public synchronized void cancel(Number640 key) {
+		Long tick = expirations.remove(key);
+		if (tick != null) {
+			// the key is in the slot it has been inserted or cascaded to, search from the lowest level
+			for (int level = 0; level < LEVELS; level++) {
+				if (getSlot(level, tick).remove(key)) {
+					return;
+				}
+			}
+			// parked in the top level
+			for (Set<Number640> slot : wheels.get(LEVELS - 1)) {
+				if (slot.remove(key)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Advances the wheel to the given time.
+	 *
+	 * @param nowMs the current time in milliseconds
+	 * @return the keys which expired meanwhile
+	 */
+	public synchronized List<Number640> advance(long nowMs) {
+		List<Number640> expired = new ArrayList<Number640>();
+		long targetTick = (nowMs - startMs) / tickMs;
+		while (currentTick < targetTick) {
+			if (expirations.isEmpty()) {
+				// nothing to expire, skip the empty ticks
+				currentTick = targetTick;
+				break;
+			}
+			currentTick++;
+
+			// cascade the higher levels first, their entries may be due in this tick
+			for (int level = LEVELS - 1; level > 0; level--) {
+				if (currentTick % span(level) == 0) {
+					Set<Number640> slot = getSlot(level, currentTick);
+					List<Number640> cascaded = new ArrayList<Number640>(slot);
+					slot.clear();
+					for (Number640 key : cascaded) {
+						insert(key, expirations.get(key));
+					}
+				}
+			}
+
+			Set<Number640> due = getSlot(0, currentTick);
+			for (Number640 key : new ArrayList<Number640>(due)) {
+				if (expirations.get(key) <= currentTick) {
+					due.remove(key);
+					expirations.remove(key);
+					expired.add(key);
+				}
+			}
+		}
+		return expired;
+	}
+
+	private void insert(Number640 key, long tick) {
+		long delta = tick - currentTick;
+		for (int level = 0; level < LEVELS; level++) {
+			if (delta < span(level + 1)) {
+				getSlot(level, tick).add(key);
+				return;
+			}
+		}
+		// too far in the future, park it in the last slot of the top level which gets reached
+		getSlot(LEVELS - 1, currentTick + span(LEVELS) - span(LEVELS - 1)).add(key);
+	}
+
+	private Set<Number640> getSlot(int level, long tick) {
+		int slot = (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+		return wheels.get(level).get(slot);
+	}
+
+	/**
+	 * @return the number of ticks a slot of the given level spans
+	 */
+	private static long span(int level) {
+		return 1L << (SLOT_BITS * level);
+	}
+}
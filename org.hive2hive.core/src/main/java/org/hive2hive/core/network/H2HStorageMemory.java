@@ -1,15 +1,28 @@
 package org.hive2hive.core.network;
 
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
 import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import net.tomp2p.peers.Number160;
 import net.tomp2p.peers.Number640;
 import net.tomp2p.storage.Data;
+import net.tomp2p.storage.Storage;
 import net.tomp2p.storage.StorageLayer;
 import net.tomp2p.storage.StorageMemory;
+import net.tomp2p.utils.Pair;
 
 import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.network.storage.DataCodec;
+import org.hive2hive.core.network.storage.StorageOffHeap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +38,11 @@ public class H2HStorageMemory extends StorageLayer {
 
 	private static final Logger logger = LoggerFactory.getLogger(H2HStorageMemory.class);
 
+	// number of puts after which the version rings of removed content are dropped
+	private static final int VERSION_RING_SWEEP_INTERVAL = 1024;
+	// number of locks serializing the puts (power of two)
+	private static final int LOCK_STRIPES = 256;
+
 	public enum PutStatusH2H {
 		OK,
 		FAILED_NOT_ABSENT,
@@ -34,10 +52,94 @@ public class H2HStorageMemory extends StorageLayer {
 		VERSION_CONFLICT_NO_VERSION_KEY,
 		VERSION_CONFLICT_NO_BASED_ON,
 		VERSION_CONFLICT_OLD_TIMESTAMP,
+		FAILED_QUOTA_EXCEEDED
 	};
 
+	private final Storage backend;
+	// the versions stored per location, domain and content key (with version key zero)
+	private final ConcurrentHashMap<Number640, VersionRing> versionRings;
+	// counts the puts to sweep the rings of removed content from time to time
+	private final AtomicInteger putCounter;
+	// puts to the same location and content key are serialized, others run in parallel
+	private final ReentrantLock[] locks;
+	// expires the entries with a time to live
+	private final ExpiryWheel expiryWheel;
+	private final AtomicLong nextExpiry;
+	// the size of every entry stored through this storage, used for the quotas
+	private final ConcurrentHashMap<Number640, Integer> entrySizes;
+	private final AtomicLong usedBytes;
+	private final AtomicLong nextReconciliation;
+	private final long quotaBytes;
+	private final int quotaEntries;
+
 	public H2HStorageMemory() {
-		super(new StorageMemory());
+		this(new StorageMemory());
+	}
+
+	/**
+	 * Creates the storage with a custom backend (e.g. a persistent one).
+	 * 
+	 * @param backend the storage backend holding the data
+	 */
+	public H2HStorageMemory(Storage backend) {
+		this(backend, H2HConstants.STORAGE_QUOTA_BYTES, H2HConstants.STORAGE_QUOTA_ENTRIES);
+	}
+
+	/**
+	 * Creates the storage with a custom backend and quotas. Puts exceeding a quota are rejected with
+	 * {@link PutStatusH2H#FAILED_QUOTA_EXCEEDED}. Concurrent puts to different keys can exceed the quotas by
+	 * at most one entry each. Entries which are already in the backend (e.g. stored by a previous run) count
+	 * for the quotas and expire with their remaining time to live.
+	 * 
+	 * @param backend the storage backend holding the data
+	 * @param quotaBytes the maximum number of stored payload bytes
+	 * @param quotaEntries the maximum number of stored entries
+	 */
+	public H2HStorageMemory(Storage backend, long quotaBytes, int quotaEntries) {
+		super(backend);
+		this.backend = backend;
+		this.quotaBytes = quotaBytes;
+		this.quotaEntries = quotaEntries;
+		this.versionRings = new ConcurrentHashMap<Number640, VersionRing>();
+		this.putCounter = new AtomicInteger();
+		this.locks = new ReentrantLock[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new ReentrantLock();
+		}
+		long now = System.currentTimeMillis();
+		this.expiryWheel = new ExpiryWheel(H2HConstants.STORAGE_EXPIRY_TICK_MS, now);
+		this.nextExpiry = new AtomicLong(now + H2HConstants.STORAGE_EXPIRY_TICK_MS);
+		this.entrySizes = new ConcurrentHashMap<Number640, Integer>();
+		this.usedBytes = new AtomicLong();
+		this.nextReconciliation = new AtomicLong();
+		accountStoredEntries();
+	}
+
+	/**
+	 * Accounts the entries which are already in the backend, such that the quotas and the expiration also
+	 * cover them.
+	 */
+	private void accountStoredEntries() {
+		for (Entry<Number640, Data> entry : backend.map().entrySet()) {
+			account(entry.getKey(), entry.getValue());
+		}
+		if (!entrySizes.isEmpty()) {
+			logger.debug("Accounted {} stored entries with {} bytes.", entrySizes.size(), usedBytes.get());
+		}
+	}
+
+	/**
+	 * @return the number of payload bytes stored through this storage
+	 */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/**
+	 * @return the number of entries stored through this storage
+	 */
+	public int getEntryCount() {
+		return entrySizes.size();
 	}
 
 	@Override
@@ -51,14 +153,38 @@ public class H2HStorageMemory extends StorageLayer {
 				logger.trace("Only chaning the protection key, no need to verify the versions.");
 				return super.put(key, newData, publicKey, putIfAbsent, domainProtection);
 			}
+			expireEntries();
 
-			Enum<?> status = validateVersion(key, newData);
-			if (status == PutStatusH2H.OK) {
-				status = super.put(key, newData, publicKey, putIfAbsent, domainProtection);
+			// validation, put and cleanup need to be atomic, otherwise concurrent puts could be based on the
+			// same version
+			Enum<?> status;
+			ReentrantLock lock = getLock(key);
+			lock.lock();
+			try {
+				VersionRing history = getVersionRing(key);
+				status = validateVersion(key, newData, history);
+				if (status == PutStatusH2H.OK && !isWithinQuota(key, newData)) {
+					status = PutStatusH2H.FAILED_QUOTA_EXCEEDED;
+				}
+				if (status == PutStatusH2H.OK) {
+					status = super.put(key, newData, publicKey, putIfAbsent, domainProtection);
+					status = checkBackendBudget(status);
+					if (status.ordinal() == PutStatusH2H.OK.ordinal()) {
+						history.add(key.getVersionKey());
+						versionRings.putIfAbsent(toContentKey(key), history);
+						account(key, newData);
+					}
+
+					// after adding the content to the memory, old versions should be cleaned up. How many old
+					// versions we keep can be parameterized in the constants.
+					cleanupVersions(key, publicKey, history);
+				}
+			} finally {
+				lock.unlock();
+			}
 
-				// after adding the content to the memory, old versions should be cleaned up. How many old
-				// versions we keep can be parameterized in the constants.
-				cleanupVersions(key, publicKey);
+			if (putCounter.incrementAndGet() % VERSION_RING_SWEEP_INTERVAL == 0) {
+				sweepVersionRings();
 			}
 
 			logger.trace(String.format(
@@ -67,10 +193,179 @@ public class H2HStorageMemory extends StorageLayer {
 			return status;
 		} else {
 			logger.trace("Disabled the put verification strategy on the remote peer.");
-			return super.put(key, newData, publicKey, putIfAbsent, domainProtection);
+			expireEntries();
+			if (!isWithinQuota(key, newData)) {
+				return PutStatusH2H.FAILED_QUOTA_EXCEEDED;
+			}
+			Enum<?> status = super.put(key, newData, publicKey, putIfAbsent, domainProtection);
+			status = checkBackendBudget(status);
+			if (status.ordinal() == PutStatusH2H.OK.ordinal()) {
+				account(key, newData);
+			}
+			return status;
 		}
 	}
 
+	/**
+	 * The backend only tells whether a put failed. If the off-heap backend rejected it because its budget is
+	 * exhausted, the put is reported as {@link PutStatusH2H#FAILED_QUOTA_EXCEEDED}, such that the requester
+	 * does not retry on this node.
+	 */
+	private Enum<?> checkBackendBudget(Enum<?> status) {
+		if (status.ordinal() != PutStatusH2H.OK.ordinal() && backend instanceof StorageOffHeap
+				&& ((StorageOffHeap) backend).isLastPutRejected()) {
+			return PutStatusH2H.FAILED_QUOTA_EXCEEDED;
+		}
+		return status;
+	}
+
+	/**
+	 * Removes the entry and drops it from the version ring of its content and from the accounting right
+	 * away, such that the next put (e.g. after a rollback) is validated against the remaining versions.
+	 */
+	@Override
+	public Pair<Data, Enum<?>> remove(Number640 key, PublicKey publicKey, boolean returnData) {
+		ReentrantLock lock = getLock(key);
+		lock.lock();
+		try {
+			Pair<Data, Enum<?>> result = super.remove(key, publicKey, returnData);
+			if (!backend.contains(key)) {
+				// not removed if the public key does not match
+				release(key);
+			}
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks whether storing the data would exceed a quota. If so, the accounting is first reconciled with
+	 * the storage, because entries could have been removed meanwhile (e.g. by a range remove).
+	 */
+	private boolean isWithinQuota(Number640 key, Data newData) {
+		if (fitsQuota(key, newData)) {
+			return true;
+		}
+		reconcileAccounting();
+		if (fitsQuota(key, newData)) {
+			return true;
+		}
+		logger.warn("Storage quota exceeded. Key = '{}', Used bytes = '{}', Entries = '{}'.", key,
+				usedBytes.get(), entrySizes.size());
+		return false;
+	}
+
+	private boolean fitsQuota(Number640 key, Data newData) {
+		Integer previous = entrySizes.get(key);
+		long bytes = usedBytes.get() + newData.length() - (previous == null ? 0 : previous);
+		int entries = entrySizes.size() + (previous == null ? 1 : 0);
+		return bytes <= quotaBytes && entries <= quotaEntries;
+	}
+
+	/**
+	 * Accounts a stored entry and schedules its expiration.
+	 */
+	private void account(Number640 key, Data newData) {
+		Integer previous = entrySizes.put(key, newData.length());
+		usedBytes.addAndGet(newData.length() - (previous == null ? 0 : previous));
+
+		long expiration = DataCodec.getExpiration(newData);
+		if (expiration > 0) {
+			expiryWheel.schedule(key, expiration);
+		} else {
+			expiryWheel.cancel(key);
+		}
+	}
+
+	/**
+	 * Removes an entry from the accounting, the expiry wheel and the version ring of its content.
+	 */
+	private void release(Number640 key) {
+		Integer size = entrySizes.remove(key);
+		if (size != null) {
+			usedBytes.addAndGet(-size);
+		}
+		expiryWheel.cancel(key);
+		releaseVersion(key);
+	}
+
+	/**
+	 * Drops the version of a removed entry from its ring, such that the ring only contains stored versions.
+	 * Holds the lock of the content, because the entry could be stored again concurrently.
+	 */
+	private void releaseVersion(Number640 key) {
+		Number640 contentKey = toContentKey(key);
+		ReentrantLock lock = getLock(key);
+		lock.lock();
+		try {
+			VersionRing ring = versionRings.get(contentKey);
+			if (ring == null || backend.contains(key) || !ring.remove(key.getVersionKey())) {
+				return;
+			}
+			if (ring.isEmpty()) {
+				versionRings.remove(contentKey, ring);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Drops the accounting of entries which are not stored anymore. Runs at most once per expiry tick, such
+	 * that a full storage does not scan all entries on every put.
+	 */
+	private void reconcileAccounting() {
+		long now = System.currentTimeMillis();
+		long next = nextReconciliation.get();
+		if (now < next || !nextReconciliation.compareAndSet(next, now + H2HConstants.STORAGE_EXPIRY_TICK_MS)) {
+			return;
+		}
+		for (Number640 key : entrySizes.keySet()) {
+			if (!backend.contains(key)) {
+				release(key);
+			}
+		}
+	}
+
+	/**
+	 * Removes the entries whose time to live passed. The expiry wheel is advanced at most once per tick,
+	 * piggybacked on the puts and gets. Can also be called periodically by the owner of the storage.
+	 */
+	public void expireEntries() {
+		long now = System.currentTimeMillis();
+		long next = nextExpiry.get();
+		if (now < next || !nextExpiry.compareAndSet(next, now + H2HConstants.STORAGE_EXPIRY_TICK_MS)) {
+			return;
+		}
+
+		for (Number640 key : expiryWheel.advance(now)) {
+			ReentrantLock lock = getLock(key);
+			lock.lock();
+			try {
+				if (expiryWheel.contains(key)) {
+					// has been stored again meanwhile with a new time to live
+					continue;
+				}
+				logger.trace("Removing an expired entry. Key = '{}'.", key);
+				backend.remove(key, false);
+				release(key);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Gets the lock for the location and content key of the given key.
+	 */
+	private ReentrantLock getLock(Number640 key) {
+		int hash = 31 * key.getLocationKey().hashCode() + key.getContentKey().hashCode();
+		// spread the bits, the stripe is chosen by the lower ones
+		hash ^= (hash >>> 16);
+		return locks[hash & (LOCK_STRIPES - 1)];
+	}
+
 	/**
 	 * Returns whether the put data is to change the protection key
 	 * 
@@ -93,18 +388,16 @@ public class H2HStorageMemory extends StorageLayer {
 	 * 
 	 * @param key
 	 * @param newData
+	 * @param history all versions for this locationKey, domainKey and contentKey combination
 	 * @return
 	 */
-	private PutStatusH2H validateVersion(Number640 key, Data newData) {
-		/** 0. get all versions for this locationKey, domainKey and contentKey combination **/
-		NavigableMap<Number640, Number160> history = getHistoryOnStorage(key);
-
+	private PutStatusH2H validateVersion(Number640 key, Data newData, VersionRing history) {
 		/** 1. if version key is zero **/
 		if (key.getVersionKey().equals(Number160.ZERO)) {
 			if (history.isEmpty()) {
 				logger.trace("Initialy putting content with no version key.");
 				return PutStatusH2H.OK;
-			} else if (history.size() == 1 && history.firstKey().getVersionKey().equals(Number160.ZERO)) {
+			} else if (history.size() == 1 && history.getOldest().equals(Number160.ZERO)) {
 				logger.trace("Overwriting content with no versioning.");
 				return PutStatusH2H.OK;
 			} else {
@@ -128,7 +421,7 @@ public class H2HStorageMemory extends StorageLayer {
 		}
 
 		/** 2. check if previous exists **/
-		if (!history.lastKey().getVersionKey().equals(newData.basedOn())) {
+		if (!history.getNewest().equals(newData.basedOn())) {
 			logger.warn("New data is not based on previous version. Previous version key = '{}'.",
 					key.getVersionKey());
 			return PutStatusH2H.VERSION_CONFLICT;
@@ -146,25 +439,126 @@ public class H2HStorageMemory extends StorageLayer {
 		}
 	}
 
-	// TODO consider fresh version before version cleanup
-	private void cleanupVersions(Number640 key, PublicKey publicKey) {
-		NavigableMap<Number640, Number160> history = getHistoryOnStorage(key);
+	/**
+	 * A get whose upper range bound is marked with {@link H2HConstants#CONDITIONAL_GET_DOMAIN_KEY} is treated
+	 * as a conditional get (see {@link #isConditionalGet}). All other gets are served as usual.
+	 */
+	@Override
+	public NavigableMap<Number640, Data> get(Number640 from, Number640 to, int limit, boolean ascending) {
+		expireEntries();
+		if (isConditionalGet(from, to)) {
+			return getIfModified(from);
+		}
+		return super.get(from, to, limit, ascending);
+	}
 
+	/**
+	 * A conditional get carries the key of the version the requester already knows as lower bound of the
+	 * range. Its upper bound is explicitly marked with {@link H2HConstants#CONDITIONAL_GET_DOMAIN_KEY}
+	 * instead of the domain key of the content, such that no ordinary range get is mistaken for one.
+	 * 
+	 * @return <code>true</code> if the get is marked as conditional
+	 */
+	private boolean isConditionalGet(Number640 from, Number640 to) {
+		return to.getDomainKey().equals(H2HConstants.CONDITIONAL_GET_DOMAIN_KEY)
+				&& from.getLocationKey().equals(to.getLocationKey())
+				&& from.getContentKey().equals(to.getContentKey());
+	}
+
+	/**
+	 * Returns the newest version of the content. If the newest version is the known one, an empty entry
+	 * under the known key is returned instead ("not modified"), such that no payload gets transferred. If
+	 * the known version got removed meanwhile (e.g. because of a rollback), the newest version is returned,
+	 * even if it is older than the known one.
+	 * 
+	 * @param known the key containing the version key the requester already knows
+	 * @return the newest version, a "not modified" entry or an empty map if there is no content
+	 */
+	private NavigableMap<Number640, Data> getIfModified(Number640 known) {
+		NavigableMap<Number640, Data> newest = super.get(new Number640(known.getLocationKey(),
+				known.getDomainKey(), known.getContentKey(), Number160.ZERO),
+				new Number640(known.getLocationKey(), known.getDomainKey(), known.getContentKey(),
+						Number160.MAX_VALUE), 1, false);
+		if (!newest.isEmpty() && newest.firstKey().equals(known)) {
+			logger.trace("Conditional get: content not modified. Version key = '{}'.", known.getVersionKey());
+			NavigableMap<Number640, Data> notModified = new TreeMap<Number640, Data>();
+			notModified.put(known, new Data());
+			return notModified;
+		}
+		return newest;
+	}
+
+	// TODO consider fresh version before version cleanup
+	private void cleanupVersions(Number640 key, PublicKey publicKey, VersionRing history) {
 		// long now = System.currentTimeMillis();
 		while (history.size() > H2HConstants.MAX_VERSIONS_HISTORY) {
-			Number640 toRemove = history.firstKey();
+			Number640 toRemove = new Number640(key.getLocationKey(), key.getDomainKey(), key.getContentKey(),
+					history.getOldest());
 			// if (toRemove.getVersionKey().timestamp() + H2HConstants.MIN_VERSION_AGE_BEFORE_REMOVAL_MS >
 			// now) {
 			// // stop removal because oldest version is too 'young'
 			// break;
 			// } else {
 			logger.trace("Removing an older version. Version key = '{}'.", key.getVersionKey());
-			history.remove(toRemove);
+			history.removeOldest();
 			super.remove(toRemove, publicKey, false);
+			release(toRemove);
 			// }
 		}
 	}
 
+	/**
+	 * Gets the versions of the content from the version ring. Versions removed through this storage (e.g.
+	 * expired ones) are dropped from the ring right away. The ring is only built from the storage if it
+	 * doesn't exist yet (e.g. content stored by a previous run) or if its newest or oldest version has been
+	 * removed from the storage otherwise (e.g. by a range remove).
+	 */
+	private VersionRing getVersionRing(Number640 key) {
+		Number640 contentKey = toContentKey(key);
+		VersionRing ring = versionRings.get(contentKey);
+		if (ring == null || !isNewestStored(contentKey, ring) || !isStored(contentKey, ring.getOldest())) {
+			NavigableMap<Number640, Number160> history = getHistoryOnStorage(key);
+			List<Number160> versionKeys = new ArrayList<Number160>(history.size());
+			for (Number640 version : history.keySet()) {
+				versionKeys.add(version.getVersionKey());
+			}
+			ring = new VersionRing(versionKeys, H2HConstants.MAX_VERSIONS_HISTORY + 1);
+			if (ring.isEmpty()) {
+				versionRings.remove(contentKey);
+			} else {
+				versionRings.put(contentKey, ring);
+			}
+		}
+		return ring;
+	}
+
+	private boolean isNewestStored(Number640 contentKey, VersionRing ring) {
+		return isStored(contentKey, ring.getNewest());
+	}
+
+	private boolean isStored(Number640 contentKey, Number160 versionKey) {
+		return versionKey != null
+				&& backend.contains(new Number640(contentKey.getLocationKey(), contentKey.getDomainKey(),
+						contentKey.getContentKey(), versionKey));
+	}
+
+	/**
+	 * Drops the rings of content which has been removed from the storage (e.g. because it expired).
+	 */
+	private void sweepVersionRings() {
+		Iterator<Entry<Number640, VersionRing>> iterator = versionRings.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry<Number640, VersionRing> entry = iterator.next();
+			if (!isNewestStored(entry.getKey(), entry.getValue())) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static Number640 toContentKey(Number640 key) {
+		return new Number640(key.getLocationKey(), key.getDomainKey(), key.getContentKey(), Number160.ZERO);
+	}
+
 	private NavigableMap<Number640, Number160> getHistoryOnStorage(Number640 key) {
 		return super.digest(
 				new Number640(key.getLocationKey(), key.getDomainKey(), key.getContentKey(), Number160.ZERO),
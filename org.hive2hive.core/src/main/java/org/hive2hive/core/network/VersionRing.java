@@ -0,0 +1,101 @@
+package org.hive2hive.core.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.tomp2p.peers.Number160;
+
+/**
+ * The version keys of one content (same location, domain and content key) stored on this node, in ascending
+ * order. It is backed by a ring buffer, such that adding the newest and removing the oldest version are
+ * constant time operations. Used by {@link H2HStorageMemory} to validate and clean up versions without
+ * scanning the storage.
+ *
+ * @author Seppi
+ */
+class VersionRing {
+
+	private final ArrayDeque<Number160> versions;
+
+	/**
+	 * @param capacity the expected number of versions
+	 */
+	public VersionRing(int capacity) {
+		this.versions = new ArrayDeque<Number160>(capacity);
+	}
+
+	/**
+	 * Creates a ring containing the given version keys.
+	 */
+	public VersionRing(Collection<Number160> versionKeys, int capacity) {
+		this(Math.max(capacity, versionKeys.size()));
+		List<Number160> sorted = new ArrayList<Number160>(versionKeys);
+		Collections.sort(sorted);
+		versions.addAll(sorted);
+	}
+
+	public synchronized boolean isEmpty() {
+		return versions.isEmpty();
+	}
+
+	public synchronized int size() {
+		return versions.size();
+	}
+
+	/**
+	 * @return the oldest version key or <code>null</code> if empty
+	 */
+	public synchronized Number160 getOldest() {
+		return versions.peekFirst();
+	}
+
+	/**
+	 * @return the newest version key or <code>null</code> if empty
+	 */
+	public synchronized Number160 getNewest() {
+		return versions.peekLast();
+	}
+
+	/**
+	 * Adds a version key. Adding a version key newer than all others (the regular case) takes constant time.
+	 */
+	public synchronized void add(Number160 versionKey) {
+		Number160 newest = versions.peekLast();
+		if (newest == null || newest.compareTo(versionKey) < 0) {
+			versions.addLast(versionKey);
+		} else if (!versions.contains(versionKey)) {
+			// out of order, keep the ascending order
+			List<Number160> sorted = new ArrayList<Number160>(versions);
+			sorted.add(versionKey);
+			Collections.sort(sorted);
+			versions.clear();
+			versions.addAll(sorted);
+		}
+	}
+
+	/**
+	 * Removes the oldest version key.
+	 *
+	 * @return the removed version key or <code>null</code> if empty
+	 */
+	public synchronized Number160 removeOldest() {
+		return versions.pollFirst();
+	}
+
+	/**
+	 * Removes a version key, e.g. of a version which expired. Removing the oldest version (the regular case)
+	 * takes constant time.
+	 *
+	 * @return <code>true</code> if the version key has been in the ring
+	 */
+	public synchronized boolean remove(Number160 versionKey) {
+		if (versionKey.equals(versions.peekFirst())) {
+			versions.pollFirst();
+			return true;
+		}
+		return versions.remove(versionKey);
+	}
+}
@@ -0,0 +1,203 @@
+package org.hive2hive.core.network.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+
+import org.hive2hive.core.model.NetworkContent;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local least-recently-used cache for content fetched from the DHT. The cache is bounded by the total size
+ * of the cached content (in bytes). The content is stored in its serialized form, either on the heap or
+ * off-heap in direct byte buffers. Every hit returns a freshly deserialized copy, thus callers can modify the
+ * content without corrupting the cache.</br>
+ * <b>Important:</b> Only cache content which never changes under the given key, i.e. immutable content (e.g.
+ * chunks) or a specific version of versioned content (e.g. meta files).
+ * 
+ * @author Seppi
+ */
+public class ContentCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(ContentCache.class);
+
+	private final long maxBytes;
+	private final boolean offHeap;
+	private final LinkedHashMap<Number640, ByteBuffer> entries;
+
+	private long usedBytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * @param maxBytes the maximum number of bytes the cached content may use
+	 * @param offHeap <code>true</code> to store the content in direct (off-heap) memory
+	 */
+	public ContentCache(long maxBytes, boolean offHeap) {
+		this.maxBytes = maxBytes;
+		this.offHeap = offHeap;
+		// access order for the LRU eviction
+		this.entries = new LinkedHashMap<Number640, ByteBuffer>(16, 0.75f, true);
+	}
+
+	/**
+	 * Gets a copy of the cached content.
+	 * 
+	 * @param key the full key (including the version key) of the content
+	 * @return a copy of the content or <code>null</code> if not cached
+	 */
+	public NetworkContent get(Number640 key) {
+		ByteBuffer buffer;
+		synchronized (entries) {
+			buffer = entries.get(key);
+			if (buffer == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+			// the duplicate has its own position, the content is shared
+			buffer = buffer.duplicate();
+		}
+
+		byte[] serialized = new byte[buffer.remaining()];
+		buffer.get(serialized);
+		try {
+			return (NetworkContent) EncryptionUtil.deserializeObject(serialized);
+		} catch (IOException | ClassNotFoundException e) {
+			logger.error("Cannot deserialize cached content. Key = '{}'.", key);
+			remove(key);
+			return null;
+		}
+	}
+
+	/**
+	 * Caches the content. Least recently used entries are evicted if the size bound is exceeded. Content
+	 * which is larger than the whole cache is not cached.
+	 * 
+	 * @param key the full key (including the version key) of the content
+	 * @param content the content to cache
+	 */
+	public void put(Number640 key, NetworkContent content) {
+		byte[] serialized;
+		try {
+			serialized = EncryptionUtil.serializeObject(content);
+		} catch (IOException e) {
+			logger.error("Cannot serialize content to cache. Key = '{}'.", key);
+			return;
+		}
+
+		if (serialized.length > maxBytes) {
+			logger.trace("Content is too large to cache. Size = '{}' bytes.", serialized.length);
+			return;
+		}
+
+		ByteBuffer buffer;
+		if (offHeap) {
+			buffer = ByteBuffer.allocateDirect(serialized.length);
+			buffer.put(serialized);
+			buffer.flip();
+		} else {
+			buffer = ByteBuffer.wrap(serialized);
+		}
+
+		synchronized (entries) {
+			ByteBuffer previous = entries.put(key, buffer);
+			if (previous != null) {
+				usedBytes -= previous.capacity();
+			}
+			usedBytes += buffer.capacity();
+			evict();
+		}
+	}
+
+	/**
+	 * Removes a single entry from the cache.
+	 * 
+	 * @param key the full key (including the version key) of the content
+	 */
+	public void remove(Number640 key) {
+		synchronized (entries) {
+			ByteBuffer removed = entries.remove(key);
+			if (removed != null) {
+				usedBytes -= removed.capacity();
+			}
+		}
+	}
+
+	/**
+	 * Removes all versions of a content from the cache.
+	 * 
+	 * @param locationKey the location key of the content
+	 * @param domainKey the domain key of the content
+	 * @param contentKey the content key of the content
+	 */
+	public void removeAll(Number160 locationKey, Number160 domainKey, Number160 contentKey) {
+		synchronized (entries) {
+			Iterator<Map.Entry<Number640, ByteBuffer>> iterator = entries.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<Number640, ByteBuffer> entry = iterator.next();
+				Number640 key = entry.getKey();
+				if (key.getLocationKey().equals(locationKey) && key.getDomainKey().equals(domainKey)
+						&& key.getContentKey().equals(contentKey)) {
+					usedBytes -= entry.getValue().capacity();
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	private void evict() {
+		Iterator<ByteBuffer> iterator = entries.values().iterator();
+		while (usedBytes > maxBytes && iterator.hasNext()) {
+			usedBytes -= iterator.next().capacity();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * @return the number of bytes currently used by the cached content
+	 */
+	public long getUsedBytes() {
+		synchronized (entries) {
+			return usedBytes;
+		}
+	}
+
+	/**
+	 * @return the number of cached entries
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return the number of gets which have been answered from the cache
+	 */
+	public long getHits() {
+		synchronized (entries) {
+			return hits;
+		}
+	}
+
+	/**
+	 * @return the number of gets which could not be answered from the cache
+	 */
+	public long getMisses() {
+		synchronized (entries) {
+			return misses;
+		}
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+}
@@ -2,8 +2,17 @@ package org.hive2hive.core.network.data;
 
 import java.io.IOException;
 import java.security.KeyPair;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import net.tomp2p.futures.BaseFuture;
+import net.tomp2p.futures.BaseFutureAdapter;
 import net.tomp2p.futures.FutureDigest;
 import net.tomp2p.futures.FutureGet;
 import net.tomp2p.futures.FuturePut;
@@ -15,14 +24,17 @@ import net.tomp2p.storage.Data;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.model.NetworkContent;
+import org.hive2hive.core.network.H2HStorageMemory;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.data.futures.FutureChangeProtectionListener;
 import org.hive2hive.core.network.data.futures.FutureDigestListener;
 import org.hive2hive.core.network.data.futures.FutureGetListener;
 import org.hive2hive.core.network.data.futures.FuturePutListener;
 import org.hive2hive.core.network.data.futures.FutureRemoveListener;
+import org.hive2hive.core.network.data.futures.RetryScheduler;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.network.data.parameters.PutVerificationMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,12 +46,26 @@ public class DataManager implements IDataManager {
 	private static final Logger logger = LoggerFactory.getLogger(DataManager.class);
 
 	private final NetworkManager networkManager;
+	private final RetryScheduler retryScheduler;
+	private final ContentCache contentCache;
+	private final VersionCache versionCache;
+
+	// gets and digests which are currently in flight, shared by concurrent identical requests
+	private final Map<Number640, FutureGetListener> inFlightGets;
+	private final Map<Number640, FutureDigest> inFlightDigests;
+	private final AtomicLong coalescedRequests;
 
 	// private final SignatureFactory signatureFactory;
 	// private final SignatureCodec signatureCodec;
 
 	public DataManager(NetworkManager networkManager) {
 		this.networkManager = networkManager;
+		this.retryScheduler = new RetryScheduler();
+		this.contentCache = new ContentCache(H2HConstants.CONTENT_CACHE_SIZE, H2HConstants.CONTENT_CACHE_OFF_HEAP);
+		this.versionCache = new VersionCache(H2HConstants.VERSION_CACHE_ENTRIES);
+		this.inFlightGets = new HashMap<Number640, FutureGetListener>();
+		this.inFlightDigests = new HashMap<Number640, FutureDigest>();
+		this.coalescedRequests = new AtomicLong();
 		// this.signatureFactory = new H2HSignatureFactory();
 		// this.signatureCodec = new H2HSignatureCodec();
 	}
@@ -53,6 +79,43 @@ public class DataManager implements IDataManager {
 		return networkManager.getConnection().getPeer();
 	}
 
+	/**
+	 * Returns the scheduler which delays the retries of all puts, gets and removes of this node.
+	 * 
+	 * @return the retry scheduler
+	 */
+	public RetryScheduler getRetryScheduler() {
+		return retryScheduler;
+	}
+
+	/**
+	 * Returns the local cache for immutable content of this node.
+	 * 
+	 * @return the content cache
+	 */
+	public ContentCache getContentCache() {
+		return contentCache;
+	}
+
+	/**
+	 * Returns the local cache for the newest known versions of versioned content of this node.
+	 * 
+	 * @return the version cache
+	 */
+	public VersionCache getVersionCache() {
+		return versionCache;
+	}
+
+	/**
+	 * Returns how many gets and digests joined an identical request which was already in flight instead of
+	 * sending an own one.
+	 * 
+	 * @return the number of coalesced requests
+	 */
+	public long getCoalescedRequestCount() {
+		return coalescedRequests.get();
+	}
+
 	@Override
 	public boolean put(IParameters parameters) {
 		FuturePut putFuture = putUnblocked(parameters);
@@ -65,6 +128,30 @@ public class DataManager implements IDataManager {
 		return listener.await();
 	}
 
+	@Override
+	public Map<IParameters, Boolean> putAll(Collection<IParameters> parameters) {
+		// start all puts first, such that they run concurrently
+		Map<IParameters, FuturePutListener> listeners = new LinkedHashMap<IParameters, FuturePutListener>();
+		for (IParameters param : parameters) {
+			FuturePut putFuture = putUnblocked(param);
+			if (putFuture == null) {
+				listeners.put(param, null);
+			} else {
+				FuturePutListener listener = new FuturePutListener(param, this);
+				putFuture.addListener(listener);
+				listeners.put(param, listener);
+			}
+		}
+
+		// then wait for each of them
+		Map<IParameters, Boolean> results = new LinkedHashMap<IParameters, Boolean>(listeners.size());
+		for (Entry<IParameters, FuturePutListener> entry : listeners.entrySet()) {
+			FuturePutListener listener = entry.getValue();
+			results.put(entry.getKey(), listener == null ? false : listener.await());
+		}
+		return results;
+	}
+
 	@Override
 	public boolean changeProtectionKey(IParameters parameters) {
 		FuturePut putFuture = changeProtectionKeyUnblocked(parameters);
@@ -80,9 +167,12 @@ public class DataManager implements IDataManager {
 	@Override
 	public boolean putUserProfileTask(String userId, Number160 contentKey, NetworkContent content,
 			KeyPair protectionKey) {
+		// a task is put once under its own content key, the verification is skipped as long as it is not
+		// versioned
 		IParameters parameters = new Parameters().setLocationKey(userId).setContentKey(contentKey)
 				.setDomainKey(H2HConstants.USER_PROFILE_TASK_DOMAIN).setData(content)
-				.setProtectionKeys(protectionKey).setTTL(content.getTimeToLive());
+				.setProtectionKeys(protectionKey).setTTL(content.getTimeToLive())
+				.setPutVerificationMode(PutVerificationMode.VERSIONED_ONLY);
 		FuturePut putFuture = putUnblocked(parameters);
 		if (putFuture == null) {
 			return false;
@@ -95,6 +185,11 @@ public class DataManager implements IDataManager {
 
 	public FuturePut putUnblocked(IParameters parameters) {
 		logger.debug("Put. {}", parameters.toString());
+		// the cached copy would be outdated
+		contentCache.remove(parameters.getKey());
+		versionCache.remove(parameters.getKey());
+		// gets started before this put must not be joined anymore
+		forgetInFlight(parameters);
 		try {
 			Data data = new Data(parameters.getData());
 			data.ttlSeconds(parameters.getTTL()).basedOn(parameters.getData().getBasedOnKey());
@@ -162,17 +257,117 @@ public class DataManager implements IDataManager {
 				.keyPair(parameters.getProtectionKeys()).start();
 	}
 
+	/**
+	 * Gets the newest version. Concurrent identical gets (same location, domain and content key) share one
+	 * request in flight, including its retries. Every caller decodes its own instance of the content.
+	 */
 	@Override
 	public NetworkContent get(IParameters parameters) {
-		FutureGet futureGet = getUnblocked(parameters);
-		FutureGetListener listener = new FutureGetListener(parameters);
+		Number640 key = getRangeKey(parameters);
+		FutureGetListener listener;
+		synchronized (inFlightGets) {
+			listener = inFlightGets.get(key);
+			if (listener != null) {
+				logger.debug("Joining get in flight. {}", parameters.toString());
+				coalescedRequests.incrementAndGet();
+			} else {
+				listener = new FutureGetListener(parameters, this);
+				inFlightGets.put(key, listener);
+				getUnblocked(parameters).addListener(listener);
+			}
+		}
+
+		NetworkContent content = listener.awaitAndGet();
+		synchronized (inFlightGets) {
+			// the shared get is done (if it has not been replaced meanwhile)
+			if (inFlightGets.get(key) == listener) {
+				inFlightGets.remove(key);
+			}
+		}
+		return content;
+	}
+
+	@Override
+	public Map<IParameters, NetworkContent> getAll(Collection<IParameters> parameters) {
+		// start all gets first, such that they run concurrently
+		Map<IParameters, FutureGetListener> listeners = new LinkedHashMap<IParameters, FutureGetListener>();
+		for (IParameters param : parameters) {
+			FutureGet futureGet = getUnblocked(param);
+			FutureGetListener listener = new FutureGetListener(param, this);
+			futureGet.addListener(listener);
+			listeners.put(param, listener);
+		}
+
+		// then wait for each of them
+		Map<IParameters, NetworkContent> results = new LinkedHashMap<IParameters, NetworkContent>(
+				listeners.size());
+		for (Entry<IParameters, FutureGetListener> entry : listeners.entrySet()) {
+			results.put(entry.getKey(), entry.getValue().awaitAndGet());
+		}
+		return results;
+	}
+
+	@Override
+	public NetworkContent getImmutable(IParameters parameters) {
+		Number640 key = new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(),
+				Number160.ZERO);
+		NetworkContent cached = contentCache.get(key);
+		if (cached != null) {
+			logger.debug("Got immutable content from the cache. {}", parameters.toString());
+			return cached;
+		}
+
+		NetworkContent content = get(parameters);
+		if (content != null) {
+			contentCache.put(key, content);
+		}
+		return content;
+	}
+
+	@Override
+	public NetworkContent getValidated(IParameters parameters) {
+		Number640 key = new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(),
+				Number160.ZERO);
+		NetworkContent cached = versionCache.get(key);
+
+		// a single request in any case: the storing peers only return the content if it is newer
+		NetworkContent content = cached == null ? get(parameters) : getIfModified(parameters, cached);
+		if (content == null) {
+			versionCache.remove(key);
+		} else if (content == cached) {
+			logger.debug("The cached version is the newest one. {}", parameters.toString());
+		} else {
+			versionCache.put(key, content);
+		}
+		return content;
+	}
+
+	@Override
+	public NetworkContent getDecoded(IParameters parameters, Number160 versionKey) {
+		return versionCache.getDecoded(parameters.getKey(), versionKey);
+	}
+
+	@Override
+	public void cacheDecoded(IParameters parameters, Number160 versionKey, NetworkContent decoded) {
+		versionCache.putDecoded(parameters.getKey(), versionKey, decoded);
+	}
+
+	@Override
+	public NetworkContent getIfModified(IParameters parameters, NetworkContent knownContent) {
+		if (knownContent == null || knownContent.getVersionKey().equals(Number160.ZERO)) {
+			// nothing known yet (or not versioned), do a regular get
+			return get(parameters);
+		}
+
+		FutureGet futureGet = getIfModifiedUnblocked(parameters, knownContent.getVersionKey());
+		FutureGetListener listener = new FutureGetListener(parameters, knownContent, this);
 		futureGet.addListener(listener);
 		return listener.awaitAndGet();
 	}
 
 	public NetworkContent getVersion(IParameters parameters) {
 		FutureGet futureGet = getUnblocked(parameters);
-		FutureGetListener listener = new FutureGetListener(parameters);
+		FutureGetListener listener = new FutureGetListener(parameters, this);
 		futureGet.addListener(listener);
 		return listener.awaitAndGet();
 	}
@@ -203,6 +398,20 @@ public class DataManager implements IDataManager {
 						Number160.MAX_VALUE)).descending().returnNr(1).start();
 	}
 
+	/**
+	 * Starts a conditional get. The range starts at the known version key and its upper bound is marked with
+	 * {@link H2HConstants#CONDITIONAL_GET_DOMAIN_KEY}, which lets the storing peers (see
+	 * {@link H2HStorageMemory}) reply with an empty entry if the known version is still the newest one.
+	 */
+	public FutureGet getIfModifiedUnblocked(IParameters parameters, Number160 knownVersionKey) {
+		logger.debug("Get if modified. Known version key = '{}'. {}", knownVersionKey, parameters.toString());
+		Number640 from = new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(),
+				knownVersionKey);
+		Number640 to = new Number640(parameters.getLKey(), H2HConstants.CONDITIONAL_GET_DOMAIN_KEY,
+				parameters.getCKey(), Number160.MAX_VALUE);
+		return getPeer().get(parameters.getLKey()).from(from).to(to).descending().returnNr(1).start();
+	}
+
 	public FutureGet getVersionUnblocked(IParameters parameters) {
 		logger.debug("Get version. {}", parameters.toString());
 		return getPeer().get(parameters.getLKey()).setDomainKey(parameters.getDKey())
@@ -238,6 +447,9 @@ public class DataManager implements IDataManager {
 
 	public FutureRemove removeUnblocked(IParameters parameters) {
 		logger.debug("Remove. {}", parameters.toString());
+		contentCache.removeAll(parameters.getLKey(), parameters.getDKey(), parameters.getCKey());
+		versionCache.remove(parameters.getKey());
+		forgetInFlight(parameters);
 		return getPeer()
 				.remove(parameters.getLKey())
 				.from(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(),
@@ -248,16 +460,40 @@ public class DataManager implements IDataManager {
 
 	public FutureRemove removeVersionUnblocked(IParameters parameters) {
 		logger.debug("Remove version. {}", parameters.toString());
+		contentCache.remove(parameters.getKey());
+		versionCache.remove(parameters.getKey());
+		forgetInFlight(parameters);
 		return getPeer().remove(parameters.getLKey()).setDomainKey(parameters.getDKey())
 				.contentKey(parameters.getCKey()).setVersionKey(parameters.getVersionKey())
 				.keyPair(parameters.getProtectionKeys()).start();
 	}
 
+	/**
+	 * Gets the digest of all versions. Concurrent identical digests (same location, domain and content key)
+	 * share one request in flight.
+	 */
 	public NavigableMap<Number640, Number160> getDigest(IParameters parameters) {
-		FutureDigest futureDigest = getDigestUnblocked(parameters);
+		Number640 key = getRangeKey(parameters);
+		FutureDigest futureDigest;
+		boolean joined;
+		synchronized (inFlightDigests) {
+			futureDigest = inFlightDigests.get(key);
+			joined = futureDigest != null;
+			if (joined) {
+				logger.debug("Joining digest in flight. {}", parameters.toString());
+				coalescedRequests.incrementAndGet();
+			} else {
+				futureDigest = getDigestUnblocked(parameters);
+				inFlightDigests.put(key, futureDigest);
+				futureDigest.addListener(new InFlightRemover<FutureDigest>(inFlightDigests, key));
+			}
+		}
+
 		FutureDigestListener listener = new FutureDigestListener(parameters);
 		futureDigest.addListener(listener);
-		return listener.awaitAndGet();
+		NavigableMap<Number640, Number160> digest = listener.awaitAndGet();
+		// every caller of a shared digest gets its own copy
+		return joined && digest != null ? new TreeMap<Number640, Number160>(digest) : digest;
 	}
 
 	public FutureDigest getDigestUnblocked(IParameters parameters) {
@@ -270,4 +506,48 @@ public class DataManager implements IDataManager {
 						Number160.MAX_VALUE)).start();
 
 	}
+
+	/**
+	 * Helper to get the key identifying a request over all versions of a content.
+	 */
+	private static Number640 getRangeKey(IParameters parameters) {
+		return new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(), Number160.ZERO);
+	}
+
+	/**
+	 * Helper to prevent that gets and digests, which were started before a modification, are joined by
+	 * subsequent requests.
+	 */
+	private void forgetInFlight(IParameters parameters) {
+		Number640 key = getRangeKey(parameters);
+		synchronized (inFlightGets) {
+			inFlightGets.remove(key);
+		}
+		synchronized (inFlightDigests) {
+			inFlightDigests.remove(key);
+		}
+	}
+
+	/**
+	 * Removes a completed request from the requests in flight (if it has not been replaced meanwhile).
+	 */
+	private static class InFlightRemover<K extends BaseFuture> extends BaseFutureAdapter<K> {
+
+		private final Map<Number640, K> inFlight;
+		private final Number640 key;
+
+		public InFlightRemover(Map<Number640, K> inFlight, Number640 key) {
+			this.inFlight = inFlight;
+			this.key = key;
+		}
+
+		@Override
+		public void operationComplete(K future) throws Exception {
+			synchronized (inFlight) {
+				if (inFlight.get(key) == future) {
+					inFlight.remove(key);
+				}
+			}
+		}
+	}
 }
@@ -1,6 +1,8 @@
 package org.hive2hive.core.network.data;
 
 import java.security.KeyPair;
+import java.util.Collection;
+import java.util.Map;
 
 import net.tomp2p.peers.Number160;
 
@@ -26,6 +28,15 @@ public interface IDataManager {
 	 */
 	boolean put(IParameters parameters);
 
+	/**
+	 * Put multiple contents to the DHT. All puts are started concurrently and awaited afterwards. Each put is
+	 * retried and verified the same way as {@link #put(IParameters)}.
+	 * 
+	 * @param parameters a collection of parameters, each containing data and keys for routing and signing
+	 * @return the success of the put for each of the given parameters
+	 */
+	Map<IParameters, Boolean> putAll(Collection<IParameters> parameters);
+
 	/**
 	 * Put some content to the DHT and change its protection key
 	 * 
@@ -55,6 +66,70 @@ public interface IDataManager {
 	 */
 	NetworkContent get(IParameters parameters);
 	
+	/**
+	 * Gets multiple contents from the DHT, each in its newest version. All gets are started concurrently and
+	 * awaited afterwards.
+	 * 
+	 * @param parameters a collection of parameters, each containing the keys for routing
+	 * @return the encrypted or unencrypted content for each of the given parameters. The value is
+	 *         <code>null</code> if no content was found.
+	 */
+	Map<IParameters, NetworkContent> getAll(Collection<IParameters> parameters);
+
+	/**
+	 * Gets some immutable content (e.g. a chunk) from the DHT. The content is served from a local cache if it
+	 * has been fetched before.
+	 * 
+	 * @param parameters containing the keys for routing
+	 * @return an encrypted or unencrypted content or null if no content was found
+	 */
+	NetworkContent getImmutable(IParameters parameters);
+
+	/**
+	 * Gets some versioned content (e.g. a meta file) from the DHT, which is the newest version. If a version
+	 * is cached locally, it is only fetched if there is a newer one (see
+	 * {@link #getIfModified(IParameters, NetworkContent)}), otherwise with a single get. The newest version is
+	 * cached.
+	 * 
+	 * @param parameters containing the keys for routing
+	 * @return an encrypted or unencrypted content or null if no content was found. A cached content is
+	 *         returned as it is and must not be modified.
+	 */
+	NetworkContent getValidated(IParameters parameters);
+
+	/**
+	 * Gets the decoded (e.g. decrypted) form of a version got with {@link #getValidated(IParameters)}, if it
+	 * has been cached with {@link #cacheDecoded(IParameters, Number160, NetworkContent)}.
+	 * 
+	 * @param parameters containing the keys for routing
+	 * @param versionKey the version of the content
+	 * @return the decoded content, which must not be modified, or null if it is not cached
+	 */
+	NetworkContent getDecoded(IParameters parameters, Number160 versionKey);
+
+	/**
+	 * Caches the decoded (e.g. decrypted) form of the newest version got with
+	 * {@link #getValidated(IParameters)}, such that the next caller does not have to decode it again.
+	 * 
+	 * @param parameters containing the keys for routing
+	 * @param versionKey the version of the content
+	 * @param decoded the decoded content, must not be modified afterwards
+	 */
+	void cacheDecoded(IParameters parameters, Number160 versionKey, NetworkContent decoded);
+
+	/**
+	 * Gets the newest version of some content from the DHT, unless it is still the known version. The check
+	 * happens on the storing peers, which saves the round trip of a preceding digest and the transfer of
+	 * unmodified content.
+	 * 
+	 * @param parameters containing the keys for routing
+	 * @param knownContent the newest content known by the caller (containing its version key), can be
+	 *            <code>null</code>
+	 * @return the same <code>knownContent</code> instance if it is not modified, the newest (encrypted or
+	 *         unencrypted) content if it is modified or null if no content was found
+	 */
+	NetworkContent getIfModified(IParameters parameters, NetworkContent knownContent);
+
 	/**
 	 * Gets a specific version of some content from the DHT.
 	 * 
@@ -3,7 +3,9 @@ package org.hive2hive.core.network.data;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -96,6 +98,46 @@ public class PublicKeyManager {
 		return evaluateResult(content, userId);
 	}
 
+	/**
+	 * Gets the public keys of multiple users. Keys which are not in the cache are fetched concurrently from
+	 * the network. In this case the call blocks until all of them are here.
+	 * 
+	 * @param userIds the unique ids of the users
+	 * @return the public keys of the users. Users whose public key can't be fetched are not contained.
+	 */
+	public Map<String, PublicKey> getPublicKeys(Collection<String> userIds) {
+		logger.debug("Requested to get the public keys of {} user(s).", userIds.size());
+		Map<String, PublicKey> keys = new HashMap<String, PublicKey>(userIds.size());
+		Map<IParameters, String> toFetch = new HashMap<IParameters, String>();
+		for (String userId : userIds) {
+			if (this.userId.equals(userId)) {
+				// get the own public key
+				keys.put(userId, usersKeyPair.getPublic());
+			} else if (publicKeyCache.containsKey(userId)) {
+				// check the cache
+				keys.put(userId, publicKeyCache.get(userId));
+			} else {
+				toFetch.put(
+						new Parameters().setLocationKey(userId).setContentKey(H2HConstants.USER_PUBLIC_KEY),
+						userId);
+			}
+		}
+
+		if (!toFetch.isEmpty()) {
+			Map<IParameters, NetworkContent> contents = dataManager.getAll(toFetch.keySet());
+			for (IParameters parameters : contents.keySet()) {
+				String requestingUserId = toFetch.get(parameters);
+				try {
+					keys.put(requestingUserId, evaluateResult(contents.get(parameters), requestingUserId));
+				} catch (GetFailedException e) {
+					logger.error("Could not get the public key of user '{}'.", requestingUserId);
+				}
+			}
+		}
+
+		return keys;
+	}
+
 	private PublicKey evaluateResult(NetworkContent content, String requestingUserId)
 			throws GetFailedException {
 		if (content == null) {
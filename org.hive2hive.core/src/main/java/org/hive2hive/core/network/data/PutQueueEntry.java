@@ -1,6 +1,7 @@
 package org.hive2hive.core.network.data;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.hive2hive.core.exceptions.PutFailedException;
@@ -10,6 +11,8 @@ class PutQueueEntry extends QueueEntry {
 	private final AtomicBoolean readyToPut = new AtomicBoolean(false);
 	private final AtomicBoolean abort = new AtomicBoolean(false);
 	private final CountDownLatch putWaiter = new CountDownLatch(1);
+	// released when the process is ready to put or aborted
+	private final CountDownLatch modificationWaiter = new CountDownLatch(1);
 
 	private PutFailedException putFailedException;
 
@@ -23,6 +26,7 @@ class PutQueueEntry extends QueueEntry {
 
 	public void readyToPut() {
 		readyToPut.set(true);
+		modificationWaiter.countDown();
 	}
 
 	public boolean isAborted() {
@@ -31,6 +35,22 @@ class PutQueueEntry extends QueueEntry {
 
 	public void abort() {
 		abort.set(true);
+		modificationWaiter.countDown();
+	}
+
+	/**
+	 * Waits until the process is ready to put or aborted.
+	 * 
+	 * @param timeoutMs the maximum time to wait
+	 * @return <code>true</code> if the process is ready to put or aborted, <code>false</code> if the time
+	 *         elapsed
+	 */
+	public boolean awaitModification(long timeoutMs) {
+		try {
+			return modificationWaiter.await(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			return modificationWaiter.getCount() == 0;
+		}
 	}
 
 	public void notifyPut() {
@@ -56,4 +76,8 @@ class PutQueueEntry extends QueueEntry {
 	public void setPutError(PutFailedException error) {
 		this.putFailedException = error;
 	}
+
+	public PutFailedException getPutError() {
+		return putFailedException;
+	}
 }
\ No newline at end of file
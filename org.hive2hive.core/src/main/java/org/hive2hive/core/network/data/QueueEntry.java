@@ -8,6 +8,7 @@ import org.hive2hive.core.model.UserProfile;
 class QueueEntry {
 
 	private final String pid;
+	private final long creationTime = System.nanoTime();
 
 	private final CountDownLatch getWaiter = new CountDownLatch(1);
 
@@ -22,6 +23,13 @@ class QueueEntry {
 		return pid;
 	}
 
+	/**
+	 * @return the time the entry has been queued (see {@link System#nanoTime()})
+	 */
+	public long getCreationTime() {
+		return creationTime;
+	}
+
 	public void notifyGet() {
 		getWaiter.countDown();
 	}
@@ -1,13 +1,9 @@
 package org.hive2hive.core.network.data;
 
 import java.io.IOException;
-import java.util.NavigableMap;
 
 import javax.crypto.SecretKey;
 
-import net.tomp2p.peers.Number160;
-import net.tomp2p.peers.Number640;
-
 import org.bouncycastle.crypto.DataLengthException;
 import org.bouncycastle.crypto.InvalidCipherTextException;
 import org.hive2hive.core.H2HConstants;
@@ -15,6 +11,7 @@ import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.PutFailedException;
 import org.hive2hive.core.model.NetworkContent;
 import org.hive2hive.core.model.UserProfile;
+import org.hive2hive.core.model.UserProfileSnapshot;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.hive2hive.core.network.data.parameters.Parameters;
 import org.hive2hive.core.security.EncryptedNetworkContent;
@@ -32,16 +29,31 @@ public class UserProfileHolder {
 
 	// needs to be done only once
 	private final SecretKey userProfileEncryptionKey;
+	// null if the profile is stored as a single document
+	private final UserProfileShards shards;
 
-	private UserProfile cachedUserProfile = null;
+	private volatile UserProfile cachedUserProfile = null;
+	// immutable view of the newest known profile version, readers can use it while the profile is modified
+	private volatile UserProfileSnapshot snapshot = null;
+	// when the snapshot has been confirmed to be the newest version (0 if outdated)
+	private volatile long snapshotValidatedAt = 0;
 
 	public UserProfileHolder(UserCredentials credentials, DataManager dataManager) {
+		this(credentials, dataManager, H2HConstants.USER_PROFILE_SHARDED);
+	}
+
+	/**
+	 * @param sharded whether the profile is stored in one document per top-level folder (see
+	 *            {@link UserProfileShards})
+	 */
+	public UserProfileHolder(UserCredentials credentials, DataManager dataManager, boolean sharded) {
 		this.credentials = credentials;
 		this.dataManager = dataManager;
 
 		// needs to be done only once
 		this.userProfileEncryptionKey = PasswordUtil.generateAESKeyFromPassword(credentials.getPassword(),
 				credentials.getPin(), H2HConstants.KEYLENGTH_USER_PROFILE);
+		this.shards = sharded ? new UserProfileShards(credentials, dataManager, userProfileEncryptionKey) : null;
 	}
 
 	/**
@@ -49,20 +61,21 @@ public class UserProfileHolder {
 	 */
 	public void get(QueueEntry entry) {
 		logger.debug("Get user profile. user id = '{}'", credentials.getUserId());
+		if (shards != null) {
+			getSharded(entry);
+			return;
+		}
 
 		IParameters parameters = new Parameters().setLocationKey(credentials.getProfileLocationKey()).setContentKey(
 				H2HConstants.USER_PROFILE);
 
-		// load the current digest list from network
-		NavigableMap<Number640, Number160> digest = dataManager.getDigest(parameters);
-		// compare the current user profile's version key with the cached one
-		if (cachedUserProfile != null && digest.firstEntry() != null
-				&& digest.firstEntry().getKey().getVersionKey().equals(cachedUserProfile.getVersionKey())) {
-			// no need for fetching user profile from network
+		// load the latest user profile from network, unless the cached one is still the newest version
+		NetworkContent content = dataManager.getIfModified(parameters, cachedUserProfile);
+		if (content != null && content == cachedUserProfile) {
+			// no need for decrypting the user profile again
+			snapshotValidatedAt = System.currentTimeMillis();
 			entry.setUserProfile(cachedUserProfile);
 		} else {
-			// load latest user profile from network
-			NetworkContent content = dataManager.get(parameters);
 			if (content == null) {
 				logger.warn("Did not find user profile. user id = '{}'", credentials.getUserId());
 				entry.setGetError(new GetFailedException("User profile not found. Got null."));
@@ -78,6 +91,7 @@ public class UserProfileHolder {
 
 					// cache user profile
 					cachedUserProfile = userProfile;
+					updateSnapshot(userProfile);
 					// provide loaded user profile
 					entry.setUserProfile(userProfile);
 				} catch (DataLengthException | IllegalStateException | InvalidCipherTextException e) {
@@ -93,11 +107,84 @@ public class UserProfileHolder {
 		}
 	}
 
+	/**
+	 * Loads the changed documents of the sharded profile.
+	 */
+	private void getSharded(QueueEntry entry) {
+		try {
+			UserProfile userProfile = shards.load(cachedUserProfile);
+			if (userProfile == cachedUserProfile) {
+				snapshotValidatedAt = System.currentTimeMillis();
+			} else {
+				cachedUserProfile = userProfile;
+				updateSnapshot(userProfile);
+			}
+			entry.setUserProfile(userProfile);
+		} catch (GetFailedException e) {
+			logger.error("Cannot get the sharded user profile. reason = '{}'", e.getMessage());
+			entry.setGetError(e);
+		}
+	}
+
+	/**
+	 * Drops the cached user profile, such that the next get decrypts the profile from the network again. Has
+	 * to be called when the cached profile has been modified but not put.
+	 */
+	public void invalidateCache() {
+		cachedUserProfile = null;
+	}
+
+	/**
+	 * Does not provide the snapshot to bounded-staleness reads anymore (see
+	 * {@link #getValidatedSnapshot(long)}) until the next get confirms it. Called when another client modified
+	 * the profile.
+	 */
+	public void markOutdated() {
+		snapshotValidatedAt = 0;
+	}
+
+	/**
+	 * Provides the snapshot of the newest known profile version, if it has been confirmed within the given
+	 * bound.
+	 * 
+	 * @param maxStalenessMs how long ago the snapshot may have been confirmed at most
+	 * @return the snapshot or <code>null</code> if it is not recent enough
+	 */
+	public UserProfileSnapshot getValidatedSnapshot(long maxStalenessMs) {
+		UserProfileSnapshot current = snapshot;
+		long validated = snapshotValidatedAt;
+		if (current == null || validated == 0 || System.currentTimeMillis() - validated > maxStalenessMs) {
+			return null;
+		}
+		return current;
+	}
+
+	/**
+	 * @return the snapshot of the newest known profile version (<code>null</code> before the first get)
+	 */
+	public UserProfileSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Replaces the snapshot after a new profile version has been loaded or put. Called by the queue worker
+	 * only, while no process modifies the profile.
+	 */
+	private void updateSnapshot(UserProfile profile) {
+		snapshot = UserProfileSnapshot.of(profile, snapshot);
+		snapshotValidatedAt = System.currentTimeMillis();
+	}
+
 	/**
 	 * Encrypts the modified user profile and puts it (blocking).
 	 */
 	public void put(PutQueueEntry entry) {
 		logger.debug("Put user profile. user id = '{}'", credentials.getUserId());
+		if (shards != null) {
+			putSharded(entry);
+			return;
+		}
+
 		try {
 			logger.trace("Encrypting user profile with 256bit AES key from password. user id ='{}'", credentials.getUserId());
 			EncryptedNetworkContent encryptedUserProfile = H2HEncryptionUtil.encryptAES(entry.getUserProfile(),
@@ -119,6 +206,7 @@ public class UserProfileHolder {
 				cachedUserProfile = entry.getUserProfile();
 				cachedUserProfile.setBasedOnKey(encryptedUserProfile.getBasedOnKey());
 				cachedUserProfile.setVersionKey(encryptedUserProfile.getVersionKey());
+				updateSnapshot(cachedUserProfile);
 			}
 		} catch (DataLengthException | IllegalStateException | InvalidCipherTextException | IOException e) {
 			logger.error("Cannot encrypt the user profile. reason = '{}'", e.getMessage());
@@ -129,4 +217,25 @@ public class UserProfileHolder {
 		}
 	}
 
+	/**
+	 * Puts the changed documents of the sharded profile.
+	 */
+	private void putSharded(PutQueueEntry entry) {
+		try {
+			shards.store(entry.getUserProfile());
+			cachedUserProfile = entry.getUserProfile();
+			updateSnapshot(cachedUserProfile);
+		} catch (PutFailedException e) {
+			entry.setPutError(e);
+		} finally {
+			entry.notifyPut();
+		}
+	}
+
+	/**
+	 * @return the sharded storage of the profile or <code>null</code> if it is stored as a single document
+	 */
+	UserProfileShards getShards() {
+		return shards;
+	}
 }
@@ -1,21 +1,35 @@
 package org.hive2hive.core.network.data;
 
+import java.io.IOException;
 import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.PutFailedException;
 import org.hive2hive.core.model.UserProfile;
+import org.hive2hive.core.model.UserProfileSnapshot;
+import org.hive2hive.core.security.EncryptionUtil;
 import org.hive2hive.core.security.UserCredentials;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Manages the user profile resource. Each process waiting for get / put is added to a queue and delivered in
- * order.
+ * order.<br>
+ * Modifications are committed in groups: while a process modifies the profile, further modifying processes
+ * can queue up. They get the already modified profile one after the other and all modifications are put
+ * at once. Since every process sees the modifications of its predecessors, the result is the same as
+ * putting after each modification. Before a process joins, the profile is copied. A process which does not
+ * finish its modification is rolled back to this copy, the modifications of the other processes of the group
+ * are kept. A failing put fails all processes of the group.
  * 
  * @author Nico, Seppi
  * 
@@ -24,6 +38,9 @@ public class UserProfileManager {
 
 	private final static Logger logger = LoggerFactory.getLogger(UserProfileManager.class);
 	private static final long MAX_MODIFICATION_TIME = 1000;
+	// time to wait for further modifying processes before putting a group
+	private static final long GROUP_COMMIT_WINDOW_MS = 10;
+	private static final int MAX_GROUP_SIZE = 100;
 
 	private final UserProfileHolder profileHolder;
 	private final UserCredentials credentials;
@@ -35,7 +52,17 @@ public class UserProfileManager {
 
 	private volatile PutQueueEntry modifying;
 
-	private final AtomicBoolean running;;
+	private final AtomicBoolean running;
+	private final AtomicLong commits = new AtomicLong();
+	private final AtomicLong committedModifications = new AtomicLong();
+	// number of queued processes which did not get the profile yet
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicInteger maxQueueDepth = new AtomicInteger();
+	// time the processes waited for the profile
+	private final AtomicLong deliveries = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong staleReads = new AtomicLong();
 	private KeyPair defaultProtectionKey = null;
 
 	public UserProfileManager(DataManager dataManager, UserCredentials credentials) {
@@ -80,6 +107,12 @@ public class UserProfileManager {
 			readOnlyQueue.add(entry);
 		}
 
+		int depth = queueDepth.incrementAndGet();
+		int max;
+		while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) {
+			// retry
+		}
+
 		synchronized (queueWaiter) {
 			queueWaiter.notify();
 		}
@@ -99,6 +132,35 @@ public class UserProfileManager {
 		return profile;
 	}
 
+	/**
+	 * Forces the next read to confirm the cached profile with the network, e.g. because another client of
+	 * the same user notified a modification.
+	 */
+	public void invalidateCache() {
+		profileHolder.markOutdated();
+	}
+
+	/**
+	 * Gets an immutable snapshot of the user profile, tolerating a bounded staleness. Any number of readers
+	 * can share the snapshot while the profile is being modified. If the snapshot has not been confirmed
+	 * within the given bound, the call blocks like {@link #getUserProfile(String, boolean)}.
+	 * 
+	 * @param pid the process identifier
+	 * @param maxStalenessMs how old (in milliseconds) the confirmation of the snapshot may be
+	 * @return the snapshot of the newest profile version
+	 * @throws GetFailedException if the profile cannot be fetched
+	 */
+	public UserProfileSnapshot getSnapshot(String pid, long maxStalenessMs) throws GetFailedException {
+		UserProfileSnapshot snapshot = profileHolder.getValidatedSnapshot(maxStalenessMs);
+		if (snapshot != null) {
+			staleReads.incrementAndGet();
+			logger.trace("Process {} reads the cached user profile snapshot.", pid);
+			return snapshot;
+		}
+		getUserProfile(pid, false);
+		return profileHolder.getSnapshot();
+	}
+
 	/**
 	 * A process notifies that he is ready to put the new profile. Note that the profile in the argument must
 	 * be a modification of the profile in the DHT.
@@ -110,10 +172,12 @@ public class UserProfileManager {
 	 *             himself as intending to put)
 	 */
 	public void readyToPut(UserProfile profile, String pid) throws PutFailedException {
-		if (modifying != null && modifying.equals(pid)) {
-			modifying.setUserProfile(profile);
-			modifying.readyToPut();
-			modifying.waitForPut();
+		// read once, the worker moves on to the next process of the group meanwhile
+		PutQueueEntry entry = modifying;
+		if (entry != null && entry.equals(pid)) {
+			entry.setUserProfile(profile);
+			entry.readyToPut();
+			entry.waitForPut();
 		} else {
 			throw new PutFailedException("Not allowed to put anymore");
 		}
@@ -124,11 +188,78 @@ public class UserProfileManager {
 	 */
 	private void stopModification(String pid) {
 		// test whether is the current modifying process
-		if (modifying != null && modifying.equals(pid)) {
-			modifying.abort();
+		PutQueueEntry entry = modifying;
+		if (entry != null && entry.equals(pid)) {
+			entry.abort();
 		}
 	}
 
+	/**
+	 * @return the number of user profile puts
+	 */
+	public long getCommitCount() {
+		return commits.get();
+	}
+
+	/**
+	 * @return the number of modifications which have been put (grouped modifications are counted each)
+	 */
+	public long getCommittedModificationCount() {
+		return committedModifications.get();
+	}
+
+	/**
+	 * @return the number of reads which have been served from the cached snapshot (see
+	 *         {@link #getSnapshot(String, long)})
+	 */
+	public long getStaleReadCount() {
+		return staleReads.get();
+	}
+
+	/**
+	 * @return the number of processes waiting for the profile
+	 */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * @return the maximum number of processes which have been waiting for the profile at the same time
+	 */
+	public int getMaxQueueDepth() {
+		return maxQueueDepth.get();
+	}
+
+	/**
+	 * @return the average time (in milliseconds) a process waited until it got the profile
+	 */
+	public double getAverageWaitTime() {
+		long count = deliveries.get();
+		return count == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()) / count / 1000;
+	}
+
+	/**
+	 * @return the maximum time (in milliseconds) a process waited until it got the profile
+	 */
+	public long getMaxWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+	}
+
+	/**
+	 * Hands the profile to a waiting process and records how long it waited.
+	 */
+	private void deliver(QueueEntry entry) {
+		long waited = System.nanoTime() - entry.getCreationTime();
+		queueDepth.decrementAndGet();
+		deliveries.incrementAndGet();
+		totalWaitNanos.addAndGet(waited);
+		long max;
+		while (waited > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, waited)) {
+			// retry
+		}
+		entry.notifyGet();
+	}
+
 	/**
 	 * Get the default content protection keys. If called first time the method is called first time the user
 	 * profile gets loaded from network and the default protection key temporally gets stored for further
@@ -154,7 +285,10 @@ public class UserProfileManager {
 				if (modifyQueue.isEmpty() && readOnlyQueue.isEmpty()) {
 					synchronized (queueWaiter) {
 						try {
-							queueWaiter.wait();
+							// check again, a process could have been queued meanwhile
+							if (running.get() && modifyQueue.isEmpty() && readOnlyQueue.isEmpty()) {
+								queueWaiter.wait();
+							}
 						} catch (InterruptedException e) {
 							// ignore
 						}
@@ -173,56 +307,190 @@ public class UserProfileManager {
 						QueueEntry readOnly = readOnlyQueue.poll();
 						readOnly.setUserProfile(entry.getUserProfile());
 						readOnly.setGetError(entry.getGetError());
-						readOnly.notifyGet();
+						deliver(readOnly);
 					}
 				} else {
 					// a process wants to modify
-					modifying = modifyQueue.poll();
-					logger.trace("Process {} is waiting to make profile modifications.", modifying.getPid());
-					profileHolder.get(modifying);
-					logger.trace("Notifying {} processes (inclusive process {}) to get newest profile.",
-							readOnlyQueue.size() + 1, modifying.getPid());
+					modifyGroup();
+				}
+			}
 
-					modifying.notifyGet();
-					// notify all read only processes
-					while (!readOnlyQueue.isEmpty()) {
-						// copy user profile and errors to other entries
-						QueueEntry readOnly = readOnlyQueue.poll();
-						readOnly.setUserProfile(modifying.getUserProfile());
-						readOnly.setGetError(modifying.getGetError());
-						readOnly.notifyGet();
-					}
+			logger.debug("Queue worker stopped. user id = '{}', max queue depth = '{}', average wait = '{}' ms.",
+					credentials.getUserId(), maxQueueDepth.get(), getAverageWaitTime());
+		}
 
-					int counter = 0;
-					long sleepTime = MAX_MODIFICATION_TIME / 10;
-					while (counter < 10 && !modifying.isReadyToPut() && !modifying.isAborted()) {
-						try {
-							Thread.sleep(sleepTime);
-						} catch (InterruptedException e) {
-							// ignore
-						} finally {
-							counter++;
-						}
+		/**
+		 * Gets the profile and lets the queued modifying processes modify it one after the other. Finally,
+		 * puts the modifications of all processes at once.
+		 */
+		private void modifyGroup() {
+			modifying = modifyQueue.poll();
+			logger.trace("Process {} is waiting to make profile modifications.", modifying.getPid());
+			profileHolder.get(modifying);
+			logger.trace("Notifying {} processes (inclusive process {}) to get newest profile.",
+					readOnlyQueue.size() + 1, modifying.getPid());
+
+			deliver(modifying);
+			// notify all read only processes
+			while (!readOnlyQueue.isEmpty()) {
+				// copy user profile and errors to other entries
+				QueueEntry readOnly = readOnlyQueue.poll();
+				readOnly.setUserProfile(modifying.getUserProfile());
+				readOnly.setGetError(modifying.getGetError());
+				deliver(readOnly);
+			}
+
+			if (!awaitModification(modifying)) {
+				// the cached profile could contain the unfinished modifications
+				profileHolder.invalidateCache();
+				return;
+			}
+
+			List<PutQueueEntry> group = new ArrayList<PutQueueEntry>();
+			group.add(modifying);
+			UserProfile profile = modifying.getUserProfile();
+			while (group.size() < MAX_GROUP_SIZE && awaitNextModifier()) {
+				// the profile with the modifications of the group so far
+				byte[] checkpoint = serialize(profile);
+				if (checkpoint == null) {
+					// the next process has to wait for the next group
+					break;
+				}
+
+				PutQueueEntry next = modifyQueue.poll();
+				modifying = next;
+				logger.trace("Process {} joins the modifications of {} process(es).", next.getPid(), group.size());
+				next.setUserProfile(profile);
+				deliver(next);
+
+				if (awaitModification(next)) {
+					group.add(next);
+					profile = next.getUserProfile();
+				} else {
+					profile = rollback(group, checkpoint, next);
+					if (profile == null) {
+						return;
 					}
+				}
+			}
+
+			commit(group, profile);
+		}
+
+		/**
+		 * Continues with the checkpoint taken before a process joined, after it did not finish its
+		 * modification. The checkpoint contains the modifications of all other processes of the group. Only if
+		 * the checkpoint cannot be restored, the whole group fails.
+		 * 
+		 * @return the profile to continue with or <code>null</code> if the whole group has been failed
+		 */
+		private UserProfile rollback(List<PutQueueEntry> group, byte[] checkpoint, PutQueueEntry failed) {
+			logger.debug("Rolling back the modifications of process {}.", failed.getPid());
+			UserProfile restored = deserialize(checkpoint);
+			if (restored == null) {
+				for (PutQueueEntry entry : group) {
+					entry.setPutError(new PutFailedException("Rolled back because process " + failed.getPid()
+							+ " did not finish its modification."));
+					entry.notifyPut();
+				}
+				group.clear();
+				// the cached profile contains the unfinished modifications
+				profileHolder.invalidateCache();
+			}
+			return restored;
+		}
+
+		/**
+		 * Waits until the process is ready to put or aborted. If the process takes too long, it gets aborted
+		 * and notified.
+		 * 
+		 * @return <code>true</code> if the process is ready to put
+		 */
+		private boolean awaitModification(PutQueueEntry entry) {
+			if (entry.getGetError() != null) {
+				// the process stops its modification
+				return false;
+			}
+
+			// woken up as soon as the process calls readyToPut or aborts
+			entry.awaitModification(MAX_MODIFICATION_TIME);
+			if (entry.isReadyToPut()) {
+				logger.trace("Process {} made modifcations.", entry.getPid());
+				return true;
+			} else if (!entry.isAborted()) {
+				// request is not ready to put and has not been aborted
+				logger.warn("Process {} never finished doing modifications. Abort the put request.",
+						entry.getPid());
+				entry.abort();
+				entry.setPutError(new PutFailedException("Too long modification. Only " + MAX_MODIFICATION_TIME
+						+ "ms are allowed."));
+				entry.notifyPut();
+			}
+			return false;
+		}
 
-					if (modifying.isReadyToPut()) {
-						// is ready to put
-						logger.trace("Process {} made modifcations and uploads them now.", modifying.getPid());
-						profileHolder.put(modifying);
-					} else if (!modifying.isAborted()) {
-						// request is not ready to put and has not been aborted
-						logger.warn("Process {} never finished doing modifications. Abort the put request.",
-								modifying.getPid());
-						modifying.abort();
-						modifying.setPutError(new PutFailedException("Too long modification. Only " + MAX_MODIFICATION_TIME
-								+ "ms are allowed."));
-						modifying.notifyPut();
+		/**
+		 * Waits a short time for a further modifying process, unless one is already queued.
+		 * 
+		 * @return <code>true</code> if a modifying process is queued
+		 */
+		private boolean awaitNextModifier() {
+			synchronized (queueWaiter) {
+				try {
+					if (modifyQueue.isEmpty()) {
+						queueWaiter.wait(GROUP_COMMIT_WINDOW_MS);
 					}
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+			return running.get() && !modifyQueue.isEmpty();
+		}
+
+		/**
+		 * Puts the modifications of the group and notifies each process.
+		 */
+		private void commit(List<PutQueueEntry> group, UserProfile profile) {
+			logger.trace("{} process(es) made modifications, uploading them now.", group.size());
+			commits.incrementAndGet();
+			if (group.size() == 1) {
+				// the profile could be the copy without the modifications of a rolled back process
+				group.get(0).setUserProfile(profile);
+				profileHolder.put(group.get(0));
+			} else {
+				PutQueueEntry combined = new PutQueueEntry(UUID.randomUUID().toString());
+				combined.setUserProfile(profile);
+				profileHolder.put(combined);
+				for (PutQueueEntry entry : group) {
+					entry.setPutError(combined.getPutError());
+					entry.notifyPut();
 				}
 			}
 
-			logger.debug("Queue worker stopped. user id = '{}'", credentials.getUserId());
+			if (group.get(0).getPutError() == null) {
+				committedModifications.addAndGet(group.size());
+			} else {
+				// the cached profile contains the modifications which have not been put
+				profileHolder.invalidateCache();
+			}
 		}
 
+		private byte[] serialize(UserProfile profile) {
+			try {
+				return EncryptionUtil.serializeObject(profile);
+			} catch (IOException e) {
+				logger.error("Cannot copy the user profile. Reason = '{}'.", e.getMessage());
+				return null;
+			}
+		}
+
+		private UserProfile deserialize(byte[] checkpoint) {
+			try {
+				return (UserProfile) EncryptionUtil.deserializeObject(checkpoint);
+			} catch (IOException | ClassNotFoundException e) {
+				logger.error("Cannot restore the user profile. Reason = '{}'.", e.getMessage());
+				return null;
+			}
+		}
 	}
 }
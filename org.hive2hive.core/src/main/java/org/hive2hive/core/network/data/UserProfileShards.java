@@ -0,0 +1,421 @@
+package org.hive2hive.core.network.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKey;
+
+import net.tomp2p.peers.Number160;
+
+import org.bouncycastle.crypto.DataLengthException;
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.exceptions.PutFailedException;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.NetworkContent;
+import org.hive2hive.core.model.UserProfile;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.security.EncryptedNetworkContent;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.hive2hive.core.security.UserCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the user profile in a sharded layout. The content of every top-level folder is a separately
+ * encrypted and versioned document (a shard) under the profile location key, the root document contains the
+ * rest of the profile with empty top-level folders. A put uploads the changed documents only, a get
+ * downloads and decrypts only the documents of which a newer version exists. Thus, concurrent modifications
+ * in different top-level folders do not conflict.<br>
+ * The root document has the format of an unsharded profile, processes which do not need the file tree (e.g.
+ * the login) can read it as usual. The content keys of the shards are appended to it, such that a shard
+ * which cannot be fetched is told apart from a folder which is not sharded yet. An unsharded profile is read
+ * as well (its top-level folders have no shards yet) and gets sharded with the next put.
+ * 
+ * @author Seppi
+ */
+class UserProfileShards {
+
+	private final static Logger logger = LoggerFactory.getLogger(UserProfileShards.class);
+
+	private final UserCredentials credentials;
+	private final DataManager dataManager;
+	private final SecretKey encryptionKey;
+
+	// the newest known version of every document, by content key
+	private final Map<String, Document> documents = new HashMap<String, Document>();
+
+	private final AtomicLong loadedDocuments = new AtomicLong();
+	private final AtomicLong storedDocuments = new AtomicLong();
+
+	public UserProfileShards(UserCredentials credentials, DataManager dataManager, SecretKey encryptionKey) {
+		this.credentials = credentials;
+		this.dataManager = dataManager;
+		this.encryptionKey = encryptionKey;
+	}
+
+	/**
+	 * Loads the documents which changed since the last load or store.
+	 * 
+	 * @param cached the profile of the last load or store, <code>null</code> to load all documents
+	 * @return the cached profile if no document changed, else a new profile instance. Unchanged folder
+	 *         contents are copied from the cached profile, which is not modified.
+	 * @throws GetFailedException if a document cannot be loaded
+	 */
+	public UserProfile load(UserProfile cached) throws GetFailedException {
+		if (cached == null) {
+			documents.clear();
+		}
+
+		EncryptedNetworkContent rootContent = fetch(H2HConstants.USER_PROFILE, true, true);
+		byte[] rootPlain = rootContent == null ? documents.get(H2HConstants.USER_PROFILE).plain
+				: decrypt(rootContent);
+		RootDocument root = deserializeRoot(rootPlain);
+		UserProfile profile = root.profile;
+
+		Map<String, FolderIndex> cachedFolders = cached == null ? new HashMap<String, FolderIndex>()
+				: getTopLevelFolders(cached);
+		Map<String, EncryptedNetworkContent> changedShards = new HashMap<String, EncryptedNetworkContent>();
+		for (Entry<String, FolderIndex> folder : getTopLevelFolders(profile).entrySet()) {
+			FolderIndex cachedFolder = cachedFolders.get(folder.getKey());
+			// the root document of an older version does not list its shards
+			boolean sharded = root.shardKeys == null ? documents.containsKey(folder.getKey()) : root.shardKeys
+					.contains(folder.getKey());
+			EncryptedNetworkContent shard = fetch(folder.getKey(), cachedFolder != null, sharded);
+			if (shard != null) {
+				changedShards.put(folder.getKey(), shard);
+			}
+		}
+		if (rootContent == null && changedShards.isEmpty()) {
+			logger.trace("No profile document changed. user id = '{}'", credentials.getUserId());
+			return cached;
+		}
+
+		for (Entry<String, FolderIndex> folder : getTopLevelFolders(profile).entrySet()) {
+			EncryptedNetworkContent shard = changedShards.get(folder.getKey());
+			if (shard != null) {
+				@SuppressWarnings("unchecked")
+				Set<Index> children = (Set<Index>) deserialize(decrypt(shard));
+				attach(folder.getValue(), children);
+				documents.put(folder.getKey(), new Document(shard.getVersionKey(), hash(serializeShard(folder
+						.getValue())), null));
+			} else if (cachedFolders.containsKey(folder.getKey()) && documents.containsKey(folder.getKey())) {
+				// other readers may still hold the cached profile, copy instead of moving the nodes
+				for (Index child : cachedFolders.get(folder.getKey()).getChildren()) {
+					child.copyTo(folder.getValue());
+				}
+			}
+			// else: not sharded yet, the root document contains the folder content
+		}
+		if (rootContent != null) {
+			documents.put(H2HConstants.USER_PROFILE, new Document(rootContent.getVersionKey(),
+					hash(serializeRoot(profile, getTopLevelFolders(profile).keySet())), rootPlain));
+		}
+
+		logger.debug("Loaded {} of {} profile documents. user id = '{}'", changedShards.size()
+				+ (rootContent == null ? 0 : 1), getTopLevelFolders(profile).size() + 1, credentials.getUserId());
+		return profile;
+	}
+
+	/**
+	 * Puts the documents which changed since the last load or store. The shards are put first, such that the
+	 * root document never references a missing shard. Shards of removed top-level folders are removed.
+	 * 
+	 * @throws PutFailedException if a document cannot be put
+	 */
+	public void store(UserProfile profile) throws PutFailedException {
+		try {
+			Map<IParameters, Document> changed = new LinkedHashMap<IParameters, Document>();
+			Map<String, FolderIndex> folders = getTopLevelFolders(profile);
+			for (Entry<String, FolderIndex> folder : folders.entrySet()) {
+				createPut(folder.getKey(), serializeShard(folder.getValue()), false, profile, changed);
+			}
+			putAll(changed);
+
+			// keep the plain root document to combine it with changed shards on the next load. All shards are
+			// stored now, thus the root document lists all of them.
+			changed.clear();
+			createPut(H2HConstants.USER_PROFILE, serializeRoot(profile, folders.keySet()), true, profile, changed);
+			putAll(changed);
+
+			// the shards of removed top-level folders are not referenced anymore
+			Iterator<String> iterator = documents.keySet().iterator();
+			while (iterator.hasNext()) {
+				String contentKey = iterator.next();
+				if (!contentKey.equals(H2HConstants.USER_PROFILE) && !folders.containsKey(contentKey)) {
+					iterator.remove();
+					IParameters parameters = new Parameters().setLocationKey(credentials.getProfileLocationKey())
+							.setContentKey(contentKey).setProtectionKeys(profile.getProtectionKeys());
+					if (!dataManager.remove(parameters)) {
+						logger.warn("Cannot remove an unreferenced profile shard. It expires. '{}'", parameters);
+					}
+				}
+			}
+		} catch (DataLengthException | IllegalStateException | InvalidCipherTextException | IOException e) {
+			logger.error("Cannot encrypt the user profile. reason = '{}'", e.getMessage());
+			throw new PutFailedException(String.format("Cannot encrypt the user profile. reason = '%s'",
+					e.getMessage()));
+		}
+	}
+
+	/**
+	 * @return the number of documents which have been downloaded and decrypted
+	 */
+	public long getLoadedDocumentCount() {
+		return loadedDocuments.get();
+	}
+
+	/**
+	 * @return the number of documents which have been encrypted and put
+	 */
+	public long getStoredDocumentCount() {
+		return storedDocuments.get();
+	}
+
+	/**
+	 * Prepares the put of a document if its content changed since the last load or store.
+	 * 
+	 * @param keepPlain whether the plain content is kept after the put
+	 */
+	private void createPut(String contentKey, byte[] plain, boolean keepPlain, UserProfile profile,
+			Map<IParameters, Document> puts) throws DataLengthException, IllegalStateException, InvalidCipherTextException, IOException {
+		byte[] hash = hash(plain);
+		Document known = documents.get(contentKey);
+		if (known != null && Arrays.equals(known.hash, hash)) {
+			return;
+		}
+
+		byte[] initVector = EncryptionUtil.generateIV();
+		EncryptedNetworkContent content = new EncryptedNetworkContent(EncryptionUtil.encryptAES(plain,
+				encryptionKey, initVector), initVector);
+		content.setTimeToLive(profile.getTimeToLive());
+		content.setBasedOnKey(known == null ? Number160.ZERO : known.versionKey);
+		content.generateVersionKey();
+
+		IParameters parameters = new Parameters().setLocationKey(credentials.getProfileLocationKey())
+				.setContentKey(contentKey).setVersionKey(content.getVersionKey()).setData(content)
+				.setProtectionKeys(profile.getProtectionKeys()).setTTL(profile.getTimeToLive());
+		puts.put(parameters, new Document(content.getVersionKey(), hash, keepPlain ? plain : null));
+	}
+
+	private void putAll(Map<IParameters, Document> puts) throws PutFailedException {
+		if (puts.isEmpty()) {
+			return;
+		}
+
+		List<IParameters> failed = new ArrayList<IParameters>();
+		for (Entry<IParameters, Boolean> result : dataManager.putAll(puts.keySet()).entrySet()) {
+			if (result.getValue()) {
+				storedDocuments.incrementAndGet();
+				documents.put(result.getKey().getContentKey(), puts.get(result.getKey()));
+			} else {
+				failed.add(result.getKey());
+			}
+		}
+		if (!failed.isEmpty()) {
+			throw new PutFailedException(String.format("Cannot put %s profile document(s).", failed.size()));
+		}
+	}
+
+	/**
+	 * Gets a document.
+	 * 
+	 * @param useKnown whether the known version can be kept
+	 * @param required whether the document has been stored. A get of a shard which does not exist yet fails
+	 *            as well, thus the caller has to tell.
+	 * @return the encrypted document or <code>null</code> if the known version is still the newest or if a
+	 *         document which is not required does not exist
+	 * @throws GetFailedException if a required document cannot be fetched
+	 */
+	private EncryptedNetworkContent fetch(String contentKey, boolean useKnown, boolean required)
+			throws GetFailedException {
+		Document known = useKnown ? documents.get(contentKey) : null;
+		IParameters parameters = new Parameters().setLocationKey(credentials.getProfileLocationKey())
+				.setContentKey(contentKey);
+		NetworkContent content = dataManager.getIfModified(parameters, known == null ? null : known.version);
+		if (content == null) {
+			if (contentKey.equals(H2HConstants.USER_PROFILE)) {
+				throw new GetFailedException("User profile not found. Got null.");
+			} else if (required) {
+				// an empty folder in the root document would overwrite the shard with the next put
+				throw new GetFailedException(String.format("Cannot get a profile shard. '%s'", parameters));
+			}
+			// the folder content is still part of the root document
+			logger.debug("Top-level folder is not sharded yet. '{}'", parameters);
+			return null;
+		} else if (known != null && content == known.version) {
+			return null;
+		}
+
+		loadedDocuments.incrementAndGet();
+		return (EncryptedNetworkContent) content;
+	}
+
+	private byte[] decrypt(EncryptedNetworkContent content) throws GetFailedException {
+		try {
+			return EncryptionUtil.decryptAES(content.getCipherContent(), encryptionKey, content.getInitVector());
+		} catch (DataLengthException | IllegalStateException | InvalidCipherTextException e) {
+			logger.error("Cannot decrypt the user profile. reason = '{}'", e.getMessage());
+			throw new GetFailedException(String.format("Cannot decrypt the user profile. reason = '%s'",
+					e.getMessage()));
+		}
+	}
+
+	private static Object deserialize(byte[] plain) throws GetFailedException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(plain))) {
+			return in.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			throw new GetFailedException(String.format("Cannot deserialize the user profile. reason = '%s'",
+					e.getMessage()));
+		}
+	}
+
+	/**
+	 * The root document is the profile without the content of the top-level folders, followed by the content
+	 * keys of the shards. Readers of an unsharded profile only read the profile.
+	 */
+	private static byte[] serializeRoot(UserProfile profile, Set<String> shardKeys) throws IOException {
+		Map<Object, Object> replacements = new IdentityHashMap<Object, Object>();
+		for (FolderIndex folder : getTopLevelFolders(profile).values()) {
+			replacements.put(folder.getChildren(), new HashSet<Index>());
+		}
+		return serialize(replacements, profile, new HashSet<String>(shardKeys));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static RootDocument deserializeRoot(byte[] plain) throws GetFailedException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(plain))) {
+			UserProfile profile = (UserProfile) in.readObject();
+			Set<String> shardKeys = null;
+			try {
+				shardKeys = (Set<String>) in.readObject();
+			} catch (EOFException e) {
+				// written by an older version, which did not list the shards
+			}
+			return new RootDocument(profile, shardKeys);
+		} catch (IOException | ClassNotFoundException e) {
+			throw new GetFailedException(String.format("Cannot deserialize the user profile. reason = '%s'",
+					e.getMessage()));
+		}
+	}
+
+	/**
+	 * A shard is the content of a top-level folder, without the reference to the folder itself.
+	 */
+	private static byte[] serializeShard(FolderIndex folder) throws IOException {
+		Map<Object, Object> replacements = new IdentityHashMap<Object, Object>();
+		replacements.put(folder, null);
+		return serialize(replacements, folder.getChildren());
+	}
+
+	private static byte[] serialize(final Map<Object, Object> replacements, Object... objects) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes) {
+			{
+				enableReplaceObject(true);
+			}
+
+			@Override
+			protected Object replaceObject(Object obj) {
+				return replacements.containsKey(obj) ? replacements.get(obj) : obj;
+			}
+		}) {
+			for (Object object : objects) {
+				out.writeObject(object);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Moves the deserialized content of a shard into its folder.
+	 */
+	private static void attach(FolderIndex folder, Set<Index> children) {
+		for (Index child : new ArrayList<Index>(children)) {
+			child.setParent(folder);
+			folder.addChild(child);
+		}
+	}
+
+	private static byte[] hash(byte[] plain) {
+		return EncryptionUtil.generateMD5Hash(plain);
+	}
+
+	/**
+	 * @return the top-level folders by the content key of their shard
+	 */
+	private static Map<String, FolderIndex> getTopLevelFolders(UserProfile profile) {
+		Map<String, FolderIndex> folders = new HashMap<String, FolderIndex>();
+		for (Index child : profile.getRoot().getChildren()) {
+			if (child.isFolder()) {
+				byte[] id = child.getFileKeys() == null ? child.getName().getBytes() : child.getFilePublicKey()
+						.getEncoded();
+				folders.put(H2HConstants.USER_PROFILE + "-" + EncryptionUtil.toHex(hash(id)), (FolderIndex) child);
+			}
+		}
+		return folders;
+	}
+
+	/**
+	 * The deserialized root document.
+	 */
+	private static class RootDocument {
+
+		private final UserProfile profile;
+		// the content keys of the stored shards, null if the root document does not list them
+		private final Set<String> shardKeys;
+
+		public RootDocument(UserProfile profile, Set<String> shardKeys) {
+			this.profile = profile;
+			this.shardKeys = shardKeys;
+		}
+	}
+
+	/**
+	 * The known version of a document.
+	 */
+	private static class Document {
+
+		private final Number160 versionKey;
+		// a placeholder for conditional gets (see DataManager#getIfModified)
+		private final NetworkContent version;
+		// hash of the plain content, to detect changes
+		private final byte[] hash;
+		// the plain content of the root document (null for shards)
+		private final byte[] plain;
+
+		public Document(Number160 versionKey, byte[] hash, byte[] plain) {
+			this.versionKey = versionKey;
+			this.hash = hash;
+			this.plain = plain;
+			this.version = new NetworkContent() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public int getTimeToLive() {
+					return 0;
+				}
+			};
+			this.version.setVersionKey(versionKey);
+		}
+	}
+}
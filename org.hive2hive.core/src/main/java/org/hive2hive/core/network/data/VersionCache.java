@@ -0,0 +1,134 @@
+package org.hive2hive.core.network.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+
+import org.hive2hive.core.model.NetworkContent;
+
+/**
+ * A local least-recently-used cache for the newest known version of versioned content (e.g. meta files). Per
+ * content, one version is kept: the content as it has been fetched from the DHT and, once a caller decoded it
+ * (e.g. decrypted), the decoded content. Unlike the {@link ContentCache}, the cached objects are returned as
+ * they are, without any copying or deserialization.</br>
+ * <b>Important:</b> Callers must not modify the returned objects, they have to copy them first (e.g. see
+ * {@link org.hive2hive.core.model.MetaFile#copy()}).
+ * 
+ * @author Seppi
+ */
+public class VersionCache {
+
+	private final LinkedHashMap<Number640, CachedVersion> entries;
+
+	/**
+	 * @param maxEntries the maximum number of cached contents
+	 */
+	public VersionCache(final int maxEntries) {
+		// access order for the LRU eviction
+		this.entries = new LinkedHashMap<Number640, CachedVersion>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Number640, CachedVersion> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @param key the key of the content (the version key is ignored)
+	 * @return the newest known version of the content or <code>null</code> if not cached
+	 */
+	public NetworkContent get(Number640 key) {
+		synchronized (entries) {
+			CachedVersion entry = entries.get(withoutVersion(key));
+			return entry == null ? null : entry.content;
+		}
+	}
+
+	/**
+	 * Caches a version of the content, replacing the previously cached version (and its decoded content).
+	 * 
+	 * @param key the key of the content (the version key is ignored)
+	 * @param content the content as fetched from the DHT, containing its version key
+	 */
+	public void put(Number640 key, NetworkContent content) {
+		synchronized (entries) {
+			Number640 contentKey = withoutVersion(key);
+			CachedVersion previous = entries.get(contentKey);
+			if (previous == null || !previous.content.getVersionKey().equals(content.getVersionKey())) {
+				entries.put(contentKey, new CachedVersion(content));
+			}
+		}
+	}
+
+	/**
+	 * @param key the key of the content (the version key is ignored)
+	 * @param versionKey the version of the content
+	 * @return the decoded content of this version or <code>null</code> if it is not cached
+	 */
+	public NetworkContent getDecoded(Number640 key, Number160 versionKey) {
+		synchronized (entries) {
+			CachedVersion entry = entries.get(withoutVersion(key));
+			if (entry == null || !entry.content.getVersionKey().equals(versionKey)) {
+				return null;
+			}
+			return entry.decoded;
+		}
+	}
+
+	/**
+	 * Caches the decoded content of a version. Nothing is cached if this version is not cached (anymore).
+	 * 
+	 * @param key the key of the content (the version key is ignored)
+	 * @param versionKey the version of the content
+	 * @param decoded the decoded content, must not be modified afterwards
+	 */
+	public void putDecoded(Number640 key, Number160 versionKey, NetworkContent decoded) {
+		synchronized (entries) {
+			CachedVersion entry = entries.get(withoutVersion(key));
+			if (entry != null && entry.content.getVersionKey().equals(versionKey)) {
+				entry.decoded = decoded;
+			}
+		}
+	}
+
+	/**
+	 * Removes the cached version of a content.
+	 * 
+	 * @param key the key of the content (the version key is ignored)
+	 */
+	public void remove(Number640 key) {
+		synchronized (entries) {
+			entries.remove(withoutVersion(key));
+		}
+	}
+
+	/**
+	 * @return the number of cached contents
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private static Number640 withoutVersion(Number640 key) {
+		if (key.getVersionKey().equals(Number160.ZERO)) {
+			return key;
+		}
+		return new Number640(key.getLocationKey(), key.getDomainKey(), key.getContentKey(), Number160.ZERO);
+	}
+
+	private static class CachedVersion {
+
+		private final NetworkContent content;
+		private NetworkContent decoded;
+
+		public CachedVersion(NetworkContent content) {
+			this.content = content;
+		}
+	}
+}
@@ -3,19 +3,24 @@ package org.hive2hive.core.network.data.download;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.file.FileChunkUtil;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.processes.framework.exceptions.ProcessExecutionException;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.hive2hive.core.security.H2HEncryptionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,15 +36,18 @@ public abstract class BaseDownloadTask implements Serializable {
 	private final File[] downloadedParts;
 	private transient CountDownLatch finishedLatch; // when the download has finished
 	private transient Set<IDownloadListener> listeners;
+	private transient DownloadJournal journal;
 	private final AtomicBoolean aborted;
 	private String reason;
+	private DownloadPriority priority;
 
 	public BaseDownloadTask(List<MetaChunk> metaChunks, File destination) {
 		this.metaChunks = metaChunks;
 		this.destination = destination;
 		this.finishedLatch = new CountDownLatch(1);
-		this.listeners = new HashSet<IDownloadListener>();
+		this.listeners = new CopyOnWriteArraySet<IDownloadListener>();
 		this.aborted = new AtomicBoolean(false);
+		this.priority = DownloadPriority.NORMAL;
 
 		// init array as null
 		this.downloadedParts = new File[metaChunks.size()];
@@ -47,14 +55,47 @@ public abstract class BaseDownloadTask implements Serializable {
 			downloadedParts[i] = null;
 		}
 
-		// create the download folder
-		String folderName = destination.getName() + "-" + UUID.randomUUID().toString();
-		tempFolder = new File(FileUtils.getTempDirectory(), folderName);
-		if (!tempFolder.mkdirs()) {
+		// create the download folder, a download of the same chunks to the same destination gets the same
+		// folder such that the parts of an interrupted download can be reused
+		String folderName = destination.getName() + "-" + getDownloadId(metaChunks, destination);
+		File downloadDirectory = H2HConstants.DOWNLOAD_DIRECTORY;
+		if (!downloadDirectory.exists() && !downloadDirectory.mkdirs()) {
+			logger.warn("Cannot create the download directory {}", downloadDirectory.getAbsolutePath());
+		}
+		// other users must not be able to read the parts or to prepare them for a resume
+		restrictToOwner(downloadDirectory);
+		tempFolder = new File(downloadDirectory, folderName);
+		if (tempFolder.exists()) {
+			restoreFromJournal();
+		} else if (!tempFolder.mkdirs()) {
 			logger.warn("Cannot create temporary download folder {}", tempFolder.getAbsolutePath());
 		}
 	}
 
+	private static void restrictToOwner(File folder) {
+		try {
+			Files.setPosixFilePermissions(folder.toPath(), PosixFilePermissions.fromString("rwx------"));
+		} catch (UnsupportedOperationException e) {
+			// no POSIX file system, set the permissions which are supported there
+			folder.setReadable(false, false);
+			folder.setWritable(false, false);
+			folder.setExecutable(false, false);
+			folder.setReadable(true, true);
+			folder.setWritable(true, true);
+			folder.setExecutable(true, true);
+		} catch (IOException e) {
+			logger.warn("Cannot restrict the access to the download directory {}", folder.getAbsolutePath());
+		}
+	}
+
+	private static String getDownloadId(List<MetaChunk> metaChunks, File destination) {
+		StringBuilder key = new StringBuilder(destination.getAbsolutePath());
+		for (MetaChunk metaChunk : metaChunks) {
+			key.append(File.pathSeparatorChar).append(metaChunk.getChunkId());
+		}
+		return EncryptionUtil.toHex(EncryptionUtil.generateMD5Hash(key.toString().getBytes()));
+	}
+
 	/**
 	 * Returns a list of chunks that are not downloaded yed
 	 * 
@@ -82,10 +123,88 @@ public abstract class BaseDownloadTask implements Serializable {
 
 	public abstract boolean isDirectDownload();
 
+	/**
+	 * @return the priority of the download, chunks of downloads with a higher priority are downloaded first
+	 */
+	public DownloadPriority getPriority() {
+		// tasks persisted by an older version have none
+		return priority == null ? DownloadPriority.NORMAL : priority;
+	}
+
+	/**
+	 * Set the priority, must be done before submitting the task to the {@link DownloadManager}
+	 * 
+	 * @param priority
+	 */
+	public void setPriority(DownloadPriority priority) {
+		this.priority = priority;
+	}
+
 	public File getTempDirectory() {
 		return tempFolder;
 	}
 
+	/**
+	 * @return the temporary file the given chunk is downloaded to
+	 */
+	public File getPartFile(int chunkIndex) {
+		return new File(tempFolder, getDestinationName() + "-" + chunkIndex);
+	}
+
+	private synchronized DownloadJournal getJournal() {
+		if (journal == null) {
+			journal = new DownloadJournal(tempFolder);
+		}
+		return journal;
+	}
+
+	/**
+	 * Marks the chunks as downloaded whose part files are recorded in the journal and pass
+	 * {@link #verifyPart(MetaChunk, File, byte[])}. All other chunks are downloaded (again). Used when
+	 * resuming an interrupted download.
+	 * 
+	 * @return the number of chunks which do not need to be downloaded again
+	 */
+	public synchronized int restoreFromJournal() {
+		Map<Integer, byte[]> recorded = getJournal().read();
+		int restored = 0;
+		Arrays.fill(downloadedParts, null);
+		for (MetaChunk metaChunk : metaChunks) {
+			int i = metaChunk.getIndex();
+			File partFile = getPartFile(i);
+			try {
+				if (recorded.containsKey(i) && partFile.exists()
+						&& verifyPart(metaChunk, partFile, recorded.get(i))) {
+					downloadedParts[i] = partFile;
+					restored++;
+				}
+			} catch (IOException e) {
+				logger.warn("Cannot verify part {} of file {}, downloading it again", i, getDestinationName());
+			}
+		}
+
+		if (restored > 0) {
+			logger.debug("Resuming download of file {}, {} of {} chunks are already downloaded",
+					getDestinationName(), restored, downloadedParts.length);
+		}
+		return restored;
+	}
+
+	/**
+	 * Verifies the part file of a chunk before it is reused for a resumed download. By default, the part
+	 * has to match the hash of the chunk in the meta file, the journal only tells that it has been written
+	 * completely.
+	 * 
+	 * @param metaChunk the chunk the part belongs to
+	 * @param partFile the part file on disk
+	 * @param recordedHash the hash of the part which has been recorded in the journal
+	 * @return whether the part can be reused
+	 * @throws IOException if the part cannot be read
+	 */
+	protected boolean verifyPart(MetaChunk metaChunk, File partFile, byte[] recordedHash) throws IOException {
+		return H2HEncryptionUtil.compareMD5(partFile, metaChunk.getChunkHash());
+	}
+
 	public void abortDownload(String reason) {
 		logger.error("Download of file {} aborted. Reason: {}", getDestinationName(), reason);
 
@@ -120,10 +239,29 @@ public abstract class BaseDownloadTask implements Serializable {
 	 * @param chunk
 	 * @param filePart
 	 */
-	public synchronized void setDownloaded(int chunkIndex, File filePart) {
+	public void setDownloaded(int chunkIndex, File filePart) {
 		logger.debug("Successfully downloaded chunk {} of file {}", chunkIndex, getDestinationName());
-		downloadedParts[chunkIndex] = filePart;
 
+		try {
+			// record the part before it counts, such that it can be reused after a crash. Hashing and writing
+			// the record does not block the other chunks of this task.
+			getJournal().record(chunkIndex, EncryptionUtil.generateMD5Hash(filePart));
+		} catch (IOException e) {
+			logger.warn("Cannot record chunk {} of file {} in the download journal", chunkIndex,
+					getDestinationName());
+		}
+
+		synchronized (this) {
+			downloadedParts[chunkIndex] = filePart;
+			finishIfComplete();
+		}
+	}
+
+	/**
+	 * Reassembles the file if all chunks are downloaded. This is needed when a resumed download has all parts
+	 * already and thus no chunk is downloaded anymore.
+	 */
+	synchronized void finishIfComplete() {
 		if (isAborted()) {
 			// no need for further processing
 			return;
@@ -143,6 +281,10 @@ public abstract class BaseDownloadTask implements Serializable {
 				FileChunkUtil.reassembly(fileParts, destination, true);
 				logger.debug("File {} has successfully been reassembled", getDestinationName());
 
+				// the parts are gone, nothing to resume anymore
+				getJournal().delete();
+				FileUtils.deleteQuietly(tempFolder);
+
 				// notify listeners
 				for (IDownloadListener listener : listeners) {
 					listener.downloadFinished(this);
@@ -160,11 +302,13 @@ public abstract class BaseDownloadTask implements Serializable {
 	 * Re-initialize transient variables after the serialization
 	 */
 	public void reinitializeAfterDeserialization() {
-		this.listeners = new HashSet<IDownloadListener>();
-		if (!isAborted() && !isDone()) {
-			finishedLatch = new CountDownLatch(1);
-		} else {
+		this.listeners = new CopyOnWriteArraySet<IDownloadListener>();
+		if (isAborted()) {
 			finishedLatch = new CountDownLatch(0);
+		} else {
+			// a finished task is not persisted, thus it needs to be reassembled even if all parts exist
+			restoreFromJournal();
+			finishedLatch = new CountDownLatch(1);
 		}
 	}
 
@@ -172,6 +316,55 @@ public abstract class BaseDownloadTask implements Serializable {
 		listeners.add(listener);
 	}
 
+	/**
+	 * Lets another task for the same chunks and destination complete together with this task, such that the
+	 * parts are not downloaded twice. The other task fails if this task fails. If this task is already
+	 * done, the other task completes immediately.
+	 * 
+	 * @param follower the task which is not started itself
+	 */
+	synchronized void attach(final BaseDownloadTask follower) {
+		final AtomicBoolean completed = new AtomicBoolean(false);
+		IDownloadListener listener = new IDownloadListener() {
+			@Override
+			public void downloadFinished(BaseDownloadTask task) {
+				if (completed.compareAndSet(false, true)) {
+					follower.finishWith(task);
+				}
+			}
+
+			@Override
+			public void downloadFailed(BaseDownloadTask task, String reason) {
+				if (completed.compareAndSet(false, true)) {
+					follower.abortDownload(reason);
+				}
+			}
+		};
+		listeners.add(listener);
+
+		// finishing holds the lock of this task, but aborting does not
+		if (isAborted()) {
+			listener.downloadFailed(this, reason);
+		} else if (finishedLatch.getCount() == 0) {
+			listener.downloadFinished(this);
+		}
+	}
+
+	/**
+	 * Completes this task with the file which has been reassembled by the given task
+	 */
+	private synchronized void finishWith(BaseDownloadTask leader) {
+		if (isAborted() || finishedLatch.getCount() == 0) {
+			return;
+		}
+
+		System.arraycopy(leader.downloadedParts, 0, downloadedParts, 0, downloadedParts.length);
+		for (IDownloadListener listener : listeners) {
+			listener.downloadFinished(this);
+		}
+		finishedLatch.countDown();
+	}
+
 	/**
 	 * Join the download process
 	 * 
@@ -0,0 +1,112 @@
+package org.hive2hive.core.network.data.download;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.IOUtils;
+import org.hive2hive.core.H2HConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of the chunks of a download which are completely written to their part files. Each
+ * record holds the chunk index and the MD5 hash of the part file and is forced to the disk before the chunk
+ * counts as downloaded. Thus, after a crash, the journal tells which part files can be reused. A torn record
+ * at the end of the journal is ignored.
+ * 
+ * @author Seppi
+ */
+class DownloadJournal {
+
+	private static final Logger logger = LoggerFactory.getLogger(DownloadJournal.class);
+
+	private final File file;
+
+	public DownloadJournal(File directory) {
+		this.file = new File(directory, H2HConstants.DOWNLOAD_JOURNAL_NAME);
+	}
+
+	/**
+	 * Appends a record and forces it to the disk.
+	 * 
+	 * @param chunkIndex the index of the downloaded chunk
+	 * @param md5 the hash of the part file
+	 * @throws IOException if the record could not be written
+	 */
+	public synchronized void record(int chunkIndex, byte[] md5) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + 2 + md5.length + 8);
+		DataOutputStream record = new DataOutputStream(bytes);
+		record.writeInt(chunkIndex);
+		record.writeShort(md5.length);
+		record.write(md5);
+		record.writeLong(checksum(chunkIndex, md5));
+
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write(bytes.toByteArray());
+			// not through the channel, which would be closed when the download thread gets interrupted
+			out.getFD().sync();
+		}
+	}
+
+	/**
+	 * Reads all complete records. If a chunk has been recorded multiple times, the newest record counts.
+	 * 
+	 * @return the hash of the part file per chunk index, empty if there is no journal
+	 */
+	public synchronized Map<Integer, byte[]> read() {
+		Map<Integer, byte[]> records = new HashMap<Integer, byte[]>();
+		if (!file.exists()) {
+			return records;
+		}
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			while (true) {
+				int chunkIndex = in.readInt();
+				byte[] md5 = new byte[in.readUnsignedShort()];
+				in.readFully(md5);
+				if (in.readLong() != checksum(chunkIndex, md5)) {
+					logger.warn("Download journal {} is corrupt, ignoring the records from the corrupt one on.",
+							file.getAbsolutePath());
+					break;
+				}
+				records.put(chunkIndex, md5);
+			}
+		} catch (EOFException e) {
+			// end of the journal or a torn record
+		} catch (IOException e) {
+			logger.warn("Cannot read the download journal {} completely.", file.getAbsolutePath(), e);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		return records;
+	}
+
+	/**
+	 * Deletes the journal, e.g. when the download is done
+	 */
+	public synchronized void delete() {
+		if (file.exists() && !file.delete()) {
+			logger.warn("Cannot delete the download journal {}.", file.getAbsolutePath());
+		}
+	}
+
+	private static long checksum(int chunkIndex, byte[] md5) {
+		CRC32 crc = new CRC32();
+		// all four bytes of the index, update(int) would only take the lowest one
+		crc.update(ByteBuffer.allocate(4).putInt(chunkIndex).array());
+		crc.update(md5);
+		return crc.getValue();
+	}
+}
@@ -1,17 +1,21 @@
 package org.hive2hive.core.network.data.download;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.network.data.IDataManager;
 import org.hive2hive.core.network.data.PublicKeyManager;
+import org.hive2hive.core.network.data.download.DownloadScheduler.ScheduledChunk;
 import org.hive2hive.core.network.messages.IMessageManager;
 import org.hive2hive.core.processes.implementations.files.download.dht.DownloadChunkRunnableDHT;
 import org.hive2hive.core.processes.implementations.files.download.dht.DownloadTaskDHT;
@@ -25,7 +29,15 @@ import org.slf4j.LoggerFactory;
  * A download manager handling downloads. Downloading chunks happens concurrently. It is possible to download
  * multiple files at a time. The number of concurrent downloads is configurable over the
  * {@link H2HConstants#CONCURRENT_DOWNLOADS} field. <br>
- * Downloaded chunks are stored in a temporary folder and assembled when all chunks are downloaded.
+ * The chunks are not downloaded in submission order, the {@link DownloadScheduler} serves downloads with a
+ * higher {@link DownloadPriority} first and alternates between downloads of the same priority. While other
+ * files wait, a single file occupies at most {@link H2HConstants#CONCURRENT_DOWNLOADS_PER_FILE} download
+ * slots. <br>
+ * Downloaded chunks are stored in a temporary folder (in {@link H2HConstants#DOWNLOAD_DIRECTORY}, which only
+ * the current user can access) and assembled when all chunks are downloaded. Every downloaded chunk is
+ * recorded in a journal in that folder, such that an interrupted download (e.g. by a crash) only downloads
+ * the missing chunks when it is resumed. Resumed parts are verified against the chunk hash of the meta file
+ * where it covers the plain content.
  * 
  * @author Nico
  * 
@@ -39,8 +51,9 @@ public class DownloadManager {
 	private final PublicKeyManager keyManager;
 	private final IFileConfiguration fileConfig;
 	private final Set<BaseDownloadTask> openTasks;
+	private final DownloadScheduler scheduler;
 
-	private ExecutorService executor;
+	private volatile ExecutorService executor;
 
 	public DownloadManager(IDataManager dataManager, IMessageManager messageManager, PublicKeyManager keyManager,
 			IFileConfiguration fileConfig) {
@@ -50,16 +63,30 @@ public class DownloadManager {
 		this.fileConfig = fileConfig;
 		this.executor = Executors.newFixedThreadPool(H2HConstants.CONCURRENT_DOWNLOADS);
 		this.openTasks = Collections.newSetFromMap(new ConcurrentHashMap<BaseDownloadTask, Boolean>());
+		this.scheduler = new DownloadScheduler(H2HConstants.CONCURRENT_DOWNLOADS,
+				H2HConstants.CONCURRENT_DOWNLOADS_PER_FILE);
 	}
 
 	/**
 	 * Add a new task to download a file. The download is automatically started in the background
 	 */
 	public void submit(BaseDownloadTask task) {
-		logger.debug("Submitted to download {}", task.getDestinationName());
+		logger.debug("Submitted to download {} with priority {}", task.getDestinationName(), task.getPriority());
+
+		synchronized (openTasks) {
+			// a task for the same chunks and destination would write to the same part files and journal,
+			// thus it waits for the running task instead
+			BaseDownloadTask running = getOpenTask(task.getTempDirectory());
+			if (running != null) {
+				logger.debug("File {} is already being downloaded, the second download waits for it.",
+						task.getDestinationName());
+				running.attach(task);
+				return;
+			}
 
-		// store the task for possible later recovery
-		openTasks.add(task);
+			// store the task for possible later recovery
+			openTasks.add(task);
+		}
 
 		// add a listener
 		task.addListener(new DownloadListener());
@@ -75,18 +102,42 @@ public class DownloadManager {
 			// Hint: Run it in a separate thread (not in the thread pool) because the executor does not
 			// guarantee the in-order processing.
 			new Thread(new GetLocationsList(directTask, dataManager)).start();
+		}
 
-			// then download all chunks in separate threads
-			for (MetaChunk chunk : task.getOpenChunks()) {
-				DownloadChunkRunnableDirect runnable = new DownloadChunkRunnableDirect(directTask, chunk, messageManager,
-						keyManager, fileConfig);
-				executor.submit(runnable);
+		List<MetaChunk> openChunks = task.getOpenChunks();
+		if (openChunks.isEmpty()) {
+			// all parts have been downloaded before the download got interrupted
+			task.finishIfComplete();
+			return;
+		}
+
+		// download each chunk in a separate thread as soon as the scheduler assigns it a slot
+		List<Runnable> chunks = new ArrayList<Runnable>();
+		for (MetaChunk chunk : openChunks) {
+			if (task.isDirectDownload()) {
+				chunks.add(new DownloadChunkRunnableDirect((DownloadTaskDirect) task, chunk, messageManager, keyManager,
+						fileConfig));
+			} else {
+				chunks.add(new DownloadChunkRunnableDHT((DownloadTaskDHT) task, chunk, dataManager));
 			}
-		} else {
-			// submit each chunk as a separate thread
-			for (MetaChunk chunk : task.getOpenChunks()) {
-				DownloadChunkRunnableDHT runnable = new DownloadChunkRunnableDHT((DownloadTaskDHT) task, chunk, dataManager);
-				executor.submit(runnable);
+		}
+		scheduler.add(task, chunks);
+		dispatch();
+	}
+
+	/**
+	 * Hands the chunks to the executor as long as the scheduler has free download slots
+	 */
+	private void dispatch() {
+		ScheduledChunk chunk;
+		while ((chunk = scheduler.next()) != null) {
+			try {
+				executor.submit(new ChunkRunner(chunk));
+			} catch (RejectedExecutionException e) {
+				// the downloads have been stopped meanwhile, they are rescheduled when continuing
+				logger.debug("Could not start downloading a chunk of {}", chunk.getTask().getDestinationName());
+				scheduler.finished(chunk);
+				return;
 			}
 		}
 	}
@@ -95,6 +146,7 @@ public class DownloadManager {
 	 * Stop the downloads
 	 */
 	public void stopBackgroundProcesses() {
+		scheduler.clear();
 		executor.shutdownNow();
 		while (!executor.isTerminated()) {
 			logger.debug("Waiting for executor to shutdown...");
@@ -102,7 +154,9 @@ public class DownloadManager {
 	}
 
 	/**
-	 * Continue with the downloads
+	 * Continue with the downloads. Only the chunks which have not been downloaded completely are downloaded
+	 * again. The tasks are still in memory, thus they know their downloaded chunks without reading the
+	 * journal.
 	 */
 	public void continueBackgroundProcess() {
 		executor = Executors.newFixedThreadPool(H2HConstants.CONCURRENT_DOWNLOADS);
@@ -130,6 +184,40 @@ public class DownloadManager {
 		return false;
 	}
 
+	/**
+	 * @return the open task downloading into the given temporary directory or <code>null</code>
+	 */
+	private BaseDownloadTask getOpenTask(File tempDirectory) {
+		for (BaseDownloadTask openTask : openTasks) {
+			if (openTask.getTempDirectory().equals(tempDirectory))
+				return openTask;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Downloads a scheduled chunk and frees its download slot afterwards
+	 */
+	private class ChunkRunner implements Runnable {
+
+		private final ScheduledChunk chunk;
+
+		public ChunkRunner(ScheduledChunk chunk) {
+			this.chunk = chunk;
+		}
+
+		@Override
+		public void run() {
+			try {
+				chunk.run();
+			} finally {
+				scheduler.finished(chunk);
+				dispatch();
+			}
+		}
+	}
+
 	/**
 	 * Listens for a download to finish and removes it from the open list
 	 */
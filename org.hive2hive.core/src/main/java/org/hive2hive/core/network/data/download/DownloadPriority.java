@@ -0,0 +1,22 @@
+package org.hive2hive.core.network.data.download;
+
+/**
+ * The priority of a download. Chunks of downloads with a higher priority are always scheduled first, downloads
+ * with the same priority share the download slots in round-robin (see {@link DownloadScheduler}).
+ * 
+ * @author Seppi
+ */
+public enum DownloadPriority {
+	/**
+	 * Downloads the user explicitly asked for (e.g. restoring a version)
+	 */
+	HIGH,
+	/**
+	 * Downloads of files other clients or users have changed
+	 */
+	NORMAL,
+	/**
+	 * Background downloads, e.g. the synchronization after the login or the content of a newly shared folder
+	 */
+	LOW
+}
@@ -0,0 +1,189 @@
+package org.hive2hive.core.network.data.download;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Decides which chunk is downloaded next. Instead of queueing all chunks of all files in submission order,
+ * the pending chunks are kept per download task:
+ * <ul>
+ * <li>Tasks with a higher {@link DownloadPriority} are served first, tasks with a lower priority only get
+ * the slots no task with a higher priority can use</li>
+ * <li>Tasks with the same priority are served in round-robin, one chunk at a time. Thus, a small file
+ * submitted after a large one does not wait until all chunks of the large file are downloaded.</li>
+ * <li>A task having a configurable number of chunks downloading is skipped as long as other tasks wait
+ * for a slot. Only slots which would be idle otherwise are given to such a task, thus a single large file
+ * still uses all slots.</li>
+ * <li>Not more than a configurable number of chunks are downloading overall</li>
+ * </ul>
+ * The scheduler does not run anything itself, see {@link DownloadManager}.
+ * 
+ * @author Seppi
+ */
+class DownloadScheduler {
+
+	private final int maxConcurrentChunks;
+	private final int maxChunksPerTask;
+
+	// per priority, the tasks having pending chunks in round-robin order
+	private final List<Deque<TaskQueue>> queues;
+	private int running;
+	// incremented when clearing, chunks scheduled before are not counted anymore when they finish
+	private int generation;
+
+	public DownloadScheduler(int maxConcurrentChunks, int maxChunksPerTask) {
+		this.maxConcurrentChunks = maxConcurrentChunks;
+		this.maxChunksPerTask = maxChunksPerTask;
+		this.queues = new ArrayList<Deque<TaskQueue>>();
+		for (int i = 0; i < DownloadPriority.values().length; i++) {
+			queues.add(new ArrayDeque<TaskQueue>());
+		}
+	}
+
+	/**
+	 * Adds the chunks of a task. The task is served after the other tasks of the same priority.
+	 * 
+	 * @param task the task the chunks belong to
+	 * @param chunks the runnables downloading the chunks
+	 */
+	public synchronized void add(BaseDownloadTask task, List<? extends Runnable> chunks) {
+		if (chunks.isEmpty()) {
+			return;
+		}
+
+		TaskQueue queue = new TaskQueue(task, chunks);
+		queues.get(task.getPriority().ordinal()).addLast(queue);
+	}
+
+	/**
+	 * Takes the next chunk to download. It must be reported with {@link #finished(ScheduledChunk)} when done.
+	 * 
+	 * @return the next chunk or <code>null</code> if all download slots are occupied or there are no pending
+	 *         chunks
+	 */
+	public synchronized ScheduledChunk next() {
+		if (running >= maxConcurrentChunks) {
+			return null;
+		}
+
+		for (Deque<TaskQueue> tasks : queues) {
+			// first serve the tasks below the cap, then give the idle slots to the others
+			ScheduledChunk next = next(tasks, true);
+			if (next == null) {
+				next = next(tasks, false);
+			}
+			if (next != null) {
+				return next;
+			}
+		}
+		return null;
+	}
+
+	private ScheduledChunk next(Deque<TaskQueue> tasks, boolean belowCapOnly) {
+		// visit every task of this priority at most once
+		int remaining = tasks.size();
+		while (remaining-- > 0) {
+			TaskQueue queue = tasks.pollFirst();
+			if (queue.task.isAborted()) {
+				// drop the pending chunks
+				continue;
+			} else if (belowCapOnly && queue.running >= maxChunksPerTask) {
+				tasks.addLast(queue);
+				continue;
+			}
+
+			Runnable chunk = queue.pending.pollFirst();
+			queue.running++;
+			running++;
+			if (!queue.pending.isEmpty()) {
+				// the next chunk of this task comes after the other tasks
+				tasks.addLast(queue);
+			}
+			return new ScheduledChunk(queue, chunk, generation);
+		}
+		return null;
+	}
+
+	/**
+	 * Frees the download slot of a chunk.
+	 */
+	public synchronized void finished(ScheduledChunk chunk) {
+		if (chunk.generation == generation) {
+			chunk.queue.running--;
+			running--;
+		}
+	}
+
+	/**
+	 * Removes all pending chunks and forgets the running ones.
+	 */
+	public synchronized void clear() {
+		for (Deque<TaskQueue> tasks : queues) {
+			tasks.clear();
+		}
+		running = 0;
+		generation++;
+	}
+
+	/**
+	 * @return the number of chunks which are downloading
+	 */
+	public synchronized int getRunning() {
+		return running;
+	}
+
+	/**
+	 * @return the number of chunks waiting for a download slot
+	 */
+	public synchronized int getPending() {
+		int pending = 0;
+		for (Deque<TaskQueue> tasks : queues) {
+			for (TaskQueue queue : tasks) {
+				pending += queue.pending.size();
+			}
+		}
+		return pending;
+	}
+
+	/**
+	 * The pending chunks of a task and how many of them are downloading.
+	 */
+	private static class TaskQueue {
+
+		private final BaseDownloadTask task;
+		private final Deque<Runnable> pending;
+		private int running;
+
+		public TaskQueue(BaseDownloadTask task, List<? extends Runnable> chunks) {
+			this.task = task;
+			this.pending = new ArrayDeque<Runnable>(chunks);
+		}
+	}
+
+	/**
+	 * A chunk which got a download slot.
+	 */
+	public static class ScheduledChunk implements Runnable {
+
+		private final TaskQueue queue;
+		private final Runnable chunk;
+		private final int generation;
+
+		private ScheduledChunk(TaskQueue queue, Runnable chunk, int generation) {
+			this.queue = queue;
+			this.chunk = chunk;
+			this.generation = generation;
+		}
+
+		public BaseDownloadTask getTask() {
+			return queue.task;
+		}
+
+		@Override
+		public void run() {
+			chunk.run();
+		}
+	}
+}
@@ -1,18 +1,31 @@
 package org.hive2hive.core.network.data.futures;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
 import net.tomp2p.futures.BaseFutureListener;
 import net.tomp2p.futures.FutureGet;
+import net.tomp2p.peers.Number640;
+import net.tomp2p.storage.Data;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.model.NetworkContent;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.futures.RetryScheduler.Operation;
 import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.security.EncryptionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A future listener for a get. It can be blocked until the result is here. Then, it returns the desired
- * content or <code>null</code> if the get fails or the content doesn't exist.
+ * content or <code>null</code> if the get fails or the content doesn't exist. If the future failed (e.g. because
+ * of a network problem), the get is retried with a delay (see {@link RetryScheduler}) till a certain
+ * threshold (see {@link H2HConstants#GET_RETRIES}).</br>
+ * For a conditional get (see {@link DataManager#getIfModified(IParameters, NetworkContent)}) the known
+ * content is returned if the newest version in the DHT is still the known one.</br>
+ * Several threads may wait for the same listener. Each of them decodes its own instance of the content.
  * 
  * @author Seppi, Nico
  */
@@ -21,18 +34,49 @@ public class FutureGetListener implements BaseFutureListener<FutureGet> {
 	private final static Logger logger = LoggerFactory.getLogger(FutureGetListener.class);
 
 	private final IParameters parameters;
+	private final DataManager dataManager;
+	private final NetworkContent knownContent;
 	private final CountDownLatch latch;
+	private final long startTime;
 
-	// the result when it came back
+	// used to count get retries
+	private int getTries = 0;
+	// the result when it came back (not modified or nothing found)
 	private NetworkContent result = null;
+	// the received data, decoded by each waiting thread
+	private Data resultData = null;
 
+	/**
+	 * Creates a listener which does not retry a failed get.
+	 */
 	public FutureGetListener(IParameters parameters) {
+		this(parameters, null);
+	}
+
+	/**
+	 * Creates a listener which retries a failed get using the given data manager.
+	 */
+	public FutureGetListener(IParameters parameters, DataManager dataManager) {
+		this(parameters, null, dataManager);
+	}
+
+	/**
+	 * Creates a listener for a conditional get which retries a failed get using the given data manager.
+	 * 
+	 * @param knownContent the content which is returned if it is still the newest version, can be
+	 *            <code>null</code> for a regular get
+	 */
+	public FutureGetListener(IParameters parameters, NetworkContent knownContent, DataManager dataManager) {
 		this.parameters = parameters;
+		this.knownContent = knownContent;
+		this.dataManager = dataManager;
 		this.latch = new CountDownLatch(1);
+		this.startTime = System.currentTimeMillis();
 	}
 
 	/**
-	 * Waits (blocking) until the operation is done
+	 * Waits (blocking) until the operation is done. Every call decodes its own instance of the received
+	 * content, such that it can be modified without affecting other waiting threads.
 	 * 
 	 * @return returns the content from the DHT
 	 */
@@ -43,23 +87,80 @@ public class FutureGetListener implements BaseFutureListener<FutureGet> {
 			logger.error("Latch to wait for the get was interrupted.");
 			return null;
 		}
-		return result;
+		if (resultData == null) {
+			return result;
+		}
+		try {
+			return (NetworkContent) EncryptionUtil.deserializeObject(resultData.toBytes());
+		} catch (IOException | ClassNotFoundException e) {
+			logger.error("Cannot decode the received content. Reason = '{}'. '{}'", e.getMessage(),
+					parameters.toString());
+			return null;
+		}
 	}
 
 	@Override
 	public void operationComplete(FutureGet future) throws Exception {
+		if (future != null && future.isFailed() && retryGet()) {
+			// wait for the retry
+			return;
+		}
+
 		if (future == null || future.isFailed() || future.getData() == null) {
 			result = null;
 			logger.warn("Got null. '{}'", parameters.toString());
+		} else if (knownContent != null && isNotModified(future.getDataMap())) {
+			result = knownContent;
+			logger.debug("Got not modified. '{}'", parameters.toString());
 		} else {
-			// set the result
-			result = (NetworkContent) future.getData().object();
-			logger.debug("Got result = '{}'. '{}'", result.getClass().getSimpleName(), parameters.toString());
+			// keep the data, it is decoded by each waiting thread
+			resultData = future.getData();
+			logger.debug("Got result. '{}'", parameters.toString());
 		}
 		// release the lock
 		latch.countDown();
 	}
 
+	/**
+	 * Checks whether the reply of a conditional get only contains the known version.
+	 */
+	private boolean isNotModified(Map<Number640, Data> dataMap) {
+		if (dataMap == null || dataMap.isEmpty()) {
+			return false;
+		}
+		for (Number640 key : dataMap.keySet()) {
+			if (!key.getVersionKey().equals(knownContent.getVersionKey())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Schedules a retry of the get till a certain threshold is reached (see
+	 * {@link H2HConstants#GET_RETRIES}).
+	 * 
+	 * @return <code>true</code> if a retry has been scheduled, otherwise <code>false</code>
+	 */
+	private boolean retryGet() {
+		if (dataManager == null || getTries++ >= H2HConstants.GET_RETRIES) {
+			return false;
+		}
+
+		return dataManager.getRetryScheduler().schedule(Operation.GET, getTries, startTime, new Runnable() {
+			@Override
+			public void run() {
+				logger.warn("Get retry #{}. '{}'", getTries, parameters.toString());
+				if (knownContent == null) {
+					dataManager.getUnblocked(parameters).addListener(FutureGetListener.this);
+				} else {
+					dataManager.getIfModifiedUnblocked(parameters, knownContent.getVersionKey()).addListener(
+							FutureGetListener.this);
+				}
+			}
+		});
+	}
+
 	@Override
 	public void exceptionCaught(Throwable t) throws Exception {
 		logger.error(String.format("Exception caught during get. %s reason = '{}'", parameters.toString()),
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import net.tomp2p.futures.BaseFutureAdapter;
 import net.tomp2p.futures.FutureDigest;
@@ -19,7 +20,9 @@ import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.model.NetworkContent;
 import org.hive2hive.core.network.H2HStorageMemory.PutStatusH2H;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.futures.RetryScheduler.Operation;
 import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.PutVerificationMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,11 +32,16 @@ import org.slf4j.LoggerFactory;
  * 
  * <b>Failure Handling</b></br>
  * Putting can fail when the future object failed, when the future object contains wrong data or the
- * responding node detected a failure. See {@link PutStatusH2H} for possible failures. If putting fails the
- * adapter retries it to a certain threshold (see {@link H2HConstants.PUT_RETRIES}). After a successful put
- * the adapter verifies with a digest if no concurrent modification happened. All puts are asynchronous.
- * That's why the future listener attaches himself to the new future objects so that the adapter can finally
- * notify his/her listener about a success or failure.
+ * responding node detected a failure. See {@link PutStatusH2H} for possible failures. A majority of all
+ * contacted nodes has to store the content, nodes which reject the put because their storage quota is
+ * exceeded count as failed. If the full nodes alone prevent a majority, the put fails without a retry,
+ * since a retry contacts the same nodes. Otherwise, if putting fails the adapter retries it with a delay
+ * (see {@link RetryScheduler}) to a certain threshold (see {@link H2HConstants.PUT_RETRIES}) or until the
+ * deadline of the put is exceeded. After a successful put the adapter verifies with a digest if no
+ * concurrent modification happened. The verification can be reduced or skipped through the
+ * {@link PutVerificationMode} of the parameters. All puts are asynchronous. That's why the future listener
+ * attaches himself to the new future objects so that the adapter can finally notify his/her listener about
+ * a success or failure.
  * 
  * @author Seppi, Nico
  */
@@ -41,9 +49,25 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 
 	private final static Logger logger = LoggerFactory.getLogger(FuturePutListener.class);
 
+	/**
+	 * The paths a put can take after the majority of the contacted nodes responded with an ok, respectively
+	 * when a put gets retried.
+	 */
+	public enum VerificationPath {
+		DIGEST_VERIFIED,
+		SKIPPED_NOT_VERSIONED,
+		TRUSTED_MAJORITY,
+		RETRY_WITH_REMOVE,
+		RETRY_WITHOUT_REMOVE
+	}
+
+	// counts how often each path is taken (over all puts)
+	private final static AtomicLongArray pathCounter = new AtomicLongArray(VerificationPath.values().length);
+
 	private final IParameters parameters;
 	private final DataManager dataManager;
 	private final CountDownLatch latch;
+	private final long startTime;
 
 	// used to count put retries
 	private int putTries = 0;
@@ -53,6 +77,7 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 		this.parameters = parameters;
 		this.dataManager = dataManager;
 		this.latch = new CountDownLatch(1);
+		this.startTime = System.currentTimeMillis();
 	}
 
 	/**
@@ -87,6 +112,7 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 		// analyze returned put status
 		final List<PeerAddress> versionConflict = new ArrayList<PeerAddress>();
 		List<PeerAddress> fail = new ArrayList<PeerAddress>();
+		List<PeerAddress> full = new ArrayList<PeerAddress>();
 		for (PeerAddress peeradress : future.getRawResult().keySet()) {
 			Map<Number640, Byte> map = future.getRawResult().get(peeradress);
 			if (map == null) {
@@ -105,6 +131,10 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 									PutStatusH2H.values()[status], parameters.toString());
 							fail.add(peeradress);
 							break;
+						case FAILED_QUOTA_EXCEEDED:
+							logger.warn("A node has no space left. '{}'", parameters.toString());
+							full.add(peeradress);
+							break;
 						case VERSION_CONFLICT:
 						case VERSION_CONFLICT_NO_BASED_ON:
 						case VERSION_CONFLICT_NO_VERSION_KEY:
@@ -121,39 +151,98 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 		if (!versionConflict.isEmpty()) {
 			logger.warn("Put verification failed. Version conflict! '{}'", parameters.toString());
 			notifyFailure();
-		} else if ((double) fail.size() < ((double) future.getRawResult().size()) / 2.0) {
+		} else if ((double) (fail.size() + full.size()) < (double) future.getRawResult().size() / 2.0) {
 			// majority of the contacted nodes responded with ok
-			verifyPut();
+			if (isVerificationRequired()) {
+				count(VerificationPath.DIGEST_VERIFIED);
+				verifyPut();
+			} else {
+				logger.trace("Put verification skipped. Mode = '{}'. '{}'", parameters.getPutVerificationMode(),
+						parameters.toString());
+				notifySuccess();
+			}
+		} else if ((double) full.size() >= (double) future.getRawResult().size() / 2.0) {
+			// the same nodes are responsible for the key again, they will not have more space soon
+			logger.error("Put failed. {} of {} contacted nodes are full. '{}'", full.size(), future
+					.getRawResult().size(), parameters.toString());
+			notifyFailure();
 		} else {
-			logger.warn("{} of {} contacted nodes failed.", fail.size(), future.getRawResult().size());
+			logger.warn("{} of {} contacted nodes failed, {} are full.", fail.size(), future.getRawResult()
+					.size(), full.size());
 			retryPut();
 		}
 	}
 
+	/**
+	 * Checks whether the put has to be verified with a digest, depending on the {@link PutVerificationMode}
+	 * of the parameters. Counts the path taken if no verification is required.
+	 * 
+	 * @return <code>true</code> if a digest has to be fetched, otherwise <code>false</code>
+	 */
+	private boolean isVerificationRequired() {
+		switch (parameters.getPutVerificationMode()) {
+			case TRUST_MAJORITY:
+				count(VerificationPath.TRUSTED_MAJORITY);
+				return false;
+			case VERSIONED_ONLY:
+				if (parameters.getVersionKey().equals(Number160.ZERO)) {
+					count(VerificationPath.SKIPPED_NOT_VERSIONED);
+					return false;
+				}
+				return true;
+			case FULL:
+			default:
+				return true;
+		}
+	}
+
 	/**
 	 * Retries a put till a certain threshold is reached (see {@link H2HConstants.PUT_RETRIES}). Removes first
-	 * the possibly succeeded puts. A {@link RetryPutListener} tries to put again the given content.
+	 * the possibly succeeded puts, except the content is immutable (see
+	 * {@link PutVerificationMode#TRUST_MAJORITY}). A {@link RetryPutListener} tries to put again the given
+	 * content.
 	 */
 	private void retryPut() {
 		if (putTries++ < H2HConstants.PUT_RETRIES) {
-			logger.warn("Put retry #{}. '{}'", putTries, parameters.toString());
-			// remove succeeded puts
-			FutureRemove futureRemove = dataManager.removeVersionUnblocked(parameters);
-			futureRemove.addListener(new BaseFutureAdapter<FutureRemove>() {
-				@Override
-				public void operationComplete(FutureRemove future) {
-					if (future.isFailed())
-						logger.warn("Put retry: Could not delete the newly put content. '{}'",
-								parameters.toString());
-
-					dataManager.putUnblocked(parameters).addListener(FuturePutListener.this);
-				}
-			});
-		} else {
-			logger.error("Put verification failed. Could not put data after {} tries. '{}'", putTries,
-					parameters.toString());
-			notifyFailure();
+			boolean scheduled = dataManager.getRetryScheduler().schedule(Operation.PUT, putTries, startTime,
+					new Runnable() {
+						@Override
+						public void run() {
+							executeRetry();
+						}
+					});
+			if (scheduled) {
+				return;
+			}
+		}
+
+		logger.error("Put verification failed. Could not put data after {} tries. '{}'", putTries,
+				parameters.toString());
+		notifyFailure();
+	}
+
+	private void executeRetry() {
+		logger.warn("Put retry #{}. '{}'", putTries, parameters.toString());
+		if (parameters.getPutVerificationMode() == PutVerificationMode.TRUST_MAJORITY) {
+			// immutable content gets simply overwritten with the same content
+			count(VerificationPath.RETRY_WITHOUT_REMOVE);
+			dataManager.putUnblocked(parameters).addListener(this);
+			return;
 		}
+
+		count(VerificationPath.RETRY_WITH_REMOVE);
+		// remove succeeded puts
+		FutureRemove futureRemove = dataManager.removeVersionUnblocked(parameters);
+		futureRemove.addListener(new BaseFutureAdapter<FutureRemove>() {
+			@Override
+			public void operationComplete(FutureRemove future) {
+				if (future.isFailed())
+					logger.warn("Put retry: Could not delete the newly put content. '{}'",
+							parameters.toString());
+
+				dataManager.putUnblocked(parameters).addListener(FuturePutListener.this);
+			}
+		});
 	}
 
 	/**
@@ -286,6 +375,21 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 		return entryBasingOnSameParent;
 	}
 
+	private static void count(VerificationPath path) {
+		pathCounter.incrementAndGet(path.ordinal());
+	}
+
+	/**
+	 * Returns how often the given path has been taken by all put listeners since the start of the
+	 * application.
+	 * 
+	 * @param path the verification or retry path
+	 * @return the number of times the path has been taken
+	 */
+	public static long getPathCount(VerificationPath path) {
+		return pathCounter.get(path.ordinal());
+	}
+
 	private void notifySuccess() {
 		logger.trace("Verification for put completed. '{}'", parameters.toString());
 		// everything is ok
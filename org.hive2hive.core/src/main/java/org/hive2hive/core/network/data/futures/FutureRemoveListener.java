@@ -8,14 +8,16 @@ import net.tomp2p.futures.FutureRemove;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.futures.RetryScheduler.Operation;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A future listener for a remove. After the operation completed the listener verifies with a get digest if
- * all data has been deleted. If not, the listener retries the remove (see {@link H2HConstants#REMOVE_RETRIES}
- * ).
+ * all data has been deleted. If not, the listener retries the remove with a delay (see {@link RetryScheduler})
+ * till a certain threshold (see {@link H2HConstants#REMOVE_RETRIES}) or until the deadline of the remove is
+ * exceeded.
  * 
  * @author Seppi, Nico
  */
@@ -30,6 +32,7 @@ public class FutureRemoveListener extends BaseFutureAdapter<FutureRemove> {
 	private final boolean versionRemove;
 	private final DataManager dataManager;
 	private final CountDownLatch latch;
+	private final long startTime;
 	private boolean success = false;
 
 	public FutureRemoveListener(IParameters parameters, boolean versionRemove, DataManager dataManager) {
@@ -37,6 +40,7 @@ public class FutureRemoveListener extends BaseFutureAdapter<FutureRemove> {
 		this.versionRemove = versionRemove;
 		this.dataManager = dataManager;
 		this.latch = new CountDownLatch(1);
+		this.startTime = System.currentTimeMillis();
 	}
 
 	/**
@@ -82,16 +86,26 @@ public class FutureRemoveListener extends BaseFutureAdapter<FutureRemove> {
 		if (removeTries++ < H2HConstants.REMOVE_RETRIES) {
 			logger.warn("Remove verification failed. Data is not null. Try #{}. '{}'",
 					removeTries, parameters.toString());
-			if (!versionRemove) {
-				dataManager.removeUnblocked(parameters).addListener(this);
-			} else {
-				dataManager.removeVersionUnblocked(parameters).addListener(this);
+			boolean scheduled = dataManager.getRetryScheduler().schedule(Operation.REMOVE, removeTries,
+					startTime, new Runnable() {
+						@Override
+						public void run() {
+							if (!versionRemove) {
+								dataManager.removeUnblocked(parameters).addListener(FutureRemoveListener.this);
+							} else {
+								dataManager.removeVersionUnblocked(parameters).addListener(
+										FutureRemoveListener.this);
+							}
+						}
+					});
+			if (scheduled) {
+				return;
 			}
-		} else {
-			logger.error("Remove verification failed. Data is not null after {} tries. '{}'",
-					removeTries - 1, parameters.toString());
-			success = false;
-			latch.countDown();
 		}
+
+		logger.error("Remove verification failed. Data is not null after {} tries. '{}'",
+				removeTries - 1, parameters.toString());
+		success = false;
+		latch.countDown();
 	}
 }
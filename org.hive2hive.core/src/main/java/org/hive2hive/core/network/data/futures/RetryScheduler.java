@@ -0,0 +1,138 @@
+package org.hive2hive.core.network.data.futures;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.hive2hive.core.H2HConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the retries of the DHT future listeners. Instead of retrying immediately, a retry is delayed
+ * with an exponential backoff (see {@link H2HConstants#RETRY_BASE_DELAY_MS} and
+ * {@link H2HConstants#RETRY_MAX_DELAY_MS}) and a random jitter, such that retries of concurrent operations
+ * do not hit the same replicas at the same time. A retry is refused if it would exceed the deadline of the
+ * operation (see {@link H2HConstants#RETRY_DEADLINE_MS}).</br></br>
+ * 
+ * The number of retries, the sum of all delays and the number of exceeded deadlines are counted per
+ * {@link Operation}. All schedulers of a process share a single daemon thread, thus a node does not need to
+ * shut its scheduler down when it disconnects.
+ * 
+ * @author Seppi
+ */
+public class RetryScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(RetryScheduler.class);
+
+	public enum Operation {
+		PUT,
+		GET,
+		REMOVE
+	}
+
+	// one thread for all nodes, the retries only wait on it and run their operation asynchronously
+	private static final ScheduledExecutorService executor = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable);
+					thread.setName("DHT retry scheduler");
+					// do not block the shutdown of the application
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final Random random;
+	private final long baseDelay;
+	private final long maxDelay;
+	private final long deadline;
+
+	private final AtomicLongArray retryCounter = new AtomicLongArray(Operation.values().length);
+	private final AtomicLongArray delayCounter = new AtomicLongArray(Operation.values().length);
+	private final AtomicLongArray deadlineCounter = new AtomicLongArray(Operation.values().length);
+
+	public RetryScheduler() {
+		this(H2HConstants.RETRY_BASE_DELAY_MS, H2HConstants.RETRY_MAX_DELAY_MS, H2HConstants.RETRY_DEADLINE_MS);
+	}
+
+	/**
+	 * @param baseDelay the delay in milliseconds before the first retry
+	 * @param maxDelay the upper bound in milliseconds of a single delay
+	 * @param deadline the maximum time in milliseconds an operation (inclusive all retries) may take
+	 */
+	public RetryScheduler(long baseDelay, long maxDelay, long deadline) {
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.deadline = deadline;
+		this.random = new Random();
+	}
+
+	/**
+	 * Schedules a retry of an operation.
+	 * 
+	 * @param operation the type of the operation
+	 * @param attempt the number of the retry (starting with 1)
+	 * @param startTime the time in milliseconds when the operation has been started the first time
+	 * @param retry the task re-issuing the operation
+	 * @return <code>true</code> if the retry has been scheduled, <code>false</code> if the deadline of the
+	 *         operation would be exceeded
+	 */
+	public boolean schedule(Operation operation, int attempt, long startTime, Runnable retry) {
+		long delay = getDelay(attempt);
+		if (System.currentTimeMillis() + delay - startTime > deadline) {
+			logger.warn("Retry #{} of {} refused. Deadline of {} ms would be exceeded.", attempt, operation,
+					deadline);
+			deadlineCounter.incrementAndGet(operation.ordinal());
+			return false;
+		}
+
+		logger.trace("Scheduling retry #{} of {} in {} ms.", attempt, operation, delay);
+		retryCounter.incrementAndGet(operation.ordinal());
+		delayCounter.addAndGet(operation.ordinal(), delay);
+		executor.schedule(retry, delay, TimeUnit.MILLISECONDS);
+		return true;
+	}
+
+	/**
+	 * Calculates the delay of a retry. The delay doubles with each attempt (capped by the maximum delay) and
+	 * randomly lies between the half and the full value of it.
+	 * 
+	 * @param attempt the number of the retry (starting with 1)
+	 * @return the delay in milliseconds
+	 */
+	protected long getDelay(int attempt) {
+		long delay = baseDelay << Math.min(Math.max(attempt - 1, 0), 30);
+		if (delay <= 0 || delay > maxDelay) {
+			delay = maxDelay;
+		}
+		long half = delay / 2;
+		return half + (long) (random.nextDouble() * (delay - half));
+	}
+
+	/**
+	 * @return the number of scheduled retries of the given operation type
+	 */
+	public long getRetryCount(Operation operation) {
+		return retryCounter.get(operation.ordinal());
+	}
+
+	/**
+	 * @return the sum of all retry delays (in milliseconds) of the given operation type
+	 */
+	public long getTotalDelay(Operation operation) {
+		return delayCounter.get(operation.ordinal());
+	}
+
+	/**
+	 * @return the number of retries of the given operation type which have been refused because of the
+	 *         deadline
+	 */
+	public long getDeadlineExceededCount(Operation operation) {
+		return deadlineCounter.get(operation.ordinal());
+	}
+}
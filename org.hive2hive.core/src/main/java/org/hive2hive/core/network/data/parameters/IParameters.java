@@ -133,4 +133,11 @@ public interface IParameters {
 	 */
 	public byte[] getHash();
 
+	/**
+	 * Get the mode how a put gets verified (see {@link PutVerificationMode}).
+	 * 
+	 * @return the put verification mode, default is {@link PutVerificationMode#FULL}
+	 */
+	public PutVerificationMode getPutVerificationMode();
+
 }
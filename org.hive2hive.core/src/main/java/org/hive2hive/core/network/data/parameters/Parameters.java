@@ -28,6 +28,7 @@ public class Parameters implements IParameters {
 	private int ttl = -1;
 	private boolean hashFlag = false;
 	private byte[] hash;
+	private PutVerificationMode putVerificationMode = PutVerificationMode.FULL;
 
 	public Parameters setLocationKey(String locationKey) {
 		this.locationKey = locationKey;
@@ -159,6 +160,16 @@ public class Parameters implements IParameters {
 		return hash;
 	}
 
+	public Parameters setPutVerificationMode(PutVerificationMode putVerificationMode) {
+		this.putVerificationMode = putVerificationMode;
+		return this;
+	}
+
+	@Override
+	public PutVerificationMode getPutVerificationMode() {
+		return putVerificationMode;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -178,7 +189,9 @@ public class Parameters implements IParameters {
 		if (protectionKeys != null)
 			builder.append("protected = 'true' ");
 		if (hashFlag)
-			builder.append("hashFlag = 'true'");
+			builder.append("hashFlag = 'true' ");
+		if (putVerificationMode != PutVerificationMode.FULL)
+			builder.append("verification = '").append(putVerificationMode).append("'");
 		return builder.toString();
 	}
 
@@ -0,0 +1,29 @@
+package org.hive2hive.core.network.data.parameters;
+
+import org.hive2hive.core.network.data.futures.FuturePutListener;
+
+/**
+ * Defines how the {@link FuturePutListener} verifies a put after the majority of the contacted nodes
+ * responded with an ok.
+ * 
+ * @author Seppi
+ */
+public enum PutVerificationMode {
+	/**
+	 * Always verify the put with a digest (default). Detects concurrent modifications of versioned and
+	 * non-versioned content.
+	 */
+	FULL,
+	/**
+	 * Verify the put with a digest only if the content is versioned (the version key is not
+	 * {@link net.tomp2p.peers.Number160#ZERO}). Non-versioned content is accepted when the majority responded
+	 * with an ok.
+	 */
+	VERSIONED_ONLY,
+	/**
+	 * Trust the majority of the contacted nodes without any verification. Use it only for immutable content
+	 * (e.g. chunks), which can't be modified concurrently. A retry does not remove the previous put first
+	 * because it gets overwritten by the same content anyway.
+	 */
+	TRUST_MAJORITY
+}
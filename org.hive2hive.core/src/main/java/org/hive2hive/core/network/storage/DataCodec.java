@@ -0,0 +1,90 @@
+package org.hive2hive.core.network.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.PublicKey;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.storage.Data;
+
+import org.hive2hive.core.security.H2HSignatureFactory;
+
+/**
+ * Converts a <code>TomP2P</code> {@link Data} object to bytes and back, such that it can be stored outside
+ * of the heap. The payload, the based on key, the protection flag and the protection key are kept. The time
+ * to live is handled by the caller through an absolute expiration time.
+ * 
+ * @author Seppi
+ */
+public class DataCodec {
+
+	private static final H2HSignatureFactory signatureFactory = new H2HSignatureFactory();
+
+	private DataCodec() {
+		// only static methods
+	}
+
+	/**
+	 * @return the absolute expiration time (in milliseconds) of the data, 0 if it never expires
+	 */
+	public static long getExpiration(Data data) {
+		int ttl = data.ttlSeconds();
+		return ttl > 0 ? System.currentTimeMillis() + ttl * 1000L : 0;
+	}
+
+	public static byte[] encode(Data data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeBoolean(data.isProtectedEntry());
+		out.write(data.basedOn().toByteArray());
+		PublicKey publicKey = data.publicKey();
+		if (publicKey == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] encodedKey = publicKey.getEncoded();
+			out.writeInt(encodedKey.length);
+			out.write(encodedKey);
+		}
+		byte[] payload = data.toBytes();
+		out.writeInt(payload.length);
+		out.write(payload);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param expiration the absolute expiration time (in milliseconds), 0 if it never expires
+	 */
+	public static Data decode(byte[] bytes, long expiration) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		boolean protectedEntry = in.readBoolean();
+		byte[] basedOn = new byte[Number160.BYTE_ARRAY_SIZE];
+		in.readFully(basedOn);
+		PublicKey publicKey = null;
+		int keyLength = in.readInt();
+		if (keyLength >= 0) {
+			byte[] encodedKey = new byte[keyLength];
+			in.readFully(encodedKey);
+			publicKey = signatureFactory.decodePublicKey(encodedKey);
+		}
+		byte[] payload = new byte[in.readInt()];
+		in.readFully(payload);
+		in.close();
+
+		Data data = new Data(payload).basedOn(new Number160(basedOn));
+		if (expiration > 0) {
+			// remaining time to live, at least one second
+			data.ttlSeconds((int) Math.max(1, (expiration - System.currentTimeMillis()) / 1000));
+		}
+		if (protectedEntry) {
+			data.setProtectedEntry();
+		}
+		if (publicKey != null) {
+			data.publicKey(publicKey);
+		}
+		return data;
+	}
+}
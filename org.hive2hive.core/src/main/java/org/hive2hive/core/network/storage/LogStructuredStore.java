@@ -0,0 +1,705 @@
+package org.hive2hive.core.network.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent key-value store organized as an append-only log. The log consists of segment files of a
+ * bounded size. Every put or remove appends a record to the newest (active) segment, older segments are
+ * sealed and never modified again. An in-memory index maps every {@link Number640} key to the location of
+ * its newest record, such that only the keys (and no values) are kept on the heap. Values in sealed segments
+ * are read through memory mapped files.</br></br>
+ *
+ * <b>Startup:</b> When a segment gets sealed, a small hint file with all keys and record locations of the
+ * segment is written. At startup, the index is rebuilt from the hint files only, thus the startup time grows
+ * with the number of records and not with the amount of stored data. Only the active segment (which has no
+ * hint yet) is scanned. A torn record at its end (e.g. after a crash) is truncated.</br></br>
+ *
+ * <b>Compaction:</b> Overwritten, removed and expired records are garbage. A background thread periodically
+ * rewrites the live records of sealed segments with a low ratio of live data into the active segment and
+ * deletes the old segment files afterwards.
+ *
+ * @author Seppi
+ */
+public class LogStructuredStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(LogStructuredStore.class);
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String HINT_SUFFIX = ".hint";
+
+	private static final byte TYPE_PUT = 1;
+	private static final byte TYPE_REMOVE = 2;
+
+	private static final int KEY_SIZE = 4 * Number160.BYTE_ARRAY_SIZE;
+	// length, type, key, expiration, value length
+	private static final int HEADER_SIZE = 4 + 1 + KEY_SIZE + 8 + 4;
+	private static final int CRC_SIZE = 4;
+
+	private final File directory;
+	private final long segmentSize;
+	private final double compactionThreshold;
+
+	// key --> location of the newest record
+	private final ConcurrentSkipListMap<Number640, Location> index;
+	private final ConcurrentHashMap<Integer, Segment> segments;
+	private final Object writeLock = new Object();
+	private final ScheduledExecutorService compactor;
+
+	private Segment activeSegment;
+	private volatile boolean closed = false;
+
+	/**
+	 * Opens (or creates) a store in the given directory and rebuilds the index.
+	 *
+	 * @param directory the directory holding the segment files
+	 * @param segmentSize the size (in bytes) at which a segment gets sealed
+	 * @param compactionThreshold sealed segments with a lower ratio of live data get compacted (between 0 and
+	 *            1)
+	 * @param compactionIntervalMs the interval of the background compaction, 0 to disable it
+	 * @throws IOException if the store cannot be opened
+	 */
+	public LogStructuredStore(File directory, long segmentSize, double compactionThreshold,
+			long compactionIntervalMs) throws IOException {
+		if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Segment size must be positive and fit into a mapped buffer.");
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.compactionThreshold = compactionThreshold;
+		this.index = new ConcurrentSkipListMap<Number640, Location>();
+		this.segments = new ConcurrentHashMap<Integer, Segment>();
+
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException(String.format("Cannot create the storage directory '%s'.", directory));
+		}
+
+		long start = System.currentTimeMillis();
+		recover();
+		logger.debug("Opened the store with {} keys in {} segments in {} ms. Directory = '{}'.", index.size(),
+				segments.size(), System.currentTimeMillis() - start, directory);
+
+		if (compactionIntervalMs > 0) {
+			compactor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "H2H-Compactor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			compactor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						compact();
+					} catch (Exception e) {
+						logger.error("Compaction failed. Reason = '{}'.", e.getMessage());
+					}
+				}
+			}, compactionIntervalMs, compactionIntervalMs, TimeUnit.MILLISECONDS);
+		} else {
+			compactor = null;
+		}
+	}
+
+	/**
+	 * Stores the value under the given key, replacing the current value (if any).
+	 *
+	 * @param expiration the time (in milliseconds) when the value expires, 0 if it never expires
+	 */
+	public void put(Number640 key, byte[] value, long expiration) throws IOException {
+		synchronized (writeLock) {
+			ensureOpen();
+			Location location = append(TYPE_PUT, key, expiration, value);
+			markDead(index.put(key, location));
+		}
+	}
+
+	/**
+	 * Gets the current value of the given key.
+	 *
+	 * @return the value or <code>null</code> if there is no value
+	 */
+	public byte[] get(Number640 key) throws IOException {
+		while (true) {
+			Location location = index.get(key);
+			if (location == null) {
+				return null;
+			}
+
+			byte[] value = read(location);
+			if (value != null) {
+				return value;
+			}
+			// the segment has been compacted meanwhile, the index points to the new location now
+		}
+	}
+
+	/**
+	 * Removes the value of the given key.
+	 *
+	 * @return <code>true</code> if there was a value
+	 */
+	public boolean remove(Number640 key) throws IOException {
+		synchronized (writeLock) {
+			ensureOpen();
+			if (!index.containsKey(key)) {
+				return false;
+			}
+			append(TYPE_REMOVE, key, 0, new byte[0]);
+			markDead(index.remove(key));
+			return true;
+		}
+	}
+
+	public boolean contains(Number640 key) {
+		return index.containsKey(key);
+	}
+
+	/**
+	 * Returns the keys within the given range (inclusive bounds) in ascending order. The returned set is a
+	 * live view on the index.
+	 */
+	public NavigableSet<Number640> keys(Number640 from, Number640 to) {
+		return index.subMap(from, true, to, true).navigableKeySet();
+	}
+
+	/**
+	 * Returns all keys in ascending order. The returned set is a live view on the index.
+	 */
+	public NavigableSet<Number640> keys() {
+		return index.navigableKeySet();
+	}
+
+	/**
+	 * @return the expiration (in milliseconds) of the current value, 0 if it never expires or there is no
+	 *         value
+	 */
+	public long getExpiration(Number640 key) {
+		Location location = index.get(key);
+		return location == null ? 0 : location.expiration;
+	}
+
+	/**
+	 * @return the number of keys having a value
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * @return the number of segment files
+	 */
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * @return the size (in bytes) of all segment files
+	 */
+	public long getTotalBytes() {
+		long total = 0;
+		for (Segment segment : segments.values()) {
+			total += segment.size;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the size (in bytes) of all records which are not garbage
+	 */
+	public long getLiveBytes() {
+		long live = 0;
+		for (Segment segment : segments.values()) {
+			live += segment.liveBytes;
+		}
+		return live;
+	}
+
+	/**
+	 * Compacts all sealed segments whose ratio of live data is below the threshold. The live records are
+	 * appended to the active segment, afterwards the old segments are deleted. Expired records are dropped.
+	 *
+	 * @return the number of compacted segments
+	 */
+	public int compact() throws IOException {
+		List<Segment> candidates = new ArrayList<Segment>();
+		synchronized (writeLock) {
+			ensureOpen();
+			for (Segment segment : segments.values()) {
+				if (segment != activeSegment
+						&& (segment.size == 0 || (double) segment.liveBytes / segment.size < compactionThreshold)) {
+					candidates.add(segment);
+				}
+			}
+		}
+		// the oldest first, such that removal records can be dropped as early as possible
+		Collections.sort(candidates);
+
+		for (Segment segment : candidates) {
+			compact(segment);
+		}
+		return candidates.size();
+	}
+
+	/**
+	 * Seals the active segment, stops the compaction and releases all files. The store cannot be used
+	 * afterwards.
+	 */
+	public void close() throws IOException {
+		if (compactor != null) {
+			compactor.shutdownNow();
+		}
+		synchronized (writeLock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			seal(activeSegment);
+			segments.clear();
+			index.clear();
+		}
+		logger.debug("Closed the store. Directory = '{}'.", directory);
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("The store is closed.");
+		}
+	}
+
+	/**
+	 * Appends a record to the active segment. Needs to be called holding the write lock.
+	 */
+	private Location append(byte type, Number640 key, long expiration, byte[] value) throws IOException {
+		int recordLength = HEADER_SIZE + value.length + CRC_SIZE;
+		if (activeSegment.size > 0 && activeSegment.size + recordLength > segmentSize) {
+			roll();
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(recordLength);
+		record.putInt(recordLength);
+		record.put(type);
+		putKey(record, key);
+		record.putLong(expiration);
+		record.putInt(value.length);
+		record.put(value);
+		record.putInt(checksum(record.array(), 4, recordLength - 4 - CRC_SIZE));
+		record.flip();
+
+		Segment segment = activeSegment;
+		long offset = segment.size;
+		while (record.hasRemaining()) {
+			segment.channel.write(record, offset + record.position());
+		}
+		segment.size += recordLength;
+		segment.addHint(type, key, expiration, offset, recordLength);
+
+		Location location = new Location(segment.id, offset, recordLength, expiration);
+		if (type == TYPE_PUT) {
+			segment.liveBytes += recordLength;
+		}
+		return location;
+	}
+
+	private void markDead(Location location) {
+		if (location != null) {
+			Segment segment = segments.get(location.segmentId);
+			if (segment != null) {
+				segment.liveBytes -= location.length;
+			}
+		}
+	}
+
+	/**
+	 * Reads the value of a record.
+	 *
+	 * @return the value or <code>null</code> if the segment does not exist anymore
+	 */
+	private byte[] read(Location location) throws IOException {
+		Segment segment = segments.get(location.segmentId);
+		if (segment == null) {
+			return null;
+		}
+
+		int valueLength = location.length - HEADER_SIZE - CRC_SIZE;
+		long valueOffset = location.offset + HEADER_SIZE;
+		byte[] value = new byte[valueLength];
+		while (true) {
+			MappedByteBuffer mapped = segment.mapped;
+			if (mapped != null) {
+				ByteBuffer view = mapped.duplicate();
+				view.position((int) valueOffset);
+				view.get(value);
+				return value;
+			}
+
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(value);
+				while (buffer.hasRemaining()) {
+					if (segment.channel.read(buffer, valueOffset + buffer.position()) < 0) {
+						throw new IOException("Unexpected end of the segment.");
+					}
+				}
+				return value;
+			} catch (ClosedChannelException e) {
+				// the segment got sealed meanwhile, read it from the mapped file
+				if (segment.mapped == null) {
+					return null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Seals the active segment and starts a new one. Needs to be called holding the write lock.
+	 */
+	private void roll() throws IOException {
+		seal(activeSegment);
+		activeSegment = createSegment(activeSegment.id + 1);
+	}
+
+	private void seal(Segment segment) throws IOException {
+		segment.channel.force(true);
+		segment.writeHint();
+		segment.mapped = segment.channel.map(MapMode.READ_ONLY, 0, segment.size);
+		segment.channel.close();
+		logger.trace("Sealed segment {}. Size = '{}', Live bytes = '{}'.", segment.id, segment.size,
+				segment.liveBytes);
+	}
+
+	private Segment createSegment(int id) throws IOException {
+		Segment segment = new Segment(id);
+		segment.channel = new RandomAccessFile(segment.file, "rw").getChannel();
+		segment.channel.truncate(0);
+		segments.put(id, segment);
+		return segment;
+	}
+
+	private void compact(Segment segment) throws IOException {
+		logger.debug("Compacting segment {}. Size = '{}', Live bytes = '{}'.", segment.id, segment.size,
+				segment.liveBytes);
+		long now = System.currentTimeMillis();
+		boolean isOldest = true;
+		for (Integer id : segments.keySet()) {
+			if (id < segment.id) {
+				isOldest = false;
+				break;
+			}
+		}
+
+		ByteBuffer view = segment.mapped.duplicate();
+		long offset = 0;
+		while (offset < segment.size) {
+			view.position((int) offset);
+			int recordLength = view.getInt();
+			byte type = view.get();
+			Number640 key = getKey(view);
+			long expiration = view.getLong();
+			byte[] value = new byte[view.getInt()];
+			view.get(value);
+
+			synchronized (writeLock) {
+				ensureOpen();
+				Location current = index.get(key);
+				if (type == TYPE_PUT && current != null && current.segmentId == segment.id
+						&& current.offset == offset) {
+					if (expiration > 0 && expiration < now) {
+						// drop the expired value
+						append(TYPE_REMOVE, key, 0, new byte[0]);
+						index.remove(key);
+					} else {
+						index.put(key, append(TYPE_PUT, key, expiration, value));
+					}
+				} else if (type == TYPE_REMOVE && current == null && !isOldest) {
+					// keep the removal as long as older segments may contain the key
+					append(TYPE_REMOVE, key, 0, new byte[0]);
+				}
+			}
+			offset += recordLength;
+		}
+
+		synchronized (writeLock) {
+			// the copies need to be durable before the original is deleted
+			activeSegment.channel.force(true);
+			segments.remove(segment.id);
+		}
+		if (!segment.file.delete() || (segment.hintFile.exists() && !segment.hintFile.delete())) {
+			logger.warn("Could not delete the compacted segment {}.", segment.id);
+		}
+	}
+
+	/**
+	 * Rebuilds the index from the segment files in the directory.
+	 */
+	private void recover() throws IOException {
+		File[] files = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX);
+			}
+		});
+		int[] ids = new int[files == null ? 0 : files.length];
+		for (int i = 0; i < ids.length; i++) {
+			String name = files[i].getName();
+			ids[i] = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		}
+		Arrays.sort(ids);
+
+		for (int i = 0; i < ids.length; i++) {
+			Segment segment = new Segment(ids[i]);
+			segments.put(segment.id, segment);
+			if (segment.readHint()) {
+				// sealed segment
+				segment.mapped = mapReadOnly(segment.file);
+			} else if (i == ids.length - 1) {
+				// the active segment of the last run is continued
+				segment.hintFile.delete();
+				segment.channel = new RandomAccessFile(segment.file, "rw").getChannel();
+				scan(segment, segment.channel.map(MapMode.READ_ONLY, 0, segment.channel.size()));
+				segment.channel.truncate(segment.size);
+				activeSegment = segment;
+			} else {
+				// no (valid) hint, e.g. crash while sealing
+				segment.mapped = mapReadOnly(segment.file);
+				scan(segment, segment.mapped);
+				segment.writeHint();
+			}
+		}
+
+		if (activeSegment == null) {
+			// the last run was closed properly (or there was none)
+			activeSegment = createSegment(ids.length == 0 ? 0 : ids[ids.length - 1] + 1);
+		}
+	}
+
+	private MappedByteBuffer mapReadOnly(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads all valid records of a segment and applies them to the index. Stops at the first invalid record.
+	 */
+	private void scan(Segment segment, ByteBuffer buffer) {
+		ByteBuffer view = buffer.duplicate();
+		int offset = 0;
+		while (offset + HEADER_SIZE + CRC_SIZE <= view.limit()) {
+			view.position(offset);
+			int recordLength = view.getInt();
+			if (recordLength < HEADER_SIZE + CRC_SIZE || offset + recordLength > view.limit()) {
+				break;
+			}
+			byte[] record = new byte[recordLength];
+			view.position(offset);
+			view.get(record);
+			ByteBuffer recordView = ByteBuffer.wrap(record);
+			recordView.position(4);
+			byte type = recordView.get();
+			Number640 key = getKey(recordView);
+			long expiration = recordView.getLong();
+			recordView.position(recordLength - CRC_SIZE);
+			if (recordView.getInt() != checksum(record, 4, recordLength - 4 - CRC_SIZE)) {
+				break;
+			}
+
+			apply(segment, type, key, expiration, offset, recordLength);
+			segment.addHint(type, key, expiration, offset, recordLength);
+			offset += recordLength;
+		}
+
+		segment.size = offset;
+		if (offset < view.limit()) {
+			logger.warn("Truncated a torn record at the end of segment {}. Offset = '{}'.", segment.id, offset);
+		}
+	}
+
+	private void apply(Segment segment, byte type, Number640 key, long expiration, long offset, int length) {
+		if (type == TYPE_PUT) {
+			markDead(index.put(key, new Location(segment.id, offset, length, expiration)));
+			segment.liveBytes += length;
+		} else {
+			markDead(index.remove(key));
+		}
+	}
+
+	private static void putKey(ByteBuffer buffer, Number640 key) {
+		buffer.put(key.getLocationKey().toByteArray());
+		buffer.put(key.getDomainKey().toByteArray());
+		buffer.put(key.getContentKey().toByteArray());
+		buffer.put(key.getVersionKey().toByteArray());
+	}
+
+	private static Number640 getKey(ByteBuffer buffer) {
+		return new Number640(getNumber160(buffer), getNumber160(buffer), getNumber160(buffer),
+				getNumber160(buffer));
+	}
+
+	private static Number160 getNumber160(ByteBuffer buffer) {
+		byte[] bytes = new byte[Number160.BYTE_ARRAY_SIZE];
+		buffer.get(bytes);
+		return new Number160(bytes);
+	}
+
+	private static int checksum(byte[] bytes, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, offset, length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * The location of a record in a segment.
+	 */
+	private static class Location {
+
+		private final int segmentId;
+		private final long offset;
+		private final int length;
+		private final long expiration;
+
+		public Location(int segmentId, long offset, int length, long expiration) {
+			this.segmentId = segmentId;
+			this.offset = offset;
+			this.length = length;
+			this.expiration = expiration;
+		}
+	}
+
+	/**
+	 * A segment file with its hint file. The active segment is written through its channel, sealed segments
+	 * are read through the mapped buffer.
+	 */
+	private class Segment implements Comparable<Segment> {
+
+		private final int id;
+		private final File file;
+		private final File hintFile;
+
+		private FileChannel channel;
+		private volatile MappedByteBuffer mapped;
+		private volatile long size = 0;
+		private volatile long liveBytes = 0;
+
+		// type, key, expiration, offset and length of every record, written as hint when sealing
+		private ByteArrayOutputStream hints = new ByteArrayOutputStream();
+		private int hintCount = 0;
+
+		public Segment(int id) {
+			this.id = id;
+			String name = String.format("%s%08d", SEGMENT_PREFIX, id);
+			this.file = new File(directory, name + SEGMENT_SUFFIX);
+			this.hintFile = new File(directory, name + HINT_SUFFIX);
+		}
+
+		private void addHint(byte type, Number640 key, long expiration, long offset, int length) {
+			ByteBuffer hint = ByteBuffer.allocate(1 + KEY_SIZE + 8 + 8 + 4);
+			hint.put(type);
+			putKey(hint, key);
+			hint.putLong(expiration);
+			hint.putLong(offset);
+			hint.putInt(length);
+			hints.write(hint.array(), 0, hint.capacity());
+			hintCount++;
+		}
+
+		private void writeHint() throws IOException {
+			byte[] content = hints.toByteArray();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length + 12);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeLong(size);
+			out.writeInt(hintCount);
+			out.write(content);
+			out.writeInt(checksum(bytes.toByteArray(), 0, bytes.size()));
+			out.close();
+
+			RandomAccessFile raf = new RandomAccessFile(hintFile, "rw");
+			try {
+				raf.setLength(0);
+				raf.write(bytes.toByteArray());
+				raf.getChannel().force(true);
+			} finally {
+				raf.close();
+			}
+			// not needed anymore
+			hints = null;
+		}
+
+		/**
+		 * Applies the records listed in the hint file to the index.
+		 *
+		 * @return <code>false</code> if there is no valid hint file
+		 */
+		private boolean readHint() throws IOException {
+			if (!hintFile.exists() || hintFile.length() < 16) {
+				return false;
+			}
+
+			byte[] content = new byte[(int) hintFile.length()];
+			RandomAccessFile raf = new RandomAccessFile(hintFile, "r");
+			try {
+				raf.readFully(content);
+			} finally {
+				raf.close();
+			}
+
+			ByteBuffer buffer = ByteBuffer.wrap(content);
+			buffer.position(content.length - CRC_SIZE);
+			if (buffer.getInt() != checksum(content, 0, content.length - CRC_SIZE)) {
+				logger.warn("Hint file of segment {} is corrupt.", id);
+				return false;
+			}
+
+			buffer.position(0);
+			size = buffer.getLong();
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				byte type = buffer.get();
+				Number640 key = getKey(buffer);
+				long expiration = buffer.getLong();
+				long offset = buffer.getLong();
+				int length = buffer.getInt();
+				apply(this, type, key, expiration, offset, length);
+			}
+			hints = null;
+			return true;
+		}
+
+		@Override
+		public int compareTo(Segment other) {
+			return id < other.id ? -1 : (id == other.id ? 0 : 1);
+		}
+	}
+}
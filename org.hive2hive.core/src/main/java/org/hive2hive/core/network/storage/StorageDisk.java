@@ -0,0 +1,149 @@
+package org.hive2hive.core.network.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+import net.tomp2p.storage.Data;
+import net.tomp2p.storage.StorageMemory;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.network.H2HStorageMemory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent storage backend for {@link H2HStorageMemory}. The stored data is kept on disk in a
+ * {@link LogStructuredStore}, thus a node can store more data than fits into its heap and keeps it across
+ * restarts. The payload, the based on key, the time to live and the protection key of every entry are
+ * persisted. The domain and entry protection maps and the responsibilities are kept in memory (as in
+ * {@link StorageMemory}).
+ *
+ * @author Seppi
+ */
+public class StorageDisk extends StorageMemory {
+
+	private static final Logger logger = LoggerFactory.getLogger(StorageDisk.class);
+
+	private final LogStructuredStore store;
+
+	/**
+	 * Opens the storage in the given directory. The time to live of the stored entries is restored.
+	 *
+	 * @param directory the directory holding the data
+	 * @throws IOException if the storage cannot be opened
+	 */
+	public StorageDisk(File directory) throws IOException {
+		this.store = new LogStructuredStore(directory, H2HConstants.STORAGE_SEGMENT_SIZE,
+				H2HConstants.STORAGE_COMPACTION_THRESHOLD, H2HConstants.STORAGE_COMPACTION_INTERVAL_MS);
+
+		// restore the timeouts of the stored entries
+		for (Number640 key : store.keys()) {
+			long expiration = store.getExpiration(key);
+			if (expiration > 0) {
+				addTimeout(key, expiration);
+			}
+		}
+	}
+
+	/**
+	 * @return the underlying log
+	 */
+	public LogStructuredStore getStore() {
+		return store;
+	}
+
+	@Override
+	public boolean put(Number640 key, Data value) {
+		try {
+			store.put(key, DataCodec.encode(value), DataCodec.getExpiration(value));
+			return true;
+		} catch (IOException e) {
+			logger.error("Cannot store the data. Key = '{}', Reason = '{}'.", key, e.getMessage());
+			return false;
+		}
+	}
+
+	@Override
+	public Data get(Number640 key) {
+		try {
+			byte[] bytes = store.get(key);
+			return bytes == null ? null : DataCodec.decode(bytes, store.getExpiration(key));
+		} catch (IOException e) {
+			logger.error("Cannot read the data. Key = '{}', Reason = '{}'.", key, e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public boolean contains(Number640 key) {
+		return store.contains(key);
+	}
+
+	@Override
+	public int contains(Number640 from, Number640 to) {
+		return store.keys(from, to).size();
+	}
+
+	@Override
+	public Data remove(Number640 key, boolean returnData) {
+		Data data = returnData ? get(key) : null;
+		try {
+			store.remove(key);
+		} catch (IOException e) {
+			logger.error("Cannot remove the data. Key = '{}', Reason = '{}'.", key, e.getMessage());
+		}
+		return data;
+	}
+
+	@Override
+	public NavigableMap<Number640, Data> remove(Number640 from, Number640 to, boolean returnData) {
+		NavigableMap<Number640, Data> removed = new TreeMap<Number640, Data>();
+		// copy the keys, the view changes while removing
+		for (Number640 key : new ArrayList<Number640>(store.keys(from, to))) {
+			removed.put(key, remove(key, returnData));
+		}
+		return removed;
+	}
+
+	@Override
+	public NavigableMap<Number640, Data> subMap(Number640 from, Number640 to, int limit, boolean ascending) {
+		NavigableSet<Number640> keys = store.keys(from, to);
+		Iterator<Number640> iterator = ascending ? keys.iterator() : keys.descendingIterator();
+		NavigableMap<Number640, Data> result = new TreeMap<Number640, Data>();
+		while (iterator.hasNext() && (limit < 0 || result.size() < limit)) {
+			Number640 key = iterator.next();
+			Data data = get(key);
+			if (data != null) {
+				result.put(key, data);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads all stored entries from disk. Avoid this on large storages.
+	 */
+	@Override
+	public NavigableMap<Number640, Data> map() {
+		return subMap(new Number640(Number160.ZERO, Number160.ZERO, Number160.ZERO, Number160.ZERO),
+				new Number640(Number160.MAX_VALUE, Number160.MAX_VALUE, Number160.MAX_VALUE,
+						Number160.MAX_VALUE), -1, true);
+	}
+
+	@Override
+	public void close() {
+		try {
+			store.close();
+		} catch (IOException e) {
+			logger.error("Cannot close the storage. Reason = '{}'.", e.getMessage());
+		}
+		super.close();
+	}
+}
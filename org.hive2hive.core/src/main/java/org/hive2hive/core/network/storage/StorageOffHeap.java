@@ -0,0 +1,259 @@
+package org.hive2hive.core.network.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.tomp2p.peers.Number640;
+import net.tomp2p.storage.Data;
+import net.tomp2p.storage.StorageMemory;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.network.H2HStorageMemory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A storage backend for {@link H2HStorageMemory} which keeps large entries (e.g. file chunks) in direct
+ * memory outside of the heap. The heap only holds the index of these entries and their expiration time,
+ * such that the garbage collector does not have to scan and copy the payloads. Small entries are kept on the
+ * heap (as in {@link StorageMemory}).<br>
+ * The direct memory is limited by a budget. If storing an entry would exceed it, the put is rejected and
+ * {@link H2HStorageMemory} reports it as an exceeded quota (see {@link #isLastPutRejected()}). Note
+ * that the JVM limits the direct memory as well (<code>-XX:MaxDirectMemorySize</code>), which has to be at
+ * least the budget.
+ *
+ * @author Seppi
+ */
+public class StorageOffHeap extends StorageMemory {
+
+	private static final Logger logger = LoggerFactory.getLogger(StorageOffHeap.class);
+
+	private final long budget;
+	private final int minSize;
+	private final ConcurrentSkipListMap<Number640, Entry> offHeap;
+	private final AtomicLong usedBytes;
+	private final AtomicLong rejectedPuts;
+	// whether the last put of a thread has been rejected because of the budget
+	private final ThreadLocal<Boolean> lastPutRejected;
+
+	public StorageOffHeap() {
+		this(H2HConstants.STORAGE_OFF_HEAP_BUDGET, H2HConstants.STORAGE_OFF_HEAP_MIN_SIZE);
+	}
+
+	/**
+	 * @param budget the maximum number of bytes stored in direct memory
+	 * @param minSize entries with at least this size (in bytes) are stored in direct memory
+	 */
+	public StorageOffHeap(long budget, int minSize) {
+		this.budget = budget;
+		this.minSize = minSize;
+		this.offHeap = new ConcurrentSkipListMap<Number640, Entry>();
+		this.usedBytes = new AtomicLong();
+		this.rejectedPuts = new AtomicLong();
+		this.lastPutRejected = new ThreadLocal<Boolean>();
+	}
+
+	/**
+	 * @return the number of bytes stored in direct memory
+	 */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/**
+	 * @return the maximum number of bytes stored in direct memory
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return the number of entries stored in direct memory
+	 */
+	public int getOffHeapCount() {
+		return offHeap.size();
+	}
+
+	/**
+	 * @return the number of puts rejected because the budget was exhausted
+	 */
+	public long getRejectedCount() {
+		return rejectedPuts.get();
+	}
+
+	/**
+	 * A put only returns whether it succeeded. This tells the caller whether its last put failed because the
+	 * budget was exhausted.
+	 * 
+	 * @return <code>true</code> if the last put of the calling thread has been rejected because of the budget
+	 */
+	public boolean isLastPutRejected() {
+		return Boolean.TRUE.equals(lastPutRejected.get());
+	}
+
+	@Override
+	public boolean put(Number640 key, Data value) {
+		lastPutRejected.set(false);
+		byte[] encoded;
+		try {
+			encoded = DataCodec.encode(value);
+		} catch (IOException e) {
+			logger.error("Cannot encode the data. Key = '{}', Reason = '{}'.", key, e.getMessage());
+			return false;
+		}
+
+		if (encoded.length < minSize) {
+			// small entries stay on the heap
+			release(offHeap.remove(key));
+			return super.put(key, value);
+		}
+
+		// reserve the memory before allocating it
+		if (usedBytes.addAndGet(encoded.length) > budget) {
+			usedBytes.addAndGet(-encoded.length);
+			long rejected = rejectedPuts.incrementAndGet();
+			lastPutRejected.set(true);
+			logger.warn("Off-heap storage budget exhausted. Key = '{}', Used = '{}', Budget = '{}', Rejected = '{}'.",
+					key, usedBytes.get(), budget, rejected);
+			return false;
+		}
+		ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length);
+		buffer.put(encoded);
+		buffer.flip();
+
+		release(offHeap.put(key, new Entry(buffer, DataCodec.getExpiration(value))));
+		// an older version of the entry could have been small
+		super.remove(key, false);
+		return true;
+	}
+
+	@Override
+	public Data get(Number640 key) {
+		Entry entry = offHeap.get(key);
+		if (entry == null) {
+			return super.get(key);
+		}
+		return decode(key, entry);
+	}
+
+	@Override
+	public boolean contains(Number640 key) {
+		return offHeap.containsKey(key) || super.contains(key);
+	}
+
+	@Override
+	public int contains(Number640 from, Number640 to) {
+		return offHeap.subMap(from, true, to, true).size() + super.contains(from, to);
+	}
+
+	@Override
+	public Data remove(Number640 key, boolean returnData) {
+		Entry entry = offHeap.remove(key);
+		if (entry == null) {
+			return super.remove(key, returnData);
+		}
+		Data data = returnData ? decode(key, entry) : null;
+		release(entry);
+		return data;
+	}
+
+	@Override
+	public NavigableMap<Number640, Data> remove(Number640 from, Number640 to, boolean returnData) {
+		NavigableMap<Number640, Data> removed = super.remove(from, to, returnData);
+		// copy the keys, the view changes while removing
+		for (Number640 key : new ArrayList<Number640>(offHeap.subMap(from, true, to, true).keySet())) {
+			removed.put(key, remove(key, returnData));
+		}
+		return removed;
+	}
+
+	@Override
+	public NavigableMap<Number640, Data> subMap(Number640 from, Number640 to, int limit, boolean ascending) {
+		// only the keys are merged, the off-heap entries are copied to the heap if returned
+		NavigableMap<Number640, Data> onHeap = super.subMap(from, to, limit, ascending);
+		NavigableMap<Number640, Entry> inDirectMemory = offHeap.subMap(from, true, to, true);
+		TreeMap<Number640, Object> merged = new TreeMap<Number640, Object>(onHeap);
+		merged.putAll(inDirectMemory);
+
+		Iterator<Map.Entry<Number640, Object>> iterator = ascending ? merged.entrySet().iterator() : merged
+				.descendingMap().entrySet().iterator();
+		NavigableMap<Number640, Data> result = new TreeMap<Number640, Data>();
+		while (iterator.hasNext() && (limit < 0 || result.size() < limit)) {
+			Map.Entry<Number640, Object> next = iterator.next();
+			Data data = next.getValue() instanceof Entry ? decode(next.getKey(), (Entry) next.getValue())
+					: (Data) next.getValue();
+			if (data != null) {
+				result.put(next.getKey(), data);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Copies all entries to the heap. Avoid this on large storages.
+	 */
+	@Override
+	public NavigableMap<Number640, Data> map() {
+		NavigableMap<Number640, Data> result = new TreeMap<Number640, Data>(super.map());
+		for (Map.Entry<Number640, Entry> entry : offHeap.entrySet()) {
+			Data data = decode(entry.getKey(), entry.getValue());
+			if (data != null) {
+				result.put(entry.getKey(), data);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void close() {
+		logger.debug("Closing the off-heap storage. Entries = '{}', Used = '{}', Budget = '{}', Rejected = '{}'.",
+				offHeap.size(), usedBytes.get(), budget, rejectedPuts.get());
+		offHeap.clear();
+		usedBytes.set(0);
+		super.close();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("StorageOffHeap[entries=%s, used=%s, budget=%s, rejected=%s]", offHeap.size(),
+				usedBytes.get(), budget, rejectedPuts.get());
+	}
+
+	private void release(Entry entry) {
+		if (entry != null) {
+			// the direct memory itself is freed when the buffer is garbage collected
+			usedBytes.addAndGet(-entry.buffer.capacity());
+		}
+	}
+
+	private Data decode(Number640 key, Entry entry) {
+		// duplicate the buffer, concurrent readers must not share the position
+		ByteBuffer buffer = entry.buffer.duplicate();
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		try {
+			return DataCodec.decode(bytes, entry.expiration);
+		} catch (IOException e) {
+			logger.error("Cannot decode the data. Key = '{}', Reason = '{}'.", key, e.getMessage());
+			return null;
+		}
+	}
+
+	private static class Entry {
+
+		private final ByteBuffer buffer;
+		private final long expiration;
+
+		public Entry(ByteBuffer buffer, long expiration) {
+			this.buffer = buffer;
+			this.expiration = expiration;
+		}
+	}
+}
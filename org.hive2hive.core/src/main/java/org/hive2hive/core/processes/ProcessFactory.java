@@ -11,6 +11,7 @@ import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.model.UserPermission;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.download.DownloadPriority;
 import org.hive2hive.core.processes.framework.abstracts.ProcessComponent;
 import org.hive2hive.core.processes.framework.concretes.SequentialProcess;
 import org.hive2hive.core.processes.framework.decorators.AsyncComponent;
@@ -250,7 +251,16 @@ public final class ProcessFactory {
 	 */
 	public ProcessComponent createDownloadFileProcess(PublicKey fileKey, NetworkManager networkManager)
 			throws NoSessionException {
-		return createDownloadFileProcess(fileKey, DownloadFileContext.NEWEST_VERSION_INDEX, null, networkManager);
+		return createDownloadFileProcess(fileKey, DownloadPriority.NORMAL, networkManager);
+	}
+
+	/**
+	 * Process for downloading the newest version to the default location with the given priority.
+	 */
+	public ProcessComponent createDownloadFileProcess(PublicKey fileKey, DownloadPriority priority,
+			NetworkManager networkManager) throws NoSessionException {
+		return createDownloadFileProcess(fileKey, DownloadFileContext.NEWEST_VERSION_INDEX, null, priority,
+				networkManager);
 	}
 
 	/**
@@ -259,11 +269,20 @@ public final class ProcessFactory {
 	 */
 	public ProcessComponent createDownloadFileProcess(PublicKey fileKey, int versionToDownload, File destination,
 			NetworkManager networkManager) throws NoSessionException {
+		return createDownloadFileProcess(fileKey, versionToDownload, destination, DownloadPriority.NORMAL,
+				networkManager);
+	}
+
+	/**
+	 * Process for downloading with some extra parameters and the priority of the chunk downloads.
+	 */
+	public ProcessComponent createDownloadFileProcess(PublicKey fileKey, int versionToDownload, File destination,
+			DownloadPriority priority, NetworkManager networkManager) throws NoSessionException {
 		// precondition: session is existent
 		networkManager.getSession();
 
 		SequentialProcess process = new SequentialProcess();
-		DownloadFileContext context = new DownloadFileContext(fileKey, destination, versionToDownload);
+		DownloadFileContext context = new DownloadFileContext(fileKey, destination, versionToDownload, priority);
 		process.add(new FindInUserProfileStep(context, networkManager));
 
 		return process;
@@ -45,32 +45,44 @@ public class GetMetaFileStep extends BaseGetProcessStep {
 	@Override
 	protected void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
 		KeyPair keyPair = keyContext.consumeKeyPair();
-		NetworkContent loadedContent = get(keyPair.getPublic(), H2HConstants.META_FILE);
+		// meta files are fetched repeatedly during multi-step processes, use the cache if still up to date
+		NetworkContent loadedContent = getValidated(keyPair.getPublic(), H2HConstants.META_FILE);
 
 		if (loadedContent == null) {
 			logger.warn("Meta file not found.");
 			throw new ProcessExecutionException("Meta file not found.");
 		} else {
 
-			// decrypt meta document
 			HybridEncryptedContent encryptedContent = (HybridEncryptedContent) loadedContent;
 
-			NetworkContent decryptedContent = null;
-			try {
-				decryptedContent = H2HEncryptionUtil.decryptHybrid(encryptedContent, keyPair.getPrivate());
-			} catch (InvalidKeyException | DataLengthException | IllegalBlockSizeException
-					| BadPaddingException | IllegalStateException | InvalidCipherTextException
-					| ClassNotFoundException | IOException e) {
-				throw new ProcessExecutionException("Meta file could not be decrypted.", e);
-			}
+			// this version may have been decrypted before, the cached meta file is copied before it is modified
+			MetaFile metaFile;
+			MetaFile cached = (MetaFile) getDecoded(keyPair.getPublic(), H2HConstants.META_FILE,
+					loadedContent.getVersionKey());
+			if (cached != null) {
+				metaFile = cached.copy();
+				logger.debug("Got the meta file, the decrypted version is cached.");
+			} else {
+				// decrypt meta document
+				NetworkContent decryptedContent = null;
+				try {
+					decryptedContent = H2HEncryptionUtil.decryptHybrid(encryptedContent, keyPair.getPrivate());
+				} catch (InvalidKeyException | DataLengthException | IllegalBlockSizeException
+						| BadPaddingException | IllegalStateException | InvalidCipherTextException
+						| ClassNotFoundException | IOException e) {
+					throw new ProcessExecutionException("Meta file could not be decrypted.", e);
+				}
 
-			MetaFile metaFile = (MetaFile) decryptedContent;
-			metaFile.setVersionKey(loadedContent.getVersionKey());
-			metaFile.setBasedOnKey(loadedContent.getBasedOnKey());
+				metaFile = (MetaFile) decryptedContent;
+				metaFile.setVersionKey(loadedContent.getVersionKey());
+				metaFile.setBasedOnKey(loadedContent.getBasedOnKey());
+				cacheDecoded(keyPair.getPublic(), H2HConstants.META_FILE, loadedContent.getVersionKey(),
+						metaFile.copy());
+				logger.debug("Got and decrypted the meta file.");
+			}
 
 			metaContext.provideMetaFile(metaFile);
 			metaContext.provideEncryptedMetaFile(encryptedContent);
-			logger.debug("Got and decrypted the meta file.");
 		}
 	}
 }
@@ -1,6 +1,11 @@
 package org.hive2hive.core.processes.implementations.common.base;
 
 import java.security.PublicKey;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.tomp2p.peers.Number160;
 
 import org.hive2hive.core.model.NetworkContent;
 import org.hive2hive.core.network.data.IDataManager;
@@ -34,4 +39,60 @@ public abstract class BaseGetProcessStep extends ProcessStep {
 		return dataManager.get(parameters);
 	}
 
+	/**
+	 * Gets the newest version of some versioned content. The version is validated with a digest and served
+	 * from the local cache if possible (see {@link IDataManager#getValidated(IParameters)}).
+	 */
+	protected NetworkContent getValidated(PublicKey locationKey, String contentKey)
+			throws InvalidProcessStateException {
+		IParameters parameters = new Parameters().setLocationKey(H2HEncryptionUtil.key2String(locationKey))
+				.setContentKey(contentKey);
+		return dataManager.getValidated(parameters);
+	}
+
+	/**
+	 * Gets the cached decoded (e.g. decrypted) form of a version got with
+	 * {@link #getValidated(PublicKey, String)}.
+	 * 
+	 * @return the decoded content, which must not be modified, or <code>null</code>
+	 */
+	protected NetworkContent getDecoded(PublicKey locationKey, String contentKey, Number160 versionKey) {
+		IParameters parameters = new Parameters().setLocationKey(H2HEncryptionUtil.key2String(locationKey))
+				.setContentKey(contentKey);
+		return dataManager.getDecoded(parameters, versionKey);
+	}
+
+	/**
+	 * Caches the decoded (e.g. decrypted) form of a version got with {@link #getValidated(PublicKey, String)}.
+	 */
+	protected void cacheDecoded(PublicKey locationKey, String contentKey, Number160 versionKey,
+			NetworkContent decoded) {
+		IParameters parameters = new Parameters().setLocationKey(H2HEncryptionUtil.key2String(locationKey))
+				.setContentKey(contentKey);
+		dataManager.cacheDecoded(parameters, versionKey, decoded);
+	}
+
+	/**
+	 * Gets the content of multiple location keys having the same content key. The gets are executed
+	 * concurrently.
+	 * 
+	 * @param locationKeys the location keys to get the content from
+	 * @param contentKey the content key of all contents
+	 * @return the content per location key (<code>null</code> if not found)
+	 */
+	protected Map<String, NetworkContent> getAll(Collection<String> locationKeys, String contentKey)
+			throws InvalidProcessStateException {
+		Map<IParameters, String> parameters = new HashMap<IParameters, String>(locationKeys.size());
+		for (String locationKey : locationKeys) {
+			parameters.put(new Parameters().setLocationKey(locationKey).setContentKey(contentKey), locationKey);
+		}
+
+		Map<IParameters, NetworkContent> contents = dataManager.getAll(parameters.keySet());
+		Map<String, NetworkContent> result = new HashMap<String, NetworkContent>(contents.size());
+		for (IParameters param : contents.keySet()) {
+			result.put(parameters.get(param), contents.get(param));
+		}
+		return result;
+	}
+
 }
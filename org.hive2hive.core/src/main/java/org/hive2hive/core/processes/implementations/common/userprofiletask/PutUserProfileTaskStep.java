@@ -4,6 +4,10 @@ import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -12,10 +16,13 @@ import net.tomp2p.peers.Number160;
 
 import org.bouncycastle.crypto.DataLengthException;
 import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.PutFailedException;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
 import org.hive2hive.core.network.userprofiletask.UserProfileTask;
 import org.hive2hive.core.processes.framework.RollbackReason;
 import org.hive2hive.core.processes.framework.abstracts.ProcessStep;
@@ -37,7 +44,7 @@ public abstract class PutUserProfileTaskStep extends ProcessStep {
 	private static final Logger logger = LoggerFactory.getLogger(PutUserProfileTaskStep.class);
 
 	protected final NetworkManager networkManager;
-	private String userId;
+	private final List<String> userIds;
 	private Number160 contentKey;
 	private KeyPair protectionKey;
 
@@ -45,6 +52,7 @@ public abstract class PutUserProfileTaskStep extends ProcessStep {
 
 	public PutUserProfileTaskStep(NetworkManager networkManager) {
 		this.networkManager = networkManager;
+		this.userIds = new ArrayList<String>();
 	}
 
 	protected void put(String userId, UserProfileTask userProfileTask, PublicKey publicKey)
@@ -56,7 +64,7 @@ public abstract class PutUserProfileTaskStep extends ProcessStep {
 		if (publicKey == null)
 			throw new IllegalArgumentException("public key can be not null");
 
-		this.userId = userId;
+		userIds.add(userId);
 
 		try {
 			logger.debug("Encrypting user profile task in a hybrid manner.");
@@ -79,6 +87,68 @@ public abstract class PutUserProfileTaskStep extends ProcessStep {
 		}
 	}
 
+	/**
+	 * Puts the same {@link UserProfileTask} into the queues of multiple users. The task gets encrypted for
+	 * each user separately, then all puts are executed concurrently.
+	 * 
+	 * @param userPublicKeys the users (and their public keys) to put the task for
+	 * @param userProfileTask the task to put
+	 * @return the users for which the put failed
+	 */
+	protected List<String> putAll(Map<String, PublicKey> userPublicKeys, UserProfileTask userProfileTask)
+			throws PutFailedException, InvalidProcessStateException {
+		if (userProfileTask == null)
+			throw new IllegalArgumentException("user profile task can be not null");
+
+		this.contentKey = userProfileTask.getContentKey();
+		this.protectionKey = userProfileTask.getProtectionKey();
+
+		List<String> failed = new ArrayList<String>();
+		Map<IParameters, String> parameters = new HashMap<IParameters, String>(userPublicKeys.size());
+		for (String userId : userPublicKeys.keySet()) {
+			PublicKey publicKey = userPublicKeys.get(userId);
+			if (publicKey == null) {
+				logger.error("No public key available for user '{}'.", userId);
+				failed.add(userId);
+				continue;
+			}
+
+			try {
+				logger.debug("Encrypting user profile task in a hybrid manner for user '{}'.", userId);
+				HybridEncryptedContent encrypted = H2HEncryptionUtil.encryptHybrid(userProfileTask, publicKey);
+				encrypted.setTimeToLive(userProfileTask.getTimeToLive());
+				parameters.put(new Parameters().setLocationKey(userId).setContentKey(contentKey)
+						.setDomainKey(H2HConstants.USER_PROFILE_TASK_DOMAIN).setData(encrypted)
+						.setProtectionKeys(protectionKey).setTTL(encrypted.getTimeToLive()), userId);
+			} catch (IOException | DataLengthException | InvalidKeyException | IllegalStateException
+					| InvalidCipherTextException | IllegalBlockSizeException | BadPaddingException e) {
+				logger.error("User profile task could not be encrypted for user '{}'.", userId);
+				failed.add(userId);
+			}
+		}
+
+		if (parameters.isEmpty()) {
+			return failed;
+		}
+
+		Map<IParameters, Boolean> results;
+		try {
+			results = networkManager.getDataManager().putAll(parameters.keySet());
+		} catch (NoPeerConnectionException e) {
+			throw new PutFailedException(e.getMessage());
+		}
+
+		putPerformed = true;
+		for (IParameters param : results.keySet()) {
+			String userId = parameters.get(param);
+			userIds.add(userId);
+			if (!results.get(param)) {
+				failed.add(userId);
+			}
+		}
+		return failed;
+	}
+
 	@Override
 	protected void doRollback(RollbackReason reason) throws InvalidProcessStateException {
 		if (!putPerformed) {
@@ -91,19 +161,21 @@ public abstract class PutUserProfileTaskStep extends ProcessStep {
 			dataManager = networkManager.getDataManager();
 		} catch (NoPeerConnectionException e) {
 			logger.warn(
-					"Rollback of user profile task put failed. No connection. User ID = '{}', Content key = '{}'.",
-					userId, contentKey);
+					"Rollback of user profile task put failed. No connection. User IDs = '{}', Content key = '{}'.",
+					userIds, contentKey);
 			return;
 		}
 
-		boolean success = dataManager.removeUserProfileTask(userId, contentKey, protectionKey);
-		if (success) {
-			logger.debug("Rollback of user profile task put succeeded. User ID = '{}', Content key = '{}'.",
-					userId, contentKey);
-		} else {
-			logger.warn(
-					"Rollback of user profile put failed. Remove failed. User ID = '{}', Content key = '{}'.",
-					userId, contentKey);
+		for (String userId : userIds) {
+			boolean success = dataManager.removeUserProfileTask(userId, contentKey, protectionKey);
+			if (success) {
+				logger.debug("Rollback of user profile task put succeeded. User ID = '{}', Content key = '{}'.",
+						userId, contentKey);
+			} else {
+				logger.warn(
+						"Rollback of user profile put failed. Remove failed. User ID = '{}', Content key = '{}'.",
+						userId, contentKey);
+			}
 		}
 	}
 }
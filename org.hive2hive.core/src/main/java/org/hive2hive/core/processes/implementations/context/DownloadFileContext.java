@@ -1,20 +1,23 @@
 package org.hive2hive.core.processes.implementations.context;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.HashSet;
+import java.util.Set;
 
-import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.IndexSnapshot;
 import org.hive2hive.core.model.MetaFile;
-import org.hive2hive.core.processes.implementations.context.interfaces.IConsumeIndex;
+import org.hive2hive.core.model.UserPermission;
+import org.hive2hive.core.model.UserProfileSnapshot;
+import org.hive2hive.core.network.data.download.DownloadPriority;
 import org.hive2hive.core.processes.implementations.context.interfaces.IConsumeKeyPair;
 import org.hive2hive.core.processes.implementations.context.interfaces.IConsumeMetaFile;
-import org.hive2hive.core.processes.implementations.context.interfaces.IProvideIndex;
 import org.hive2hive.core.processes.implementations.context.interfaces.IProvideMetaFile;
 import org.hive2hive.core.security.HybridEncryptedContent;
 
-public class DownloadFileContext implements IConsumeKeyPair, IProvideMetaFile, IConsumeMetaFile,
-		IConsumeIndex, IProvideIndex {
+public class DownloadFileContext implements IConsumeKeyPair, IProvideMetaFile, IConsumeMetaFile {
 
 	// set -1 for default
 	public static final int NEWEST_VERSION_INDEX = -1;
@@ -22,14 +25,23 @@ public class DownloadFileContext implements IConsumeKeyPair, IProvideMetaFile, I
 	private final PublicKey fileKey;
 	private final File destination; // set null for default
 	private final int versionToDownload;
+	private final DownloadPriority priority;
 
-	private Index index;
+	private Path path;
+	private IndexSnapshot node;
+	private Set<String> users;
 	private MetaFile metaFile;
 
 	public DownloadFileContext(PublicKey fileKey, File destination, int versionToDownload) {
+		this(fileKey, destination, versionToDownload, DownloadPriority.NORMAL);
+	}
+
+	public DownloadFileContext(PublicKey fileKey, File destination, int versionToDownload,
+			DownloadPriority priority) {
 		this.fileKey = fileKey;
 		this.destination = destination;
 		this.versionToDownload = versionToDownload;
+		this.priority = priority;
 	}
 
 	public PublicKey getFileKey() {
@@ -37,7 +49,7 @@ public class DownloadFileContext implements IConsumeKeyPair, IProvideMetaFile, I
 	}
 
 	public boolean isFolder() {
-		return index.isFolder();
+		return node.isFolder();
 	}
 
 	@Override
@@ -52,7 +64,7 @@ public class DownloadFileContext implements IConsumeKeyPair, IProvideMetaFile, I
 
 	@Override
 	public KeyPair consumeKeyPair() {
-		return index.getFileKeys();
+		return node.getFileKeys();
 	}
 
 	@Override
@@ -82,13 +94,40 @@ public class DownloadFileContext implements IConsumeKeyPair, IProvideMetaFile, I
 		return versionToDownload == NEWEST_VERSION_INDEX;
 	}
 
-	@Override
-	public void provideIndex(Index index) {
-		this.index = index;
+	public DownloadPriority getPriority() {
+		return priority;
 	}
 
-	@Override
-	public Index consumeIndex() {
-		return index;
+	/**
+	 * Takes the file to download out of a user profile snapshot, the snapshot is not modified meanwhile
+	 * 
+	 * @param profile the snapshot containing the file
+	 * @param path the path of the file relative to the root
+	 */
+	public void provideNode(UserProfileSnapshot profile, Path path) {
+		this.path = path;
+		this.node = profile.getByPath(path);
+		this.users = new HashSet<String>();
+		for (UserPermission permission : profile.getCalculatedUserPermissions(path)) {
+			users.add(permission.getUserId());
+		}
+	}
+
+	public IndexSnapshot consumeNode() {
+		return node;
+	}
+
+	/**
+	 * Returns the path of the file relative to the root
+	 */
+	public Path consumePath() {
+		return path;
+	}
+
+	/**
+	 * Returns all users having access to the file
+	 */
+	public Set<String> consumeUserList() {
+		return users;
 	}
 }
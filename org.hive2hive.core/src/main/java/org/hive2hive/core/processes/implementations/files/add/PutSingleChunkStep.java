@@ -17,6 +17,7 @@ import org.hive2hive.core.model.Chunk;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.network.data.IDataManager;
 import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.network.data.parameters.PutVerificationMode;
 import org.hive2hive.core.processes.framework.exceptions.InvalidProcessStateException;
 import org.hive2hive.core.processes.framework.exceptions.ProcessExecutionException;
 import org.hive2hive.core.processes.implementations.common.base.BasePutProcessStep;
@@ -71,7 +72,8 @@ public class PutSingleChunkStep extends BasePutProcessStep {
 				logger.debug("Uploading chunk {} of file {}.", chunk.getOrder(), file.getName());
 				Parameters parameters = new Parameters().setLocationKey(chunk.getId())
 						.setContentKey(H2HConstants.FILE_CHUNK).setData(encryptedContent)
-						.setProtectionKeys(context.consumeProtectionKeys()).setTTL(chunk.getTimeToLive());
+						.setProtectionKeys(context.consumeProtectionKeys()).setTTL(chunk.getTimeToLive())
+						.setPutVerificationMode(PutVerificationMode.TRUST_MAJORITY);
 
 				// data manager has to produce the hash, which gets used for signing
 				parameters.setHashFlag(true);
@@ -1,15 +1,13 @@
 package org.hive2hive.core.processes.implementations.files.add;
 
-import java.util.List;
-
 import net.tomp2p.peers.PeerAddress;
 
 import org.hive2hive.core.model.FolderIndex;
 import org.hive2hive.core.model.Index;
-import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
 import org.hive2hive.core.processes.ProcessFactory;
 import org.hive2hive.core.processes.framework.abstracts.ProcessComponent;
 import org.hive2hive.core.processes.implementations.files.util.FileRecursionUtil;
+import org.hive2hive.core.processes.implementations.notify.BaseNotificationMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,7 +17,7 @@ import org.slf4j.LoggerFactory;
  * @author Nico
  * 
  */
-public class UploadNotificationMessage extends BaseDirectMessage {
+public class UploadNotificationMessage extends BaseNotificationMessage {
 
 	private static final long serialVersionUID = -695268345354561544L;
 	
@@ -32,7 +30,7 @@ public class UploadNotificationMessage extends BaseDirectMessage {
 	}
 
 	@Override
-	public void run() {
+	protected void handleNotification() {
 		logger.debug("Notification message received.");
 		if (index.isFile()) {
 			downloadSingle();
@@ -58,9 +56,9 @@ public class UploadNotificationMessage extends BaseDirectMessage {
 	}
 
 	private void downloadTree(FolderIndex folder) {
-		List<Index> files = Index.getIndexList(folder);
 		try {
-			ProcessComponent process = FileRecursionUtil.buildDownloadProcess(files, networkManager);
+			ProcessComponent process = FileRecursionUtil.buildDownloadProcess(Index.preorder(folder),
+					networkManager);
 			process.start();
 			logger.debug("Got notified and start downloading a file tree.");
 		} catch (Exception e) {
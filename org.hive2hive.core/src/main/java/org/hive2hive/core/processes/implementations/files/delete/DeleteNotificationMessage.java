@@ -13,7 +13,7 @@ import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.file.FileUtil;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.UserProfile;
-import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
+import org.hive2hive.core.processes.implementations.notify.BaseNotificationMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,7 +23,7 @@ import org.slf4j.LoggerFactory;
  * @author Nico
  * 
  */
-public class DeleteNotificationMessage extends BaseDirectMessage {
+public class DeleteNotificationMessage extends BaseNotificationMessage {
 
 	private static final long serialVersionUID = 5518489264065301800L;
 
@@ -38,7 +38,7 @@ public class DeleteNotificationMessage extends BaseDirectMessage {
 	}
 
 	@Override
-	public void run() {
+	protected void handleNotification() {
 		logger.debug("File notification message received.");
 		delete();
 	}
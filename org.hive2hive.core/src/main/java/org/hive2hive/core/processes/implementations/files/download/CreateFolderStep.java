@@ -3,10 +3,10 @@ package org.hive2hive.core.processes.implementations.files.download;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import org.hive2hive.core.exceptions.NoSessionException;
-import org.hive2hive.core.file.FileUtil;
-import org.hive2hive.core.model.Index;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.processes.framework.RollbackReason;
 import org.hive2hive.core.processes.framework.abstracts.ProcessStep;
@@ -31,11 +31,11 @@ public class CreateFolderStep extends ProcessStep {
 
 	@Override
 	protected void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
-		Index file = context.consumeIndex();
-		logger.debug("Try creating a new folder '{}' on disk.", file.getName());
+		Path path = context.consumePath();
+		logger.debug("Try creating a new folder '{}' on disk.", path.getFileName());
 		try {
 			// create the folder on disk
-			File folder = FileUtil.getPath(networkManager.getSession().getRoot(), file).toFile();
+			File folder = getFolder();
 			if (folder.exists()) {
 				throw new FileAlreadyExistsException("Folder already exists");
 			} else if (!folder.mkdir()) {
@@ -47,16 +47,19 @@ public class CreateFolderStep extends ProcessStep {
 		}
 
 		// done with 'downloading' the file
-		logger.debug("New folder '{}' has successfuly been created on disk.", file.getName());
+		logger.debug("New folder '{}' has successfuly been created on disk.", path.getFileName());
+	}
+
+	private File getFolder() throws NoSessionException {
+		Path root = networkManager.getSession().getRoot();
+		return Paths.get(root.toString(), context.consumePath().toString()).toFile();
 	}
 
 	@Override
 	protected void doRollback(RollbackReason reason) throws InvalidProcessStateException {
 		try {
 			if (!existedBefore) {
-				File folder = FileUtil.getPath(networkManager.getSession().getRoot(), context.consumeIndex())
-						.toFile();
-				folder.delete();
+				getFolder().delete();
 			}
 		} catch (Exception e) {
 			// ignore and continue
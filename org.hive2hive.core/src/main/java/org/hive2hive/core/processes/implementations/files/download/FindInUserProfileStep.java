@@ -1,12 +1,14 @@
 package org.hive2hive.core.processes.implementations.files.download;
 
+import java.nio.file.Path;
+
 import net.tomp2p.peers.PeerAddress;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
-import org.hive2hive.core.model.Index;
-import org.hive2hive.core.model.UserProfile;
+import org.hive2hive.core.model.UserProfileSnapshot;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.data.IDataManager;
 import org.hive2hive.core.network.data.UserProfileManager;
@@ -32,27 +34,27 @@ public class FindInUserProfileStep extends ProcessStep {
 
 	@Override
 	protected void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
-		UserProfile userProfile = null;
+		UserProfileSnapshot userProfile = null;
 		try {
 			UserProfileManager profileManager = networkManager.getSession().getProfileManager();
-			userProfile = profileManager.getUserProfile(getID(), false);
+			userProfile = profileManager.getSnapshot(getID(), H2HConstants.USER_PROFILE_MAX_STALENESS_MS);
 		} catch (GetFailedException | NoSessionException e) {
 			throw new ProcessExecutionException(e);
 		}
 
-		Index index = userProfile.getFileById(context.getFileKey());
-		if (index == null) {
+		Path path = userProfile.getPathById(context.getFileKey());
+		if (path == null) {
 			throw new ProcessExecutionException("File key not found in user profile.");
 		}
 
-		context.provideIndex(index);
+		context.provideNode(userProfile, path);
 
 		// add the next steps here
-		if (index.isFolder()) {
-			logger.info("No download of the file needed since '{}' is a folder.", index.getFullPath());
+		if (context.isFolder()) {
+			logger.info("No download of the file needed since '{}' is a folder.", path);
 			getParent().add(new CreateFolderStep(context, networkManager));
 		} else {
-			logger.info("Initalize the process for downloading file '{}'.", index.getFullPath());
+			logger.info("Initalize the process for downloading file '{}'.", path);
 			try {
 				IDataManager dataManager = networkManager.getDataManager();
 				getParent().add(new GetMetaFileStep(context, context, dataManager));
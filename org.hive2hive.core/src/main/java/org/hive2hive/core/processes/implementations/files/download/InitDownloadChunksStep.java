@@ -2,14 +2,14 @@ package org.hive2hive.core.processes.implementations.files.download;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Set;
 
 import net.tomp2p.peers.PeerAddress;
 
 import org.hive2hive.core.H2HSession;
-import org.hive2hive.core.file.FileUtil;
-import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FileSnapshot;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.MetaFile;
 import org.hive2hive.core.model.MetaFileLarge;
@@ -46,7 +46,7 @@ public class InitDownloadChunksStep extends ProcessStep {
 
 		// support to store the file on another location than default (used for recovery)
 		if (context.downloadToDefaultDestination()) {
-			destination = FileUtil.getPath(session.getRoot(), context.consumeIndex()).toFile();
+			destination = Paths.get(session.getRoot().toString(), context.consumePath().toString()).toFile();
 		} else {
 			destination = context.getDestination();
 		}
@@ -79,6 +79,7 @@ public class InitDownloadChunksStep extends ProcessStep {
 			// start the download
 			DownloadTaskDHT task = new DownloadTaskDHT(metaChunks, destination, metaFile.getChunkKey()
 					.getPrivate());
+			task.setPriority(context.getPriority());
 			session.getDownloadManager().submit(task);
 			task.join();
 		} catch (InterruptedException e) {
@@ -90,9 +91,10 @@ public class InitDownloadChunksStep extends ProcessStep {
 		// TODO support versioning at large files as well
 
 		try {
-			Set<String> users = context.consumeIndex().getCalculatedUserList();
+			Set<String> users = context.consumeUserList();
 			DownloadTaskDirect task = new DownloadTaskDirect(metaFile.getMetaChunks(), destination,
 					metaFile.getId(), session.getUserId(), ownPeerAddress, users);
+			task.setPriority(context.getPriority());
 			session.getDownloadManager().submit(task);
 			task.join();
 		} catch (InterruptedException e) {
@@ -110,8 +112,8 @@ public class InitDownloadChunksStep extends ProcessStep {
 		if (destination != null && destination.exists()) {
 			try {
 				// can be cast because only files are downloaded
-				FileIndex fileIndex = (FileIndex) context.consumeIndex();
-				if (H2HEncryptionUtil.compareMD5(destination, fileIndex.getMD5())) {
+				FileSnapshot file = (FileSnapshot) context.consumeNode();
+				if (H2HEncryptionUtil.compareMD5(destination, file.getMD5())) {
 					return false;
 				} else {
 					logger.warn("File already exists on disk. It will be overwritten.");
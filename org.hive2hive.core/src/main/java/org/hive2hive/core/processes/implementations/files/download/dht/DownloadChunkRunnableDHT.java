@@ -43,8 +43,7 @@ public class DownloadChunkRunnableDHT implements Runnable {
 		this.dataManager = dataManager;
 
 		// create temporary file
-		this.tempDestination = new File(task.getTempDirectory(), task.getDestinationName() + "-"
-				+ chunk.getIndex());
+		this.tempDestination = task.getPartFile(chunk.getIndex());
 	}
 
 	@Override
@@ -62,7 +61,8 @@ public class DownloadChunkRunnableDHT implements Runnable {
 				task.getDestinationName());
 		IParameters parameters = new Parameters().setLocationKey(metaChunk.getChunkId()).setContentKey(
 				H2HConstants.FILE_CHUNK);
-		NetworkContent content = dataManager.get(parameters);
+		// chunks never change, thus they can be served from the cache
+		NetworkContent content = dataManager.getImmutable(parameters);
 		if (content == null) {
 			task.abortDownload("Chunk not found in the DHT");
 			return;
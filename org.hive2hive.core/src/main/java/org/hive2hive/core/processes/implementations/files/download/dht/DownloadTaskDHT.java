@@ -1,11 +1,13 @@
 package org.hive2hive.core.processes.implementations.files.download.dht;
 
 import java.io.File;
+import java.io.IOException;
 import java.security.PrivateKey;
 import java.util.List;
 
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.network.data.download.BaseDownloadTask;
+import org.hive2hive.core.security.H2HEncryptionUtil;
 
 public class DownloadTaskDHT extends BaseDownloadTask {
 
@@ -22,6 +24,16 @@ public class DownloadTaskDHT extends BaseDownloadTask {
 		return decryptionKey;
 	}
 
+	/**
+	 * The hash of a chunk in the DHT is taken over the encrypted content, which is not kept on disk. Thus, the
+	 * part is verified against the hash in the journal, which lies in the download directory of the current
+	 * user.
+	 */
+	@Override
+	protected boolean verifyPart(MetaChunk metaChunk, File partFile, byte[] recordedHash) throws IOException {
+		return H2HEncryptionUtil.compareMD5(partFile, recordedHash);
+	}
+
 	@Override
 	public boolean isDirectDownload() {
 		return false;
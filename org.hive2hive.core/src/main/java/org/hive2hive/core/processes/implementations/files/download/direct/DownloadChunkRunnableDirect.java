@@ -40,8 +40,7 @@ public class DownloadChunkRunnableDirect implements Runnable {
 		this.config = config;
 
 		// create temporary file
-		this.tempDestination = new File(task.getTempDirectory(), task.getDestinationName() + "-"
-				+ chunk.getIndex());
+		this.tempDestination = task.getPartFile(chunk.getIndex());
 	}
 
 	@Override
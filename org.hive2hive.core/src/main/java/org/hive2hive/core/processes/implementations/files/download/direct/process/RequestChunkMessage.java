@@ -2,18 +2,18 @@ package org.hive2hive.core.processes.implementations.files.download.direct.proce
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.PublicKey;
 
 import net.tomp2p.peers.PeerAddress;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.file.FileChunkUtil;
-import org.hive2hive.core.file.FileUtil;
 import org.hive2hive.core.model.Chunk;
-import org.hive2hive.core.model.Index;
-import org.hive2hive.core.model.UserProfile;
+import org.hive2hive.core.model.UserProfileSnapshot;
 import org.hive2hive.core.network.data.UserProfileManager;
 import org.hive2hive.core.network.messages.request.DirectRequestMessage;
 import org.hive2hive.core.security.EncryptionUtil;
@@ -54,10 +54,10 @@ public class RequestChunkMessage extends DirectRequestMessage {
 			return;
 		}
 
-		UserProfile userProfile;
+		UserProfileSnapshot userProfile;
 		try {
 			UserProfileManager profileManager = session.getProfileManager();
-			userProfile = profileManager.getUserProfile(messageID, false);
+			userProfile = profileManager.getSnapshot(messageID, H2HConstants.USER_PROFILE_MAX_STALENESS_MS);
 		} catch (GetFailedException e) {
 			logger.error("Cannot get the user profile", e);
 			sendDirectResponse(createResponse(null));
@@ -65,16 +65,16 @@ public class RequestChunkMessage extends DirectRequestMessage {
 		}
 
 		// find file in user profile
-		Index index = userProfile.getFileById(fileKey);
-		if (index == null || index.isFolder()) {
+		Path relativePath = userProfile.getPathById(fileKey);
+		if (relativePath == null || userProfile.getByPath(relativePath).isFolder()) {
 			logger.info("File not found in the user profile, cannot return a chunk");
 			sendDirectResponse(createResponse(null));
 			return;
 		}
 
 		// check if file is on disk
-		Path path = FileUtil.getPath(session.getRoot(), index);
-		if (path == null || !path.toFile().exists()) {
+		Path path = Paths.get(session.getRoot().toString(), relativePath.toString());
+		if (!path.toFile().exists()) {
 			logger.info("File not found on disk, cannot return a chunk");
 			sendDirectResponse(createResponse(null));
 			return;
@@ -2,16 +2,18 @@ package org.hive2hive.core.processes.implementations.files.list;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.exceptions.GetFailedException;
-import org.hive2hive.core.model.FileIndex;
-import org.hive2hive.core.model.FolderIndex;
-import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.FileSnapshot;
+import org.hive2hive.core.model.FolderSnapshot;
+import org.hive2hive.core.model.IndexSnapshot;
 import org.hive2hive.core.model.UserPermission;
-import org.hive2hive.core.model.UserProfile;
+import org.hive2hive.core.model.UserProfileSnapshot;
 import org.hive2hive.core.network.data.UserProfileManager;
 import org.hive2hive.core.processes.framework.concretes.ResultProcessStep;
 import org.hive2hive.core.processes.framework.exceptions.InvalidProcessStateException;
@@ -31,10 +33,10 @@ public class GetFileListStep extends ResultProcessStep<List<FileTaste>> {
 
 	@Override
 	protected void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
-		// get the user profile
-		UserProfile profile = null;
+		// get a snapshot of the user profile, it does not change while iterating
+		UserProfileSnapshot profile = null;
 		try {
-			profile = profileManager.getUserProfile(getID(), false);
+			profile = profileManager.getSnapshot(getID(), H2HConstants.USER_PROFILE_MAX_STALENESS_MS);
 		} catch (GetFailedException e) {
 			throw new ProcessExecutionException("User profile could not be loaded.");
 		}
@@ -42,32 +44,30 @@ public class GetFileListStep extends ResultProcessStep<List<FileTaste>> {
 		// the result set
 		result.clear();
 
-		// build the digest recursively
-		FolderIndex root = profile.getRoot();
-		List<Index> digest = Index.getIndexList(root);
-		for (Index index : digest) {
-			if (index.equals(root)) {
-				// skip the root
-				continue;
-			}
+		// build the digest recursively (skipping the root)
+		FolderSnapshot root = profile.getRoot();
+		addChildren(root, Paths.get(""), root.getUserPermissions());
+
+		notifyResultComputed(result);
+	}
 
-			Path path = index.getFullPath();
+	private void addChildren(FolderSnapshot folder, Path folderPath, Set<UserPermission> folderPermissions) {
+		for (IndexSnapshot child : folder.getChildren()) {
+			Path path = folderPath.resolve(child.getName());
 			File file = new File(rootFile, path.toString());
 
-			byte[] md5Hash = null;
-			Set<UserPermission> userPermissions;
-			if (index.isFile()) {
-				FileIndex fileIndex = ((FileIndex) index);
-				md5Hash = fileIndex.getMD5();
-				userPermissions = fileIndex.getParent().getCalculatedUserPermissions();
+			if (child.isFile()) {
+				// files have the permissions of their parent
+				byte[] md5Hash = ((FileSnapshot) child).getMD5();
+				result.add(new FileTaste(file, path, md5Hash, folderPermissions));
 			} else {
-				userPermissions = ((FolderIndex) index).getCalculatedUserPermissions();
+				FolderSnapshot subfolder = (FolderSnapshot) child;
+				Set<UserPermission> userPermissions = subfolder.getUserPermissions().isEmpty() ? folderPermissions
+						: subfolder.getUserPermissions();
+				result.add(new FileTaste(file, path, null, userPermissions));
+				addChildren(subfolder, path, userPermissions);
 			}
-
-			result.add(new FileTaste(file, path, md5Hash, userPermissions));
 		}
-
-		notifyResultComputed(result);
 	}
 
 	@Override
@@ -13,7 +13,7 @@ import org.hive2hive.core.file.FileUtil;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.UserProfile;
 import org.hive2hive.core.network.data.UserProfileManager;
-import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
+import org.hive2hive.core.processes.implementations.notify.BaseNotificationMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,7 +24,7 @@ import org.slf4j.LoggerFactory;
  * @author Nico
  * 
  */
-public class MoveNotificationMessage extends BaseDirectMessage {
+public class MoveNotificationMessage extends BaseNotificationMessage {
 
 	private static final long serialVersionUID = 2855700202146422905L;
 	
@@ -44,7 +44,7 @@ public class MoveNotificationMessage extends BaseDirectMessage {
 	}
 
 	@Override
-	public void run() {
+	protected void handleNotification() {
 		logger.debug("Notification message received.");
 		move();
 	}
@@ -16,6 +16,7 @@ import org.hive2hive.core.model.MetaFileSmall;
 import org.hive2hive.core.model.UserProfile;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.core.network.data.download.DownloadPriority;
 import org.hive2hive.core.processes.ProcessFactory;
 import org.hive2hive.core.processes.framework.abstracts.ProcessComponent;
 import org.hive2hive.core.processes.framework.abstracts.ProcessStep;
@@ -118,9 +119,10 @@ public class SelectVersionStep extends ProcessStep {
 			logger.debug("Starting to download the restored file under the name '{}'.", recoveredFileName);
 			File destination = new File(context.getFile().getParentFile(), recoveredFileName);
 
-			// add the process to download the file
+			// add the process to download the file, the user is waiting for it
 			ProcessComponent downloadProcess = ProcessFactory.instance().createDownloadFileProcess(
-					selectedNode.getFilePublicKey(), selected.getIndex(), destination, networkManager);
+					selectedNode.getFilePublicKey(), selected.getIndex(), destination, DownloadPriority.HIGH,
+					networkManager);
 			getParent().add(downloadProcess);
 
 			// add the process to upload the file
@@ -48,9 +48,12 @@ public class CreateNewVersionStep extends ProcessStep {
 
 		// create a new version and add it to the meta file
 		MetaFileSmall metaFileSmall = (MetaFileSmall) context.consumeMetaFile();
-		newVersion = new FileVersion(metaFileSmall.getVersions().size(), FileUtil.getFileSize(context
-				.getFile()), System.currentTimeMillis(), context.getMetaChunks());
-		metaFileSmall.getVersions().add(newVersion);
+		// the index counts up with each version, old versions may have been removed already
+		FileVersion newestVersion = metaFileSmall.getNewestVersion();
+		int index = newestVersion == null ? 0 : newestVersion.getIndex() + 1;
+		newVersion = new FileVersion(index, FileUtil.getFileSize(context.getFile()), System.currentTimeMillis(),
+				context.getMetaChunks());
+		metaFileSmall.addVersion(newVersion);
 
 		initiateCleanup();
 	}
@@ -69,7 +72,7 @@ public class CreateNewVersionStep extends ProcessStep {
 				break;
 
 			// remove the version of the meta file
-			deletedFileVersions.add(metaFileSmall.getVersions().remove(0));
+			deletedFileVersions.add(metaFileSmall.removeOldestVersion());
 		}
 
 		logger.debug("Need to remove {} old versions.", deletedFileVersions.size());
@@ -85,10 +88,12 @@ public class CreateNewVersionStep extends ProcessStep {
 		if (context.consumeMetaFile() != null) {
 			MetaFileSmall metaFileSmall = (MetaFileSmall) context.consumeMetaFile();
 			// remove the new version
-			metaFileSmall.getVersions().remove(newVersion);
+			metaFileSmall.removeVersion(newVersion);
 
 			// add the cleaned up versions
-			metaFileSmall.getVersions().addAll(deletedFileVersions);
+			for (FileVersion version : deletedFileVersions) {
+				metaFileSmall.addVersion(version);
+			}
 		}
 	}
 }
@@ -16,6 +16,7 @@ import org.hive2hive.core.model.FileIndex;
 import org.hive2hive.core.model.FolderIndex;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.download.DownloadPriority;
 import org.hive2hive.core.processes.ProcessFactory;
 import org.hive2hive.core.processes.framework.abstracts.ProcessComponent;
 import org.hive2hive.core.processes.framework.concretes.SequentialProcess;
@@ -142,13 +143,27 @@ public class FileRecursionUtil {
 	/**
 	 * Creates a process with all children processes.
 	 * 
-	 * @param files the files to download (order does not depend)
+	 * @param files the files to download (order does not depend), e.g. a lazy {@link Index#preorder(Index)}
 	 * @param networkManager the connected node (note, it must have a session)
 	 * @return the root process component containing all sub-processes (and sub-tasks)
 	 * @throws NoSessionException
 	 */
-	public static ProcessComponent buildDownloadProcess(List<Index> files, NetworkManager networkManager)
+	public static ProcessComponent buildDownloadProcess(Iterable<Index> files, NetworkManager networkManager)
 			throws NoSessionException {
+		return buildDownloadProcess(files, DownloadPriority.NORMAL, networkManager);
+	}
+
+	/**
+	 * Creates a process with all children processes, downloading the files with the given priority.
+	 * 
+	 * @param files the files to download (order does not depend), e.g. a lazy {@link Index#preorder(Index)}
+	 * @param priority the priority of the chunk downloads
+	 * @param networkManager the connected node (note, it must have a session)
+	 * @return the root process component containing all sub-processes (and sub-tasks)
+	 * @throws NoSessionException
+	 */
+	public static ProcessComponent buildDownloadProcess(Iterable<Index> files, DownloadPriority priority,
+			NetworkManager networkManager) throws NoSessionException {
 		// the root process, where everything runs in parallel (only async children are added)
 		SequentialProcess rootProcess = new SequentialProcess();
 
@@ -159,7 +174,7 @@ public class FileRecursionUtil {
 		for (Index file : files) {
 			PublicKey fileKey = file.getFilePublicKey();
 			ProcessComponent downloadProcess = ProcessFactory.instance().createDownloadFileProcess(fileKey,
-					networkManager);
+					priority, networkManager);
 			if (file.isFolder()) {
 				// when a directory, the process may have multiple children, thus we need a sequential process
 				SequentialProcess folderProcess = new SequentialProcess();
@@ -13,6 +13,7 @@ import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.UserProfile;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.core.network.data.download.DownloadPriority;
 import org.hive2hive.core.processes.ProcessFactory;
 import org.hive2hive.core.processes.framework.abstracts.ProcessComponent;
 import org.hive2hive.core.processes.framework.abstracts.ProcessStep;
@@ -101,7 +102,9 @@ public class SynchronizeFilesStep extends ProcessStep {
 		// download remotely added/updated files
 		List<Index> toDownload = new ArrayList<Index>(synchronizer.getAddedRemotely());
 		toDownload.addAll(synchronizer.getUpdatedRemotely());
-		ProcessComponent downloadProcess = FileRecursionUtil.buildDownloadProcess(toDownload, networkManager);
+		// the user did not explicitly ask for these files, let other downloads go first
+		ProcessComponent downloadProcess = FileRecursionUtil.buildDownloadProcess(toDownload, DownloadPriority.LOW,
+				networkManager);
 		getParent().add(downloadProcess);
 
 		// upload the locally added files
@@ -0,0 +1,42 @@
+package org.hive2hive.core.processes.implementations.notify;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class of the notification messages sent to the other clients of the same user (see
+ * {@link BaseNotificationMessageFactory#createPrivateNotificationMessage(PeerAddress)}). The sender
+ * modified the user profile, thus the receiver first marks its cached profile as stale, such that the
+ * notification is handled with the newest profile.
+ * 
+ * @author Seppi
+ */
+public abstract class BaseNotificationMessage extends BaseDirectMessage {
+
+	private static final long serialVersionUID = -3829178932478102385L;
+
+	private final static Logger logger = LoggerFactory.getLogger(BaseNotificationMessage.class);
+
+	public BaseNotificationMessage(PeerAddress targetAddress) {
+		super(targetAddress);
+	}
+
+	@Override
+	public final void run() {
+		try {
+			networkManager.getSession().getProfileManager().invalidateCache();
+		} catch (NoSessionException e) {
+			logger.warn("Cannot invalidate the cached user profile. Currently no user is logged in.");
+		}
+		handleNotification();
+	}
+
+	/**
+	 * Handles the notification, called after the cached user profile has been marked as stale.
+	 */
+	protected abstract void handleNotification();
+}
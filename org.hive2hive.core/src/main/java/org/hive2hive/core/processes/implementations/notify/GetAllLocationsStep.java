@@ -18,13 +18,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Gets all locations of a given list of users (iterative). If all locations are fetched, this step sends
+ * Gets all locations of a given list of users (in parallel). If all locations are fetched, this step sends
  * them.
  * 
  * @author Nico
  * 
  */
-// TODO: do parallel for faster processing
 public class GetAllLocationsStep extends BaseGetProcessStep {
 
 	private final static Logger logger = LoggerFactory.getLogger(GetAllLocationsStep.class);
@@ -40,9 +39,10 @@ public class GetAllLocationsStep extends BaseGetProcessStep {
 		logger.debug("Starting to get all locations from the users to be notified.");
 		Map<String, List<PeerAddress>> allLocations = new HashMap<String, List<PeerAddress>>();
 
-		// iterate over all users and get the locations of them
-		for (String userId : context.consumeUsersToNotify()) {
-			NetworkContent content = get(userId, H2HConstants.USER_LOCATIONS);
+		// get the locations of all users at once
+		Map<String, NetworkContent> contents = getAll(context.consumeUsersToNotify(), H2HConstants.USER_LOCATIONS);
+		for (String userId : contents.keySet()) {
+			NetworkContent content = contents.get(userId);
 			if (content == null) {
 				allLocations.put(userId, new ArrayList<PeerAddress>());
 			} else {
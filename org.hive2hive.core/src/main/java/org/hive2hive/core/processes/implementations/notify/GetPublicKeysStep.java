@@ -1,11 +1,9 @@
 package org.hive2hive.core.processes.implementations.notify;
 
 import java.security.PublicKey;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
-import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.network.data.PublicKeyManager;
 import org.hive2hive.core.processes.framework.abstracts.ProcessStep;
@@ -15,12 +13,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Gets all public keys from these users iteratively
+ * Gets all public keys from these users in parallel
  * 
  * @author Nico
  * 
  */
-// TODO get the keys in parallel
 public class GetPublicKeysStep extends ProcessStep {
 
 	private final static Logger logger = LoggerFactory.getLogger(GetPublicKeysStep.class);
@@ -38,15 +35,9 @@ public class GetPublicKeysStep extends ProcessStep {
 		Set<String> users = context.consumeUsersToNotify();
 
 		logger.debug("Start getting public keys from {} user(s).", users.size());
-		Map<String, PublicKey> keys = new HashMap<String, PublicKey>();
-
-		for (String user : users) {
-			try {
-				PublicKey key = keyManager.getPublicKey(user);
-				keys.put(user, key);
-			} catch (GetFailedException e) {
-				logger.error("Could not get the key for user {}", user);
-			}
+		Map<String, PublicKey> keys = keyManager.getPublicKeys(users);
+		if (keys.size() < users.size()) {
+			logger.error("Could not get the keys of {} user(s).", users.size() - keys.size());
 		}
 
 		// store the keys to the context
@@ -1,6 +1,8 @@
 package org.hive2hive.core.processes.implementations.notify;
 
 import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.hive2hive.core.network.NetworkManager;
@@ -32,18 +34,23 @@ public class PutAllUserProfileTasksStep extends PutUserProfileTaskStep {
 		}
 
 		Map<String, PublicKey> userPublicKeys = context.getUserPublicKeys();
+		Map<String, PublicKey> receivers = new HashMap<String, PublicKey>();
 		for (String user : context.consumeUsersToNotify()) {
 			if (user.equalsIgnoreCase(networkManager.getUserId())) {
 				// do not put a UPtask in the own queue
 				continue;
 			}
+			receivers.put(user, userPublicKeys.get(user));
+		}
 
-			try {
-				// put the profile task to the queue
-				put(user, userProfileTask, userPublicKeys.get(user));
-			} catch (Exception e) {
-				logger.error("Could not put the user profile task to the queue of user '{}'." + user, e);
+		try {
+			// put the profile task to the queues of all users at once
+			List<String> failed = putAll(receivers, userProfileTask);
+			for (String user : failed) {
+				logger.error("Could not put the user profile task to the queue of user '{}'.", user);
 			}
+		} catch (Exception e) {
+			logger.error("Could not put the user profile tasks to the queues.", e);
 		}
 	}
 }
@@ -1,6 +1,5 @@
 package org.hive2hive.core.processes.implementations.share;
 
-import java.util.List;
 import java.util.UUID;
 
 import org.hive2hive.core.exceptions.Hive2HiveException;
@@ -9,6 +8,7 @@ import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.UserPermission;
 import org.hive2hive.core.model.UserProfile;
 import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.core.network.data.download.DownloadPriority;
 import org.hive2hive.core.network.userprofiletask.UserProfileTask;
 import org.hive2hive.core.processes.framework.abstracts.ProcessComponent;
 import org.hive2hive.core.processes.implementations.files.add.UploadNotificationMessageFactory;
@@ -86,10 +86,10 @@ public class ShareFolderUserProfileTask extends UserProfileTask {
 		logger.debug("Notified other client that new (shared) files are available for download.");
 
 		/** 3. download the files that are now available */
-		List<Index> fileList = Index.getIndexList(sharedIndex);
-		// the folder itself is also contained, so remove it
-		ProcessComponent downloadProcess = FileRecursionUtil.buildDownloadProcess(fileList, networkManager);
-		logger.debug("Start to download {} files that have been shared with me.", fileList.size());
+		// the folder itself is also contained
+		ProcessComponent downloadProcess = FileRecursionUtil.buildDownloadProcess(Index.preorder(sharedIndex),
+				DownloadPriority.LOW, networkManager);
+		logger.debug("Start to download the files that have been shared with me.");
 		downloadProcess.start();
 	}
 }
@@ -1,11 +1,10 @@
 package org.hive2hive.core.processes.implementations.share.pkupdate;
 
-import java.util.List;
-
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.model.FileIndex;
 import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.IIndexFilter;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.network.data.IDataManager;
 import org.hive2hive.core.processes.framework.abstracts.ProcessComponent;
@@ -58,12 +57,8 @@ public class InitializeMetaUpdateStep extends ProcessStep {
 
 	private void initForFolder(FolderIndex folderIndex) throws ProcessExecutionException, NoSessionException,
 			NoPeerConnectionException {
-		List<Index> indexList = Index.getIndexList(folderIndex);
-		for (Index index : indexList) {
-			if (index.isFile()) {
-				FileIndex fileIndex = (FileIndex) index;
-				initForFile(fileIndex);
-			}
+		for (Index index : Index.preorder(folderIndex, IIndexFilter.FILES)) {
+			initForFile((FileIndex) index);
 		}
 	}
 
@@ -5,12 +5,22 @@ import org.hive2hive.core.file.FileUtilTest;
 import org.hive2hive.core.model.IndexTest;
 import org.hive2hive.core.model.MetaFileTest;
 import org.hive2hive.core.model.UserCredentialsTest;
+import org.hive2hive.core.model.UserProfileSnapshotTest;
 import org.hive2hive.core.network.ConnectionTest;
+import org.hive2hive.core.network.ExpiryWheelTest;
+import org.hive2hive.core.network.H2HStorageMemoryStressTest;
 import org.hive2hive.core.network.H2HStorageMemoryTest;
+import org.hive2hive.core.network.VersionRingTest;
 import org.hive2hive.core.network.data.DataManagerTest;
+import org.hive2hive.core.network.data.UserProfileShardsTest;
+import org.hive2hive.core.network.data.download.DownloadJournalTest;
+import org.hive2hive.core.network.data.download.DownloadSchedulerTest;
 import org.hive2hive.core.network.messages.BaseMessageTest;
 import org.hive2hive.core.network.messages.BaseRequestMessageTest;
 import org.hive2hive.core.network.messages.direct.BaseDirectRequestMessageTest;
+import org.hive2hive.core.network.storage.LogStructuredStoreTest;
+import org.hive2hive.core.network.storage.StorageDiskTest;
+import org.hive2hive.core.network.storage.StorageOffHeapTest;
 import org.hive2hive.core.network.userprofiletask.TestUserProfileTask;
 import org.hive2hive.core.processes.framework.ProcessListenerTest;
 import org.hive2hive.core.processes.framework.SequentialProcessTest;
@@ -56,9 +66,13 @@ import org.junit.runners.Suite.SuiteClasses;
 	ReplicationTest.class, FromToTest.class, SecurityTest.class, TTLTest.class,
 
 	// Network
-	H2HStorageMemoryTest.class, ConnectionTest.class,
+	H2HStorageMemoryTest.class, H2HStorageMemoryStressTest.class, VersionRingTest.class, ExpiryWheelTest.class,
+	ConnectionTest.class,
 	// Network, Data
-	DataManagerTest.class,
+	DataManagerTest.class, UserProfileShardsTest.class, DownloadSchedulerTest.class,
+	DownloadJournalTest.class,
+	// Network, Storage
+	LogStructuredStoreTest.class, StorageDiskTest.class, StorageOffHeapTest.class,
 	// Network, Message
 	BaseMessageTest.class, BaseRequestMessageTest.class,
 	// Network, Message, Direct
@@ -101,7 +115,7 @@ import org.junit.runners.Suite.SuiteClasses;
 	FileUtilTest.class, FileSynchronizerTest.class,
 
 	// Model
-	IndexTest.class, UserCredentialsTest.class, MetaFileTest.class,
+	IndexTest.class, UserCredentialsTest.class, MetaFileTest.class, UserProfileSnapshotTest.class,
 	
 	// Security
 	EncryptionUtilTest.class, H2HSignatureFactoryTest.class, PasswordUtilTest.class
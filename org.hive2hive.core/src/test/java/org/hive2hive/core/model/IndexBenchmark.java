@@ -0,0 +1,106 @@
+package org.hive2hive.core.model;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.util.Random;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Measures the index tree with a large number of nodes. It is not part of the test suite nor of the default
+ * build (the name does not end with <code>Test</code>) and has to be run manually.
+ * 
+ * @author Seppi
+ */
+public class IndexBenchmark extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = IndexBenchmark.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+
+	@Test
+	public void testLargeTree() {
+		// 1000 folders with 1000 files each, the nodes share the keys to speed up
+		KeyPair keys = EncryptionUtil.generateRSAKeyPair(EncryptionUtil.RSA_KEYLENGTH.BIT_512);
+		int numFolders = 1000;
+		int numFiles = 1000;
+
+		long start = System.currentTimeMillis();
+		FolderIndex largeRoot = new FolderIndex(null, new KeyPair(keys.getPublic(), keys.getPrivate()), null);
+		for (int i = 0; i < numFolders; i++) {
+			FolderIndex folder = new FolderIndex(largeRoot, new KeyPair(keys.getPublic(), keys.getPrivate()), "d"
+					+ i);
+			for (int j = 0; j < numFiles; j++) {
+				new FileIndex(folder, new KeyPair(keys.getPublic(), keys.getPrivate()), "f" + j, null);
+			}
+		}
+		long built = System.currentTimeMillis();
+
+		Random random = new Random();
+		int numLookups = 100000;
+		for (int i = 0; i < numLookups; i++) {
+			Path path = Paths.get("D" + random.nextInt(numFolders), "F" + random.nextInt(numFiles));
+			FolderIndex folder = (FolderIndex) largeRoot.getChildByName(path.getName(0).toString());
+			Index file = folder.getChildByName(path.getName(1).toString());
+			Assert.assertTrue(file.getFullPath().toString().equalsIgnoreCase(path.toString()));
+		}
+		long looked = System.currentTimeMillis();
+
+		logger.info("Built a tree with {} nodes in {} ms, {} lookups took {} ms.", numFolders * (numFiles + 1) + 1,
+				built - start, numLookups, looked - built);
+	}
+
+	@Test
+	public void testCompactRepresentation() throws Exception {
+		// memory and serialization of trees with 100k and 1M files, the nodes share the keys
+		KeyPair keys = EncryptionUtil.generateRSAKeyPair(EncryptionUtil.RSA_KEYLENGTH.BIT_512);
+		for (int numFiles : new int[] { 100000, 1000000 }) {
+			System.gc();
+			Runtime runtime = Runtime.getRuntime();
+			long before = runtime.totalMemory() - runtime.freeMemory();
+
+			FolderIndex largeRoot = new FolderIndex(null, new KeyPair(keys.getPublic(), keys.getPrivate()), null);
+			for (int i = 0; i < numFiles / 1000; i++) {
+				FolderIndex folder = new FolderIndex(largeRoot, new KeyPair(keys.getPublic(), keys.getPrivate()),
+						"d" + i);
+				for (int j = 0; j < 1000; j++) {
+					new FileIndex(folder, new KeyPair(keys.getPublic(), keys.getPrivate()), "file-" + j + ".txt",
+							null);
+				}
+			}
+			System.gc();
+			long heap = runtime.totalMemory() - runtime.freeMemory() - before;
+
+			long start = System.currentTimeMillis();
+			byte[] serialized = EncryptionUtil.serializeObject(largeRoot);
+			long serializedAt = System.currentTimeMillis();
+			FolderIndex deserialized = (FolderIndex) EncryptionUtil.deserializeObject(serialized);
+			long deserializedAt = System.currentTimeMillis();
+
+			// the children are ordered by name and can be found after deserialization
+			Assert.assertEquals(numFiles / 1000, deserialized.getChildren().size());
+			FolderIndex folder = (FolderIndex) deserialized.getChildByName("D7");
+			Assert.assertEquals(1000, folder.getChildren().size());
+			Assert.assertEquals("file-0.txt", folder.getChildren().iterator().next().getName());
+			Assert.assertEquals(Paths.get("d7", "file-5.txt"), folder.getChildByName("FILE-5.TXT").getFullPath());
+
+			logger.info("{} files: {} MB heap, serialized to {} MB in {} ms, deserialized in {} ms.", numFiles,
+					heap / (1024 * 1024), serialized.length / (1024 * 1024), serializedAt - start, deserializedAt
+							- serializedAt);
+		}
+	}
+
+}
@@ -1,7 +1,12 @@
 package org.hive2hive.core.model;
 
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HJUnitTest;
@@ -157,6 +162,204 @@ public class IndexTest extends H2HJUnitTest {
 		Assert.assertEquals(null, root.getChildByName(""));
 	}
 
+	@Test
+	public void testRenameAndMove() {
+		Path before = child3.getFullPath();
+		Assert.assertSame(before, child3.getFullPath());
+
+		// renaming a parent changes the paths of all children
+		dir1.setName("1D-renamed");
+		Assert.assertEquals(Paths.get("1D-renamed", "2f"), child3.getFullPath());
+		Assert.assertEquals(Paths.get("1D-renamed", "3d", "4d"), dir4.getFullPath());
+		Assert.assertEquals(dir1, root.getChildByName("1d-RENAMED"));
+		Assert.assertNull(root.getChildByName("1d"));
+
+		// moving as well
+		dir3.removeChild(dir4);
+		dir4.setParent(root);
+		root.addChild(dir4);
+		Assert.assertEquals(Paths.get("4d"), dir4.getFullPath());
+		Assert.assertEquals(dir4, root.getChildByName("4D"));
+		Assert.assertNull(dir3.getChildByName("4d"));
+	}
+
+	@Test
+	public void testMemoizedSharing() {
+		KeyPair rootKeys = root.getProtectionKeys();
+		Assert.assertEquals(rootKeys, child3.getProtectionKeys());
+		Assert.assertFalse(dir4.isShared());
+
+		// sharing an ancestor changes the memoized values of the sub-tree
+		KeyPair sharedKeys = EncryptionUtil.generateRSAKeyPair(EncryptionUtil.RSA_KEYLENGTH.BIT_512);
+		dir1.share(sharedKeys);
+		dir1.addUserPermissions(new UserPermission("UserB", PermissionType.READ));
+		Assert.assertEquals(sharedKeys, child3.getProtectionKeys());
+		Assert.assertEquals(sharedKeys, dir4.getProtectionKeys());
+		Assert.assertTrue(dir4.isShared());
+		Assert.assertTrue(child3.getCalculatedUserList().contains("UserB"));
+
+		// moving a folder out of the shared sub-tree
+		dir1.removeChild(dir3);
+		dir3.setParent(root);
+		root.addChild(dir3);
+		Assert.assertEquals(rootKeys, dir4.getProtectionKeys());
+		Assert.assertFalse(dir4.isShared());
+		Assert.assertFalse(dir4.getCalculatedUserList().contains("UserB"));
+
+		// permissions and unsharing
+		dir1.removeUserPermissions("UserB");
+		Assert.assertFalse(child3.getCalculatedUserList().contains("UserB"));
+		dir1.unshare();
+		Assert.assertEquals(rootKeys, child3.getProtectionKeys());
+		Assert.assertFalse(child3.isShared());
+		Assert.assertFalse(root.isSharedOrHasSharedChildren());
+	}
+
+	@Test
+	public void testMemoizedPerTree() {
+		KeyPair keys = EncryptionUtil.generateRSAKeyPair(EncryptionUtil.RSA_KEYLENGTH.BIT_512);
+		dir1.share(keys);
+		Assert.assertTrue(dir4.isShared());
+		long stamp = root.getModificationStamp();
+
+		// modifications of another tree do not invalidate the values of this tree
+		FolderIndex otherRoot = new FolderIndex(null, keys, null);
+		FolderIndex otherDir = new FolderIndex(otherRoot, keys, "other");
+		for (int i = 0; i < 10; i++) {
+			new FileIndex(otherDir, keys, "file" + i, null);
+		}
+		otherDir.removeChild(otherDir.getChildByName("file0"));
+		otherRoot.addUserPermissions(new UserPermission("UserB", PermissionType.READ));
+		Assert.assertEquals(stamp, root.getModificationStamp());
+
+		// adding files to this tree neither
+		new FileIndex(dir4, keys, "5f", null);
+		Assert.assertEquals(stamp, root.getModificationStamp());
+
+		// a folder moved into the shared folder of this tree is shared
+		otherRoot.removeChild(otherDir);
+		otherDir.setParent(dir1);
+		dir1.addChild(otherDir);
+		Assert.assertTrue(otherDir.getChildByName("file1").isShared());
+		Assert.assertEquals(dir1.getProtectionKeys(), otherDir.getProtectionKeys());
+	}
+
+	@Test
+	public void testShareLargeFolder() {
+		// a folder with 50k descendants, the nodes share the keys to speed up
+		KeyPair keys = EncryptionUtil.generateRSAKeyPair(EncryptionUtil.RSA_KEYLENGTH.BIT_512);
+		FolderIndex folder = new FolderIndex(root, new KeyPair(keys.getPublic(), keys.getPrivate()), "large");
+		for (int i = 0; i < 100; i++) {
+			FolderIndex subfolder = new FolderIndex(folder, new KeyPair(keys.getPublic(), keys.getPrivate()), "d"
+					+ i);
+			for (int j = 0; j < 500; j++) {
+				new FileIndex(subfolder, new KeyPair(keys.getPublic(), keys.getPrivate()), "f" + j, null);
+			}
+		}
+
+		long start = System.currentTimeMillis();
+		folder.share(keys);
+		folder.addUserPermissions(new UserPermission("UserB", PermissionType.WRITE));
+		int visited = 0;
+		for (Index index : Index.preorder(folder, IIndexFilter.FILES)) {
+			// as done by the protection key update and the notifications
+			Assert.assertEquals(keys, index.getProtectionKeys());
+			Assert.assertTrue(index.isShared());
+			Assert.assertTrue(index.getCalculatedUserList().contains("UserB"));
+			visited++;
+		}
+		Assert.assertEquals(50000, visited);
+		logger.info("Shared a folder with {} files in {} ms.", visited, System.currentTimeMillis() - start);
+	}
+
+	@Test
+	public void testTraversal() {
+		// preorder equals the recursive definition
+		List<Index> expected = new ArrayList<Index>();
+		addPreorder(root, expected);
+		List<Index> preorder = new ArrayList<Index>();
+		for (Index index : Index.preorder(root)) {
+			preorder.add(index);
+		}
+		Assert.assertEquals(expected, preorder);
+
+		// breadth-first visits the levels one after the other
+		List<Index> breadthFirst = new ArrayList<Index>();
+		int lastDepth = 0;
+		for (Index index : Index.breadthFirst(root)) {
+			int depth = index.getFullPath().toString().isEmpty() ? 0 : index.getFullPath().getNameCount();
+			Assert.assertTrue(depth >= lastDepth);
+			lastDepth = depth;
+			breadthFirst.add(index);
+		}
+		Assert.assertEquals(8, breadthFirst.size());
+		Assert.assertTrue(breadthFirst.containsAll(expected));
+
+		// filters
+		List<Index> files = new ArrayList<Index>();
+		for (Index index : Index.preorder(root, IIndexFilter.FILES)) {
+			files.add(index);
+		}
+		Assert.assertEquals(3, files.size());
+		Assert.assertTrue(files.contains(child1) && files.contains(child2) && files.contains(child3));
+		int folders = 0;
+		for (Index index : Index.breadthFirst(dir1, IIndexFilter.FOLDERS)) {
+			Assert.assertTrue(index.isFolder());
+			folders++;
+		}
+		Assert.assertEquals(4, folders);
+	}
+
+	@Test
+	public void testWalk() {
+		// skip the subtree of 1d
+		final List<Index> visited = new ArrayList<Index>();
+		FileVisitResult result = Index.walk(root, new IIndexVisitor() {
+			@Override
+			public FileVisitResult visit(Index index) {
+				visited.add(index);
+				return index == dir1 ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+		});
+		Assert.assertEquals(FileVisitResult.CONTINUE, result);
+		Assert.assertEquals(4, visited.size());
+		Assert.assertTrue(visited.contains(dir1));
+		Assert.assertFalse(visited.contains(child3));
+
+		// stop as soon as 3d is found
+		visited.clear();
+		result = Index.walk(root, new IIndexVisitor() {
+			@Override
+			public FileVisitResult visit(Index index) {
+				visited.add(index);
+				return index == dir3 ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+			}
+		});
+		Assert.assertEquals(FileVisitResult.TERMINATE, result);
+		Assert.assertEquals(dir3, visited.get(visited.size() - 1));
+		Assert.assertFalse(visited.contains(dir4));
+
+		// skip the siblings of 2f
+		visited.clear();
+		Index.walk(dir1, new IIndexVisitor() {
+			@Override
+			public FileVisitResult visit(Index index) {
+				visited.add(index);
+				return index == child3 ? FileVisitResult.SKIP_SIBLINGS : FileVisitResult.CONTINUE;
+			}
+		});
+		Assert.assertEquals(child3, visited.get(visited.size() - 1));
+	}
+
+	private static void addPreorder(Index node, List<Index> preorder) {
+		preorder.add(node);
+		if (node.isFolder()) {
+			for (Index child : ((FolderIndex) node).getChildren()) {
+				addPreorder(child, preorder);
+			}
+		}
+	}
+
 	@Test
 	public void testPermissions() {
 		Assert.assertTrue(root.getCalculatedUserList().contains(userId));
@@ -200,4 +403,23 @@ public class IndexTest extends H2HJUnitTest {
 		Assert.assertTrue(dir3.canWrite("UserC"));
 		Assert.assertTrue(dir4.canWrite("UserC"));
 	}
+
+	@Test
+	public void testCalculatedSetsAreCopies() {
+		dir1.share(EncryptionUtil.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE));
+		dir1.addUserPermissions(new UserPermission(userId, PermissionType.WRITE));
+		dir1.addUserPermissions(new UserPermission("UserB", PermissionType.READ));
+
+		// callers like the move notifications remove users from the returned sets
+		Set<String> users = child3.getCalculatedUserList();
+		users.removeAll(dir1.getCalculatedUserList());
+		Assert.assertTrue(users.isEmpty());
+		Assert.assertEquals(2, dir1.getCalculatedUserList().size());
+		Assert.assertEquals(2, child3.getCalculatedUserList().size());
+
+		Set<UserPermission> permissions = dir2.getCalculatedUserPermissions();
+		permissions.clear();
+		Assert.assertEquals(2, dir2.getCalculatedUserPermissions().size());
+		Assert.assertTrue(dir2.canWrite(userId));
+	}
 }
@@ -1,5 +1,6 @@
 package org.hive2hive.core.model;
 
+import java.math.BigInteger;
 import java.security.KeyPair;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +37,35 @@ public class MetaFileTest extends H2HJUnitTest {
 
 	}
 
+	@Test
+	public void testOrderedVersions() {
+		KeyPair keys = EncryptionUtil.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+		List<FileVersion> versions = new ArrayList<FileVersion>();
+		versions.add(new FileVersion(2, 300, System.currentTimeMillis(), new ArrayList<MetaChunk>()));
+		versions.add(new FileVersion(0, 100, System.currentTimeMillis(), new ArrayList<MetaChunk>()));
+		MetaFileSmall metaFileSmall = new MetaFileSmall(keys.getPublic(), versions, keys);
+
+		// the versions are ordered by their index
+		FileVersion version1 = new FileVersion(1, 200, System.currentTimeMillis(), new ArrayList<MetaChunk>());
+		metaFileSmall.addVersion(version1);
+		Assert.assertEquals(3, metaFileSmall.getVersions().size());
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(i, metaFileSmall.getVersions().get(i).getIndex());
+			Assert.assertEquals(i, metaFileSmall.getVersionByIndex(i).getIndex());
+		}
+		Assert.assertNull(metaFileSmall.getVersionByIndex(3));
+		Assert.assertEquals(2, metaFileSmall.getNewestVersion().getIndex());
+		Assert.assertEquals(BigInteger.valueOf(600), metaFileSmall.getTotalSize());
+
+		// the total size follows the modifications
+		Assert.assertEquals(0, metaFileSmall.removeOldestVersion().getIndex());
+		Assert.assertEquals(BigInteger.valueOf(500), metaFileSmall.getTotalSize());
+		Assert.assertTrue(metaFileSmall.removeVersion(version1));
+		Assert.assertFalse(metaFileSmall.removeVersion(version1));
+		Assert.assertEquals(BigInteger.valueOf(300), metaFileSmall.getTotalSize());
+		Assert.assertEquals(2, metaFileSmall.getNewestVersion().getIndex());
+	}
+
 	@AfterClass
 	public static void cleanAfterClass() {
 		afterClass();
@@ -0,0 +1,135 @@
+package org.hive2hive.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.KeyPair;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the immutable snapshots of the user profile and their structural sharing.
+ * 
+ * @author Seppi
+ */
+public class UserProfileSnapshotTest extends H2HJUnitTest {
+
+	private static KeyPair keys;
+	private static KeyPair protectionKeys;
+
+	private UserProfile profile;
+	private FolderIndex dir1;
+	private FolderIndex dir2;
+	private FileIndex file1;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = UserProfileSnapshotTest.class;
+		beforeClass();
+		keys = EncryptionUtil.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+		protectionKeys = EncryptionUtil.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+	}
+
+	@Before
+	public void createProfile() {
+		// root:
+		// - dir1
+		// -- file1
+		// - dir2 (shared)
+		profile = new UserProfile("user");
+		dir1 = new FolderIndex(profile.getRoot(), keys, "dir1");
+		file1 = new FileIndex(dir1, EncryptionUtil.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE), "file1",
+				new byte[] { 1 });
+		dir2 = new FolderIndex(profile.getRoot(), keys, "dir2");
+		dir2.share(protectionKeys);
+		dir2.addUserPermissions(new UserPermission("other", PermissionType.READ));
+	}
+
+	@Test
+	public void testSnapshot() {
+		UserProfileSnapshot snapshot = UserProfileSnapshot.of(profile, null);
+
+		assertEquals("user", snapshot.getUserId());
+		assertTrue(snapshot.getByPath(Paths.get("dir1", "file1")).isFile());
+		assertTrue(snapshot.getByPath(Paths.get("DIR2")).isFolder());
+		assertNull(snapshot.getByPath(Paths.get("dir1", "file2")));
+		assertEquals(Paths.get("dir1", "file1"), snapshot.getPathById(file1.getFilePublicKey()));
+
+		// inherited values are the same as in the profile
+		assertEquals(dir1.getCalculatedUserPermissions(),
+				snapshot.getCalculatedUserPermissions(Paths.get("dir1", "file1")));
+		assertEquals(dir2.getCalculatedUserPermissions(), snapshot.getCalculatedUserPermissions(Paths.get("dir2")));
+		assertEquals(file1.getProtectionKeys(), snapshot.getProtectionKeys(Paths.get("dir1", "file1")));
+		assertEquals(protectionKeys, snapshot.getProtectionKeys(Paths.get("dir2")));
+	}
+
+	@Test
+	public void testStructuralSharing() {
+		UserProfileSnapshot first = UserProfileSnapshot.of(profile, null);
+
+		// an unchanged profile results in the same snapshot
+		assertSame(first, UserProfileSnapshot.of(profile, first));
+
+		// a modification copies the path to the root only
+		file1.setMD5(new byte[] { 2 });
+		new FileIndex(dir2, keys, "file2", new byte[] { 3 });
+		UserProfileSnapshot second = UserProfileSnapshot.of(profile, first);
+		assertNotSame(first.getRoot(), second.getRoot());
+		assertNotSame(first.getByPath(Paths.get("dir2")), second.getByPath(Paths.get("dir2")));
+		assertEquals(2, ((FileSnapshot) second.getByPath(Paths.get("dir1", "file1"))).getMD5()[0]);
+		file1.setMD5(new byte[] { 1 });
+		UserProfileSnapshot third = UserProfileSnapshot.of(profile, second);
+		assertSame(second.getByPath(Paths.get("dir2")), third.getByPath(Paths.get("dir2")));
+
+		// the older snapshots did not change
+		assertEquals(1, ((FileSnapshot) first.getByPath(Paths.get("dir1", "file1"))).getMD5()[0]);
+		assertNull(first.getByPath(Paths.get("dir2", "file2")));
+	}
+
+	@Test
+	public void testSharingWithDeserializedProfile() throws IOException, ClassNotFoundException {
+		UserProfileSnapshot first = UserProfileSnapshot.of(profile, null);
+
+		// the same profile read again holds new instances of the same keys
+		UserProfile copy = (UserProfile) EncryptionUtil.deserializeObject(EncryptionUtil.serializeObject(profile));
+		UserProfileSnapshot second = UserProfileSnapshot.of(copy, first);
+		assertSame(first.getByPath(Paths.get("dir1")), second.getByPath(Paths.get("dir1")));
+		assertSame(first.getByPath(Paths.get("dir2")), second.getByPath(Paths.get("dir2")));
+		assertEquals(Paths.get("dir1", "file1"), second.getPathById(file1.getFilePublicKey()));
+	}
+
+	@Test
+	public void testUpdate() {
+		UserProfileSnapshot snapshot = UserProfileSnapshot.of(profile, null);
+		FileSnapshot file = new FileSnapshot(keys, "file3", new byte[] { 4 }, null);
+
+		UserProfileSnapshot updated = snapshot.update(Paths.get("dir1", "file3"), file);
+		assertSame(file, updated.getByPath(Paths.get("dir1", "file3")));
+		assertSame(snapshot.getByPath(Paths.get("dir2")), updated.getByPath(Paths.get("dir2")));
+		assertSame(snapshot.getByPath(Paths.get("dir1", "file1")), updated.getByPath(Paths.get("dir1", "file1")));
+		assertNull(snapshot.getByPath(Paths.get("dir1", "file3")));
+
+		UserProfileSnapshot removed = updated.update(Paths.get("dir1", "file1"), null);
+		assertNull(removed.getByPath(Paths.get("dir1", "file1")));
+		assertSame(file, removed.getByPath(Paths.get("dir1", "file3")));
+
+		// the parent has to exist
+		assertNull(snapshot.update(Paths.get("dir3", "file3"), file));
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -49,4 +49,36 @@ public class UserProfileTest extends H2HJUnitTest {
 		Assert.assertNotNull(userProfile.getFileById(child2Key.getPublic()));
 		Assert.assertNotNull(userProfile.getFileById(child3Key.getPublic()));
 	}
+
+	@Test
+	public void testGetFileByIdAfterModifications() throws Exception {
+		FolderIndex root = userProfile.getRoot();
+		KeyPair folderKey = EncryptionUtil.generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		FolderIndex folder = new FolderIndex(root, folderKey, NetworkTestUtil.randomString());
+		KeyPair fileKey = EncryptionUtil.generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		FileIndex file = new FileIndex(folder, fileKey, NetworkTestUtil.randomString(), null);
+		Assert.assertEquals(file, userProfile.getFileById(fileKey.getPublic()));
+
+		// nodes added after the first lookup are found
+		KeyPair subfolderKey = EncryptionUtil.generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		FolderIndex subfolder = new FolderIndex(folder, subfolderKey, NetworkTestUtil.randomString());
+		Assert.assertEquals(subfolder, userProfile.getFileById(subfolderKey.getPublic()));
+
+		// moved nodes as well
+		folder.removeChild(subfolder);
+		subfolder.setParent(root);
+		root.addChild(subfolder);
+		Assert.assertEquals(root, userProfile.getFileById(subfolderKey.getPublic()).getParent());
+
+		// removed subtrees are not found anymore
+		root.removeChild(folder);
+		Assert.assertNull(userProfile.getFileById(folderKey.getPublic()));
+		Assert.assertNull(userProfile.getFileById(fileKey.getPublic()));
+
+		// the index is rebuilt after deserialization
+		UserProfile deserialized = (UserProfile) EncryptionUtil.deserializeObject(EncryptionUtil
+				.serializeObject(userProfile));
+		Assert.assertEquals(subfolder, deserialized.getFileById(subfolderKey.getPublic()));
+		Assert.assertNull(deserialized.getFileById(fileKey.getPublic()));
+	}
 }
@@ -0,0 +1,86 @@
+package org.hive2hive.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Seppi
+ */
+public class ExpiryWheelTest extends H2HJUnitTest {
+
+	private static final long TICK = 1000;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = ExpiryWheelTest.class;
+		beforeClass();
+	}
+
+	@Test
+	public void testExpireInFirstLevel() {
+		ExpiryWheel wheel = new ExpiryWheel(TICK, 0);
+		wheel.schedule(createKey(1), 5 * TICK);
+		wheel.schedule(createKey(2), 10 * TICK);
+
+		assertTrue(wheel.advance(4 * TICK).isEmpty());
+		List<Number640> expired = wheel.advance(5 * TICK);
+		assertEquals(1, expired.size());
+		assertEquals(createKey(1), expired.get(0));
+		assertEquals(1, wheel.size());
+
+		assertEquals(createKey(2), wheel.advance(20 * TICK).get(0));
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testCascadeFromHigherLevels() {
+		ExpiryWheel wheel = new ExpiryWheel(TICK, 0);
+		long[] expirations = { 100, 5000, 300000, 20000000 };
+		for (int i = 0; i < expirations.length; i++) {
+			wheel.schedule(createKey(i), expirations[i] * TICK);
+		}
+
+		for (int i = 0; i < expirations.length; i++) {
+			// not a tick too early
+			assertTrue(wheel.advance((expirations[i] - 1) * TICK).isEmpty());
+			List<Number640> expired = wheel.advance(expirations[i] * TICK);
+			assertEquals(1, expired.size());
+			assertEquals(createKey(i), expired.get(0));
+		}
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testRescheduleAndCancel() {
+		ExpiryWheel wheel = new ExpiryWheel(TICK, 0);
+		wheel.schedule(createKey(1), 5 * TICK);
+		wheel.schedule(createKey(1), 500 * TICK);
+		wheel.schedule(createKey(2), 5 * TICK);
+		wheel.cancel(createKey(2));
+
+		assertTrue(wheel.advance(100 * TICK).isEmpty());
+		assertTrue(wheel.contains(createKey(1)));
+		assertFalse(wheel.contains(createKey(2)));
+		assertEquals(createKey(1), wheel.advance(500 * TICK).get(0));
+	}
+
+	private static Number640 createKey(int i) {
+		return new Number640(new Number160(i), Number160.ZERO, Number160.ZERO, Number160.ZERO);
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -0,0 +1,158 @@
+package org.hive2hive.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+import net.tomp2p.storage.Data;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
+import org.hive2hive.core.network.H2HStorageMemory.PutStatusH2H;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Stresses the storage with concurrent puts. Concurrent versioned puts to the same key must never fork the
+ * version history, while puts to different keys should run in parallel.
+ *
+ * @author Seppi
+ */
+public class H2HStorageMemoryStressTest extends H2HJUnitTest {
+
+	private static final int NUM_THREADS = 8;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = H2HStorageMemoryStressTest.class;
+		beforeClass();
+	}
+
+	@Test
+	public void testConcurrentVersionsOnSameKey() throws Exception {
+		final H2HStorageMemory storage = new H2HStorageMemory();
+		final Number160 lKey = Number160.createHash(NetworkTestUtil.randomString());
+		final int putsPerThread = 50;
+
+		final Set<Number160> acceptedBasedOn = Collections.synchronizedSet(new HashSet<Number160>());
+		final AtomicInteger accepted = new AtomicInteger();
+		runConcurrently(new Task() {
+			@Override
+			public void run(int thread) throws Exception {
+				for (int i = 0; i < putsPerThread; i++) {
+					// all threads try to put a successor of the current newest version
+					NavigableMap<Number640, Number160> history = storage.digest(createKey(lKey, Number160.ZERO),
+							createKey(lKey, Number160.MAX_VALUE), -1, true).getDigests();
+					Number160 basedOn = history.isEmpty() ? Number160.ZERO : history.lastKey().getVersionKey();
+
+					H2HTestData data = new H2HTestData(thread + "-" + i);
+					data.setBasedOnKey(basedOn);
+					data.generateVersionKey();
+					Enum<?> status = storage.put(createKey(lKey, data.getVersionKey()),
+							new Data(data).basedOn(basedOn), null, false, false);
+					if (status == PutStatusH2H.OK) {
+						accepted.incrementAndGet();
+						acceptedBasedOn.add(basedOn);
+					}
+				}
+			}
+		});
+
+		// every version has been accepted at most once as predecessor, i.e. the history is linear
+		assertTrue(accepted.get() > 0);
+		assertEquals(accepted.get(), acceptedBasedOn.size());
+		assertEquals(Math.min(accepted.get(), H2HConstants.MAX_VERSIONS_HISTORY),
+				storage.digest(createKey(lKey, Number160.ZERO), createKey(lKey, Number160.MAX_VALUE), -1, true)
+						.getDigests().size());
+		logger.info("{} of {} concurrent versioned puts accepted.", accepted.get(), NUM_THREADS * putsPerThread);
+	}
+
+	@Test
+	public void testThroughputOnDifferentKeys() throws Exception {
+		final int putsPerThread = 2000;
+
+		// sequential baseline
+		final H2HStorageMemory sequentialStorage = new H2HStorageMemory();
+		long start = System.currentTimeMillis();
+		for (int thread = 0; thread < NUM_THREADS; thread++) {
+			putDistinctKeys(sequentialStorage, thread, putsPerThread);
+		}
+		long sequentialMs = Math.max(1, System.currentTimeMillis() - start);
+
+		// the same puts in parallel
+		final H2HStorageMemory parallelStorage = new H2HStorageMemory();
+		start = System.currentTimeMillis();
+		runConcurrently(new Task() {
+			@Override
+			public void run(int thread) throws Exception {
+				putDistinctKeys(parallelStorage, thread, putsPerThread);
+			}
+		});
+		long parallelMs = Math.max(1, System.currentTimeMillis() - start);
+
+		int total = NUM_THREADS * putsPerThread;
+		logger.info("{} puts to different keys: sequential {} puts/s, {} threads {} puts/s.", total, total
+				* 1000L / sequentialMs, NUM_THREADS, total * 1000L / parallelMs);
+	}
+
+	private static void putDistinctKeys(H2HStorageMemory storage, int thread, int numPuts) throws Exception {
+		for (int i = 0; i < numPuts; i++) {
+			Number160 lKey = Number160.createHash(thread + "-" + i);
+			Enum<?> status = storage.put(createKey(lKey, Number160.ZERO), new Data(new H2HTestData("data")),
+					null, false, false);
+			assertEquals(PutStatusH2H.OK, status);
+		}
+	}
+
+	private static void runConcurrently(final Task task) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(NUM_THREADS);
+		final Exception[] failure = new Exception[1];
+		for (int i = 0; i < NUM_THREADS; i++) {
+			final int thread = i;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						task.run(thread);
+					} catch (Exception | AssertionError e) {
+						synchronized (failure) {
+							failure[0] = new Exception(e);
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		done.await();
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+
+	private static Number640 createKey(Number160 lKey, Number160 versionKey) {
+		return new Number640(lKey, H2HConstants.TOMP2P_DEFAULT_KEY, H2HConstants.TOMP2P_DEFAULT_KEY, versionKey);
+	}
+
+	private interface Task {
+		void run(int thread) throws Exception;
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
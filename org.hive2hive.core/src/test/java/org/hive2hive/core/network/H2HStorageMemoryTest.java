@@ -3,17 +3,22 @@ package org.hive2hive.core.network;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.IOException;
 import java.security.KeyPair;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Random;
 
 import net.tomp2p.futures.FuturePut;
 import net.tomp2p.peers.Number160;
 import net.tomp2p.peers.Number640;
 import net.tomp2p.peers.PeerAddress;
+import net.tomp2p.storage.Data;
+import net.tomp2p.storage.StorageMemory;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HJUnitTest;
 import org.hive2hive.core.H2HTestData;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
@@ -300,6 +305,130 @@ public class H2HStorageMemoryTest extends H2HJUnitTest {
 		}
 	}
 
+	@Test
+	public void putAfterRollbackOfNewestVersionTest() throws Exception {
+		H2HStorageMemory storage = new H2HStorageMemory();
+		Number160 lKey = Number160.createHash(NetworkTestUtil.randomString());
+
+		H2HTestData data1 = new H2HTestData(NetworkTestUtil.randomString());
+		data1.generateVersionKey();
+		assertEquals(PutStatusH2H.OK,
+				storage.put(createKey(lKey, data1.getVersionKey()), new Data(data1), null, false, false));
+
+		Thread.sleep(10);
+		H2HTestData data2 = new H2HTestData(NetworkTestUtil.randomString());
+		data2.setBasedOnKey(data1.getVersionKey());
+		data2.generateVersionKey();
+		assertEquals(PutStatusH2H.OK, storage.put(createKey(lKey, data2.getVersionKey()),
+				new Data(data2).basedOn(data1.getVersionKey()), null, false, false));
+
+		// roll back the newest version, the version ring has to notice it
+		storage.remove(createKey(lKey, data2.getVersionKey()), null, false);
+
+		Thread.sleep(10);
+		H2HTestData data3 = new H2HTestData(NetworkTestUtil.randomString());
+		data3.setBasedOnKey(data1.getVersionKey());
+		data3.generateVersionKey();
+		assertEquals(PutStatusH2H.OK, storage.put(createKey(lKey, data3.getVersionKey()),
+				new Data(data3).basedOn(data1.getVersionKey()), null, false, false));
+	}
+
+	@Test
+	public void cleanupKeepsMaxVersionsTest() throws Exception {
+		H2HStorageMemory storage = new H2HStorageMemory();
+		Number160 lKey = Number160.createHash(NetworkTestUtil.randomString());
+
+		Number160 basedOn = Number160.ZERO;
+		for (int i = 0; i < H2HConstants.MAX_VERSIONS_HISTORY * 2; i++) {
+			Thread.sleep(10);
+			H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+			data.setBasedOnKey(basedOn);
+			data.generateVersionKey();
+			assertEquals(PutStatusH2H.OK, storage.put(createKey(lKey, data.getVersionKey()),
+					new Data(data).basedOn(basedOn), null, false, false));
+			basedOn = data.getVersionKey();
+		}
+
+		assertEquals(H2HConstants.MAX_VERSIONS_HISTORY,
+				storage.digest(createKey(lKey, Number160.ZERO), createKey(lKey, Number160.MAX_VALUE), -1, true)
+						.getDigests().size());
+	}
+
+	@Test
+	public void quotaExceededTest() throws Exception {
+		H2HStorageMemory storage = new H2HStorageMemory(new StorageMemory(), Long.MAX_VALUE, 2);
+
+		Number640 first = createKey(Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO);
+		Number640 second = createKey(Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO);
+		Number640 third = createKey(Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO);
+		assertEquals(PutStatusH2H.OK, storage.put(first, new Data(new H2HTestData("1")), null, false, false));
+		assertEquals(PutStatusH2H.OK, storage.put(second, new Data(new H2HTestData("2")), null, false, false));
+		assertEquals(PutStatusH2H.FAILED_QUOTA_EXCEEDED,
+				storage.put(third, new Data(new H2HTestData("3")), null, false, false));
+
+		// overwriting does not need an additional entry
+		assertEquals(PutStatusH2H.OK, storage.put(first, new Data(new H2HTestData("1'")), null, false, false));
+		assertEquals(2, storage.getEntryCount());
+
+		// removing frees the quota immediately
+		storage.remove(second, null, false);
+		assertEquals(1, storage.getEntryCount());
+		assertEquals(PutStatusH2H.OK, storage.put(third, new Data(new H2HTestData("3")), null, false, false));
+	}
+
+	@Test
+	public void byteQuotaExceededTest() throws Exception {
+		Data data = new Data(new H2HTestData(NetworkTestUtil.randomString()));
+		H2HStorageMemory storage = new H2HStorageMemory(new StorageMemory(), data.length() * 2, Integer.MAX_VALUE);
+
+		for (int i = 0; i < 2; i++) {
+			Number640 key = createKey(Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO);
+			assertEquals(PutStatusH2H.OK, storage.put(key, data, null, false, false));
+		}
+		Number640 key = createKey(Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO);
+		assertEquals(PutStatusH2H.FAILED_QUOTA_EXCEEDED, storage.put(key, data, null, false, false));
+		assertEquals(data.length() * 2, storage.getUsedBytes());
+	}
+
+	@Test
+	public void expiryTest() throws Exception {
+		H2HStorageMemory storage = new H2HStorageMemory();
+		Number640 key = createKey(Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO);
+		assertEquals(PutStatusH2H.OK,
+				storage.put(key, new Data(new H2HTestData("expires")).ttlSeconds(1), null, false, false));
+		assertEquals(1, storage.getEntryCount());
+
+		Thread.sleep(1000 + 2 * H2HConstants.STORAGE_EXPIRY_TICK_MS);
+		storage.expireEntries();
+		assertNull(storage.get(key));
+		assertEquals(0, storage.getEntryCount());
+	}
+
+	@Test
+	public void conditionalGetTest() throws Exception {
+		H2HStorageMemory storage = new H2HStorageMemory();
+		Number160 lKey = Number160.createHash(NetworkTestUtil.randomString());
+		H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+		data.generateVersionKey();
+		Number640 known = createKey(lKey, data.getVersionKey());
+		assertEquals(PutStatusH2H.OK, storage.put(known, new Data(data), null, false, false));
+
+		// a marked get of the newest version replies with an empty entry
+		Number640 marked = new Number640(lKey, H2HConstants.CONDITIONAL_GET_DOMAIN_KEY,
+				H2HConstants.TOMP2P_DEFAULT_KEY, Number160.MAX_VALUE);
+		NavigableMap<Number640, Data> notModified = storage.get(known, marked, 1, false);
+		assertEquals(1, notModified.size());
+		assertEquals(known, notModified.firstKey());
+
+		// an ordinary range get of the same shape is served as usual
+		NavigableMap<Number640, Data> range = storage.get(known, createKey(lKey, Number160.MAX_VALUE), 1, false);
+		assertEquals(data.getTestString(), ((H2HTestData) range.firstEntry().getValue().object()).getTestString());
+	}
+
+	private static Number640 createKey(Number160 lKey, Number160 versionKey) {
+		return new Number640(lKey, H2HConstants.TOMP2P_DEFAULT_KEY, H2HConstants.TOMP2P_DEFAULT_KEY, versionKey);
+	}
+
 	@AfterClass
 	public static void cleanAfterClass() {
 		NetworkTestUtil.shutdownNetwork(network);
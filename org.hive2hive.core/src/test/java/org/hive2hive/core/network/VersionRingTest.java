@@ -0,0 +1,82 @@
+package org.hive2hive.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import net.tomp2p.peers.Number160;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Seppi
+ */
+public class VersionRingTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = VersionRingTest.class;
+		beforeClass();
+	}
+
+	@Test
+	public void testAddAndRemoveOldest() {
+		VersionRing ring = new VersionRing(3);
+		assertTrue(ring.isEmpty());
+		assertNull(ring.getNewest());
+		assertNull(ring.removeOldest());
+
+		for (int i = 1; i <= 5; i++) {
+			ring.add(new Number160(i));
+		}
+		assertEquals(5, ring.size());
+		assertEquals(new Number160(1), ring.getOldest());
+		assertEquals(new Number160(5), ring.getNewest());
+
+		assertEquals(new Number160(1), ring.removeOldest());
+		assertEquals(new Number160(2), ring.getOldest());
+		assertEquals(4, ring.size());
+	}
+
+	@Test
+	public void testOutOfOrder() {
+		VersionRing ring = new VersionRing(Arrays.asList(new Number160(5), new Number160(1)), 3);
+		assertEquals(new Number160(1), ring.getOldest());
+		assertEquals(new Number160(5), ring.getNewest());
+
+		ring.add(new Number160(3));
+		// duplicates are ignored
+		ring.add(new Number160(3));
+		ring.add(new Number160(5));
+		assertEquals(3, ring.size());
+		assertEquals(new Number160(1), ring.removeOldest());
+		assertEquals(new Number160(3), ring.removeOldest());
+		assertEquals(new Number160(5), ring.removeOldest());
+	}
+
+	@Test
+	public void testRemove() {
+		VersionRing ring = new VersionRing(Arrays.asList(new Number160(1), new Number160(2), new Number160(3)),
+				3);
+		// an expired version in the middle
+		assertTrue(ring.remove(new Number160(2)));
+		assertFalse(ring.remove(new Number160(2)));
+		assertEquals(2, ring.size());
+
+		assertTrue(ring.remove(new Number160(1)));
+		assertEquals(new Number160(3), ring.getOldest());
+		assertTrue(ring.remove(new Number160(3)));
+		assertTrue(ring.isEmpty());
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
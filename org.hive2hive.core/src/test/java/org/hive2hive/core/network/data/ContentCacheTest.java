@@ -0,0 +1,124 @@
+package org.hive2hive.core.network.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
+import org.hive2hive.core.network.NetworkTestUtil;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the size bound and the LRU eviction of the {@link ContentCache}.
+ * 
+ * @author Seppi
+ */
+public class ContentCacheTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = ContentCacheTest.class;
+		beforeClass();
+	}
+
+	@Test
+	public void testPutGet() {
+		testPutGet(false);
+		testPutGet(true);
+	}
+
+	private void testPutGet(boolean offHeap) {
+		ContentCache cache = new ContentCache(1024 * 1024, offHeap);
+		H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+		Number640 key = createKey(Number160.ZERO);
+
+		assertNull(cache.get(key));
+		cache.put(key, data);
+
+		H2HTestData cached = (H2HTestData) cache.get(key);
+		assertNotNull(cached);
+		assertEquals(data.getTestString(), cached.getTestString());
+		// every hit is a copy
+		assertTrue(cached != cache.get(key));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+		int size = EncryptionUtil.serializeObject(data).length;
+
+		// space for three entries
+		ContentCache cache = new ContentCache(size * 3, false);
+		Number640 key1 = createKey(Number160.ZERO);
+		Number640 key2 = createKey(Number160.ZERO);
+		Number640 key3 = createKey(Number160.ZERO);
+		Number640 key4 = createKey(Number160.ZERO);
+
+		cache.put(key1, data);
+		cache.put(key2, data);
+		cache.put(key3, data);
+		assertEquals(3, cache.size());
+		assertEquals(size * 3, cache.getUsedBytes());
+
+		// access the first one, the second one is the least recently used now
+		assertNotNull(cache.get(key1));
+		cache.put(key4, data);
+
+		assertEquals(3, cache.size());
+		assertNotNull(cache.get(key1));
+		assertNull(cache.get(key2));
+		assertNotNull(cache.get(key3));
+		assertNotNull(cache.get(key4));
+	}
+
+	@Test
+	public void testTooLarge() {
+		ContentCache cache = new ContentCache(10, false);
+		Number640 key = createKey(Number160.ZERO);
+		cache.put(key, new H2HTestData(NetworkTestUtil.randomString()));
+		assertNull(cache.get(key));
+		assertEquals(0, cache.getUsedBytes());
+	}
+
+	@Test
+	public void testRemoveAllVersions() {
+		ContentCache cache = new ContentCache(1024 * 1024, false);
+		Number640 version1 = createKey(Number160.createHash(1));
+		Number640 version2 = new Number640(version1.getLocationKey(), version1.getDomainKey(),
+				version1.getContentKey(), Number160.createHash(2));
+		Number640 other = createKey(Number160.createHash(1));
+
+		cache.put(version1, new H2HTestData("1"));
+		cache.put(version2, new H2HTestData("2"));
+		cache.put(other, new H2HTestData("other"));
+
+		cache.removeAll(version1.getLocationKey(), version1.getDomainKey(), version1.getContentKey());
+		assertNull(cache.get(version1));
+		assertNull(cache.get(version2));
+		assertNotNull(cache.get(other));
+		assertEquals(1, cache.size());
+	}
+
+	private static Number640 createKey(Number160 versionKey) {
+		return new Number640(Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO,
+				Number160.createHash(NetworkTestUtil.randomString()), versionKey);
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -2,14 +2,19 @@ package org.hive2hive.core.network.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.SignatureException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 import net.tomp2p.futures.FutureGet;
 import net.tomp2p.futures.FuturePut;
@@ -19,8 +24,10 @@ import net.tomp2p.storage.Data;
 import org.hive2hive.core.H2HJUnitTest;
 import org.hive2hive.core.H2HTestData;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.model.NetworkContent;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.NetworkTestUtil;
+import org.hive2hive.core.network.data.parameters.IParameters;
 import org.hive2hive.core.network.data.parameters.Parameters;
 import org.hive2hive.core.security.EncryptionUtil;
 import org.junit.AfterClass;
@@ -163,6 +170,151 @@ public class DataManagerTest extends H2HJUnitTest {
 		assertEquals(data3, result3);
 	}
 
+	@Test
+	public void testPutAllGetAll() throws Exception {
+		NetworkManager nodeA = network.get(random.nextInt(networkSize));
+		NetworkManager nodeB = network.get(random.nextInt(networkSize));
+
+		List<IParameters> parameters = new ArrayList<IParameters>();
+		for (int i = 0; i < 10; i++) {
+			parameters.add(new Parameters().setLocationKey(NetworkTestUtil.randomString())
+					.setContentKey(NetworkTestUtil.randomString())
+					.setData(new H2HTestData(NetworkTestUtil.randomString())));
+		}
+
+		// put all at once
+		Map<IParameters, Boolean> putResults = nodeA.getDataManager().putAll(parameters);
+		assertEquals(parameters.size(), putResults.size());
+		for (IParameters param : parameters) {
+			Assert.assertTrue(putResults.get(param));
+		}
+
+		// add a non-existing one
+		IParameters missing = new Parameters().setLocationKey(NetworkTestUtil.randomString()).setContentKey(
+				NetworkTestUtil.randomString());
+		List<IParameters> toGet = new ArrayList<IParameters>(parameters);
+		toGet.add(missing);
+
+		// get all at once
+		Map<IParameters, NetworkContent> getResults = nodeB.getDataManager().getAll(toGet);
+		assertEquals(toGet.size(), getResults.size());
+		for (IParameters param : parameters) {
+			assertEquals(((H2HTestData) param.getData()).getTestString(),
+					((H2HTestData) getResults.get(param)).getTestString());
+		}
+		assertNull(getResults.get(missing));
+	}
+
+	@Test
+	public void testGetImmutableFromCache() throws Exception {
+		NetworkManager nodeA = network.get(0);
+		NetworkManager nodeB = network.get(1);
+
+		H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+		Parameters parameters = new Parameters().setLocationKey(NetworkTestUtil.randomString())
+				.setContentKey(NetworkTestUtil.randomString()).setData(data);
+		nodeA.getDataManager().putUnblocked(parameters).awaitUninterruptibly();
+
+		// first get goes to the network
+		NetworkContent content = nodeA.getDataManager().getImmutable(parameters);
+		assertEquals(data.getTestString(), ((H2HTestData) content).getTestString());
+
+		// remove it through the other node, the first node still has it cached
+		nodeB.getDataManager().removeUnblocked(parameters).awaitUninterruptibly();
+		assertNull(nodeB.getDataManager().get(parameters));
+		content = nodeA.getDataManager().getImmutable(parameters);
+		assertEquals(data.getTestString(), ((H2HTestData) content).getTestString());
+
+		// a local remove invalidates the cache
+		nodeA.getDataManager().removeUnblocked(parameters).awaitUninterruptibly();
+		assertNull(nodeA.getDataManager().getImmutable(parameters));
+	}
+
+	@Test
+	public void testGetIfModified() throws Exception {
+		NetworkManager nodeA = network.get(0);
+		NetworkManager nodeB = network.get(1);
+
+		H2HTestData data1 = new H2HTestData(NetworkTestUtil.randomString());
+		data1.generateVersionKey();
+		Parameters parameters = new Parameters().setLocationKey(NetworkTestUtil.randomString())
+				.setContentKey(NetworkTestUtil.randomString()).setVersionKey(data1.getVersionKey())
+				.setData(data1);
+		nodeA.getDataManager().putUnblocked(parameters).awaitUninterruptibly();
+
+		// nothing known yet
+		NetworkContent content = nodeB.getDataManager().getIfModified(parameters, null);
+		assertEquals(data1.getVersionKey(), content.getVersionKey());
+
+		// known version is still the newest one
+		assertSame(data1, nodeB.getDataManager().getIfModified(parameters, data1));
+
+		// put a newer version
+		Thread.sleep(10);
+		H2HTestData data2 = new H2HTestData(NetworkTestUtil.randomString());
+		data2.setBasedOnKey(data1.getVersionKey());
+		data2.generateVersionKey();
+		parameters.setVersionKey(data2.getVersionKey()).setData(data2);
+		nodeA.getDataManager().putUnblocked(parameters).awaitUninterruptibly();
+
+		content = nodeB.getDataManager().getIfModified(parameters, data1);
+		assertNotSame(data1, content);
+		assertEquals(data2.getVersionKey(), content.getVersionKey());
+		assertEquals(data2.getTestString(), ((H2HTestData) content).getTestString());
+
+		// content is gone
+		nodeA.getDataManager().removeUnblocked(parameters).awaitUninterruptibly();
+		assertNull(nodeB.getDataManager().getIfModified(parameters, data2));
+	}
+
+	@Test
+	public void testConcurrentGetsAreCoalesced() throws Exception {
+		NetworkManager nodeA = network.get(0);
+		final NetworkManager nodeB = network.get(1);
+
+		H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+		final Parameters parameters = new Parameters().setLocationKey(NetworkTestUtil.randomString())
+				.setContentKey(NetworkTestUtil.randomString()).setData(data);
+		nodeA.getDataManager().putUnblocked(parameters).awaitUninterruptibly();
+
+		int numGetters = 10;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(numGetters);
+		final NetworkContent[] results = new NetworkContent[numGetters];
+		long coalescedBefore = nodeB.getDataManager().getCoalescedRequestCount();
+		for (int i = 0; i < numGetters; i++) {
+			final int index = i;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						results[index] = nodeB.getDataManager().get(parameters);
+					} catch (InterruptedException e) {
+						// result stays null
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		done.await();
+
+		// all callers got the content, each its own copy
+		for (int i = 0; i < numGetters; i++) {
+			assertEquals(data.getTestString(), ((H2HTestData) results[i]).getTestString());
+			for (int j = 0; j < i; j++) {
+				assertNotSame(results[i], results[j]);
+			}
+		}
+		Assert.assertTrue(nodeB.getDataManager().getCoalescedRequestCount() > coalescedBefore);
+
+		// a completed get is not shared anymore
+		nodeA.getDataManager().removeUnblocked(parameters).awaitUninterruptibly();
+		assertNull(nodeB.getDataManager().get(parameters));
+	}
+
 	@Test
 	public void testRemovalOneContentKey() throws NoPeerConnectionException {
 		NetworkManager nodeA = network.get(random.nextInt(networkSize / 2));
@@ -84,6 +84,44 @@ public class PublicKeyManagerTest extends H2HJUnitTest {
 		}
 	}
 
+	@Test
+	public void testFetchingMultipleFromNetwork() throws NoPeerConnectionException {
+		String loggedInUserId = NetworkTestUtil.randomString();
+		KeyPair loggedInUserKeys = EncryptionUtil.generateRSAKeyPair(H2HConstants.KEYLENGTH_USER_KEYS);
+
+		NetworkManager node = network.get(random.nextInt(networkSize));
+		PublicKeyManager publicKeyManager = new PublicKeyManager(loggedInUserId, loggedInUserKeys,
+				node.getDataManager());
+
+		// create and upload some fake public keys into the network
+		Map<String, PublicKey> publicKeys = new HashMap<String, PublicKey>();
+		for (int i = 0; i < 5; i++) {
+			String userId = NetworkTestUtil.randomString();
+			KeyPair key = EncryptionUtil.generateRSAKeyPair(H2HConstants.KEYLENGTH_USER_KEYS);
+			UserPublicKey userPublicKey = new UserPublicKey(key.getPublic());
+			Parameters parameters = new Parameters().setLocationKey(userId)
+					.setContentKey(H2HConstants.USER_PUBLIC_KEY).setData(userPublicKey);
+			network.get(random.nextInt(networkSize)).getDataManager().putUnblocked(parameters)
+					.awaitUninterruptibly();
+			publicKeys.put(userId, key.getPublic());
+		}
+
+		List<String> userIds = new ArrayList<String>(publicKeys.keySet());
+		// the own key and a non-existing key
+		userIds.add(loggedInUserId);
+		userIds.add(NetworkTestUtil.randomString());
+
+		// check if the public key manager correctly fetches all public keys at once
+		Map<String, PublicKey> result = publicKeyManager.getPublicKeys(userIds);
+		assertEquals(publicKeys.size() + 1, result.size());
+		assertEquals(loggedInUserKeys.getPublic(), result.get(loggedInUserId));
+		for (String userId : publicKeys.keySet()) {
+			assertEquals(publicKeys.get(userId), result.get(userId));
+			// now they are cached
+			Assert.assertTrue(publicKeyManager.containsPublicKey(userId));
+		}
+	}
+
 	@Test
 	public void testCachingOfPublicKeys() throws GetFailedException, NoPeerConnectionException {
 		String loggedInUserId = NetworkTestUtil.randomString();
@@ -1,8 +1,16 @@
 package org.hive2hive.core.network.data;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.UUID;
 
 import org.hive2hive.core.H2HJUnitTest;
 import org.hive2hive.core.H2HWaiter;
@@ -11,6 +19,7 @@ import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.PutFailedException;
 import org.hive2hive.core.model.FolderIndex;
 import org.hive2hive.core.model.UserProfile;
+import org.hive2hive.core.model.UserProfileSnapshot;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.NetworkTestUtil;
 import org.hive2hive.core.processes.framework.abstracts.ProcessStep;
@@ -95,6 +104,133 @@ public class UserProfileManagerTest extends H2HJUnitTest {
 				Operation.MODIFY, Operation.GET, Operation.GET, Operation.PUT, Operation.PUT, Operation.GET);
 	}
 
+	@Test
+	public void testGroupCommit() throws Exception {
+		final UserProfileManager manager = new UserProfileManager(client.getDataManager(), userCredentials);
+		final int numModifiers = 20;
+		// this process never finishes its modification and has to be rolled back
+		final int unfinished = 5;
+
+		final String[] names = new String[numModifiers];
+		final List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+		List<Thread> threads = new ArrayList<Thread>(numModifiers);
+		for (int i = 0; i < numModifiers; i++) {
+			final int index = i;
+			names[i] = NetworkTestUtil.randomString();
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						String pid = UUID.randomUUID().toString();
+						UserProfile profile = manager.getUserProfile(pid, true);
+						new FolderIndex(profile.getRoot(), null, names[index]);
+						if (index != unfinished) {
+							manager.readyToPut(profile, pid);
+						}
+					} catch (PutFailedException | GetFailedException e) {
+						failures.add(e);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// only the unfinished process is rolled back, the processes of its group are not affected
+		assertTrue(failures.isEmpty());
+
+		// all other modifications have been put, most of them together
+		assertEquals(numModifiers - 1, manager.getCommittedModificationCount());
+		assertTrue(manager.getCommitCount() < numModifiers - 1);
+		logger.info("{} modifications put with {} puts.", manager.getCommittedModificationCount(),
+				manager.getCommitCount());
+
+		UserProfile profile = manager.getUserProfile(UUID.randomUUID().toString(), false);
+		for (int i = 0; i < numModifiers; i++) {
+			if (i == unfinished) {
+				assertNull(profile.getRoot().getChildByName(names[i]));
+			} else {
+				assertNotNull(profile.getRoot().getChildByName(names[i]));
+			}
+		}
+		manager.stopQueueWorker();
+	}
+
+	@Test
+	public void testBackToBackLatency() throws Exception {
+		UserProfileManager manager = new UserProfileManager(client.getDataManager(), userCredentials);
+		int numUpdates = 20;
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < numUpdates; i++) {
+			String pid = UUID.randomUUID().toString();
+			UserProfile profile = manager.getUserProfile(pid, true);
+			new FolderIndex(profile.getRoot(), null, NetworkTestUtil.randomString());
+			manager.readyToPut(profile, pid);
+		}
+		long duration = System.currentTimeMillis() - start;
+
+		assertEquals(0, manager.getQueueDepth());
+		assertEquals(numUpdates, manager.getCommittedModificationCount());
+		logger.info("{} back-to-back profile updates: {} ms per update, {} ms average wait for the profile.",
+				numUpdates, duration / numUpdates, manager.getAverageWaitTime());
+		manager.stopQueueWorker();
+	}
+
+	@Test
+	public void testBoundedStalenessRead() throws Exception {
+		UserProfileManager manager = new UserProfileManager(client.getDataManager(), userCredentials);
+		long maxStaleness = 60 * 1000;
+
+		// the first read has to confirm the profile with the network
+		UserProfileSnapshot first = manager.getSnapshot(UUID.randomUUID().toString(), maxStaleness);
+		assertEquals(0, manager.getStaleReadCount());
+
+		// within the bound, the cached snapshot is read
+		UserProfileSnapshot second = manager.getSnapshot(UUID.randomUUID().toString(), maxStaleness);
+		assertSame(first, second);
+		assertEquals(1, manager.getStaleReadCount());
+
+		// a notification of another client forces a confirmation
+		manager.invalidateCache();
+		manager.getSnapshot(UUID.randomUUID().toString(), maxStaleness);
+		assertEquals(1, manager.getStaleReadCount());
+
+		// a local modification is visible immediately
+		String pid = UUID.randomUUID().toString();
+		UserProfile profile = manager.getUserProfile(pid, true);
+		String name = NetworkTestUtil.randomString();
+		new FolderIndex(profile.getRoot(), null, name);
+		manager.readyToPut(profile, pid);
+		UserProfileSnapshot modified = manager.getSnapshot(UUID.randomUUID().toString(), maxStaleness);
+		assertNotNull(modified.getRoot().getChild(name));
+		assertEquals(2, manager.getStaleReadCount());
+		manager.stopQueueWorker();
+	}
+
+	@Test
+	public void testSnapshotRead() throws Exception {
+		UserProfileManager manager = new UserProfileManager(client.getDataManager(), userCredentials);
+		long maxStaleness = 60 * 1000;
+		UserProfileSnapshot before = manager.getSnapshot(UUID.randomUUID().toString(), maxStaleness);
+
+		// the snapshot stays valid while the profile is modified
+		String pid = UUID.randomUUID().toString();
+		UserProfile profile = manager.getUserProfile(pid, true);
+		String name = NetworkTestUtil.randomString();
+		new FolderIndex(profile.getRoot(), null, name);
+		assertSame(before, manager.getSnapshot(UUID.randomUUID().toString(), maxStaleness));
+		manager.readyToPut(profile, pid);
+
+		// readers holding the old snapshot are not affected by the modification
+		UserProfileSnapshot after = manager.getSnapshot(UUID.randomUUID().toString(), maxStaleness);
+		assertNull(before.getRoot().getChild(name));
+		assertNotNull(after.getRoot().getChild(name));
+		manager.stopQueueWorker();
+	}
+
 	/**
 	 * Transforms the operations into a set of processes and starts them all. The processes are started with a
 	 * small delay, but in the same order as the parameters. The method blocks until all processes are done.
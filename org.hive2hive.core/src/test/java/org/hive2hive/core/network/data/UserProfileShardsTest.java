@@ -0,0 +1,192 @@
+package org.hive2hive.core.network.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.util.UUID;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.UserProfile;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.NetworkTestUtil;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.processes.util.UseCaseTestUtil;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.hive2hive.core.security.UserCredentials;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the sharded layout of the user profile (see {@link UserProfileShards}), two holders act as two
+ * clients of the same user.
+ * 
+ * @author Seppi
+ */
+public class UserProfileShardsTest extends H2HJUnitTest {
+
+	private static KeyPair keys;
+
+	private UserCredentials userCredentials;
+	private NetworkManager client;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = UserProfileShardsTest.class;
+		beforeClass();
+		keys = EncryptionUtil.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+	}
+
+	@Before
+	public void setup() throws NoPeerConnectionException {
+		userCredentials = NetworkTestUtil.generateRandomCredentials();
+		client = NetworkTestUtil.createNetwork(1).get(0);
+		// the registration puts an unsharded profile
+		UseCaseTestUtil.register(userCredentials, client);
+	}
+
+	@Test
+	public void testChangedShardsOnly() {
+		UserProfileHolder first = new UserProfileHolder(userCredentials, client.getDataManager(), true);
+		UserProfile profile = get(first);
+		FolderIndex folderA = new FolderIndex(profile.getRoot(), newKeys(), "a");
+		FileIndex file = new FileIndex(folderA, newKeys(), "file", new byte[] { 1 });
+		new FolderIndex(profile.getRoot(), newKeys(), "b");
+		put(first, profile);
+		// both shards and the root document
+		assertEquals(3, first.getShards().getStoredDocumentCount());
+
+		// modifying a file only puts its shard
+		file.setMD5(new byte[] { 2 });
+		put(first, profile);
+		assertEquals(4, first.getShards().getStoredDocumentCount());
+
+		// another client loads all documents once
+		UserProfileHolder second = new UserProfileHolder(userCredentials, client.getDataManager(), true);
+		UserProfile loaded = get(second);
+		assertEquals(3, second.getShards().getLoadedDocumentCount());
+		assertEquals(2, ((FileIndex) loaded.getFileByPath(Paths.get("a", "file"))).getMD5()[0]);
+
+		// and afterwards only the changed shards
+		UserProfile previous = loaded;
+		Index previousFile = previous.getFileByPath(Paths.get("a", "file"));
+		new FileIndex((FolderIndex) profile.getFileByPath(Paths.get("b")), newKeys(), "other", null);
+		put(first, profile);
+		loaded = get(second);
+		assertEquals(4, second.getShards().getLoadedDocumentCount());
+		assertNotNull(loaded.getFileByPath(Paths.get("b", "other")));
+		assertNotNull(loaded.getFileByPath(Paths.get("a", "file")));
+		assertSame(loaded.getFileByPath(Paths.get("a")), loaded.getFileByPath(Paths.get("a", "file")).getParent());
+
+		// the previously loaded profile is not modified
+		assertNotSame(previousFile, loaded.getFileByPath(Paths.get("a", "file")));
+		assertSame(previous.getFileByPath(Paths.get("a")), previousFile.getParent());
+		assertSame(previousFile, previous.getFileByPath(Paths.get("a", "file")));
+
+		// nothing changed
+		assertSame(loaded, get(second));
+		assertEquals(4, second.getShards().getLoadedDocumentCount());
+	}
+
+	@Test
+	public void testConcurrentModificationsInDifferentShards() {
+		UserProfileHolder first = new UserProfileHolder(userCredentials, client.getDataManager(), true);
+		UserProfile profile = get(first);
+		new FolderIndex(profile.getRoot(), newKeys(), "a");
+		new FolderIndex(profile.getRoot(), newKeys(), "b");
+		put(first, profile);
+
+		UserProfileHolder second = new UserProfileHolder(userCredentials, client.getDataManager(), true);
+		UserProfile otherProfile = get(second);
+
+		// both clients modify their loaded version, in different top-level folders
+		new FileIndex((FolderIndex) profile.getFileByPath(Paths.get("a")), keys, "fileA", null);
+		new FileIndex((FolderIndex) otherProfile.getFileByPath(Paths.get("b")), keys, "fileB", null);
+		put(first, profile);
+		put(second, otherProfile);
+
+		UserProfile merged = get(new UserProfileHolder(userCredentials, client.getDataManager(), true));
+		assertNotNull(merged.getFileByPath(Paths.get("a", "fileA")));
+		assertNotNull(merged.getFileByPath(Paths.get("b", "fileB")));
+	}
+
+	@Test
+	public void testRemoveTopLevelFolder() {
+		UserProfileHolder holder = new UserProfileHolder(userCredentials, client.getDataManager(), true);
+		UserProfile profile = get(holder);
+		FolderIndex folder = new FolderIndex(profile.getRoot(), newKeys(), "a");
+		new FileIndex(folder, keys, "file", null);
+		put(holder, profile);
+
+		profile.getRoot().removeChild(folder);
+		put(holder, profile);
+
+		UserProfile loaded = get(new UserProfileHolder(userCredentials, client.getDataManager(), true));
+		assertNull(loaded.getFileByPath(Paths.get("a")));
+	}
+
+	@Test
+	public void testMissingShard() {
+		UserProfileHolder holder = new UserProfileHolder(userCredentials, client.getDataManager(), true);
+		UserProfile profile = get(holder);
+		FolderIndex folder = new FolderIndex(profile.getRoot(), newKeys(), "a");
+		new FileIndex(folder, keys, "file", null);
+		put(holder, profile);
+
+		// the shard cannot be fetched anymore, e.g. because the get failed
+		String shardKey = H2HConstants.USER_PROFILE + "-"
+				+ EncryptionUtil.toHex(EncryptionUtil.generateMD5Hash(folder.getFilePublicKey().getEncoded()));
+		assertTrue(client.getDataManager().remove(
+				new Parameters().setLocationKey(userCredentials.getProfileLocationKey()).setContentKey(shardKey)
+						.setProtectionKeys(profile.getProtectionKeys())));
+
+		// neither a client knowing the shard nor a new one reads the folder as empty
+		QueueEntry entry = new QueueEntry(UUID.randomUUID().toString());
+		holder.get(entry);
+		assertNotNull(entry.getGetError());
+		entry = new QueueEntry(UUID.randomUUID().toString());
+		new UserProfileHolder(userCredentials, client.getDataManager(), true).get(entry);
+		assertNotNull(entry.getGetError());
+	}
+
+	private static UserProfile get(UserProfileHolder holder) {
+		QueueEntry entry = new QueueEntry(UUID.randomUUID().toString());
+		holder.get(entry);
+		assertNull(entry.getGetError());
+		return entry.getUserProfile();
+	}
+
+	private static void put(UserProfileHolder holder, UserProfile profile) {
+		PutQueueEntry entry = new PutQueueEntry(UUID.randomUUID().toString());
+		entry.setUserProfile(profile);
+		holder.put(entry);
+		assertNull(entry.getPutError());
+	}
+
+	private static KeyPair newKeys() {
+		return EncryptionUtil.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+	}
+
+	@After
+	public void shutdown() {
+		client.disconnect();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -0,0 +1,104 @@
+package org.hive2hive.core.network.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
+import org.hive2hive.core.network.NetworkTestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the {@link VersionCache}, which keeps the newest known version of versioned content.
+ * 
+ * @author Seppi
+ */
+public class VersionCacheTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = VersionCacheTest.class;
+		beforeClass();
+	}
+
+	@Test
+	public void testVersions() {
+		VersionCache cache = new VersionCache(10);
+		Number640 key = createKey();
+		H2HTestData version1 = createVersion(1);
+		H2HTestData decoded1 = new H2HTestData("decoded 1");
+
+		assertNull(cache.get(key));
+		cache.put(key, version1);
+		// no copy, the version key does not matter
+		assertSame(version1, cache.get(key));
+		assertSame(version1, cache.get(new Number640(key.getLocationKey(), key.getDomainKey(),
+				key.getContentKey(), Number160.createHash(1))));
+
+		// the decoded content belongs to its version
+		assertNull(cache.getDecoded(key, version1.getVersionKey()));
+		cache.putDecoded(key, version1.getVersionKey(), decoded1);
+		assertSame(decoded1, cache.getDecoded(key, version1.getVersionKey()));
+		cache.put(key, version1);
+		assertSame(decoded1, cache.getDecoded(key, version1.getVersionKey()));
+
+		// a newer version replaces the older one
+		H2HTestData version2 = createVersion(2);
+		cache.put(key, version2);
+		assertSame(version2, cache.get(key));
+		assertNull(cache.getDecoded(key, version1.getVersionKey()));
+		assertNull(cache.getDecoded(key, version2.getVersionKey()));
+		cache.putDecoded(key, version1.getVersionKey(), decoded1);
+		assertNull(cache.getDecoded(key, version1.getVersionKey()));
+
+		cache.remove(key);
+		assertNull(cache.get(key));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		VersionCache cache = new VersionCache(3);
+		Number640 key1 = createKey();
+		Number640 key2 = createKey();
+		Number640 key3 = createKey();
+		Number640 key4 = createKey();
+
+		cache.put(key1, createVersion(1));
+		cache.put(key2, createVersion(1));
+		cache.put(key3, createVersion(1));
+
+		// access the first one, the second one is the least recently used now
+		assertNotNull(cache.get(key1));
+		cache.put(key4, createVersion(1));
+
+		assertEquals(3, cache.size());
+		assertNotNull(cache.get(key1));
+		assertNull(cache.get(key2));
+		assertNotNull(cache.get(key3));
+		assertNotNull(cache.get(key4));
+	}
+
+	private static H2HTestData createVersion(int version) {
+		H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+		data.setVersionKey(Number160.createHash(version));
+		return data;
+	}
+
+	private static Number640 createKey() {
+		return new Number640(Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO,
+				Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO);
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
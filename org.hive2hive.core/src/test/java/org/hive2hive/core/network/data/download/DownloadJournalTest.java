@@ -0,0 +1,221 @@
+package org.hive2hive.core.network.data.download;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.network.NetworkTestUtil;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the journal of the downloaded chunks, resuming an interrupted download task from it and attaching a
+ * second task for the same download.
+ * 
+ * @author Seppi
+ */
+public class DownloadJournalTest extends H2HJUnitTest {
+
+	private static final int NUM_CHUNKS = 10;
+
+	private File directory;
+	private File destination;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = DownloadJournalTest.class;
+		beforeClass();
+	}
+
+	@Before
+	public void createDirectory() {
+		directory = new File(FileUtils.getTempDirectory(), NetworkTestUtil.randomString());
+		assertTrue(directory.mkdirs());
+		destination = new File(directory, NetworkTestUtil.randomString());
+	}
+
+	@After
+	public void deleteDirectory() {
+		FileUtils.deleteQuietly(directory);
+	}
+
+	@Test
+	public void testRecordAndRead() throws IOException {
+		DownloadJournal journal = new DownloadJournal(directory);
+		assertTrue(journal.read().isEmpty());
+
+		byte[] first = EncryptionUtil.generateMD5Hash("first".getBytes());
+		byte[] second = EncryptionUtil.generateMD5Hash("second".getBytes());
+		journal.record(0, first);
+		journal.record(3, first);
+		// the newer record wins
+		journal.record(3, second);
+
+		Map<Integer, byte[]> records = new DownloadJournal(directory).read();
+		assertEquals(2, records.size());
+		assertArrayEquals(first, records.get(0));
+		assertArrayEquals(second, records.get(3));
+
+		journal.delete();
+		assertTrue(journal.read().isEmpty());
+	}
+
+	@Test
+	public void testTornRecord() throws IOException {
+		DownloadJournal journal = new DownloadJournal(directory);
+		byte[] md5 = EncryptionUtil.generateMD5Hash("content".getBytes());
+		journal.record(0, md5);
+		journal.record(1, md5);
+
+		// a crash while appending leaves half a record
+		File file = new File(directory, H2HConstants.DOWNLOAD_JOURNAL_NAME);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 5);
+		}
+		Map<Integer, byte[]> records = journal.read();
+		assertEquals(1, records.size());
+		assertArrayEquals(md5, records.get(0));
+
+		// garbage instead of a record
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write(NetworkTestUtil.randomString().getBytes());
+		}
+		assertEquals(1, journal.read().size());
+	}
+
+	@Test
+	public void testResumeTask() throws IOException {
+		List<MetaChunk> metaChunks = new ArrayList<MetaChunk>();
+		for (int i = 0; i < NUM_CHUNKS; i++) {
+			byte[] chunkHash = EncryptionUtil.generateMD5Hash(("part " + i).getBytes());
+			metaChunks.add(new MetaChunk(NetworkTestUtil.randomString(), chunkHash, i));
+		}
+
+		// download the first half and crash
+		BaseDownloadTask crashed = new TestDownloadTask(metaChunks, destination);
+		for (int i = 0; i < NUM_CHUNKS / 2; i++) {
+			File part = crashed.getPartFile(i);
+			FileUtils.writeStringToFile(part, "part " + i);
+			crashed.setDownloaded(i, part);
+		}
+		// the part of this chunk has been written, but the chunk was not recorded anymore
+		FileUtils.writeStringToFile(crashed.getPartFile(NUM_CHUNKS / 2), "torn");
+		assertEquals(NUM_CHUNKS / 2, crashed.getOpenChunks().size());
+
+		// the part of the first chunk is modified while being offline, even with a matching journal record
+		FileUtils.writeStringToFile(crashed.getPartFile(0), "modified");
+		new DownloadJournal(crashed.getTempDirectory()).record(0,
+				EncryptionUtil.generateMD5Hash("modified".getBytes()));
+
+		// a new task for the same chunks and destination resumes the download
+		BaseDownloadTask resumed = new TestDownloadTask(metaChunks, destination);
+		assertEquals(crashed.getTempDirectory(), resumed.getTempDirectory());
+		assertEquals(H2HConstants.DOWNLOAD_DIRECTORY, resumed.getTempDirectory().getParentFile());
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			// only the current user can access the parts
+			assertEquals(PosixFilePermissions.fromString("rwx------"),
+					Files.getPosixFilePermissions(H2HConstants.DOWNLOAD_DIRECTORY.toPath()));
+		}
+		List<MetaChunk> openChunks = resumed.getOpenChunks();
+		assertEquals(NUM_CHUNKS / 2 + 1, openChunks.size());
+		assertEquals(0, openChunks.get(0).getIndex());
+		assertEquals(NUM_CHUNKS / 2, openChunks.get(1).getIndex());
+
+		// other chunks or another destination do not reuse the parts
+		File otherDestination = new File(directory, NetworkTestUtil.randomString());
+		BaseDownloadTask other = new TestDownloadTask(metaChunks, otherDestination);
+		assertEquals(NUM_CHUNKS, other.getOpenChunks().size());
+		FileUtils.deleteQuietly(other.getTempDirectory());
+
+		// download the rest
+		for (MetaChunk metaChunk : openChunks) {
+			File part = resumed.getPartFile(metaChunk.getIndex());
+			FileUtils.writeStringToFile(part, "part " + metaChunk.getIndex());
+			resumed.setDownloaded(metaChunk.getIndex(), part);
+		}
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < NUM_CHUNKS; i++) {
+			expected.append("part ").append(i);
+		}
+		assertEquals(expected.toString(), FileUtils.readFileToString(destination));
+		// the journal and the parts are cleaned up
+		assertFalse(resumed.getTempDirectory().exists());
+		assertNull(new DownloadJournal(resumed.getTempDirectory()).read().get(0));
+	}
+
+	@Test
+	public void testAttachTask() throws Exception {
+		List<MetaChunk> metaChunks = new ArrayList<MetaChunk>();
+		for (int i = 0; i < NUM_CHUNKS; i++) {
+			byte[] chunkHash = EncryptionUtil.generateMD5Hash(("part " + i).getBytes());
+			metaChunks.add(new MetaChunk(NetworkTestUtil.randomString(), chunkHash, i));
+		}
+
+		// the second task completes when the running one has downloaded all parts
+		BaseDownloadTask running = new TestDownloadTask(metaChunks, destination);
+		BaseDownloadTask second = new TestDownloadTask(metaChunks, destination);
+		running.attach(second);
+		for (int i = 0; i < NUM_CHUNKS; i++) {
+			File part = running.getPartFile(i);
+			FileUtils.writeStringToFile(part, "part " + i);
+			running.setDownloaded(i, part);
+		}
+		second.join();
+		assertFalse(second.isAborted());
+
+		// a task attached to a finished task completes immediately
+		BaseDownloadTask late = new TestDownloadTask(metaChunks, destination);
+		running.attach(late);
+		late.join();
+		FileUtils.deleteQuietly(late.getTempDirectory());
+
+		// a task attached to a failing task fails too
+		BaseDownloadTask failing = new TestDownloadTask(metaChunks, destination);
+		BaseDownloadTask third = new TestDownloadTask(metaChunks, destination);
+		failing.attach(third);
+		failing.abortDownload("test");
+		assertTrue(third.isAborted());
+		FileUtils.deleteQuietly(failing.getTempDirectory());
+	}
+
+	private static class TestDownloadTask extends BaseDownloadTask {
+
+		private static final long serialVersionUID = 1L;
+
+		public TestDownloadTask(List<MetaChunk> metaChunks, File destination) {
+			super(metaChunks, destination);
+		}
+
+		@Override
+		public boolean isDirectDownload() {
+			return false;
+		}
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -0,0 +1,254 @@
+package org.hive2hive.core.network.data.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.network.data.download.DownloadScheduler.ScheduledChunk;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Simulates mixed download workloads in discrete rounds (every chunk takes one round) and compares the
+ * completion times of small files with a first-in-first-out queue.
+ * 
+ * @author Seppi
+ */
+public class DownloadSchedulerTest extends H2HJUnitTest {
+
+	private static final int SLOTS = 25;
+	private static final int PER_TASK = 5;
+
+	private final List<BaseDownloadTask> tasks = new ArrayList<BaseDownloadTask>();
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = DownloadSchedulerTest.class;
+		beforeClass();
+	}
+
+	@After
+	public void deleteTempFolders() {
+		for (BaseDownloadTask task : tasks) {
+			FileUtils.deleteQuietly(task.getTempDirectory());
+		}
+		tasks.clear();
+	}
+
+	@Test
+	public void testSmallFilesAfterLargeFile() {
+		DownloadScheduler scheduler = new DownloadScheduler(SLOTS, PER_TASK);
+		List<BaseDownloadTask> submitted = new ArrayList<BaseDownloadTask>();
+
+		BaseDownloadTask large = createTask("large", 1000, DownloadPriority.NORMAL);
+		submitted.add(large);
+		for (int i = 0; i < 50; i++) {
+			submitted.add(createTask("small-" + i, 2, DownloadPriority.NORMAL));
+		}
+		for (BaseDownloadTask task : submitted) {
+			scheduler.add(task, createChunks(task));
+		}
+
+		Map<BaseDownloadTask, Integer> scheduled = simulate(scheduler);
+		Map<BaseDownloadTask, Integer> fifo = simulateFifo(submitted);
+
+		int worstSmall = 0;
+		int worstSmallFifo = 0;
+		for (BaseDownloadTask task : submitted.subList(1, submitted.size())) {
+			worstSmall = Math.max(worstSmall, scheduled.get(task));
+			worstSmallFifo = Math.max(worstSmallFifo, fifo.get(task));
+		}
+		logger.info("Small files done after {} rounds (first-in-first-out: {} rounds).", worstSmall, worstSmallFifo);
+		logger.info("Large file done after {} rounds (first-in-first-out: {} rounds).", scheduled.get(large),
+				fifo.get(large));
+
+		// the small files do not wait for the large one
+		assertTrue(worstSmall < 10);
+		assertTrue(worstSmallFifo >= 40);
+		// the large file still uses all slots once the small files are done
+		assertEquals((1000 + 50 * 2) / SLOTS, (int) scheduled.get(large));
+		assertEquals(0, scheduler.getPending());
+		assertEquals(0, scheduler.getRunning());
+	}
+
+	@Test
+	public void testPriorities() {
+		DownloadScheduler scheduler = new DownloadScheduler(SLOTS, PER_TASK);
+		List<BaseDownloadTask> low = new ArrayList<BaseDownloadTask>();
+		for (int i = 0; i < 20; i++) {
+			BaseDownloadTask task = createTask("sync-" + i, 20, DownloadPriority.LOW);
+			scheduler.add(task, createChunks(task));
+			low.add(task);
+		}
+		BaseDownloadTask normal = createTask("notified", 20, DownloadPriority.NORMAL);
+		scheduler.add(normal, createChunks(normal));
+		BaseDownloadTask high = createTask("restored", 20, DownloadPriority.HIGH);
+		scheduler.add(high, createChunks(high));
+
+		Map<BaseDownloadTask, Integer> done = simulate(scheduler);
+		logger.info("High priority done after {} rounds, normal after {} rounds, low after {} rounds.",
+				done.get(high), done.get(normal), done.get(low.get(low.size() - 1)));
+
+		// the higher priorities get all slots they can use
+		assertEquals(1, (int) done.get(high));
+		assertEquals(2, (int) done.get(normal));
+		for (BaseDownloadTask task : low) {
+			assertTrue(done.get(task) > done.get(normal));
+		}
+	}
+
+	@Test
+	public void testCapAndAbort() {
+		DownloadScheduler scheduler = new DownloadScheduler(SLOTS, PER_TASK);
+		BaseDownloadTask first = createTask("first", 100, DownloadPriority.NORMAL);
+		BaseDownloadTask second = createTask("second", 100, DownloadPriority.NORMAL);
+		scheduler.add(first, createChunks(first));
+		scheduler.add(second, createChunks(second));
+
+		// the idle slots are used although both tasks reached the cap
+		List<ScheduledChunk> running = new ArrayList<ScheduledChunk>();
+		ScheduledChunk chunk;
+		while ((chunk = scheduler.next()) != null) {
+			running.add(chunk);
+		}
+		assertEquals(SLOTS, running.size());
+		assertEquals(SLOTS, scheduler.getRunning());
+
+		// a new task below the cap gets the next free slots
+		BaseDownloadTask third = createTask("third", 10, DownloadPriority.NORMAL);
+		scheduler.add(third, createChunks(third));
+		for (int i = 0; i < PER_TASK; i++) {
+			scheduler.finished(running.remove(0));
+			chunk = scheduler.next();
+			assertEquals(third, chunk.getTask());
+			running.add(chunk);
+		}
+		scheduler.finished(running.remove(0));
+		chunk = scheduler.next();
+		assertTrue(chunk.getTask() != third);
+		running.add(chunk);
+
+		// the pending chunks of an aborted task are dropped
+		second.abortDownload("test");
+		for (ScheduledChunk finished : running) {
+			scheduler.finished(finished);
+		}
+		Map<BaseDownloadTask, Integer> done = simulate(scheduler);
+		assertTrue(done.containsKey(first));
+		assertTrue(done.containsKey(third));
+		assertFalse(done.containsKey(second));
+
+		// chunks running before clearing do not count anymore
+		scheduler.clear();
+		scheduler.finished(running.get(0));
+		assertEquals(0, scheduler.getRunning());
+		assertEquals(0, scheduler.getPending());
+		assertNull(scheduler.next());
+	}
+
+	/**
+	 * Runs the scheduler until all chunks are done
+	 * 
+	 * @return the round in which the last chunk of each task has been downloaded
+	 */
+	private static Map<BaseDownloadTask, Integer> simulate(DownloadScheduler scheduler) {
+		Map<BaseDownloadTask, Integer> done = new HashMap<BaseDownloadTask, Integer>();
+		int round = 0;
+		while (scheduler.getPending() > 0) {
+			round++;
+			List<ScheduledChunk> running = new ArrayList<ScheduledChunk>();
+			ScheduledChunk chunk;
+			while ((chunk = scheduler.next()) != null) {
+				running.add(chunk);
+			}
+			assertTrue(running.size() <= SLOTS);
+
+			for (ScheduledChunk finished : running) {
+				finished.run();
+				scheduler.finished(finished);
+				done.put(finished.getTask(), round);
+			}
+		}
+		return done;
+	}
+
+	/**
+	 * Downloads the chunks in submission order, as the download manager did before
+	 */
+	private static Map<BaseDownloadTask, Integer> simulateFifo(List<BaseDownloadTask> submitted) {
+		Queue<BaseDownloadTask> chunks = new LinkedList<BaseDownloadTask>();
+		for (BaseDownloadTask task : submitted) {
+			for (int i = 0; i < task.getOpenChunks().size(); i++) {
+				chunks.add(task);
+			}
+		}
+
+		Map<BaseDownloadTask, Integer> done = new HashMap<BaseDownloadTask, Integer>();
+		int round = 0;
+		while (!chunks.isEmpty()) {
+			round++;
+			for (int i = 0; i < SLOTS && !chunks.isEmpty(); i++) {
+				done.put(chunks.poll(), round);
+			}
+		}
+		return done;
+	}
+
+	private BaseDownloadTask createTask(String name, int numChunks, DownloadPriority priority) {
+		List<MetaChunk> metaChunks = new ArrayList<MetaChunk>();
+		for (int i = 0; i < numChunks; i++) {
+			metaChunks.add(new MetaChunk(name + "-" + i, new byte[0], i));
+		}
+
+		BaseDownloadTask task = new SimulatedTask(metaChunks, new File(FileUtils.getTempDirectory(), name));
+		task.setPriority(priority);
+		tasks.add(task);
+		return task;
+	}
+
+	private static List<Runnable> createChunks(BaseDownloadTask task) {
+		List<Runnable> chunks = new ArrayList<Runnable>();
+		for (int i = 0; i < task.getOpenChunks().size(); i++) {
+			chunks.add(new Runnable() {
+				@Override
+				public void run() {
+					// downloading takes one round
+				}
+			});
+		}
+		return chunks;
+	}
+
+	private static class SimulatedTask extends BaseDownloadTask {
+
+		private static final long serialVersionUID = 1L;
+
+		public SimulatedTask(List<MetaChunk> metaChunks, File destination) {
+			super(metaChunks, destination);
+		}
+
+		@Override
+		public boolean isDirectDownload() {
+			return false;
+		}
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -25,8 +25,10 @@ import org.hive2hive.core.network.H2HStorageMemory;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.NetworkTestUtil;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.futures.FuturePutListener.VerificationPath;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.network.data.parameters.PutVerificationMode;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -151,6 +153,73 @@ public class FuturePutTest extends H2HJUnitTest {
 		assertEquals(data.getTestString(), ((H2HTestData) futureGet.getData().object()).getTestString());
 	}
 
+	@Test
+	public void testPutTrustMajority() throws ClassNotFoundException, IOException, NoPeerConnectionException {
+		NetworkManager nodeA = network.get(0);
+		NetworkManager nodeB = network.get(1);
+
+		H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+		Parameters parameters = new Parameters().setLocationKey(nodeA.getNodeId())
+				.setContentKey(NetworkTestUtil.randomString()).setData(data)
+				.setPutVerificationMode(PutVerificationMode.TRUST_MAJORITY);
+
+		long trustedBefore = FuturePutListener.getPathCount(VerificationPath.TRUSTED_MAJORITY);
+		boolean success = nodeB.getDataManager().put(parameters);
+		Assert.assertTrue(success);
+		assertTrue(FuturePutListener.getPathCount(VerificationPath.TRUSTED_MAJORITY) > trustedBefore);
+
+		FutureGet futureGet = nodeA.getDataManager().getUnblocked(parameters);
+		futureGet.awaitUninterruptibly();
+		assertEquals(data.getTestString(), ((H2HTestData) futureGet.getData().object()).getTestString());
+	}
+
+	@Test
+	public void testPutTrustMajorityFailed() throws NoPeerConnectionException {
+		NetworkManager nodeA = network.get(0);
+		NetworkManager nodeB = network.get(1);
+		NetworkManager nodeC = network.get(2);
+
+		nodeB.getConnection().getPeer().getPeerBean().storage(new TestPutFailureStorage());
+		nodeC.getConnection().getPeer().getPeerBean().storage(new TestPutFailureStorage());
+
+		H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+		Parameters parameters = new Parameters().setLocationKey(nodeA.getNodeId())
+				.setContentKey(NetworkTestUtil.randomString()).setData(data)
+				.setPutVerificationMode(PutVerificationMode.TRUST_MAJORITY);
+
+		long retriesBefore = FuturePutListener.getPathCount(VerificationPath.RETRY_WITHOUT_REMOVE);
+		boolean success = nodeB.getDataManager().put(parameters);
+		Assert.assertFalse(success);
+		assertTrue(FuturePutListener.getPathCount(VerificationPath.RETRY_WITHOUT_REMOVE) > retriesBefore);
+	}
+
+	@Test
+	public void testPutVersionedOnly() throws ClassNotFoundException, IOException, NoPeerConnectionException {
+		NetworkManager nodeA = network.get(0);
+		NetworkManager nodeB = network.get(1);
+
+		// not versioned content skips the verification
+		H2HTestData data = new H2HTestData(NetworkTestUtil.randomString());
+		Parameters parameters = new Parameters().setLocationKey(nodeA.getNodeId())
+				.setContentKey(NetworkTestUtil.randomString()).setData(data)
+				.setPutVerificationMode(PutVerificationMode.VERSIONED_ONLY);
+
+		long skippedBefore = FuturePutListener.getPathCount(VerificationPath.SKIPPED_NOT_VERSIONED);
+		Assert.assertTrue(nodeB.getDataManager().put(parameters));
+		assertTrue(FuturePutListener.getPathCount(VerificationPath.SKIPPED_NOT_VERSIONED) > skippedBefore);
+
+		// versioned content gets verified
+		H2HTestData versioned = new H2HTestData(NetworkTestUtil.randomString());
+		versioned.generateVersionKey();
+		Parameters versionedParameters = new Parameters().setLocationKey(nodeA.getNodeId())
+				.setContentKey(NetworkTestUtil.randomString()).setVersionKey(versioned.getVersionKey())
+				.setData(versioned).setPutVerificationMode(PutVerificationMode.VERSIONED_ONLY);
+
+		long verifiedBefore = FuturePutListener.getPathCount(VerificationPath.DIGEST_VERIFIED);
+		Assert.assertTrue(nodeB.getDataManager().put(versionedParameters));
+		assertTrue(FuturePutListener.getPathCount(VerificationPath.DIGEST_VERIFIED) > verifiedBefore);
+	}
+
 	@Test
 	public void testPutVersionConflictWin() throws ClassNotFoundException, IOException,
 			NoPeerConnectionException {
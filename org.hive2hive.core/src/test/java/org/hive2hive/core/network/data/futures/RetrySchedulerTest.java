@@ -0,0 +1,91 @@
+package org.hive2hive.core.network.data.futures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.network.data.futures.RetryScheduler.Operation;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the backoff, the jitter and the deadline of the {@link RetryScheduler}.
+ * 
+ * @author Seppi
+ */
+public class RetrySchedulerTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = RetrySchedulerTest.class;
+		beforeClass();
+	}
+
+	@Test
+	public void testExponentialBackoffWithJitter() {
+		RetryScheduler scheduler = new RetryScheduler(100, 1000, 10000);
+		for (int i = 0; i < 100; i++) {
+			long first = scheduler.getDelay(1);
+			assertTrue(first >= 50 && first <= 100);
+
+			long second = scheduler.getDelay(2);
+			assertTrue(second >= 100 && second <= 200);
+
+			long third = scheduler.getDelay(3);
+			assertTrue(third >= 200 && third <= 400);
+
+			// capped by the maximum delay
+			long capped = scheduler.getDelay(20);
+			assertTrue(capped >= 500 && capped <= 1000);
+		}
+	}
+
+	@Test
+	public void testScheduleAndMetrics() throws InterruptedException {
+		RetryScheduler scheduler = new RetryScheduler(10, 100, 10000);
+		final CountDownLatch latch = new CountDownLatch(2);
+		Runnable retry = new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		};
+
+		long start = System.currentTimeMillis();
+		assertTrue(scheduler.schedule(Operation.GET, 1, start, retry));
+		assertTrue(scheduler.schedule(Operation.GET, 2, start, retry));
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+		assertEquals(2, scheduler.getRetryCount(Operation.GET));
+		assertTrue(scheduler.getTotalDelay(Operation.GET) >= 5 + 10);
+		assertEquals(0, scheduler.getRetryCount(Operation.PUT));
+		assertEquals(0, scheduler.getRetryCount(Operation.REMOVE));
+	}
+
+	@Test
+	public void testDeadlineExceeded() {
+		RetryScheduler scheduler = new RetryScheduler(10, 100, 1000);
+		Runnable retry = new Runnable() {
+			@Override
+			public void run() {
+				// not executed
+			}
+		};
+
+		// operation started long ago
+		long start = System.currentTimeMillis() - 5000;
+		assertFalse(scheduler.schedule(Operation.PUT, 1, start, retry));
+		assertEquals(0, scheduler.getRetryCount(Operation.PUT));
+		assertEquals(1, scheduler.getDeadlineExceededCount(Operation.PUT));
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -0,0 +1,201 @@
+package org.hive2hive.core.network.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the log structured store, including recovery and compaction. The startup benchmark stores
+ * <code>h2h.benchmark.storageMB</code> megabytes (default 64) and extrapolates the startup time.
+ *
+ * @author Seppi
+ */
+public class LogStructuredStoreTest extends H2HJUnitTest {
+
+	private static final long SEGMENT_SIZE = 1024 * 1024;
+
+	private File directory;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = LogStructuredStoreTest.class;
+		beforeClass();
+	}
+
+	@Before
+	public void createDirectory() {
+		directory = new File(FileUtils.getTempDirectory(), "H2HStoreTest" + new Random().nextInt());
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testPutGetRemove() throws IOException {
+		LogStructuredStore store = new LogStructuredStore(directory, SEGMENT_SIZE, 0.5, 0);
+		Number640 key = createKey("a", 1);
+		byte[] value = generateFixedContent(1000);
+
+		assertNull(store.get(key));
+		store.put(key, value, 0);
+		assertTrue(store.contains(key));
+		assertArrayEquals(value, store.get(key));
+
+		// overwrite
+		byte[] newValue = generateFixedContent(500);
+		store.put(key, newValue, 0);
+		assertArrayEquals(newValue, store.get(key));
+		assertEquals(1, store.size());
+
+		assertTrue(store.remove(key));
+		assertFalse(store.remove(key));
+		assertNull(store.get(key));
+		assertEquals(0, store.getLiveBytes());
+		store.close();
+	}
+
+	@Test
+	public void testRangeOfKeys() throws IOException {
+		LogStructuredStore store = new LogStructuredStore(directory, SEGMENT_SIZE, 0.5, 0);
+		for (int i = 1; i <= 5; i++) {
+			store.put(createKey("a", i), generateFixedContent(10), 0);
+		}
+		store.put(createKey("b", 1), generateFixedContent(10), 0);
+
+		assertEquals(5, store.keys(createKey("a", 0), createKey("a", Integer.MAX_VALUE)).size());
+		assertEquals(createKey("a", 5), store.keys(createKey("a", 0), createKey("a", Integer.MAX_VALUE)).last());
+		store.close();
+	}
+
+	@Test
+	public void testRecovery() throws IOException {
+		LogStructuredStore store = new LogStructuredStore(directory, SEGMENT_SIZE, 0.5, 0);
+		// spans multiple segments
+		byte[][] values = new byte[50][];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = generateFixedContent(100 * 1024);
+			store.put(createKey("a", i), values[i], i);
+		}
+		store.remove(createKey("a", 0));
+		assertTrue(store.getSegmentCount() > 1);
+		store.close();
+
+		// reopen from the hints
+		store = new LogStructuredStore(directory, SEGMENT_SIZE, 0.5, 0);
+		assertEquals(values.length - 1, store.size());
+		assertNull(store.get(createKey("a", 0)));
+		for (int i = 1; i < values.length; i++) {
+			assertArrayEquals(values[i], store.get(createKey("a", i)));
+			assertEquals(i, store.getExpiration(createKey("a", i)));
+		}
+		store.close();
+	}
+
+	@Test
+	public void testRecoveryOfTornRecord() throws IOException {
+		LogStructuredStore store = new LogStructuredStore(directory, SEGMENT_SIZE, 0.5, 0);
+		byte[] value = generateFixedContent(1000);
+		store.put(createKey("a", 1), value, 0);
+		store.put(createKey("a", 2), generateFixedContent(1000), 0);
+		store.close();
+
+		// simulate a crash while writing the second record: no hint and a partial record
+		File segment = new File(directory, "segment-00000000.log");
+		new File(directory, "segment-00000000.hint").delete();
+		RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+		raf.setLength(raf.length() - 10);
+		raf.close();
+
+		store = new LogStructuredStore(directory, SEGMENT_SIZE, 0.5, 0);
+		assertArrayEquals(value, store.get(createKey("a", 1)));
+		assertNull(store.get(createKey("a", 2)));
+
+		// writing continues after the last valid record
+		store.put(createKey("a", 3), value, 0);
+		store.close();
+		store = new LogStructuredStore(directory, SEGMENT_SIZE, 0.5, 0);
+		assertArrayEquals(value, store.get(createKey("a", 3)));
+		store.close();
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		LogStructuredStore store = new LogStructuredStore(directory, SEGMENT_SIZE, 0.5, 0);
+		byte[] value = generateFixedContent(100 * 1024);
+		// overwrite the same few keys many times
+		for (int i = 0; i < 100; i++) {
+			store.put(createKey("a", i % 5), value, 0);
+		}
+		store.remove(createKey("a", 4));
+		long totalBefore = store.getTotalBytes();
+		int segmentsBefore = store.getSegmentCount();
+
+		assertTrue(store.compact() > 0);
+		assertTrue(store.getSegmentCount() < segmentsBefore);
+		assertTrue(store.getTotalBytes() < totalBefore);
+		for (int i = 0; i < 4; i++) {
+			assertArrayEquals(value, store.get(createKey("a", i)));
+		}
+		assertNull(store.get(createKey("a", 4)));
+		store.close();
+
+		// the removal survives the compaction
+		store = new LogStructuredStore(directory, SEGMENT_SIZE, 0.5, 0);
+		assertEquals(4, store.size());
+		assertNull(store.get(createKey("a", 4)));
+		store.close();
+	}
+
+	@Test
+	public void testStartupBenchmark() throws IOException {
+		long storageBytes = Long.getLong("h2h.benchmark.storageMB", 64) * 1024 * 1024;
+		int chunkSize = 1024 * 1024;
+		LogStructuredStore store = new LogStructuredStore(directory, 64 * 1024 * 1024, 0.5, 0);
+		byte[] chunk = generateFixedContent(chunkSize);
+		int numChunks = (int) (storageBytes / chunkSize);
+		for (int i = 0; i < numChunks; i++) {
+			store.put(createKey("chunk", i), chunk, 0);
+		}
+		store.close();
+
+		long start = System.currentTimeMillis();
+		store = new LogStructuredStore(directory, 64 * 1024 * 1024, 0.5, 0);
+		long startupMs = System.currentTimeMillis() - start;
+		assertEquals(numChunks, store.size());
+		store.close();
+
+		double extrapolatedMs = startupMs * (100.0 * 1024 * 1024 * 1024 / storageBytes);
+		logger.info("Startup with {} MB of chunks took {} ms, extrapolated to 100 GB: {} ms.",
+				storageBytes / 1024 / 1024, startupMs, (long) extrapolatedMs);
+	}
+
+	private static Number640 createKey(String location, int version) {
+		return new Number640(Number160.createHash(location), Number160.ZERO, Number160.ZERO, new Number160(
+				version));
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
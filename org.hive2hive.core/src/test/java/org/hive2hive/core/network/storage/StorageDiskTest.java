@@ -0,0 +1,115 @@
+package org.hive2hive.core.network.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+import net.tomp2p.storage.Data;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
+import org.hive2hive.core.network.H2HStorageMemory;
+import org.hive2hive.core.network.H2HStorageMemory.PutStatusH2H;
+import org.hive2hive.core.network.NetworkTestUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the version validation and cleanup of {@link H2HStorageMemory} on top of the persistent storage.
+ *
+ * @author Seppi
+ */
+public class StorageDiskTest extends H2HJUnitTest {
+
+	private File directory;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = StorageDiskTest.class;
+		beforeClass();
+	}
+
+	@Before
+	public void createDirectory() {
+		directory = new File(FileUtils.getTempDirectory(), "H2HStorageDiskTest" + new Random().nextInt());
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testVersionsAcrossRestart() throws Exception {
+		StorageDisk disk = new StorageDisk(directory);
+		H2HStorageMemory storage = new H2HStorageMemory(disk);
+		Number160 lKey = Number160.createHash(NetworkTestUtil.randomString());
+
+		// put more versions than kept in the history
+		H2HTestData[] versions = new H2HTestData[H2HConstants.MAX_VERSIONS_HISTORY + 2];
+		Number160 basedOn = Number160.ZERO;
+		for (int i = 0; i < versions.length; i++) {
+			Thread.sleep(10);
+			versions[i] = new H2HTestData("version " + i);
+			versions[i].setBasedOnKey(basedOn);
+			versions[i].generateVersionKey();
+			Data data = new Data(versions[i]).basedOn(basedOn);
+			assertEquals(PutStatusH2H.OK, storage.put(createKey(lKey, versions[i].getVersionKey()), data, null,
+					false, false));
+			basedOn = versions[i].getVersionKey();
+		}
+
+		// a version which is not based on the newest one is rejected
+		H2HTestData conflict = new H2HTestData("conflict");
+		conflict.setBasedOnKey(versions[0].getVersionKey());
+		conflict.generateVersionKey();
+		assertEquals(PutStatusH2H.VERSION_CONFLICT, storage.put(createKey(lKey, conflict.getVersionKey()),
+				new Data(conflict).basedOn(versions[0].getVersionKey()), null, false, false));
+
+		// the oldest versions have been cleaned up
+		assertNull(disk.get(createKey(lKey, versions[0].getVersionKey())));
+		assertEquals(H2HConstants.MAX_VERSIONS_HISTORY,
+				disk.subMap(createKey(lKey, Number160.ZERO), createKey(lKey, Number160.MAX_VALUE), -1, true)
+						.size());
+		long usedBytes = storage.getUsedBytes();
+		disk.close();
+
+		// restart and continue with the next version
+		disk = new StorageDisk(directory);
+		storage = new H2HStorageMemory(disk);
+		// the stored versions count for the quotas again
+		assertEquals(H2HConstants.MAX_VERSIONS_HISTORY, storage.getEntryCount());
+		assertEquals(usedBytes, storage.getUsedBytes());
+		H2HTestData newest = versions[versions.length - 1];
+		Data restored = disk.get(createKey(lKey, newest.getVersionKey()));
+		assertEquals(newest.getTestString(), ((H2HTestData) restored.object()).getTestString());
+		assertEquals(newest.getBasedOnKey(), restored.basedOn());
+
+		Thread.sleep(10);
+		H2HTestData next = new H2HTestData("next");
+		next.setBasedOnKey(newest.getVersionKey());
+		next.generateVersionKey();
+		assertEquals(PutStatusH2H.OK, storage.put(createKey(lKey, next.getVersionKey()),
+				new Data(next).basedOn(newest.getVersionKey()), null, false, false));
+		disk.close();
+	}
+
+	private static Number640 createKey(Number160 lKey, Number160 versionKey) {
+		return new Number640(lKey, H2HConstants.TOMP2P_DEFAULT_KEY, H2HConstants.TOMP2P_DEFAULT_KEY, versionKey);
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
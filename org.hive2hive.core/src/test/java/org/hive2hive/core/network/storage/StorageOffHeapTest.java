@@ -0,0 +1,124 @@
+package org.hive2hive.core.network.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.NavigableMap;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+import net.tomp2p.storage.Data;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.network.H2HStorageMemory;
+import org.hive2hive.core.network.H2HStorageMemory.PutStatusH2H;
+import org.hive2hive.core.network.NetworkTestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the off-heap storage backend, including its memory budget.
+ *
+ * @author Seppi
+ */
+public class StorageOffHeapTest extends H2HJUnitTest {
+
+	private static final int MIN_SIZE = 1024;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = StorageOffHeapTest.class;
+		beforeClass();
+	}
+
+	@Test
+	public void testLargeEntriesOffHeap() throws Exception {
+		StorageOffHeap storage = new StorageOffHeap(1024 * 1024, MIN_SIZE);
+		Number160 lKey = Number160.createHash(NetworkTestUtil.randomString());
+
+		byte[] content = generateFixedContent(10 * MIN_SIZE);
+		assertTrue(storage.put(createKey(lKey, new Number160(1)), new Data(new Chunk("id", content, 0))));
+		assertTrue(storage.put(createKey(lKey, new Number160(2)), new Data(new H2HTestData("small"))));
+
+		// only the large entry is stored off-heap
+		assertEquals(1, storage.getOffHeapCount());
+		assertTrue(storage.getUsedBytes() > content.length);
+		assertTrue(storage.contains(createKey(lKey, new Number160(1))));
+		assertEquals(2, storage.contains(createKey(lKey, Number160.ZERO), createKey(lKey, Number160.MAX_VALUE)));
+
+		Chunk chunk = (Chunk) storage.get(createKey(lKey, new Number160(1))).object();
+		assertArrayEquals(content, chunk.getData());
+
+		// ranges contain the entries of both memories
+		NavigableMap<Number640, Data> range = storage.subMap(createKey(lKey, Number160.ZERO),
+				createKey(lKey, Number160.MAX_VALUE), 1, false);
+		assertEquals(1, range.size());
+		assertEquals(createKey(lKey, new Number160(2)), range.firstKey());
+		assertEquals(2, storage.map().size());
+
+		// removing releases the budget
+		assertTrue(storage.remove(createKey(lKey, new Number160(1)), true) != null);
+		assertFalse(storage.contains(createKey(lKey, new Number160(1))));
+		assertEquals(0, storage.getUsedBytes());
+		storage.close();
+	}
+
+	@Test
+	public void testBudget() throws Exception {
+		int chunkSize = 100 * 1024;
+		StorageOffHeap storage = new StorageOffHeap(4 * chunkSize, MIN_SIZE);
+		H2HStorageMemory h2hStorage = new H2HStorageMemory(storage);
+
+		int stored = 0;
+		for (int i = 0; i < 10; i++) {
+			Number160 lKey = Number160.createHash(NetworkTestUtil.randomString());
+			Data data = new Data(new Chunk("id", generateFixedContent(chunkSize), i));
+			Enum<?> status = h2hStorage.put(createKey(lKey, Number160.ZERO), data, null, false, false);
+			if (status == PutStatusH2H.OK) {
+				stored++;
+			} else {
+				// an exhausted budget is reported like an exceeded quota
+				assertEquals(PutStatusH2H.FAILED_QUOTA_EXCEEDED, status);
+			}
+		}
+
+		// the encoding adds some bytes, thus less than 4 chunks fit
+		assertTrue(stored > 0 && stored < 4);
+		assertTrue(storage.getUsedBytes() <= storage.getBudget());
+		assertEquals(10 - stored, storage.getRejectedCount());
+		logger.info("{}", storage);
+		storage.close();
+	}
+
+	@Test
+	public void testOverwriteWithSmallEntry() throws Exception {
+		StorageOffHeap storage = new StorageOffHeap(1024 * 1024, MIN_SIZE);
+		Number640 key = createKey(Number160.createHash(NetworkTestUtil.randomString()), Number160.ZERO);
+
+		storage.put(key, new Data(new Chunk("id", generateFixedContent(10 * MIN_SIZE), 0)));
+		storage.put(key, new Data(new H2HTestData("small")));
+		assertEquals(0, storage.getOffHeapCount());
+		assertEquals(0, storage.getUsedBytes());
+		assertEquals("small", ((H2HTestData) storage.get(key).object()).getTestString());
+
+		storage.remove(key, false);
+		assertNull(storage.get(key));
+		storage.close();
+	}
+
+	private static Number640 createKey(Number160 lKey, Number160 versionKey) {
+		return new Number640(lKey, H2HConstants.TOMP2P_DEFAULT_KEY, H2HConstants.TOMP2P_DEFAULT_KEY, versionKey);
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -3,23 +3,32 @@ package org.hive2hive.core.processes.implementations.files;
 import java.io.File;
 import java.io.IOException;
 import java.security.KeyPair;
+import java.security.PrivateKey;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.file.FileTestUtil;
 import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.MetaFileSmall;
 import org.hive2hive.core.model.UserProfile;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.NetworkTestUtil;
+import org.hive2hive.core.network.data.download.DownloadManager;
 import org.hive2hive.core.processes.ProcessFactory;
 import org.hive2hive.core.processes.framework.exceptions.InvalidProcessStateException;
 import org.hive2hive.core.processes.framework.interfaces.IProcessComponent;
+import org.hive2hive.core.processes.implementations.files.download.dht.DownloadTaskDHT;
 import org.hive2hive.core.processes.util.DenyingMessageReplyHandler;
 import org.hive2hive.core.processes.util.TestProcessComponentListener;
 import org.hive2hive.core.processes.util.UseCaseTestUtil;
@@ -156,6 +165,72 @@ public class DownloadFileTest extends H2HJUnitTest {
 		Assert.assertEquals(lastModifiedBefore, existing.lastModified());
 	}
 
+	@Test
+	public void testResumeAfterCrash() throws Exception {
+		H2HSession session = downloader.getSession();
+		MetaFileSmall metaFile = (MetaFileSmall) UseCaseTestUtil.getMetaFile(downloader, fileNode.getFileKeys());
+		List<MetaChunk> metaChunks = metaFile.getNewestVersion().getMetaChunks();
+		File destination = new File(downloaderRoot, fileNode.getName());
+
+		Assert.assertTrue(metaChunks.size() > 1);
+
+		// start the download and kill all download threads when the first chunk is there, the other chunks
+		// are held back such that the download cannot finish before
+		DownloadManager crashing = new DownloadManager(downloader.getDataManager(), downloader.getMessageManager(),
+				session.getKeyManager(), session.getFileConfiguration());
+		CrashingDownloadTask crashed = new CrashingDownloadTask(metaChunks, destination, metaFile.getChunkKey()
+				.getPrivate());
+		crashing.submit(crashed);
+		Assert.assertTrue(crashed.firstChunk.await(20, TimeUnit.SECONDS));
+		crashing.stopBackgroundProcesses();
+		int missing = crashed.getOpenChunks().size();
+		Assert.assertEquals(metaChunks.size() - 1, missing);
+
+		// the restarted node has no persisted download tasks, the same download is started again
+		DownloadManager restarted = new DownloadManager(downloader.getDataManager(), downloader.getMessageManager(),
+				session.getKeyManager(), session.getFileConfiguration());
+		DownloadTaskDHT resumed = new DownloadTaskDHT(metaChunks, destination, metaFile.getChunkKey().getPrivate());
+		// only the missing chunks are downloaded again
+		Assert.assertEquals(missing, resumed.getOpenChunks().size());
+		restarted.submit(resumed);
+		resumed.join();
+
+		Assert.assertEquals(testContent, FileUtils.readFileToString(destination));
+		Assert.assertFalse(resumed.getTempDirectory().exists());
+	}
+
+	/**
+	 * Records the first downloaded chunk only. The other chunks block until their thread is interrupted,
+	 * after their part file has been written.
+	 */
+	private static class CrashingDownloadTask extends DownloadTaskDHT {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CountDownLatch firstChunk = new CountDownLatch(1);
+		private final CountDownLatch never = new CountDownLatch(1);
+		private final AtomicInteger downloaded = new AtomicInteger();
+
+		public CrashingDownloadTask(List<MetaChunk> metaChunks, File destination, PrivateKey decryptionKey) {
+			super(metaChunks, destination, decryptionKey);
+		}
+
+		@Override
+		public void setDownloaded(int chunkIndex, File filePart) {
+			if (downloaded.getAndIncrement() == 0) {
+				super.setDownloaded(chunkIndex, filePart);
+				firstChunk.countDown();
+				return;
+			}
+
+			try {
+				never.await();
+			} catch (InterruptedException e) {
+				// the download threads are killed
+			}
+		}
+	}
+
 	@After
 	public void tearDown() {
 		NetworkTestUtil.shutdownNetwork(network);
@@ -181,6 +181,40 @@ public class MoveFileTest extends H2HJUnitTest {
 		Assert.assertEquals(fileNode.getName(), destination.getName());
 	}
 
+	@Test
+	public void testFolderToDirectory() throws IOException, IllegalFileLocation, GetFailedException,
+			InterruptedException, NoSessionException, NoPeerConnectionException {
+		NetworkManager client = network.get(1);
+		UseCaseTestUtil.login(userCredentials, client, root);
+
+		// add the folder to move, containing a file
+		File folder = new File(root, "folder");
+		folder.mkdir();
+		UseCaseTestUtil.uploadNewFile(client, folder);
+		File file = new File(folder, "test-file");
+		FileUtils.write(file, NetworkTestUtil.randomString());
+		UseCaseTestUtil.uploadNewFile(client, file);
+
+		// add the destination folder
+		File destFolder = new File(root, "dest-folder");
+		destFolder.mkdir();
+		UseCaseTestUtil.uploadNewFile(client, destFolder);
+
+		// move the folder, the users to notify are calculated from the source and destination folders
+		File destination = new File(destFolder, folder.getName());
+		UseCaseTestUtil.moveFile(client, folder, destination);
+
+		// assert that the folder and its file are moved
+		Assert.assertTrue(new File(destination, file.getName()).exists());
+
+		// check that the user profile has a correct entry
+		UserProfile userProfile = UseCaseTestUtil.getUserProfile(client, userCredentials);
+		Index folderNode = userProfile.getFileByPath(destination, root.toPath());
+		Assert.assertNotNull(folderNode);
+		Assert.assertEquals(destFolder.getName(), folderNode.getParent().getName());
+		Assert.assertNotNull(userProfile.getFileByPath(new File(destination, file.getName()), root.toPath()));
+	}
+
 	@AfterClass
 	public static void endTest() throws IOException {
 		NetworkTestUtil.shutdownNetwork(network);